@@ -0,0 +1,105 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the gzip work of a unary call: compressing a message on one side and decompressing it
+ * on the other, each with a fresh stream as the framer and deframer do. Compares {@link
+ * Codec.Gzip}, which reuses zlib state from a per-thread pool, with plain JDK gzip streams that
+ * allocate it for every message.
+ */
+@State(Scope.Thread)
+public class GzipCodecBenchmark {
+
+  @Param({"true", "false"})
+  public boolean pooled;
+
+  @Param({"100", "1000", "10000"})
+  public int messageSize;
+
+  private Codec codec;
+  private byte[] message;
+  private final byte[] readBuffer = new byte[4096];
+  private final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+  @Setup
+  public void setUp() {
+    codec = pooled ? new Codec.Gzip() : new JdkGzip();
+    message = new byte[messageSize];
+    Random random = new Random(1);
+    for (int i = 0; i < message.length; i++) {
+      message[i] = (byte) ('a' + random.nextInt(16));
+    }
+  }
+
+  /**
+   * Compresses and then decompresses one message.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public int unaryRoundTrip() throws IOException {
+    compressed.reset();
+    OutputStream os = codec.compress(compressed);
+    os.write(message);
+    os.close();
+
+    InputStream is = codec.decompress(new ByteArrayInputStream(compressed.toByteArray()));
+    int total = 0;
+    int n;
+    while ((n = is.read(readBuffer)) != -1) {
+      total += n;
+    }
+    is.close();
+    return total;
+  }
+
+  private static final class JdkGzip implements Codec {
+    @Override
+    public String getMessageEncoding() {
+      return "gzip";
+    }
+
+    @Override
+    public OutputStream compress(OutputStream os) throws IOException {
+      return new GZIPOutputStream(os);
+    }
+
+    @Override
+    public InputStream decompress(InputStream is) throws IOException {
+      return new GZIPInputStream(is);
+    }
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Extension to an {@link java.io.InputStream} or alike by adding a method that transfers all
+ * content to a {@link ByteBuffer}.
+ *
+ * <p>This can be used for optimizing for the case where the length of the content is known and
+ * the transport can provide a buffer large enough to hold it. Instead of writing the content to an
+ * {@link java.io.OutputStream} through {@link Drainable}, which may buffer and copy it, the
+ * implementation can serialize the content straight into the transport's buffer.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/7387")
+public interface ByteBufferDrainable {
+
+  /**
+   * Transfers the entire contents of this stream to the specified buffer, starting at its current
+   * position. The buffer must have at least as many bytes remaining as the length of the content.
+   * The position of the buffer is advanced by the number of bytes written.
+   *
+   * @param target to write to.
+   * @return number of bytes written.
+   */
+  int drainTo(ByteBuffer target) throws IOException;
+}
@@ -61,6 +61,9 @@ public final class CallOptions {
   @Nullable
   private String compressorName;
 
+  @Nullable
+  private MessageCompressionPolicy messageCompressionPolicy;
+
   private Object[][] customOptions;
 
   // Unmodifiable list
@@ -118,6 +121,17 @@ public final class CallOptions {
     return newOptions;
   }
 
+  /**
+   * Sets the policy that decides which outbound messages of the call are worth compressing. It only
+   * has an effect if a compressor is also set with {@link #withCompression}.
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/1704")
+  public CallOptions withMessageCompressionPolicy(@Nullable MessageCompressionPolicy policy) {
+    CallOptions newOptions = new CallOptions(this);
+    newOptions.messageCompressionPolicy = policy;
+    return newOptions;
+  }
+
   /**
    * Returns a new {@code CallOptions} with the given absolute deadline.
    *
@@ -180,6 +194,15 @@ public final class CallOptions {
     return compressorName;
   }
 
+  /**
+   * Returns the message compression policy, or {@code null} to compress every message.
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/1704")
+  @Nullable
+  public MessageCompressionPolicy getMessageCompressionPolicy() {
+    return messageCompressionPolicy;
+  }
+
   /**
    * Override the HTTP/2 authority the channel claims to be connecting to. <em>This is not
    * generally safe.</em> Overriding allows advanced users to re-use a single Channel for multiple
@@ -435,6 +458,7 @@ public final class CallOptions {
     credentials = other.credentials;
     executor = other.executor;
     compressorName = other.compressorName;
+    messageCompressionPolicy = other.messageCompressionPolicy;
     customOptions = other.customOptions;
     waitForReady = other.waitForReady;
     maxInboundMessageSize = other.maxInboundMessageSize;
@@ -450,6 +474,7 @@ public final class CallOptions {
         .add("callCredentials", credentials)
         .add("executor", executor != null ? executor.getClass() : null)
         .add("compressorName", compressorName)
+        .add("messageCompressionPolicy", messageCompressionPolicy)
         .add("customOptions", Arrays.deepToString(customOptions))
         .add("waitForReady", isWaitForReady())
         .add("maxInboundMessageSize", maxInboundMessageSize)
@@ -80,6 +80,12 @@ public abstract class ForwardingChannelBuilder<T extends ForwardingChannelBuilde
     return thisT();
   }
 
+  @Override
+  public T useVirtualThreads() {
+    delegate().useVirtualThreads();
+    return thisT();
+  }
+
   @Override
   public T intercept(List<ClientInterceptor> interceptors) {
     delegate().intercept(interceptors);
@@ -67,6 +67,12 @@ public abstract class ForwardingServerBuilder<T extends ServerBuilder<T>> extend
     return thisT();
   }
 
+  @Override
+  public T useVirtualThreads() {
+    delegate().useVirtualThreads();
+    return thisT();
+  }
+
   @Override
   public T addService(ServerServiceDefinition service) {
     delegate().addService(service);
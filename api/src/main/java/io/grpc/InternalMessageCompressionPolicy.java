@@ -0,0 +1,38 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+/**
+ * Private accessor for message compression policies.  Don't use this.
+ */
+@Internal
+public final class InternalMessageCompressionPolicy {
+  private InternalMessageCompressionPolicy() {}
+
+  @Internal
+  public static boolean shouldCompress(
+      MessageCompressionPolicy policy, String fullMethodName, int messageLength) {
+    return policy.shouldCompress(fullMethodName, messageLength);
+  }
+
+  @Internal
+  public static void recordCompression(
+      MessageCompressionPolicy policy, String fullMethodName, long uncompressedSize,
+      long compressedSize) {
+    policy.recordCompression(fullMethodName, uncompressedSize, compressedSize);
+  }
+}
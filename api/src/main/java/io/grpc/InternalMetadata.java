@@ -73,6 +73,16 @@ public final class InternalMetadata {
     return new Metadata(usedNames, binaryValues);
   }
 
+  /**
+   * Returns the header name of {@code key} as the bytes {@link Metadata} compares names with.
+   * Transports can use the same array for headers they receive, so that looking them up with the
+   * key matches by identity. The array must not be modified.
+   */
+  @Internal
+  public static byte[] asciiName(Metadata.Key<?> key) {
+    return key.asciiName();
+  }
+
   @Internal
   public static byte[][] serialize(Metadata md) {
     return md.serialize();
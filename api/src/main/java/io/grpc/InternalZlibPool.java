@@ -0,0 +1,37 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+import java.util.zip.Inflater;
+
+/**
+ * Private accessor for the pool of zlib inflaters.  Don't use this.
+ */
+@Internal
+public final class InternalZlibPool {
+  private InternalZlibPool() {}
+
+  @Internal
+  public static Inflater acquireInflater() {
+    return ZlibPool.acquireInflater();
+  }
+
+  @Internal
+  public static void releaseInflater(Inflater inflater) {
+    ZlibPool.releaseInflater(inflater);
+  }
+}
@@ -124,6 +124,24 @@ public abstract class ManagedChannelBuilder<T extends ManagedChannelBuilder<T>>
     throw new UnsupportedOperationException();
   }
 
+  /**
+   * Runs application callbacks on virtual threads, a new one per task, instead of the default
+   * cached thread pool. Callbacks of a single call are still run one at a time and in order.
+   * Blocking stubs run callbacks on the calling thread, so they park cheaply when called from a
+   * virtual thread whether or not this is set.
+   *
+   * <p>This replaces the executor set by {@link #executor(Executor)} or {@link #directExecutor()}
+   * and is replaced by either of them if called later. Virtual threads require Java 21 or later.
+   *
+   * @return this
+   * @throws UnsupportedOperationException if unsupported or virtual threads are not available
+   * @since 1.46.0
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/6279")
+  public T useVirtualThreads() {
+    throw new UnsupportedOperationException();
+  }
+
   /**
    * Adds interceptors that will be called before the channel performs its real work. This is
    * functionally equivalent to using {@link ClientInterceptors#intercept(Channel, List)}, but while
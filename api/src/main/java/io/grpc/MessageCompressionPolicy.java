@@ -0,0 +1,195 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.MoreObjects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Decides, per outbound message, whether compressing it is worth the CPU. Messages smaller than
+ * {@link Builder#setMinMessageSize the minimum size} are sent uncompressed, and a method whose
+ * messages stop shrinking below {@link Builder#setMaxCompressionRatio the maximum ratio} has
+ * compression turned off for it until a periodic sample shows that it pays off again.
+ *
+ * <p>The policy only applies when a compressor has been chosen for the call and message
+ * compression has not been disabled with {@link ClientCall#setMessageCompression} or {@link
+ * ServerCall#setMessageCompression}. Statistics are kept per full method name and shared by every
+ * call that uses the same policy instance, so a policy should be created once and reused.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/1704")
+@ThreadSafe
+public final class MessageCompressionPolicy {
+  /**
+   * Weight given to the latest sample in the moving average of the compression ratio.
+   */
+  private static final double RATIO_SAMPLE_WEIGHT = 0.1;
+
+  private final int minMessageSize;
+  private final double maxCompressionRatio;
+  private final int sampleInterval;
+  private final ConcurrentMap<String, MethodStats> methodStats =
+      new ConcurrentHashMap<String, MethodStats>();
+
+  private MessageCompressionPolicy(Builder builder) {
+    this.minMessageSize = builder.minMessageSize;
+    this.maxCompressionRatio = builder.maxCompressionRatio;
+    this.sampleInterval = builder.sampleInterval;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public int getMinMessageSize() {
+    return minMessageSize;
+  }
+
+  public double getMaxCompressionRatio() {
+    return maxCompressionRatio;
+  }
+
+  public int getSampleInterval() {
+    return sampleInterval;
+  }
+
+  /**
+   * Returns whether the next message of the method should be compressed.
+   *
+   * @param messageLength the serialized size of the message, or -1 if unknown
+   */
+  boolean shouldCompress(String fullMethodName, int messageLength) {
+    if (messageLength >= 0 && messageLength < minMessageSize) {
+      return false;
+    }
+    MethodStats stats = methodStats.get(fullMethodName);
+    return stats == null || stats.shouldCompress(sampleInterval);
+  }
+
+  /**
+   * Records the outcome of compressing a message of the method.
+   */
+  void recordCompression(String fullMethodName, long uncompressedSize, long compressedSize) {
+    if (uncompressedSize <= 0 || compressedSize < 0) {
+      return;
+    }
+    MethodStats stats = methodStats.get(fullMethodName);
+    if (stats == null) {
+      stats = new MethodStats();
+      MethodStats existing = methodStats.putIfAbsent(fullMethodName, stats);
+      if (existing != null) {
+        stats = existing;
+      }
+    }
+    stats.record((double) compressedSize / uncompressedSize, maxCompressionRatio);
+  }
+
+  @VisibleForTesting
+  boolean isCompressionDisabled(String fullMethodName) {
+    MethodStats stats = methodStats.get(fullMethodName);
+    return stats != null && stats.disabled;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("minMessageSize", minMessageSize)
+        .add("maxCompressionRatio", maxCompressionRatio)
+        .add("sampleInterval", sampleInterval)
+        .toString();
+  }
+
+  private static final class MethodStats {
+    private final AtomicInteger skipped = new AtomicInteger();
+    @GuardedBy("this")
+    private double averageRatio = -1;
+    private volatile boolean disabled;
+
+    boolean shouldCompress(int sampleInterval) {
+      if (!disabled) {
+        return true;
+      }
+      // Keep compressing the odd message, otherwise we'd never notice the payload becoming
+      // compressible again.
+      return skipped.incrementAndGet() % sampleInterval == 0;
+    }
+
+    synchronized void record(double ratio, double maxRatio) {
+      if (averageRatio < 0) {
+        averageRatio = ratio;
+      } else {
+        averageRatio += (ratio - averageRatio) * RATIO_SAMPLE_WEIGHT;
+      }
+      disabled = averageRatio > maxRatio;
+    }
+  }
+
+  /**
+   * Builder for {@link MessageCompressionPolicy}.
+   */
+  public static final class Builder {
+    private int minMessageSize;
+    private double maxCompressionRatio = 1.0;
+    private int sampleInterval = 100;
+
+    private Builder() {}
+
+    /**
+     * Messages whose serialized size is known to be smaller than this are never compressed.
+     * Defaults to {@code 0}.
+     */
+    public Builder setMinMessageSize(int minMessageSize) {
+      checkArgument(minMessageSize >= 0, "minMessageSize must be >= 0");
+      this.minMessageSize = minMessageSize;
+      return this;
+    }
+
+    /**
+     * Compression is turned off for a method once the moving average of compressed size divided
+     * by uncompressed size rises above this value. For example {@code 0.9} requires compression to
+     * save at least 10% of the bytes. Defaults to {@code 1.0}, which only turns compression off
+     * when it makes messages bigger.
+     */
+    public Builder setMaxCompressionRatio(double maxCompressionRatio) {
+      checkArgument(
+          maxCompressionRatio > 0 && maxCompressionRatio <= 1.0,
+          "maxCompressionRatio must be in (0, 1]");
+      this.maxCompressionRatio = maxCompressionRatio;
+      return this;
+    }
+
+    /**
+     * While compression is turned off for a method, one message out of every {@code
+     * sampleInterval} is still compressed to re-evaluate the ratio. Defaults to {@code 100}.
+     */
+    public Builder setSampleInterval(int sampleInterval) {
+      checkArgument(sampleInterval > 0, "sampleInterval must be > 0");
+      this.sampleInterval = sampleInterval;
+      return this;
+    }
+
+    public MessageCompressionPolicy build() {
+      return new MessageCompressionPolicy(this);
+    }
+  }
+}
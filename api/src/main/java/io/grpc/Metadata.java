@@ -150,6 +150,11 @@ public final class Metadata {
   private Object[] namesAndValues;
   // The unscaled number of headers present.
   private int size;
+  // Values that get() parsed into Strings, indexed like the headers, so that repeatedly reading a
+  // header does not decode it again. Allocated on first use, and dropped when entries are removed
+  // since that shifts their indices.
+  @Nullable
+  private ParsedValue[] parsedValues;
 
   private byte[] name(int i) {
     return (byte[]) namesAndValues[i * 2];
@@ -202,6 +207,29 @@ public final class Metadata {
     }
   }
 
+  /**
+   * Same as {@link #valueAsT}, but remembers values parsed into a {@link String}. Strings are
+   * immutable, so unlike other types they can be handed out more than once.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> T cachedValueAsT(int i, Key<T> key) {
+    ParsedValue[] cache = parsedValues;
+    if (cache != null && i < cache.length && cache[i] != null && cache[i].key == key) {
+      return (T) cache[i].value;
+    }
+    T parsed = valueAsT(i, key);
+    if (parsed instanceof String) {
+      if (cache == null || i >= cache.length) {
+        cache = cache == null ? new ParsedValue[size] : Arrays.copyOf(cache, size);
+        parsedValues = cache;
+      }
+      // An immutable holder, so that concurrent readers, which get() used to allow, see either
+      // nothing or a complete entry.
+      cache[i] = new ParsedValue(key, parsed);
+    }
+    return parsed;
+  }
+
   private int cap() {
     return namesAndValues != null ? namesAndValues.length : 0;
   }
@@ -248,7 +276,7 @@ public final class Metadata {
   public <T> T get(Key<T> key) {
     for (int i = size - 1; i >= 0; i--) {
       if (bytesEqual(key.asciiName(), name(i))) {
-        return valueAsT(i, key);
+        return cachedValueAsT(i, key);
       }
     }
     return null;
@@ -287,7 +315,7 @@ public final class Metadata {
         public T next() {
           if (hasNext()) {
             hasNext = false;
-            return valueAsT(idx++, key);
+            return cachedValueAsT(idx++, key);
           }
           throw new NoSuchElementException();
         }
@@ -390,6 +418,7 @@ public final class Metadata {
       int readIdx = (i + 1) * 2;
       int readLen = len() - readIdx;
       System.arraycopy(namesAndValues, readIdx, namesAndValues, writeIdx, readLen);
+      parsedValues = null;
       size -= 1;
       name(size, null);
       value(size, (byte[]) null);
@@ -419,6 +448,9 @@ public final class Metadata {
     int newSize = writeIdx;
     // Multiply by two since namesAndValues is interleaved.
     Arrays.fill(namesAndValues, writeIdx * 2, len(), null);
+    if (newSize != size) {
+      parsedValues = null;
+    }
     size = newSize;
     return ret;
   }
@@ -445,6 +477,9 @@ public final class Metadata {
     int newSize = writeIdx;
     // Multiply by two since namesAndValues is interleaved.
     Arrays.fill(namesAndValues, writeIdx * 2, len(), null);
+    if (newSize != size) {
+      parsedValues = null;
+    }
     size = newSize;
   }
 
@@ -561,6 +596,8 @@ public final class Metadata {
   }
 
   private boolean bytesEqual(byte[] left, byte[] right) {
+    // Names of well-known keys are usually the same array, as put() stores the key's name and
+    // transports intern names they decode, so this rarely needs to compare bytes.
     return Arrays.equals(left, right);
   }
 
@@ -915,6 +952,17 @@ public final class Metadata {
     }
   }
 
+  /** A value parsed by {@link #get}, along with the key it was parsed for. */
+  private static final class ParsedValue {
+    final Key<?> key;
+    final Object value;
+
+    ParsedValue(Key<?> key, Object value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+
   /** Internal holder for values which are serialized/de-serialized lazily. */
   static final class LazyValue<T> {
     private final BinaryStreamMarshaller<T> marshaller;
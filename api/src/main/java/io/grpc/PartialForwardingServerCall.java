@@ -65,6 +65,12 @@ abstract class PartialForwardingServerCall<ReqT, RespT> extends ServerCall<ReqT,
     delegate().setCompression(compressor);
   }
 
+  @Override
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/1704")
+  public void setMessageCompressionPolicy(MessageCompressionPolicy policy) {
+    delegate().setMessageCompressionPolicy(policy);
+  }
+
   @Override
   @ExperimentalApi("https://github.com/grpc/grpc-java/issues/1779")
   public Attributes getAttributes() {
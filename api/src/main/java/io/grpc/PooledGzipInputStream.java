@@ -0,0 +1,203 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Reads gzip data (RFC 1952), inflating with an {@link Inflater} borrowed from {@link ZlibPool}
+ * and giving it back when closed. Like {@code GZIPInputStream} it verifies each member's trailer
+ * and reads concatenated members as one stream.
+ *
+ * <p>This parses the framing itself rather than extending {@code GZIPInputStream}, which always
+ * creates an {@code Inflater} of its own.
+ */
+final class PooledGzipInputStream extends InflaterInputStream {
+  private static final int BUFFER_SIZE = 512;
+  private static final int GZIP_MAGIC = 0x8b1f;
+  /** Length of a header without any optional fields. */
+  private static final int MIN_HEADER_SIZE = 10;
+  private static final int TRAILER_SIZE = 8;
+
+  private static final int FHCRC = 2;
+  private static final int FEXTRA = 4;
+  private static final int FNAME = 8;
+  private static final int FCOMMENT = 16;
+
+  /** CRC of the uncompressed data of the current member. */
+  private final CRC32 crc = new CRC32();
+  private boolean eos;
+  private boolean closed;
+
+  PooledGzipInputStream(InputStream in) throws IOException {
+    super(in, ZlibPool.acquireInflater(), BUFFER_SIZE);
+    boolean success = false;
+    try {
+      readHeader(in);
+      success = true;
+    } finally {
+      if (!success) {
+        closed = true;
+        ZlibPool.releaseInflater(inf);
+      }
+    }
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    while (!eos) {
+      int n = super.read(b, off, len);
+      if (n != -1) {
+        crc.update(b, off, n);
+        return n;
+      }
+      eos = readTrailer();
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the inflater to the pool and closes the underlying stream. {@code
+   * InflaterInputStream} does not end an inflater it was given.
+   */
+  @Override
+  public void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      ZlibPool.releaseInflater(inf);
+    }
+    super.close();
+  }
+
+  /**
+   * Verifies the trailer of the member that just ended and starts the next one if there is one.
+   * Returns {@code true} at the end of the stream.
+   */
+  private boolean readTrailer() throws IOException {
+    // The inflater may have been given more input than the deflate data.
+    int remaining = inf.getRemaining();
+    InputStream in = this.in;
+    if (remaining > 0) {
+      in = new SequenceInputStream(new ByteArrayInputStream(buf, len - remaining, remaining), in);
+    }
+    if (readUInt(in) != crc.getValue()
+        || readUInt(in) != (inf.getBytesWritten() & 0xffffffffL)) {
+      throw new ZipException("Corrupt GZIP trailer");
+    }
+    if (this.in.available() == 0 && remaining < TRAILER_SIZE + MIN_HEADER_SIZE) {
+      return true;
+    }
+    int headerSize;
+    try {
+      headerSize = readHeader(in);
+    } catch (IOException e) {
+      // Trailing garbage is ignored, as GZIPInputStream does.
+      return true;
+    }
+    inf.reset();
+    int consumed = TRAILER_SIZE + headerSize;
+    if (remaining > consumed) {
+      inf.setInput(buf, len - remaining + consumed, remaining - consumed);
+    }
+    return false;
+  }
+
+  /** Reads a member header, resetting {@link #crc}. Returns the number of bytes read. */
+  private int readHeader(InputStream in) throws IOException {
+    crc.reset();
+    int size = MIN_HEADER_SIZE;
+    byte[] header = new byte[MIN_HEADER_SIZE];
+    readFully(in, header, MIN_HEADER_SIZE);
+    crc.update(header, 0, MIN_HEADER_SIZE);
+    if (((header[0] & 0xff) | (header[1] & 0xff) << 8) != GZIP_MAGIC) {
+      throw new ZipException("Not in GZIP format");
+    }
+    if (header[2] != Deflater.DEFLATED) {
+      throw new ZipException("Unsupported compression method");
+    }
+    int flags = header[3] & 0xff;
+    if ((flags & FEXTRA) != 0) {
+      int extraLength = readUByte(in) | readUByte(in) << 8;
+      size += 2 + extraLength;
+      for (int i = 0; i < extraLength; i++) {
+        readUByte(in);
+      }
+    }
+    if ((flags & FNAME) != 0) {
+      size += skipZeroTerminated(in);
+    }
+    if ((flags & FCOMMENT) != 0) {
+      size += skipZeroTerminated(in);
+    }
+    if ((flags & FHCRC) != 0) {
+      int expected = (int) crc.getValue() & 0xffff;
+      if ((readUByte(in) | readUByte(in) << 8) != expected) {
+        throw new ZipException("Corrupt GZIP header");
+      }
+      size += 2;
+    }
+    crc.reset();
+    return size;
+  }
+
+  /** Reads a byte, adding it to {@link #crc} for the header checksum. */
+  private int readUByte(InputStream in) throws IOException {
+    int b = in.read();
+    if (b == -1) {
+      throw new EOFException();
+    }
+    crc.update(b);
+    return b;
+  }
+
+  private int skipZeroTerminated(InputStream in) throws IOException {
+    int size = 1;
+    while (readUByte(in) != 0) {
+      size++;
+    }
+    return size;
+  }
+
+  private static long readUInt(InputStream in) throws IOException {
+    byte[] b = new byte[4];
+    readFully(in, b, 4);
+    return (b[0] & 0xffL) | (b[1] & 0xffL) << 8 | (b[2] & 0xffL) << 16 | (b[3] & 0xffL) << 24;
+  }
+
+  private static void readFully(InputStream in, byte[] b, int len) throws IOException {
+    int off = 0;
+    while (off < len) {
+      int n = in.read(b, off, len - off);
+      if (n == -1) {
+        throw new EOFException();
+      }
+      off += n;
+    }
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a single gzip member (RFC 1952), deflating with a {@link Deflater} borrowed from {@link
+ * ZlibPool} and giving it back when closed.
+ *
+ * <p>This frames the member itself rather than extending {@code GZIPOutputStream}, which always
+ * creates a {@code Deflater} of its own.
+ */
+final class PooledGzipOutputStream extends DeflaterOutputStream {
+  private static final int BUFFER_SIZE = 512;
+
+  /** Magic number, CM = deflate, no flags, no modification time, XFL = 0, OS = unknown. */
+  private static final byte[] HEADER =
+      {(byte) 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+  private final CRC32 crc = new CRC32();
+  private boolean closed;
+
+  PooledGzipOutputStream(OutputStream out) throws IOException {
+    super(out, ZlibPool.acquireDeflater(), BUFFER_SIZE);
+    boolean success = false;
+    try {
+      out.write(HEADER);
+      success = true;
+    } finally {
+      if (!success) {
+        closed = true;
+        ZlibPool.releaseDeflater(def);
+      }
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    checkNotClosed();
+    super.write(b, off, len);
+    crc.update(b, off, len);
+  }
+
+  /** Finishes the gzip member without closing the underlying stream. */
+  @Override
+  public void finish() throws IOException {
+    checkNotClosed();
+    if (!def.finished()) {
+      super.finish();
+      byte[] trailer = new byte[8];
+      writeIntLe(trailer, 0, (int) crc.getValue());
+      // ISIZE is the uncompressed length modulo 2^32.
+      writeIntLe(trailer, 4, (int) def.getBytesRead());
+      out.write(trailer);
+    }
+  }
+
+  /**
+   * Finishes the gzip member, returns the deflater to the pool and closes the underlying stream.
+   * Once the deflater has been returned, writes fail instead of reaching a deflater that another
+   * stream may be using.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    try {
+      finish();
+    } finally {
+      closed = true;
+      ZlibPool.releaseDeflater(def);
+    }
+    out.close();
+  }
+
+  private void checkNotClosed() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+
+  private static void writeIntLe(byte[] b, int off, int value) {
+    b[off] = (byte) value;
+    b[off + 1] = (byte) (value >> 8);
+    b[off + 2] = (byte) (value >> 16);
+    b[off + 3] = (byte) (value >> 24);
+  }
+}
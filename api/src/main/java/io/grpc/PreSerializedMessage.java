@@ -0,0 +1,126 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.io.ByteStreams;
+import io.grpc.MethodDescriptor.Marshaller;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A message that has been serialized once, ahead of time, so that it can be sent on many calls
+ * without serializing it again for each of them. The serialized bytes are shared, read-only, by
+ * every call the message is sent on.
+ *
+ * <p>Calls only use the serialized bytes if the message was created with the same marshaller
+ * as the response marshaller of their method; otherwise the message is serialized as usual.
+ *
+ * @see ServerCall#sendPreSerializedMessage
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/7387")
+public final class PreSerializedMessage<T> {
+  private final Marshaller<T> marshaller;
+  private final T message;
+  private final byte[] serialized;
+
+  private PreSerializedMessage(Marshaller<T> marshaller, T message, byte[] serialized) {
+    this.marshaller = marshaller;
+    this.message = message;
+    this.serialized = serialized;
+  }
+
+  /**
+   * Serializes {@code message} with {@code marshaller}.
+   *
+   * @throws StatusRuntimeException if serializing the message fails
+   */
+  public static <T> PreSerializedMessage<T> create(Marshaller<T> marshaller, T message) {
+    checkNotNull(marshaller, "marshaller");
+    checkNotNull(message, "message");
+    InputStream stream = marshaller.stream(message);
+    try {
+      try {
+        return new PreSerializedMessage<>(marshaller, message, ByteStreams.toByteArray(stream));
+      } finally {
+        stream.close();
+      }
+    } catch (IOException e) {
+      throw Status.INTERNAL
+          .withDescription("Failed to serialize message")
+          .withCause(e)
+          .asRuntimeException();
+    }
+  }
+
+  /**
+   * Returns the message this was created from.
+   */
+  public T getMessage() {
+    return message;
+  }
+
+  /**
+   * Returns the marshaller the message was serialized with.
+   */
+  public Marshaller<T> getMarshaller() {
+    return marshaller;
+  }
+
+  /**
+   * Returns the length of the serialized message in bytes.
+   */
+  public int getSerializedSize() {
+    return serialized.length;
+  }
+
+  /**
+   * Returns a new stream over the serialized message. Streams share the serialized bytes and do
+   * not copy them until drained.
+   */
+  public InputStream stream() {
+    return new SerializedStream(serialized);
+  }
+
+  private static final class SerializedStream extends ByteArrayInputStream
+      implements KnownLength, Drainable, ByteBufferDrainable {
+
+    SerializedStream(byte[] serialized) {
+      super(serialized);
+    }
+
+    @Override
+    public int drainTo(OutputStream target) throws IOException {
+      int length = count - pos;
+      target.write(buf, pos, length);
+      pos = count;
+      return length;
+    }
+
+    @Override
+    public int drainTo(ByteBuffer target) {
+      int length = count - pos;
+      target.put(buf, pos, length);
+      pos = count;
+      return length;
+    }
+  }
+}
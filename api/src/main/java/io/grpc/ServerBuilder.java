@@ -95,6 +95,23 @@ public abstract class ServerBuilder<T extends ServerBuilder<T>> {
     return thisT();
   }
 
+  /**
+   * Runs application code on virtual threads, a new one per task, instead of the default cached
+   * thread pool. Handlers that block, for example on JDBC calls, then no longer each hold on to a
+   * platform thread. Callbacks of a single call are still run one at a time and in order.
+   *
+   * <p>This replaces the executor set by {@link #executor(Executor)} or {@link #directExecutor()}
+   * and is replaced by either of them if called later. Virtual threads require Java 21 or later.
+   *
+   * @return this
+   * @throws UnsupportedOperationException if unsupported or virtual threads are not available
+   * @since 1.46.0
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/8274")
+  public T useVirtualThreads() {
+    throw new UnsupportedOperationException();
+  }
+
   /**
    * Adds a service implementation to the handler registry.
    *
@@ -136,6 +136,23 @@ public abstract class ServerCall<ReqT, RespT> {
    */
   public abstract void sendMessage(RespT message);
 
+  /**
+   * Send a response message that was serialized ahead of time, typically because it is sent on
+   * many calls. Behaves like {@link #sendMessage}, except that the call may use the serialized
+   * bytes instead of serializing the message again.
+   *
+   * <p>This abstract class's implementation calls {@link #sendMessage} with {@link
+   * PreSerializedMessage#getMessage}. Implementations that don't alter outgoing messages may
+   * override it to take advantage of the serialized bytes.
+   *
+   * @param message pre-serialized response message.
+   * @throws IllegalStateException if headers not sent or call is {@link #close}d
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/7387")
+  public void sendPreSerializedMessage(PreSerializedMessage<RespT> message) {
+    sendMessage(message.getMessage());
+  }
+
   /**
    * If {@code true}, indicates that the call is capable of sending additional messages
    * without requiring excessive buffering internally. This event is
@@ -211,6 +228,19 @@ public abstract class ServerCall<ReqT, RespT> {
     // noop
   }
 
+  /**
+   * Sets the policy that decides which response messages are worth compressing, instead of
+   * compressing every one of them. It only has an effect if a compressor is also set with {@link
+   * #setCompression}. This method may only be called before {@link #sendHeaders}.
+   *
+   * @param policy the policy to apply, shared by calls of the same method to learn how well their
+   *     messages compress.
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/1704")
+  public void setMessageCompressionPolicy(MessageCompressionPolicy policy) {
+    // noop
+  }
+
   /**
    * Returns properties of a single call.
    *
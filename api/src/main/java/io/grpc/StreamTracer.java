@@ -65,6 +65,20 @@ public abstract class StreamTracer {
   public void outboundMessageSent(int seqNo, long optionalWireSize, long optionalUncompressedSize) {
   }
 
+  /**
+   * An outbound message has been compressed. This is not called for messages that are sent
+   * uncompressed, including those a {@link MessageCompressionPolicy} decided not to compress.
+   *
+   * @param seqNo the sequential number of the message within the stream, starting from 0.  It can
+   *              be used to correlate with {@link #outboundMessage(int)} for the same message.
+   * @param uncompressedSize the serialized size of the message before compression
+   * @param compressedSize the size of the message after compression
+   * @param compressionNanos the time spent serializing and compressing the message
+   */
+  public void outboundMessageCompressed(
+      int seqNo, long uncompressedSize, long compressedSize, long compressionNanos) {
+  }
+
   /**
    * An inbound message has been fully read from the transport.
    *
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+import java.util.ArrayDeque;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Small process-wide pools of raw (no zlib header) {@link Inflater}s and {@link Deflater}s.
+ *
+ * <p>Each of them holds native zlib state and a window of up to 32KB, which is expensive to
+ * allocate and is only freed by {@code end()} or, failing that, by a cleaner. Streams acquire one
+ * when they start and release it when they are closed. The pools are shared rather than
+ * per-thread because streams are frequently released on a different thread than the one that
+ * acquired them (an application executor, or a virtual thread that never runs again), which would
+ * strand the instances. Instances released to a full pool are ended immediately.
+ */
+final class ZlibPool {
+  /** Maximum number of idle instances of each kind kept by the pool. */
+  static final int MAX_POOLED = 2 * Runtime.getRuntime().availableProcessors();
+
+  // Guarded by itself
+  private static final ArrayDeque<Inflater> inflaters = new ArrayDeque<Inflater>(MAX_POOLED);
+  // Guarded by itself
+  private static final ArrayDeque<Deflater> deflaters = new ArrayDeque<Deflater>(MAX_POOLED);
+
+  private ZlibPool() {}
+
+  /**
+   * Returns a reset {@code Inflater} that does not expect a zlib header. The caller must pass it
+   * to {@link #releaseInflater} once done with it.
+   */
+  static Inflater acquireInflater() {
+    Inflater inflater;
+    synchronized (inflaters) {
+      inflater = inflaters.pollFirst();
+    }
+    return inflater != null ? inflater : new Inflater(true);
+  }
+
+  static void releaseInflater(Inflater inflater) {
+    // Reset outside of the lock; it is the only part that touches the native state.
+    inflater.reset();
+    synchronized (inflaters) {
+      if (inflaters.size() < MAX_POOLED) {
+        inflaters.addFirst(inflater);
+        return;
+      }
+    }
+    inflater.end();
+  }
+
+  /**
+   * Returns a reset {@code Deflater} with the default compression level that does not write a
+   * zlib header. The caller must pass it to {@link #releaseDeflater} once done with it.
+   */
+  static Deflater acquireDeflater() {
+    Deflater deflater;
+    synchronized (deflaters) {
+      deflater = deflaters.pollFirst();
+    }
+    return deflater != null ? deflater : new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+  }
+
+  static void releaseDeflater(Deflater deflater) {
+    deflater.reset();
+    synchronized (deflaters) {
+      if (deflaters.size() < MAX_POOLED) {
+        deflaters.addFirst(deflater);
+        return;
+      }
+    }
+    deflater.end();
+  }
+
+  /** Number of idle inflaters in the pool. */
+  static int pooledInflaters() {
+    synchronized (inflaters) {
+      return inflaters.size();
+    }
+  }
+
+  /** Number of idle deflaters in the pool. */
+  static int pooledDeflaters() {
+    synchronized (deflaters) {
+      return deflaters.size();
+    }
+  }
+}
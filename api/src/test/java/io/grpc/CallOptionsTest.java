@@ -50,6 +50,8 @@ public class CallOptionsTest {
   private final Deadline.Ticker ticker = new FakeTicker();
   private final Deadline sampleDeadline = Deadline.after(1, NANOSECONDS, ticker);
   private final CallCredentials sampleCreds = mock(CallCredentials.class);
+  private final MessageCompressionPolicy samplePolicy =
+      MessageCompressionPolicy.newBuilder().build();
   private final ClientStreamTracer.Factory tracerFactory1 = new FakeTracerFactory("tracerFactory1");
   private final ClientStreamTracer.Factory tracerFactory2 = new FakeTracerFactory("tracerFactory2");
   private final CallOptions allSet = CallOptions.DEFAULT
@@ -57,6 +59,7 @@ public class CallOptionsTest {
       .withDeadline(sampleDeadline)
       .withCallCredentials(sampleCreds)
       .withCompression(sampleCompressor)
+      .withMessageCompressionPolicy(samplePolicy)
       .withWaitForReady()
       .withExecutor(directExecutor())
       .withOption(OPTION_1, "value1")
@@ -71,6 +74,7 @@ public class CallOptionsTest {
     assertThat(CallOptions.DEFAULT.getExecutor()).isNull();
     assertThat(CallOptions.DEFAULT.getCredentials()).isNull();
     assertThat(CallOptions.DEFAULT.getCompressor()).isNull();
+    assertThat(CallOptions.DEFAULT.getMessageCompressionPolicy()).isNull();
     assertThat(CallOptions.DEFAULT.isWaitForReady()).isFalse();
     assertThat(CallOptions.DEFAULT.getStreamTracerFactories()).isEmpty();
   }
@@ -88,6 +92,7 @@ public class CallOptionsTest {
     assertThat(allSet.getDeadline()).isSameInstanceAs(sampleDeadline);
     assertThat(allSet.getCredentials()).isSameInstanceAs(sampleCreds);
     assertThat(allSet.getCompressor()).isSameInstanceAs(sampleCompressor);
+    assertThat(allSet.getMessageCompressionPolicy()).isSameInstanceAs(samplePolicy);
     assertThat(allSet.getExecutor()).isSameInstanceAs(directExecutor());
     assertThat(allSet.getOption(OPTION_1)).isSameInstanceAs("value1");
     assertThat(allSet.getOption(OPTION_2)).isSameInstanceAs("value2");
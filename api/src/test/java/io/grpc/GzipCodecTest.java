@@ -0,0 +1,192 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link Codec.Gzip}. */
+@RunWith(JUnit4.class)
+public class GzipCodecTest {
+  private final Codec.Gzip gzip = new Codec.Gzip();
+  private final byte[] payload = newPayload();
+
+  @Test
+  public void compress_readableByJdk() throws Exception {
+    byte[] compressed = compress(payload);
+
+    assertThat(ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed))))
+        .isEqualTo(payload);
+  }
+
+  @Test
+  public void decompress_writtenByJdk() throws Exception {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    GZIPOutputStream os = new GZIPOutputStream(compressed);
+    os.write(payload);
+    os.close();
+
+    assertThat(decompress(compressed.toByteArray())).isEqualTo(payload);
+  }
+
+  @Test
+  public void decompress_concatenatedMembers() throws Exception {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    compressed.write(compress(payload));
+    compressed.write(compress(payload));
+
+    byte[] expected = new byte[payload.length * 2];
+    System.arraycopy(payload, 0, expected, 0, payload.length);
+    System.arraycopy(payload, 0, expected, payload.length, payload.length);
+    assertThat(decompress(compressed.toByteArray())).isEqualTo(expected);
+  }
+
+  @Test
+  public void decompress_optionalHeaderFields() throws Exception {
+    byte[] compressed = compress(payload);
+    ByteArrayOutputStream withFields = new ByteArrayOutputStream();
+    withFields.write(compressed, 0, 3);
+    // FEXTRA, FNAME and FCOMMENT
+    withFields.write(4 | 8 | 16);
+    withFields.write(compressed, 4, 6);
+    withFields.write(new byte[] {3, 0, 1, 2, 3});
+    withFields.write("name\0".getBytes("US-ASCII"));
+    withFields.write("comment\0".getBytes("US-ASCII"));
+    withFields.write(compressed, 10, compressed.length - 10);
+
+    assertThat(decompress(withFields.toByteArray())).isEqualTo(payload);
+  }
+
+  @Test
+  public void decompress_corruptTrailer() throws Exception {
+    byte[] compressed = compress(payload);
+    compressed[compressed.length - 1]++;
+
+    try {
+      decompress(compressed);
+      fail("Should have thrown");
+    } catch (ZipException expected) {
+    }
+  }
+
+  @Test
+  public void closedStreamsReturnZlibStateToPool() throws Exception {
+    byte[] compressed = compress(payload);
+    int pooledDeflaters = ZlibPool.pooledDeflaters();
+    int pooledInflaters = ZlibPool.pooledInflaters();
+
+    OutputStream os = gzip.compress(new ByteArrayOutputStream());
+    InputStream is = gzip.decompress(new ByteArrayInputStream(compressed));
+    assertThat(ZlibPool.pooledDeflaters()).isAtMost(pooledDeflaters);
+    assertThat(ZlibPool.pooledInflaters()).isAtMost(pooledInflaters);
+
+    os.close();
+    is.close();
+    // Closing twice must not put the same instance in the pool twice.
+    os.close();
+    is.close();
+    assertThat(ZlibPool.pooledDeflaters()).isAtMost(ZlibPool.MAX_POOLED);
+    assertThat(ZlibPool.pooledDeflaters()).isAtLeast(1);
+    assertThat(ZlibPool.pooledInflaters()).isAtLeast(1);
+
+    // Pooled instances are reused across streams and produce the same output.
+    assertThat(compress(payload)).isEqualTo(compress(payload));
+    assertThat(decompress(compress(payload))).isEqualTo(payload);
+  }
+
+  @Test
+  public void streamsClosedOnAnotherThreadReturnZlibStateToPool() throws Exception {
+    final OutputStream os = gzip.compress(new ByteArrayOutputStream());
+    final InputStream is = gzip.decompress(new ByteArrayInputStream(compress(payload)));
+    int pooledDeflaters = ZlibPool.pooledDeflaters();
+    int pooledInflaters = ZlibPool.pooledInflaters();
+
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          os.close();
+          is.close();
+        } catch (IOException e) {
+          throw new AssertionError(e);
+        }
+      }
+    });
+    thread.start();
+    thread.join();
+
+    assertThat(ZlibPool.pooledDeflaters()).isAtLeast(Math.min(pooledDeflaters + 1,
+        ZlibPool.MAX_POOLED));
+    assertThat(ZlibPool.pooledInflaters()).isAtLeast(Math.min(pooledInflaters + 1,
+        ZlibPool.MAX_POOLED));
+  }
+
+  @Test
+  public void writeAfterClose_fails() throws Exception {
+    OutputStream os = gzip.compress(new ByteArrayOutputStream());
+    os.close();
+
+    try {
+      os.write(payload);
+      fail("Should have thrown");
+    } catch (IOException expected) {
+    }
+    // The deflater given back to the pool is unaffected.
+    assertThat(decompress(compress(payload))).isEqualTo(payload);
+  }
+
+  private byte[] compress(byte[] data) throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    OutputStream os = gzip.compress(compressed);
+    os.write(data);
+    os.close();
+    return compressed.toByteArray();
+  }
+
+  private byte[] decompress(byte[] data) throws IOException {
+    InputStream is = gzip.decompress(new ByteArrayInputStream(data));
+    try {
+      return ByteStreams.toByteArray(is);
+    } finally {
+      is.close();
+    }
+  }
+
+  private static byte[] newPayload() {
+    byte[] payload = new byte[10000];
+    Random random = new Random(1);
+    for (int i = 0; i < payload.length; i++) {
+      // Compressible, but not trivially so.
+      payload[i] = (byte) ('a' + random.nextInt(4));
+    }
+    return payload;
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link MessageCompressionPolicy}. */
+@RunWith(JUnit4.class)
+public class MessageCompressionPolicyTest {
+  private static final String METHOD = "service/method";
+
+  @Test
+  public void defaults() {
+    MessageCompressionPolicy policy = MessageCompressionPolicy.newBuilder().build();
+    assertThat(policy.getMinMessageSize()).isEqualTo(0);
+    assertThat(policy.getMaxCompressionRatio()).isEqualTo(1.0);
+    assertThat(policy.getSampleInterval()).isEqualTo(100);
+    assertThat(policy.shouldCompress(METHOD, 0)).isTrue();
+    assertThat(policy.shouldCompress(METHOD, -1)).isTrue();
+  }
+
+  @Test
+  public void invalidSettings() {
+    MessageCompressionPolicy.Builder builder = MessageCompressionPolicy.newBuilder();
+    try {
+      builder.setMinMessageSize(-1);
+      fail("Should have thrown");
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      builder.setMaxCompressionRatio(1.5);
+      fail("Should have thrown");
+    } catch (IllegalArgumentException expected) {
+    }
+    try {
+      builder.setSampleInterval(0);
+      fail("Should have thrown");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void smallMessagesAreNotCompressed() {
+    MessageCompressionPolicy policy =
+        MessageCompressionPolicy.newBuilder().setMinMessageSize(100).build();
+    assertThat(policy.shouldCompress(METHOD, 99)).isFalse();
+    assertThat(policy.shouldCompress(METHOD, 100)).isTrue();
+    // Size unknown
+    assertThat(policy.shouldCompress(METHOD, -1)).isTrue();
+  }
+
+  @Test
+  public void poorRatioDisablesCompressionForMethodOnly() {
+    MessageCompressionPolicy policy = MessageCompressionPolicy.newBuilder()
+        .setMaxCompressionRatio(0.8)
+        .setSampleInterval(3)
+        .build();
+    policy.recordCompression(METHOD, 1000, 950);
+
+    assertThat(policy.isCompressionDisabled(METHOD)).isTrue();
+    assertThat(policy.shouldCompress(METHOD, 1000)).isFalse();
+    assertThat(policy.shouldCompress(METHOD, 1000)).isFalse();
+    // Every sampleInterval-th message is still compressed to re-evaluate.
+    assertThat(policy.shouldCompress(METHOD, 1000)).isTrue();
+    assertThat(policy.shouldCompress("service/other", 1000)).isTrue();
+  }
+
+  @Test
+  public void goodSamplesReenableCompression() {
+    MessageCompressionPolicy policy =
+        MessageCompressionPolicy.newBuilder().setMaxCompressionRatio(0.8).build();
+    policy.recordCompression(METHOD, 1000, 1000);
+    assertThat(policy.isCompressionDisabled(METHOD)).isTrue();
+
+    for (int i = 0; i < 100 && policy.isCompressionDisabled(METHOD); i++) {
+      policy.recordCompression(METHOD, 1000, 100);
+    }
+    assertThat(policy.isCompressionDisabled(METHOD)).isFalse();
+    assertThat(policy.shouldCompress(METHOD, 1000)).isTrue();
+  }
+}
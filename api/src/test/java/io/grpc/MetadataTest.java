@@ -218,6 +218,51 @@ public class MetadataTest {
     assertEquals(lance, raw.get(KEY));
   }
 
+  @Test
+  public void getReusesParsedString() {
+    Metadata.Key<String> key = Metadata.Key.of("color", Metadata.ASCII_STRING_MARSHALLER);
+    Metadata raw = new Metadata(key.asciiName(), "blue".getBytes(US_ASCII));
+
+    String color = raw.get(key);
+    assertEquals("blue", color);
+    assertSame(color, raw.get(key));
+    assertSame(color, raw.getAll(key).iterator().next());
+  }
+
+  @Test
+  public void getDoesNotReuseStringParsedForOtherKey() {
+    Metadata.Key<String> key = Metadata.Key.of("color", Metadata.ASCII_STRING_MARSHALLER);
+    Metadata.Key<String> upperKey = Metadata.Key.of("color",
+        new Metadata.AsciiMarshaller<String>() {
+          @Override
+          public String toAsciiString(String value) {
+            return value;
+          }
+
+          @Override
+          public String parseAsciiString(String serialized) {
+            return serialized.toUpperCase(Locale.ROOT);
+          }
+        });
+    Metadata raw = new Metadata(key.asciiName(), "blue".getBytes(US_ASCII));
+
+    assertEquals("blue", raw.get(key));
+    assertEquals("BLUE", raw.get(upperKey));
+  }
+
+  @Test
+  public void getAfterRemoveDoesNotReuseShiftedString() {
+    Metadata.Key<String> key = Metadata.Key.of("color", Metadata.ASCII_STRING_MARSHALLER);
+    Metadata raw = new Metadata(
+        key.asciiName(), "blue".getBytes(US_ASCII), key.asciiName(), "red".getBytes(US_ASCII));
+    assertEquals("red", raw.get(key));
+
+    assertTrue(raw.remove(key, "blue"));
+    raw.put(key, "green");
+
+    assertEquals("green", raw.get(key));
+  }
+
   @Test
   public void testSerializeRaw() {
     Metadata raw = new Metadata(KEY.asciiName(), LANCE_BYTES);
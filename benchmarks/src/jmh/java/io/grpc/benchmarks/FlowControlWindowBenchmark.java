@@ -0,0 +1,223 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.benchmarks;
+
+import io.grpc.InsecureChannelCredentials;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.benchmarks.proto.BenchmarkServiceGrpc;
+import io.grpc.benchmarks.proto.Messages.SimpleRequest;
+import io.grpc.benchmarks.proto.Messages.SimpleResponse;
+import io.grpc.benchmarks.qps.AsyncServer;
+import io.grpc.netty.NettyServerBuilder;
+import io.grpc.okhttp.OkHttpChannelBuilder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Large downloads from a Netty server to an OkHttp client over a link that delays every byte, where
+ * throughput is bound by the flow control window rather than by bandwidth.
+ */
+@State(Scope.Benchmark)
+public class FlowControlWindowBenchmark {
+  private static final int RESPONSE_SIZE = 4 * 1024 * 1024;
+  private static final SimpleRequest REQUEST = SimpleRequest.newBuilder()
+      .setResponseSize(RESPONSE_SIZE)
+      .build();
+
+  @Param({"true", "false"})
+  public boolean autoFlowControl;
+  /** One-way delay of the link, so the round-trip time is twice as long. */
+  @Param({"10"})
+  public int delayMillis;
+
+  private Server server;
+  private DelayProxy proxy;
+  private ManagedChannel channel;
+  private BenchmarkServiceGrpc.BenchmarkServiceBlockingStub stub;
+
+  @Setup
+  public void setUp() throws Exception {
+    server = NettyServerBuilder
+        .forAddress(new InetSocketAddress("localhost", 0), InsecureServerCredentials.create())
+        .addService(new AsyncServer.BenchmarkServiceImpl())
+        .build()
+        .start();
+    proxy = new DelayProxy(server.getPort(), TimeUnit.MILLISECONDS.toNanos(delayMillis));
+    OkHttpChannelBuilder channelBuilder = OkHttpChannelBuilder
+        .forAddress("localhost", proxy.getPort(), InsecureChannelCredentials.create())
+        .maxInboundMessageSize(2 * RESPONSE_SIZE);
+    if (autoFlowControl) {
+      channelBuilder.initialFlowControlWindow(OkHttpChannelBuilder.DEFAULT_FLOW_CONTROL_WINDOW);
+    } else {
+      channelBuilder.flowControlWindow(OkHttpChannelBuilder.DEFAULT_FLOW_CONTROL_WINDOW);
+    }
+    channel = channelBuilder.build();
+    stub = BenchmarkServiceGrpc.newBlockingStub(channel);
+    // Wait for channel to start
+    stub.unaryCall(SimpleRequest.getDefaultInstance());
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    channel.shutdownNow();
+    server.shutdownNow();
+    proxy.close();
+    channel.awaitTermination(1, TimeUnit.SECONDS);
+    server.awaitTermination(1, TimeUnit.SECONDS);
+    if (!channel.isTerminated()) {
+      throw new Exception("failed to shut down channel");
+    }
+    if (!server.isTerminated()) {
+      throw new Exception("failed to shut down server");
+    }
+  }
+
+  /** Downloads a response much larger than the default window, in bytes per second. */
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OperationsPerInvocation(RESPONSE_SIZE)
+  public SimpleResponse largeResponseByteThroughput() {
+    return stub.unaryCall(REQUEST);
+  }
+
+  /**
+   * A TCP proxy that forwards each chunk it reads once {@code delayNanos} have passed, without
+   * limiting bandwidth. Unlike netem, it does not need root and works on any platform.
+   */
+  private static final class DelayProxy {
+    private static final Chunk EOF = new Chunk(0, null);
+
+    private final int targetPort;
+    private final long delayNanos;
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+
+    DelayProxy(int targetPort, long delayNanos) throws IOException {
+      this.targetPort = targetPort;
+      this.delayNanos = delayNanos;
+      serverSocket = new ServerSocket(0);
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          acceptLoop();
+        }
+      });
+    }
+
+    int getPort() {
+      return serverSocket.getLocalPort();
+    }
+
+    private void acceptLoop() {
+      try {
+        while (true) {
+          Socket client = serverSocket.accept();
+          Socket backend = new Socket("localhost", targetPort);
+          client.setTcpNoDelay(true);
+          backend.setTcpNoDelay(true);
+          sockets.add(client);
+          sockets.add(backend);
+          forward(client, backend);
+          forward(backend, client);
+        }
+      } catch (IOException e) {
+        // Closed
+      }
+    }
+
+    private void forward(final Socket from, final Socket to) {
+      final BlockingQueue<Chunk> queue = new LinkedBlockingQueue<>();
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          byte[] buf = new byte[16 * 1024];
+          try {
+            InputStream in = from.getInputStream();
+            int read;
+            while ((read = in.read(buf)) != -1) {
+              queue.add(new Chunk(System.nanoTime() + delayNanos, Arrays.copyOf(buf, read)));
+            }
+          } catch (IOException e) {
+            // Closed
+          }
+          queue.add(EOF);
+        }
+      });
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            OutputStream out = to.getOutputStream();
+            Chunk chunk;
+            while ((chunk = queue.take()) != EOF) {
+              long sleepNanos = chunk.deadlineNanos - System.nanoTime();
+              if (sleepNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+              }
+              out.write(chunk.data);
+            }
+            to.shutdownOutput();
+          } catch (IOException | InterruptedException e) {
+            // Closed
+          }
+        }
+      });
+    }
+
+    void close() throws IOException {
+      serverSocket.close();
+      for (Socket socket : sockets) {
+        socket.close();
+      }
+      executor.shutdownNow();
+    }
+
+    private static final class Chunk {
+      final long deadlineNanos;
+      final byte[] data;
+
+      Chunk(long deadlineNanos, byte[] data) {
+        this.deadlineNanos = deadlineNanos;
+        this.data = data;
+      }
+    }
+  }
+}
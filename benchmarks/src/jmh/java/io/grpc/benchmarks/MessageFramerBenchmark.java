@@ -0,0 +1,155 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.benchmarks;
+
+import com.google.protobuf.ByteString;
+import io.grpc.MethodDescriptor.Marshaller;
+import io.grpc.benchmarks.proto.Messages.Payload;
+import io.grpc.benchmarks.proto.Messages.SimpleRequest;
+import io.grpc.internal.MessageFramer;
+import io.grpc.internal.StatsTraceContext;
+import io.grpc.internal.WritableBuffer;
+import io.grpc.internal.WritableBufferAllocator;
+import io.grpc.protobuf.ProtoUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares framing protobuf messages through {@link io.grpc.Drainable} and an {@code
+ * OutputStream} with serializing them directly into a pooled direct buffer through {@link
+ * io.grpc.ByteBufferDrainable}. Run with {@code -prof gc} to see the allocation difference.
+ */
+@State(Scope.Benchmark)
+public class MessageFramerBenchmark {
+
+  @Param({"true", "false"})
+  public boolean serializeToByteBuffer;
+
+  @Param({"10", "1000", "100000"})
+  public int payloadSize;
+
+  private final Marshaller<SimpleRequest> marshaller =
+      ProtoUtils.marshaller(SimpleRequest.getDefaultInstance());
+  private SimpleRequest request;
+  private MessageFramer framer;
+
+  /**
+   * Setup.
+   */
+  @Setup
+  public void setUp() {
+    request = SimpleRequest.newBuilder()
+        .setResponseSize(payloadSize)
+        .setPayload(Payload.newBuilder().setBody(ByteString.copyFrom(new byte[payloadSize])))
+        .build();
+    final ByteBufAllocator alloc = PooledByteBufAllocator.DEFAULT;
+    WritableBufferAllocator bufferAllocator = new WritableBufferAllocator() {
+      @Override
+      public WritableBuffer allocate(int capacityHint) {
+        return new DirectWritableBuffer(
+            alloc.directBuffer(Math.max(4096, Math.min(1024 * 1024, capacityHint))),
+            serializeToByteBuffer);
+      }
+    };
+    MessageFramer.Sink sink = new MessageFramer.Sink() {
+      @Override
+      public void deliverFrame(
+          WritableBuffer frame, boolean endOfStream, boolean flush, int numMessages) {
+        if (frame != null) {
+          frame.release();
+        }
+      }
+    };
+    framer = new MessageFramer(sink, bufferAllocator, StatsTraceContext.NOOP);
+  }
+
+  /**
+   * Frames and flushes a single message.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public void writePayload() {
+    framer.writePayload(marshaller.stream(request));
+    framer.flush();
+  }
+
+  /**
+   * A pooled, direct {@link WritableBuffer} similar to the one used by the Netty transport, that
+   * can optionally refuse to expose its memory as a {@link ByteBuffer}.
+   */
+  private static final class DirectWritableBuffer implements WritableBuffer {
+    private final ByteBuf bytebuf;
+    private final boolean byteBufferSupported;
+
+    DirectWritableBuffer(ByteBuf bytebuf, boolean byteBufferSupported) {
+      this.bytebuf = bytebuf;
+      this.byteBufferSupported = byteBufferSupported;
+    }
+
+    @Override
+    public void write(byte[] src, int srcIndex, int length) {
+      bytebuf.writeBytes(src, srcIndex, length);
+    }
+
+    @Override
+    public void write(byte b) {
+      bytebuf.writeByte(b);
+    }
+
+    @Override
+    public int writableBytes() {
+      return bytebuf.writableBytes();
+    }
+
+    @Override
+    public int readableBytes() {
+      return bytebuf.readableBytes();
+    }
+
+    @Override
+    public boolean byteBufferSupported() {
+      return byteBufferSupported && bytebuf.nioBufferCount() == 1;
+    }
+
+    @Override
+    public ByteBuffer getByteBuffer(int length) {
+      return bytebuf.nioBuffer(bytebuf.writerIndex(), length);
+    }
+
+    @Override
+    public void commitByteBuffer(int length) {
+      bytebuf.writerIndex(bytebuf.writerIndex() + length);
+    }
+
+    @Override
+    public void release() {
+      bytebuf.release();
+    }
+  }
+}
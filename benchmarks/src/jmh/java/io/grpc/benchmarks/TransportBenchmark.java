@@ -285,6 +285,19 @@ public class TransportBenchmark {
     return state.pingPong(BYTE_THROUGHPUT_REQUEST);
   }
 
+  private static final SimpleRequest STREAMING_1024_REQUEST = SimpleRequest.newBuilder()
+      .setPayload(Payload.newBuilder().setBody(ByteString.copyFrom(new byte[1024])))
+      .build();
+
+  /** Many callers writing small messages to their own streams on one connection. */
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @Threads(64)
+  public SimpleResponse streamingCallsWith64Callers(PingPongStreamState state)
+      throws InterruptedException {
+    return state.pingPong(STREAMING_1024_REQUEST);
+  }
+
   @State(Scope.Thread)
   public static class InfiniteStreamState {
     private final CancellableInterceptor cancellableInterceptor = new CancellableInterceptor();
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.benchmarks;
+
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.benchmarks.proto.BenchmarkServiceGrpc;
+import io.grpc.benchmarks.proto.Messages.SimpleRequest;
+import io.grpc.benchmarks.proto.Messages.SimpleResponse;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.internal.VirtualThreads;
+import io.grpc.stub.StreamObserver;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Issues many concurrent blocking unary calls to a service whose handler blocks, as one doing JDBC
+ * calls would, comparing the default cached thread pools with virtual threads on both sides.
+ * Virtual threads need Java 21 or later.
+ */
+@State(Scope.Benchmark)
+public class VirtualThreadBenchmark {
+
+  @Param({"false", "true"})
+  public boolean virtualThreads;
+
+  @Param({"50000"})
+  public int concurrentCalls;
+
+  @Param({"10"})
+  public int handlerBlockMillis;
+
+  private Server server;
+  private ManagedChannel channel;
+  private BenchmarkServiceGrpc.BenchmarkServiceBlockingStub stub;
+  private Executor callers;
+  private ExecutorService platformCallers;
+
+  @Setup
+  public void setUp() throws Exception {
+    String name = "bench" + Math.random();
+    ServerBuilder<?> serverBuilder = InProcessServerBuilder.forName(name);
+    ManagedChannelBuilder<?> channelBuilder = InProcessChannelBuilder.forName(name);
+    if (virtualThreads) {
+      serverBuilder.useVirtualThreads();
+      channelBuilder.useVirtualThreads();
+      callers = VirtualThreads.executor();
+    } else {
+      platformCallers = Executors.newCachedThreadPool();
+      callers = platformCallers;
+    }
+    server = serverBuilder
+        .addService(new BlockingService(handlerBlockMillis))
+        .build()
+        .start();
+    channel = channelBuilder.build();
+    stub = BenchmarkServiceGrpc.newBlockingStub(channel);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    channel.shutdownNow();
+    server.shutdownNow();
+    channel.awaitTermination(5, TimeUnit.SECONDS);
+    server.awaitTermination(5, TimeUnit.SECONDS);
+    if (platformCallers != null) {
+      platformCallers.shutdownNow();
+    }
+  }
+
+  /**
+   * Starts {@link #concurrentCalls} blocking calls, each from its own caller thread, and waits for
+   * all of them to complete.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public void concurrentBlockingCalls() throws Exception {
+    final CountDownLatch done = new CountDownLatch(concurrentCalls);
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    for (int i = 0; i < concurrentCalls; i++) {
+      callers.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            stub.unaryCall(SimpleRequest.getDefaultInstance());
+          } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+          } finally {
+            done.countDown();
+          }
+        }
+      });
+    }
+    done.await();
+    if (failure.get() != null) {
+      throw new AssertionError("Call failed", failure.get());
+    }
+  }
+
+  private static final class BlockingService extends BenchmarkServiceGrpc.BenchmarkServiceImplBase {
+    private final long blockMillis;
+
+    BlockingService(long blockMillis) {
+      this.blockMillis = blockMillis;
+    }
+
+    @Override
+    public void unaryCall(SimpleRequest request, StreamObserver<SimpleResponse> responseObserver) {
+      try {
+        Thread.sleep(blockMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      responseObserver.onNext(SimpleResponse.getDefaultInstance());
+      responseObserver.onCompleted();
+    }
+  }
+}
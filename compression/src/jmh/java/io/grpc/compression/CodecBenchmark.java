@@ -0,0 +1,167 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.compression;
+
+import com.google.protobuf.ListValue;
+import com.google.protobuf.Struct;
+import com.google.protobuf.Value;
+import io.grpc.Codec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares throughput and compression ratio of gzip and the codecs of this module on a serialized
+ * protobuf that looks like a typical API response: a list of records with ids, timestamps,
+ * enum-like strings and some free text.
+ *
+ * <p>The ratio is reported through the {@code uncompressedBytes} and {@code compressedBytes}
+ * counters of {@link #compress}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CodecBenchmark {
+
+  @Param({"gzip", "lz4", "snappy", "zstd"})
+  public String encoding;
+
+  @Param({"10", "100", "1000"})
+  public int records;
+
+  private static final String[] STATES = {"ACTIVE", "PENDING", "SUSPENDED", "DELETED"};
+  private static final String[] WORDS = {
+      "request", "latency", "region", "cluster", "replica", "quota", "shard", "backend", "user",
+      "error", "timeout", "retry", "cache", "index", "partition", "leader"};
+
+  private Codec codec;
+  private byte[] message;
+  private byte[] compressed;
+  private final byte[] readBuffer = new byte[8192];
+  private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+  @Setup
+  public void setUp() throws IOException {
+    if ("gzip".equals(encoding)) {
+      codec = new Codec.Gzip();
+    } else {
+      codec = null;
+      for (Codec c : CompressionCodecs.all()) {
+        if (c.getMessageEncoding().equals(encoding)) {
+          codec = c;
+        }
+      }
+    }
+    message = newResponse(records).toByteArray();
+    compressed = compress(message);
+  }
+
+  /**
+   * Counters for the compression ratio, summed over all invocations.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Sizes {
+    public long uncompressedBytes;
+    public long compressedBytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      uncompressedBytes = 0;
+      compressedBytes = 0;
+    }
+  }
+
+  /**
+   * Compresses one message.
+   */
+  @Benchmark
+  public int compress(Sizes sizes) throws IOException {
+    int length = compress(message).length;
+    sizes.uncompressedBytes += message.length;
+    sizes.compressedBytes += length;
+    return length;
+  }
+
+  /**
+   * Decompresses one message.
+   */
+  @Benchmark
+  public int decompress() throws IOException {
+    InputStream is = codec.decompress(new ByteArrayInputStream(compressed));
+    int total = 0;
+    int n;
+    while ((n = is.read(readBuffer)) != -1) {
+      total += n;
+    }
+    is.close();
+    return total;
+  }
+
+  private byte[] compress(byte[] data) throws IOException {
+    out.reset();
+    OutputStream os = codec.compress(out);
+    os.write(data);
+    os.close();
+    return out.toByteArray();
+  }
+
+  private static Struct newResponse(int records) {
+    Random random = new Random(1);
+    ListValue.Builder items = ListValue.newBuilder();
+    long timestamp = 1_640_000_000_000L;
+    for (int i = 0; i < records; i++) {
+      timestamp += random.nextInt(60_000);
+      StringBuilder description = new StringBuilder();
+      for (int w = 0; w < 8; w++) {
+        description.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+      }
+      Struct item = Struct.newBuilder()
+          .putFields("id", stringValue(Long.toHexString(random.nextLong())))
+          .putFields("name", stringValue("projects/p" + random.nextInt(100) + "/items/" + i))
+          .putFields("state", stringValue(STATES[random.nextInt(STATES.length)]))
+          .putFields("createTimeMillis", Value.newBuilder().setNumberValue(timestamp).build())
+          .putFields(
+              "sizeBytes", Value.newBuilder().setNumberValue(random.nextInt(1 << 20)).build())
+          .putFields("description", stringValue(description.toString()))
+          .build();
+      items.addValues(Value.newBuilder().setStructValue(item));
+    }
+    return Struct.newBuilder()
+        .putFields("items", Value.newBuilder().setListValue(items).build())
+        .putFields("nextPageToken", stringValue(Long.toHexString(random.nextLong())))
+        .build();
+  }
+
+  private static Value stringValue(String s) {
+    return Value.newBuilder().setStringValue(s).build();
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.compression;
+
+import io.grpc.Codec;
+import io.grpc.CompressorRegistry;
+import io.grpc.DecompressorRegistry;
+import io.grpc.ExperimentalApi;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Registers the codecs of this module so that they can be negotiated with peers.
+ *
+ * <p>A peer only sends messages compressed with one of these codecs after the other side has
+ * advertised it in {@code grpc-accept-encoding}, which is derived from the {@link
+ * DecompressorRegistry}. For example, on a server:
+ *
+ * <pre>
+ *   ServerBuilder.forPort(port)
+ *       .compressorRegistry(CompressionCodecs.addTo(CompressorRegistry.getDefaultInstance()))
+ *       .decompressorRegistry(
+ *           CompressionCodecs.advertiseIn(DecompressorRegistry.getDefaultInstance()))
+ * </pre>
+ *
+ * <p>and then call {@code ServerCall.setCompression("zstd")}, or use {@code
+ * CallOptions.withCompression("zstd")} on clients that know the server supports it.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/1704")
+public final class CompressionCodecs {
+  private static final List<Codec> CODECS = Collections.unmodifiableList(Arrays.<Codec>asList(
+      new Lz4Codec(),
+      new SnappyCodec(),
+      new ZstdCodec()));
+
+  private CompressionCodecs() {}
+
+  /**
+   * Returns the LZ4, Snappy and Zstandard codecs with their default settings.
+   */
+  public static List<Codec> all() {
+    return CODECS;
+  }
+
+  /**
+   * Registers all codecs of this module in the given registry and returns it. Existing
+   * registrations for the same encodings are replaced.
+   */
+  public static CompressorRegistry addTo(CompressorRegistry registry) {
+    for (Codec codec : CODECS) {
+      registry.register(codec);
+    }
+    return registry;
+  }
+
+  /**
+   * Returns a registry that has all codecs of this module in addition to those of {@code
+   * registry}, advertised to peers through {@code grpc-accept-encoding}.
+   */
+  public static DecompressorRegistry advertiseIn(DecompressorRegistry registry) {
+    for (Codec codec : CODECS) {
+      registry = registry.with(codec, true);
+    }
+    return registry;
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.compression;
+
+import io.grpc.Codec;
+import io.grpc.ExperimentalApi;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.xerial.snappy.SnappyFramedInputStream;
+import org.xerial.snappy.SnappyFramedOutputStream;
+
+/**
+ * A Snappy compressor and decompressor, using the
+ * <a href="https://github.com/google/snappy/blob/main/framing_format.txt">Snappy framing
+ * format</a> under the {@code "snappy"} message encoding.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/1704")
+public final class SnappyCodec implements Codec {
+  @Override
+  public String getMessageEncoding() {
+    return "snappy";
+  }
+
+  @Override
+  public OutputStream compress(OutputStream os) throws IOException {
+    return new SnappyFramedOutputStream(os);
+  }
+
+  @Override
+  public InputStream decompress(InputStream is) throws IOException {
+    return new SnappyFramedInputStream(is);
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.compression;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.io.ByteStreams;
+import io.grpc.Codec;
+import io.grpc.CompressorRegistry;
+import io.grpc.DecompressorRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+/** Unit tests for the codecs in {@link CompressionCodecs}. */
+@RunWith(Parameterized.class)
+public class CompressionCodecsTest {
+  @Parameter
+  public Codec codec;
+
+  @Parameters(name = "{0}")
+  public static Collection<Object[]> codecs() {
+    Collection<Object[]> params = new ArrayList<>();
+    for (Codec codec : CompressionCodecs.all()) {
+      params.add(new Object[] {codec});
+    }
+    return params;
+  }
+
+  @Test
+  public void roundTrip() throws Exception {
+    byte[] message = new byte[200_000];
+    Random random = new Random(1);
+    for (int i = 0; i < message.length; i++) {
+      message[i] = (byte) ('a' + random.nextInt(8));
+    }
+
+    byte[] compressed = compress(message);
+
+    assertThat(compressed.length).isLessThan(message.length);
+    assertThat(decompress(compressed)).isEqualTo(message);
+  }
+
+  @Test
+  public void roundTrip_emptyMessage() throws Exception {
+    assertThat(decompress(compress(new byte[0]))).isEmpty();
+  }
+
+  @Test(expected = IOException.class)
+  public void decompress_truncated() throws Exception {
+    byte[] message = new byte[1000];
+    new Random(1).nextBytes(message);
+    byte[] compressed = compress(message);
+    byte[] truncated = new byte[compressed.length / 2];
+    System.arraycopy(compressed, 0, truncated, 0, truncated.length);
+
+    decompress(truncated);
+  }
+
+  @Test
+  public void registries() {
+    CompressorRegistry compressors =
+        CompressionCodecs.addTo(CompressorRegistry.newEmptyInstance());
+    assertThat(compressors.lookupCompressor(codec.getMessageEncoding())).isSameInstanceAs(codec);
+
+    DecompressorRegistry decompressors =
+        CompressionCodecs.advertiseIn(DecompressorRegistry.getDefaultInstance());
+    assertThat(decompressors.lookupDecompressor(codec.getMessageEncoding()))
+        .isSameInstanceAs(codec);
+    assertThat(decompressors.getAdvertisedMessageEncodings())
+        .containsAtLeast("gzip", codec.getMessageEncoding());
+  }
+
+  private byte[] compress(byte[] message) throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    OutputStream os = codec.compress(compressed);
+    os.write(message);
+    os.close();
+    return compressed.toByteArray();
+  }
+
+  private byte[] decompress(byte[] compressed) throws IOException {
+    InputStream is = codec.decompress(new ByteArrayInputStream(compressed));
+    try {
+      return ByteStreams.toByteArray(is);
+    } finally {
+      is.close();
+    }
+  }
+}
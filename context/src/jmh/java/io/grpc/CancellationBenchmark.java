@@ -0,0 +1,104 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cancellation listener churn on a long-lived context, as with a server stream whose handler
+ * starts many child calls, each of which listens for the stream's cancellation until it is done.
+ */
+@State(Scope.Thread)
+public class CancellationBenchmark {
+
+  private static final Executor DIRECT = new Executor() {
+    @Override
+    public void execute(Runnable command) {
+      command.run();
+    }
+  };
+
+  private static final Context.CancellationListener NOOP = new Context.CancellationListener() {
+    @Override
+    public void cancelled(Context context) {}
+  };
+
+  /** Child contexts that are listening to the long-lived context at any one time. */
+  @Param({"10", "1000", "10000"})
+  public int activeChildren;
+
+  private Context.CancellableContext stream;
+  private Context.CancellableContext[] children;
+  private int next;
+
+  /** Creates the long-lived context and its listening children. */
+  @Setup(Level.Iteration)
+  public void setUp() {
+    if (stream != null) {
+      stream.cancel(null);
+    }
+    stream = Context.ROOT.withCancellation();
+    children = new Context.CancellableContext[activeChildren];
+    for (int i = 0; i < activeChildren; i++) {
+      children[i] = newChild();
+    }
+  }
+
+  /**
+   * Finishes the oldest child call and starts a new one, so that listeners are removed from the
+   * middle of the long-lived context's list rather than its end.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Context.CancellableContext replaceChild() {
+    int i = next;
+    next = (next + 1) % activeChildren;
+    Context.CancellableContext done = children[i];
+    done.removeListener(NOOP);
+    children[i] = newChild();
+    return done;
+  }
+
+  /** Cancels a context with {@link #activeChildren} children, cascading to all of them. */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public boolean cascadingCancel() {
+    Context.CancellableContext parent = Context.ROOT.withCancellation();
+    for (int i = 0; i < activeChildren; i++) {
+      parent.withCancellation().addListener(NOOP, DIRECT);
+    }
+    return parent.cancel(null);
+  }
+
+  private Context.CancellableContext newChild() {
+    Context.CancellableContext child = stream.withCancellation();
+    child.addListener(NOOP, DIRECT);
+    return child;
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * {@link AttachDetachBenchmark} for each {@link Context.Storage} implementation, plus the scoped
+ * {@link Context#run} path that {@link ScopedValueContextStorage} is meant for. Run it on a JDK
+ * with {@code ScopedValue}, or the scoped storage just measures its {@link ThreadLocal} fallback.
+ */
+@State(Scope.Benchmark)
+public class ContextStorageBenchmark {
+
+  public enum StorageKind {
+    THREAD_LOCAL,
+    SCOPED_VALUE
+  }
+
+  @Param
+  public StorageKind storageKind;
+
+  private final Context.Key<Integer> key = Context.keyWithDefault("key", 9999);
+  private final Context cu = Context.ROOT.withValue(key, 8888);
+  private Context.Storage storage;
+
+  private final Runnable read = new Runnable() {
+    @Override
+    public void run() {
+      if (key.get(storage.current()) != 8888) {
+        throw new AssertionError();
+      }
+    }
+  };
+
+  /** Creates the storage under test. */
+  @Setup
+  public void setUp() {
+    switch (storageKind) {
+      case THREAD_LOCAL:
+        storage = new ThreadLocalContextStorage();
+        break;
+      case SCOPED_VALUE:
+        storage = new ScopedValueContextStorage();
+        break;
+      default:
+        throw new AssertionError();
+    }
+  }
+
+  /** Same as {@link AttachDetachBenchmark#attachDetach}, against the storage directly. */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @GroupThreads(6)
+  public int attachDetach() {
+    Context old = storage.doAttach(cu);
+    try {
+      return key.get(storage.current());
+    } finally {
+      storage.detach(cu, old);
+    }
+  }
+
+  /** Runs with the context bound, as {@link Context#run} and {@code wrap} do. */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @GroupThreads(6)
+  public void run() {
+    storage.run(cu, read);
+  }
+}
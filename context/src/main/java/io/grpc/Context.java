@@ -19,7 +19,7 @@ package io.grpc;
 import io.grpc.Context.CheckReturnValue;
 import io.grpc.PersistentHashArrayMappedTrie.Node;
 import java.io.Closeable;
-import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
@@ -450,6 +450,14 @@ public class Context {
     storage().detach(this, toAttach);
   }
 
+  /**
+   * Returns the context that {@link #attach} makes {@link #current}, which is this one except for
+   * a {@link CancellableContext}.
+   */
+  Context attachTarget() {
+    return this;
+  }
+
   // Visible for testing
   boolean isCurrent() {
     return current() == this;
@@ -531,12 +539,7 @@ public class Context {
    * @param r {@link Runnable} to run.
    */
   public void run(Runnable r) {
-    Context previous = attach();
-    try {
-      r.run();
-    } finally {
-      detach(previous);
-    }
+    storage().run(this, r);
   }
 
   /**
@@ -546,12 +549,7 @@ public class Context {
    */
   @CanIgnoreReturnValue
   public <V> V call(Callable<V> c) throws Exception {
-    Context previous = attach();
-    try {
-      return c.call();
-    } finally {
-      detach(previous);
-    }
+    return storage().call(this, c);
   }
 
   /**
@@ -561,12 +559,7 @@ public class Context {
     return new Runnable() {
       @Override
       public void run() {
-        Context previous = attach();
-        try {
-          r.run();
-        } finally {
-          detach(previous);
-        }
+        Context.this.run(r);
       }
     };
   }
@@ -578,12 +571,7 @@ public class Context {
     return new Callable<C>() {
       @Override
       public C call() throws Exception {
-        Context previous = attach();
-        try {
-          return c.call();
-        } finally {
-          detach(previous);
-        }
+        return Context.this.call(c);
       }
     };
   }
@@ -655,13 +643,23 @@ public class Context {
    * and cancel the context at the appropriate time.
    */
   public static final class CancellableContext extends Context implements Closeable {
+    // Below this many listeners a linear scan to remove one is cheaper than keeping an index.
+    private static final int INDEXED_LISTENER_THRESHOLD = 16;
 
     private final Deadline deadline;
     private final Context uncancellableSurrogate;
 
-    private ArrayList<ExecutableListener> listeners;
-    // parentListener is initialized when listeners is initialized (only if there is a
-    // cancellable ancestor), and uninitialized when listeners is uninitialized.
+    // Listeners in the order they were added, linked through ExecutableListener.prev and next so
+    // that removing one does not need to shift the others.
+    private ExecutableListener listenersHead;
+    private ExecutableListener listenersTail;
+    private int listenerCount;
+    // Built once there are more than INDEXED_LISTENER_THRESHOLD listeners, such as for a
+    // long-lived stream with many child calls. Maps each CancellationListener to the most recently
+    // added ExecutableListener for it, so that removing a listener takes constant time.
+    private IdentityHashMap<CancellationListener, ExecutableListener> listenerIndex;
+    // parentListener is initialized when the first listener is added (only if there is a
+    // cancellable ancestor), and uninitialized when the last one is removed.
     private CancellationListener parentListener;
     private Throwable cancellationCause;
     private ScheduledFuture<?> pendingDeadline;
@@ -714,6 +712,11 @@ public class Context {
       return uncancellableSurrogate.attach();
     }
 
+    @Override
+    Context attachTarget() {
+      return uncancellableSurrogate;
+    }
+
     @Override
     public void detach(Context toAttach) {
       uncancellableSurrogate.detach(toAttach);
@@ -732,11 +735,10 @@ public class Context {
         if (isCancelled()) {
           executableListener.deliver();
         } else {
-          if (listeners == null) {
+          if (listenersHead == null) {
             // Now that we have a listener we need to listen to our parent so
             // we can cascade listener notification.
-            listeners = new ArrayList<>();
-            listeners.add(executableListener);
+            appendListener(executableListener);
             if (cancellableAncestor != null) {
               parentListener =
                   new CancellationListener() {
@@ -749,12 +751,32 @@ public class Context {
                   new ExecutableListener(DirectExecutor.INSTANCE, parentListener, this));
             }
           } else {
-            listeners.add(executableListener);
+            appendListener(executableListener);
           }
         }
       }
     }
 
+    private void appendListener(ExecutableListener executableListener) {
+      executableListener.prev = listenersTail;
+      if (listenersTail == null) {
+        listenersHead = executableListener;
+      } else {
+        listenersTail.next = executableListener;
+      }
+      listenersTail = executableListener;
+      listenerCount++;
+      if (listenerIndex != null) {
+        executableListener.olderSameListener =
+            listenerIndex.put(executableListener.listener, executableListener);
+      } else if (listenerCount > INDEXED_LISTENER_THRESHOLD) {
+        listenerIndex = new IdentityHashMap<>();
+        for (ExecutableListener l = listenersHead; l != null; l = l.next) {
+          l.olderSameListener = listenerIndex.put(l.listener, l);
+        }
+      }
+    }
+
     @Override
     public void removeListener(CancellationListener cancellationListener) {
       removeListenerInternal(cancellationListener, this);
@@ -763,27 +785,76 @@ public class Context {
     private void removeListenerInternal(CancellationListener cancellationListener,
         Context context) {
       synchronized (this) {
-        if (listeners != null) {
-          for (int i = listeners.size() - 1; i >= 0; i--) {
-            ExecutableListener executableListener = listeners.get(i);
-            if (executableListener.listener == cancellationListener
-                && executableListener.context == context) {
-              listeners.remove(i);
-              // Just remove the first matching listener, given that we allow duplicate
-              // adds we should allow for duplicates after remove.
-              break;
-            }
+        if (listenersHead != null) {
+          // Just remove the most recently added matching listener, given that we allow duplicate
+          // adds we should allow for duplicates after remove.
+          ExecutableListener executableListener = listenerIndex != null
+              ? unindexListener(cancellationListener, context)
+              : findListener(cancellationListener, context);
+          if (executableListener != null) {
+            unlinkListener(executableListener);
           }
           // We have no listeners so no need to listen to our parent
-          if (listeners.isEmpty()) {
+          if (listenersHead == null) {
             if (cancellableAncestor != null) {
-              cancellableAncestor.removeListener(parentListener);
+              cancellableAncestor.removeListenerInternal(parentListener, this);
             }
             parentListener = null;
-            listeners = null;
+            listenerIndex = null;
+          }
+        }
+      }
+    }
+
+    private ExecutableListener findListener(
+        CancellationListener cancellationListener, Context context) {
+      for (ExecutableListener l = listenersTail; l != null; l = l.prev) {
+        if (l.listener == cancellationListener && l.context == context) {
+          return l;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Finds a listener through {@link #listenerIndex} and removes it from the index. The same
+     * {@link CancellationListener} is rarely added for more than a couple of contexts, so the walk
+     * over {@code olderSameListener} is short.
+     */
+    private ExecutableListener unindexListener(
+        CancellationListener cancellationListener, Context context) {
+      ExecutableListener newer = null;
+      for (ExecutableListener l = listenerIndex.get(cancellationListener); l != null;
+          newer = l, l = l.olderSameListener) {
+        if (l.context == context) {
+          if (newer != null) {
+            newer.olderSameListener = l.olderSameListener;
+          } else if (l.olderSameListener != null) {
+            listenerIndex.put(cancellationListener, l.olderSameListener);
+          } else {
+            listenerIndex.remove(cancellationListener);
           }
+          l.olderSameListener = null;
+          return l;
         }
       }
+      return null;
+    }
+
+    private void unlinkListener(ExecutableListener executableListener) {
+      if (executableListener.prev == null) {
+        listenersHead = executableListener.next;
+      } else {
+        executableListener.prev.next = executableListener.next;
+      }
+      if (executableListener.next == null) {
+        listenersTail = executableListener.prev;
+      } else {
+        executableListener.next.prev = executableListener.prev;
+      }
+      executableListener.prev = null;
+      executableListener.next = null;
+      listenerCount--;
     }
 
     /**
@@ -840,40 +911,46 @@ public class Context {
      * any reference to them so that they may be garbage collected.
      */
     private void notifyAndClearListeners() {
-      ArrayList<ExecutableListener> tmpListeners;
+      ExecutableListener tmpListeners;
       CancellationListener tmpParentListener;
       synchronized (this) {
-        if (listeners == null) {
+        if (listenersHead == null) {
           return;
         }
         tmpParentListener = parentListener;
         parentListener = null;
-        tmpListeners = listeners;
-        listeners = null;
+        // The detached nodes stay linked through next, which is all that is needed to deliver.
+        tmpListeners = listenersHead;
+        listenersHead = null;
+        listenersTail = null;
+        listenerCount = 0;
+        listenerIndex = null;
       }
       // Deliver events to this context listeners before we notify child contexts. We do this
       // to cancel higher level units of work before child units. This allows for a better error
       // handling paradigm where the higher level unit of work knows it is cancelled and so can
       // ignore errors that bubble up as a result of cancellation of lower level units.
-      for (ExecutableListener tmpListener : tmpListeners) {
+      for (ExecutableListener tmpListener = tmpListeners; tmpListener != null;
+          tmpListener = tmpListener.next) {
         if (tmpListener.context == this) {
           tmpListener.deliver();
         }
       }
-      for (ExecutableListener tmpListener : tmpListeners) {
+      for (ExecutableListener tmpListener = tmpListeners; tmpListener != null;
+          tmpListener = tmpListener.next) {
         if (!(tmpListener.context == this)) {
           tmpListener.deliver();
         }
       }
       if (cancellableAncestor != null) {
-        cancellableAncestor.removeListener(tmpParentListener);
+        cancellableAncestor.removeListenerInternal(tmpParentListener, this);
       }
     }
 
     @Override
     int listenerCount() {
       synchronized (this) {
-        return listeners == null ? 0 : listeners.size();
+        return listenerCount;
       }
     }
 
@@ -1050,6 +1127,33 @@ public class Context {
      *        caution note.
      */
     public abstract Context current();
+
+    /**
+     * Implements {@link io.grpc.Context#run} and {@link io.grpc.Context#wrap(Runnable)}. Not
+     * public, so only storages in this package can bind a context other than by attaching it.
+     */
+    void run(Context context, Runnable r) {
+      Context target = context.attachTarget();
+      Context previous = doAttach(target);
+      try {
+        r.run();
+      } finally {
+        detach(target, previous == null ? ROOT : previous);
+      }
+    }
+
+    /**
+     * Implements {@link io.grpc.Context#call} and {@link io.grpc.Context#wrap(Callable)}.
+     */
+    <V> V call(Context context, Callable<V> c) throws Exception {
+      Context target = context.attachTarget();
+      Context previous = doAttach(target);
+      try {
+        return c.call();
+      } finally {
+        detach(target, previous == null ? ROOT : previous);
+      }
+    }
   }
 
   /**
@@ -1059,6 +1163,10 @@ public class Context {
     private final Executor executor;
     final CancellationListener listener;
     private final Context context;
+    // Links used by the CancellableContext the listener is registered with, guarded by its lock.
+    private ExecutableListener prev;
+    private ExecutableListener next;
+    private ExecutableListener olderSameListener;
 
     ExecutableListener(Executor executor, CancellationListener listener, Context context) {
       this.executor = executor;
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.codehaus.mojo.animal_sniffer.IgnoreJRERequirement;
+
+/**
+ * A context storage implementation that binds the current context with a {@code
+ * java.lang.ScopedValue}, for applications running many virtual threads.
+ *
+ * <p>{@link Context#run}, {@link Context#call} and the {@code wrap} methods bind the context for
+ * the duration of the call, without any per-thread state. The binding is also inherited by
+ * subtasks forked from a {@code StructuredTaskScope} opened in that scope. A scoped binding cannot
+ * express {@link Context#attach} and {@link Context#detach}, so those fall back to a {@link
+ * ThreadLocal} that shadows the scoped value until it is detached. gRPC itself attaches the
+ * context around the callbacks and streams it runs, so those go through the {@link ThreadLocal}
+ * as well. On a JDK without {@code ScopedValue} everything falls back to the {@link ThreadLocal}.
+ *
+ * <p>On JDK 21 binding and reading a scoped value still costs more than a {@link ThreadLocal}, so
+ * this storage is for the inheritance by structured subtasks and for leaving no state behind on
+ * short-lived virtual threads, not for speed.
+ *
+ * <p>To use it, add a class named {@code io.grpc.override.ContextStorageOverride} that extends
+ * this one and has a public no-arg constructor. See {@link Context.Storage}.
+ *
+ * <p>This API is <a href="https://github.com/grpc/grpc-java/issues/2462">experimental</a> and
+ * subject to change.
+ */
+public class ScopedValueContextStorage extends Context.Storage {
+  private static final Logger log = Logger.getLogger(ScopedValueContextStorage.class.getName());
+
+  // ScopedValue is only final in Java 25 and the module still targets Java 7, so it is used
+  // through method handles, looked up once so that binding and reading the context cost the same
+  // as a direct call once the JIT inlines them. Both null if it is not available.
+  /** {@code (Context, Runnable) -> void}, running the Runnable with the context bound. */
+  private static final MethodHandle runWhere;
+  /** {@code (Context default) -> Context}, reading the bound context. */
+  private static final MethodHandle scopedOrElse;
+
+  static {
+    MethodHandle[] handles = lookUpHandles();
+    runWhere = handles == null ? null : handles[0];
+    scopedOrElse = handles == null ? null : handles[1];
+  }
+
+  @IgnoreJRERequirement
+  private static MethodHandle[] lookUpHandles() {
+    try {
+      Class<?> scopedValueClass = Class.forName("java.lang.ScopedValue");
+      Class<?> carrierClass = Class.forName("java.lang.ScopedValue$Carrier");
+      MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+      Object value = scopedValueClass.getMethod("newInstance").invoke(null);
+      // ScopedValue.where(value, context).run(runnable)
+      MethodHandle where = MethodHandles.insertArguments(
+          lookup.findStatic(scopedValueClass, "where",
+              MethodType.methodType(carrierClass, scopedValueClass, Object.class)),
+          0, value);
+      MethodHandle run = MethodHandles.filterArguments(
+          lookup.findVirtual(
+              carrierClass, "run", MethodType.methodType(void.class, Runnable.class)),
+          0, where.asType(MethodType.methodType(carrierClass, Context.class)));
+      // value.orElse(defaultContext)
+      MethodHandle orElse = lookup.findVirtual(
+              scopedValueClass, "orElse", MethodType.methodType(Object.class, Object.class))
+          .bindTo(value)
+          .asType(MethodType.methodType(Context.class, Context.class));
+      return new MethodHandle[] {run, orElse};
+    } catch (Exception e) {
+      // Older JDK, or a JDK where ScopedValue is still a preview API that is not enabled. Can't
+      // log, as the storage must not use Context while it is being initialized.
+      return null;
+    }
+  }
+
+  /** Contexts attached with {@link Context#attach}, which shadow the scoped binding. */
+  private static final ThreadLocal<Context> attachedContext = new ThreadLocal<>();
+  /**
+   * Whether any thread has used {@link #attachedContext}, so that threads which only use scoped
+   * bindings never create thread-local state by reading it.
+   */
+  private static volatile boolean threadLocalUsed;
+
+  /** Returns whether contexts are bound with {@code ScopedValue} on this JDK. */
+  public static boolean isScopedValueAvailable() {
+    return runWhere != null;
+  }
+
+  @Override
+  public Context doAttach(Context toAttach) {
+    Context current = current();
+    threadLocalUsed = true;
+    attachedContext.set(toAttach);
+    return current;
+  }
+
+  @Override
+  public void detach(Context toDetach, Context toRestore) {
+    if (current() != toDetach) {
+      // Log a severe message instead of throwing an exception, as ThreadLocalContextStorage does.
+      log.log(Level.SEVERE, "Context was not attached when detaching",
+          new Throwable().fillInStackTrace());
+    }
+    // Once back at the scoped binding there is nothing left to shadow it with. This also avoids
+    // retaining ROOT and with it our ClassLoader, as ThreadLocalContextStorage explains.
+    attachedContext.set(toRestore == scopedCurrent() ? null : toRestore);
+  }
+
+  @Override
+  public Context current() {
+    if (threadLocalUsed) {
+      Context attached = attachedContext.get();
+      if (attached != null) {
+        return attached;
+      }
+    }
+    return scopedCurrent();
+  }
+
+  @Override
+  void run(Context context, Runnable r) {
+    if (runWhere == null) {
+      super.run(context, r);
+      return;
+    }
+    // A context attached in an outer scope would hide the binding, so set it aside for the call.
+    Context shadowing = threadLocalUsed ? attachedContext.get() : null;
+    if (shadowing != null) {
+      attachedContext.set(null);
+    }
+    try {
+      runBound(context.attachTarget(), r);
+    } finally {
+      if (shadowing != null) {
+        attachedContext.set(shadowing);
+      }
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  <V> V call(Context context, final Callable<V> c) throws Exception {
+    if (runWhere == null) {
+      return super.call(context, c);
+    }
+    // Carrier.call() takes a ScopedValue.CallableOp, which can't be implemented without depending
+    // on Java 25, so run a Runnable that captures the outcome instead.
+    final Object[] result = new Object[1];
+    final Exception[] failure = new Exception[1];
+    run(context, new Runnable() {
+      @Override
+      public void run() {
+        try {
+          result[0] = c.call();
+        } catch (Exception e) {
+          failure[0] = e;
+        }
+      }
+    });
+    if (failure[0] != null) {
+      throw failure[0];
+    }
+    return (V) result[0];
+  }
+
+  @IgnoreJRERequirement
+  private static void runBound(Context context, Runnable r) {
+    try {
+      runWhere.invokeExact(context, r);
+    } catch (Throwable t) {
+      throw rethrow(t);
+    }
+  }
+
+  @IgnoreJRERequirement
+  private static Context scopedCurrent() {
+    if (scopedOrElse == null) {
+      return Context.ROOT;
+    }
+    try {
+      return (Context) scopedOrElse.invokeExact(Context.ROOT);
+    } catch (Throwable t) {
+      throw rethrow(t);
+    }
+  }
+
+  private static RuntimeException rethrow(Throwable t) {
+    if (t instanceof RuntimeException) {
+      throw (RuntimeException) t;
+    }
+    if (t instanceof Error) {
+      throw (Error) t;
+    }
+    // Runnable.run() and orElse() throw no checked exceptions.
+    throw new AssertionError(t);
+  }
+}
@@ -413,6 +413,57 @@ public class ContextTest {
     assertEquals(0, child.listenerCount());
   }
 
+  @Test
+  public void removingLastChildListenerStopsListeningToParent() {
+    Context.CancellableContext base = Context.current().withCancellation();
+    Context.CancellableContext child = base.withCancellation();
+    child.addListener(cancellationListener, MoreExecutors.directExecutor());
+    assertEquals(1, base.listenerCount());
+
+    child.removeListener(cancellationListener);
+
+    assertEquals(0, child.listenerCount());
+    assertEquals(0, base.listenerCount());
+  }
+
+  @Test
+  public void manyListenersAddedAndRemoved() {
+    Context.CancellableContext base = Context.current().withCancellation();
+    final List<Integer> notified = new ArrayList<>();
+    List<Context.CancellationListener> listeners = new ArrayList<>();
+    List<Context> children = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      final int id = i;
+      Context.CancellationListener listener = new Context.CancellationListener() {
+        @Override
+        public void cancelled(Context context) {
+          notified.add(id);
+        }
+      };
+      Context child = base.withValue(LUCKY, i);
+      // The same listener on two contexts must only be removed for the context given.
+      child.addListener(listener, MoreExecutors.directExecutor());
+      base.addListener(listener, MoreExecutors.directExecutor());
+      listeners.add(listener);
+      children.add(child);
+    }
+    assertEquals(200, base.listenerCount());
+
+    for (int i = 0; i < 100; i += 2) {
+      base.removeListener(listeners.get(i));
+      children.get(i).removeListener(listeners.get(i));
+    }
+    children.get(1).removeListener(listeners.get(1));
+    assertEquals(99, base.listenerCount());
+
+    base.cancel(null);
+    assertEquals(0, base.listenerCount());
+    assertEquals(99, notified.size());
+    // Listeners of base itself are notified before those of its children.
+    assertEquals(Integer.valueOf(1), notified.get(0));
+    assertEquals(Integer.valueOf(99), notified.get(98));
+  }
+
   @Test
   public void cascadingCancellationWithoutListener() {
     Context.CancellableContext base = Context.current().withCancellation();
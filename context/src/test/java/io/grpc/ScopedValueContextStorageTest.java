@@ -0,0 +1,149 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link ScopedValueContextStorage}. These pass both with {@code ScopedValue} and with
+ * the {@link ThreadLocal} fallback used on older JDKs.
+ */
+@RunWith(JUnit4.class)
+public final class ScopedValueContextStorageTest {
+  private static final Context.Key<String> KEY = Context.key("key");
+
+  private final ScopedValueContextStorage storage = new ScopedValueContextStorage();
+  private final Context contextA = Context.ROOT.withValue(KEY, "a");
+  private final Context contextB = Context.ROOT.withValue(KEY, "b");
+
+  @Test
+  public void currentIsRootByDefault() {
+    assertSame(Context.ROOT, storage.current());
+  }
+
+  @Test
+  public void attachAndDetach() {
+    Context previous = storage.doAttach(contextA);
+    assertSame(Context.ROOT, previous);
+    assertSame(contextA, storage.current());
+
+    storage.detach(contextA, previous);
+    assertSame(Context.ROOT, storage.current());
+  }
+
+  @Test
+  public void runBindsContextForTheCall() {
+    storage.run(contextA, new Runnable() {
+      @Override
+      public void run() {
+        assertSame(contextA, storage.current());
+      }
+    });
+
+    assertSame(Context.ROOT, storage.current());
+  }
+
+  @Test
+  public void runInsideAttachAndAttachInsideRun() {
+    Context previous = storage.doAttach(contextB);
+    storage.run(contextA, new Runnable() {
+      @Override
+      public void run() {
+        assertSame(contextA, storage.current());
+        Context inner = storage.doAttach(contextB);
+        assertSame(contextA, inner);
+        assertSame(contextB, storage.current());
+        storage.detach(contextB, inner);
+        assertSame(contextA, storage.current());
+      }
+    });
+    assertSame(contextB, storage.current());
+
+    storage.detach(contextB, previous);
+    assertSame(Context.ROOT, storage.current());
+  }
+
+  @Test
+  public void callReturnsResult() throws Exception {
+    String value = storage.call(contextA, new Callable<String>() {
+      @Override
+      public String call() {
+        return KEY.get(storage.current());
+      }
+    });
+
+    assertEquals("a", value);
+  }
+
+  @Test
+  public void callPropagatesCheckedException() throws Exception {
+    final IOException failure = new IOException("boom");
+    try {
+      storage.call(contextA, new Callable<String>() {
+        @Override
+        public String call() throws IOException {
+          throw failure;
+        }
+      });
+      fail("Should have thrown");
+    } catch (IOException expected) {
+      assertSame(failure, expected);
+    }
+    assertSame(Context.ROOT, storage.current());
+  }
+
+  @Test
+  public void runPropagatesUncheckedException() {
+    try {
+      storage.run(contextA, new Runnable() {
+        @Override
+        public void run() {
+          throw new IllegalStateException("boom");
+        }
+      });
+      fail("Should have thrown");
+    } catch (IllegalStateException expected) {
+      assertEquals("boom", expected.getMessage());
+    }
+    assertSame(Context.ROOT, storage.current());
+  }
+
+  @Test
+  public void runBindsSurrogateOfCancellableContext() {
+    final Context.CancellableContext cancellable = contextA.withCancellation();
+    try {
+      storage.run(cancellable, new Runnable() {
+        @Override
+        public void run() {
+          assertFalse(storage.current() instanceof Context.CancellableContext);
+          assertEquals("a", KEY.get(storage.current()));
+        }
+      });
+    } finally {
+      cancellable.cancel(null);
+    }
+  }
+}
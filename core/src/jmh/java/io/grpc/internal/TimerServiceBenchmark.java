@@ -0,0 +1,110 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Schedule and cancel throughput of the timer service, comparing {@link
+ * TimingWheelScheduledExecutorService} with the {@link ScheduledThreadPoolExecutor} it replaced.
+ * Each operation arms and cancels a timer the way an RPC deadline usually is, while {@link
+ * #pendingTimers} other long timers are outstanding.
+ */
+@State(Scope.Benchmark)
+public class TimerServiceBenchmark {
+
+  public enum TimerKind {
+    TIMING_WHEEL,
+    SCHEDULED_THREAD_POOL
+  }
+
+  @Param
+  public TimerKind timerKind;
+
+  @Param({"0", "100000"})
+  public int pendingTimers;
+
+  private ScheduledExecutorService timer;
+  private final List<ScheduledFuture<?>> pending = new ArrayList<>();
+
+  private static final Runnable NOOP = new Runnable() {
+    @Override
+    public void run() {}
+  };
+
+  @Setup
+  public void setUp() {
+    switch (timerKind) {
+      case TIMING_WHEEL:
+        timer = new TimingWheelScheduledExecutorService(
+            GrpcUtil.getThreadFactory("grpc-timer-%d", true), 1, TimeUnit.MILLISECONDS);
+        break;
+      case SCHEDULED_THREAD_POOL:
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+            1, GrpcUtil.getThreadFactory("grpc-timer-%d", true));
+        executor.setRemoveOnCancelPolicy(true);
+        timer = executor;
+        break;
+      default:
+        throw new AssertionError();
+    }
+    for (int i = 0; i < pendingTimers; i++) {
+      pending.add(timer.schedule(NOOP, 1 + i % 3600, TimeUnit.SECONDS));
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    for (ScheduledFuture<?> future : pending) {
+      future.cancel(false);
+    }
+    timer.shutdownNow();
+    timer.awaitTermination(5, TimeUnit.SECONDS);
+  }
+
+  /** One thread arming and cancelling deadline timers. */
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public boolean scheduleAndCancel() {
+    return timer.schedule(NOOP, 20, TimeUnit.SECONDS).cancel(false);
+  }
+
+  /** Several threads arming and cancelling deadline timers at once, as busy channels do. */
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  @Threads(4)
+  public boolean scheduleAndCancel_contended() {
+    return timer.schedule(NOOP, 20, TimeUnit.SECONDS).cancel(false);
+  }
+}
@@ -16,12 +16,15 @@
 
 package io.grpc.util;
 
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
 import io.grpc.ServerCall;
 import io.grpc.ServerCall.Listener;
 import io.grpc.ServerCallHandler;
 import io.grpc.ServerServiceDefinition;
+import io.grpc.internal.MethodNameIndex;
 import io.grpc.testing.TestMethodDescriptors;
 import java.util.ArrayList;
 import java.util.List;
@@ -36,7 +39,8 @@ import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.infra.Blackhole;
 
 /**
- * Benchmark for {@link MutableHandlerRegistry}.
+ * Benchmark for {@link MutableHandlerRegistry}, and for finding the method name of a request from
+ * its {@code :path} bytes as the transports do.
  */
 @State(Scope.Benchmark)
 @Fork(1)
@@ -56,6 +60,8 @@ public class HandlerRegistryBenchmark {
 
   private MutableHandlerRegistry registry;
   private List<String> fullMethodNames;
+  private MethodNameIndex methodNameIndex;
+  private List<byte[]> paths;
 
   /**
    * Set up the registry.
@@ -88,6 +94,11 @@ public class HandlerRegistryBenchmark {
       }
       registry.addService(serviceBuilder.build());
     }
+    methodNameIndex = MethodNameIndex.create(fullMethodNames);
+    paths = new ArrayList<>(fullMethodNames.size());
+    for (String fullMethodName : fullMethodNames) {
+      paths.add(("/" + fullMethodName).getBytes(US_ASCII));
+    }
   }
 
   /**
@@ -100,6 +111,27 @@ public class HandlerRegistryBenchmark {
     }
   }
 
+  /**
+   * Decodes each {@code :path} to a new String and looks it up, as servers did before
+   * {@link MethodNameIndex}.
+   */
+  @Benchmark
+  public void lookupMethodFromDecodedPath(Blackhole bh) {
+    for (byte[] path : paths) {
+      bh.consume(registry.lookupMethod(new String(path, 1, path.length - 1, US_ASCII)));
+    }
+  }
+
+  /**
+   * Finds the registered name of each {@code :path} with {@link MethodNameIndex} and looks it up.
+   */
+  @Benchmark
+  public void lookupMethodFromIndexedPath(Blackhole bh) {
+    for (byte[] path : paths) {
+      bh.consume(registry.lookupMethod(methodNameIndex.lookup(path, 1, path.length - 1)));
+    }
+  }
+
   private String randomString() {
     Random r = new Random();
     char[] bytes = new char[nameLength];
@@ -95,6 +95,12 @@ public abstract class AbstractManagedChannelImplBuilder
     return thisT();
   }
 
+  @Override
+  public T useVirtualThreads() {
+    delegate().useVirtualThreads();
+    return thisT();
+  }
+
   @Override
   public T intercept(List<ClientInterceptor> interceptors) {
     delegate().intercept(interceptors);
@@ -76,6 +76,12 @@ public abstract class AbstractServerImplBuilder
     return thisT();
   }
 
+  @Override
+  public T useVirtualThreads() {
+    delegate().useVirtualThreads();
+    return thisT();
+  }
+
   @Override
   public T executor(@Nullable Executor executor) {
     delegate().executor(executor);
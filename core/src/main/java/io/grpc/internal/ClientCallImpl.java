@@ -44,6 +44,7 @@ import io.grpc.Deadline;
 import io.grpc.DecompressorRegistry;
 import io.grpc.InternalConfigSelector;
 import io.grpc.InternalDecompressorRegistry;
+import io.grpc.MessageCompressionPolicy;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
 import io.grpc.MethodDescriptor.MethodType;
@@ -280,7 +281,13 @@ final class ClientCallImpl<ReqT, RespT> extends ClientCall<ReqT, RespT> {
     if (effectiveDeadline != null) {
       stream.setDeadline(effectiveDeadline);
     }
-    stream.setCompressor(compressor);
+    MessageCompressionPolicy compressionPolicy = callOptions.getMessageCompressionPolicy();
+    if (compressionPolicy != null && compressor != Codec.Identity.NONE) {
+      stream.setCompressor(
+          new PolicyCompressor(compressor, compressionPolicy, method.getFullMethodName()));
+    } else {
+      stream.setCompressor(compressor);
+    }
     if (fullStreamDecompression) {
       stream.setFullStreamDecompression(fullStreamDecompression);
     }
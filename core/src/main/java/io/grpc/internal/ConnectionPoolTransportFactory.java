@@ -0,0 +1,500 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Supplier;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.ChannelCredentials;
+import io.grpc.ChannelLogger;
+import io.grpc.ClientStreamTracer;
+import io.grpc.InternalChannelz.SocketStats;
+import io.grpc.InternalLogId;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.SynchronizationContext;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Creates transports that spread their streams over a pool of connections to the same address.
+ * Each transport starts with one connection, and opens another one, up to {@code maxConnections},
+ * when every connection has at least {@code streamsPerConnection} active streams. New streams go
+ * to the ready connection with the fewest active streams. Connections beyond the first are closed
+ * once they become idle while the others have room. After a new connection fails to connect, the
+ * next one is not opened until a backoff has passed, like a subchannel reconnecting.
+ *
+ * <p>The transport follows the life-cycle of its first connection, so a subchannel sees a single
+ * transport. When the first connection shuts down the transport shuts down, letting the other
+ * connections finish their streams.
+ */
+public final class ConnectionPoolTransportFactory implements ClientTransportFactory {
+  private static final Logger log =
+      Logger.getLogger(ConnectionPoolTransportFactory.class.getName());
+
+  private final ClientTransportFactory delegate;
+  private final int maxConnections;
+  private final int streamsPerConnection;
+  private final BackoffPolicy.Provider backoffPolicyProvider;
+  private final Supplier<Stopwatch> stopwatchSupplier;
+
+  /**
+   * Creates a factory whose transports open up to {@code maxConnections} connections with {@code
+   * delegate}. {@code streamsPerConnection} should be somewhat below the server's {@code
+   * MAX_CONCURRENT_STREAMS}, so that a new connection is ready before streams start to queue.
+   */
+  public ConnectionPoolTransportFactory(
+      ClientTransportFactory delegate, int maxConnections, int streamsPerConnection) {
+    this(delegate, maxConnections, streamsPerConnection, new ExponentialBackoffPolicy.Provider(),
+        GrpcUtil.STOPWATCH_SUPPLIER);
+  }
+
+  @VisibleForTesting
+  ConnectionPoolTransportFactory(
+      ClientTransportFactory delegate, int maxConnections, int streamsPerConnection,
+      BackoffPolicy.Provider backoffPolicyProvider, Supplier<Stopwatch> stopwatchSupplier) {
+    checkArgument(maxConnections > 0, "maxConnections must be positive");
+    checkArgument(streamsPerConnection > 0, "streamsPerConnection must be positive");
+    this.delegate = checkNotNull(delegate, "delegate");
+    this.maxConnections = maxConnections;
+    this.streamsPerConnection = streamsPerConnection;
+    this.backoffPolicyProvider = checkNotNull(backoffPolicyProvider, "backoffPolicyProvider");
+    this.stopwatchSupplier = checkNotNull(stopwatchSupplier, "stopwatchSupplier");
+  }
+
+  @Override
+  public ConnectionClientTransport newClientTransport(
+      SocketAddress serverAddress, ClientTransportOptions options, ChannelLogger channelLogger) {
+    return new PooledTransport(serverAddress, options, channelLogger);
+  }
+
+  @Override
+  public ScheduledExecutorService getScheduledExecutorService() {
+    return delegate.getScheduledExecutorService();
+  }
+
+  @Override
+  public SwapChannelCredentialsResult swapChannelCredentials(ChannelCredentials channelCreds) {
+    SwapChannelCredentialsResult result = delegate.swapChannelCredentials(channelCreds);
+    if (result == null) {
+      return null;
+    }
+    return new SwapChannelCredentialsResult(
+        new ConnectionPoolTransportFactory(
+            result.transportFactory, maxConnections, streamsPerConnection, backoffPolicyProvider,
+            stopwatchSupplier),
+        result.callCredentials);
+  }
+
+  @Override
+  public void close() {
+    delegate.close();
+  }
+
+  @VisibleForTesting
+  final class PooledTransport implements ConnectionClientTransport {
+    private final InternalLogId logId;
+    private final SocketAddress serverAddress;
+    private final ClientTransportOptions options;
+    private final ChannelLogger channelLogger;
+    private final Object lock = new Object();
+    // Listener calls are made in order, after releasing the lock.
+    private final SynchronizationContext syncContext = new SynchronizationContext(
+        new Thread.UncaughtExceptionHandler() {
+          @Override
+          public void uncaughtException(Thread t, Throwable e) {
+            log.log(Level.SEVERE, "Exception from transport listener", e);
+          }
+        });
+    private Listener listener;
+    private Connection first;
+    @GuardedBy("lock")
+    private final List<Connection> connections = new ArrayList<>();
+    @GuardedBy("lock")
+    private int connectionsInUse;
+    @GuardedBy("lock")
+    private boolean poolShutdown;
+    @GuardedBy("lock")
+    private boolean terminated;
+    // Started when a connection is added to the pool, as at most one is connecting at a time.
+    @GuardedBy("lock")
+    private final Stopwatch growthTimer = stopwatchSupplier.get();
+    // Set once a connection added to the pool failed to connect, until one connects.
+    @GuardedBy("lock")
+    @Nullable
+    private BackoffPolicy growthBackoffPolicy;
+    @GuardedBy("lock")
+    private long growthBackoffNanos;
+
+    PooledTransport(
+        SocketAddress serverAddress, ClientTransportOptions options, ChannelLogger channelLogger) {
+      this.serverAddress = checkNotNull(serverAddress, "serverAddress");
+      this.options = checkNotNull(options, "options");
+      this.channelLogger = checkNotNull(channelLogger, "channelLogger");
+      this.logId = InternalLogId.allocate(getClass(), serverAddress.toString());
+    }
+
+    @Override
+    public Runnable start(Listener listener) {
+      this.listener = checkNotNull(listener, "listener");
+      synchronized (lock) {
+        first = newConnection();
+      }
+      return first.transport.start(first);
+    }
+
+    @GuardedBy("lock")
+    private Connection newConnection() {
+      Connection connection = new Connection(
+          delegate.newClientTransport(serverAddress, options, channelLogger));
+      connections.add(connection);
+      return connection;
+    }
+
+    @Override
+    public ClientStream newStream(
+        MethodDescriptor<?, ?> method, Metadata headers, CallOptions callOptions,
+        ClientStreamTracer[] tracers) {
+      Connection connection;
+      Runnable startNewConnection = null;
+      synchronized (lock) {
+        connection = pickConnection();
+        if (connection == null) {
+          // Shutting down, or not ready yet. Let the first connection decide what to do.
+          connection = first;
+        } else if (connection.activeStreams >= streamsPerConnection && canGrow()) {
+          Connection newConnection = newConnection();
+          growthTimer.reset().start();
+          startNewConnection = newConnection.transport.start(newConnection);
+          channelLogger.log(
+              ChannelLogger.ChannelLogLevel.DEBUG,
+              "Opening connection {0} of {1}", connections.size(), maxConnections);
+        }
+        connection.activeStreams++;
+      }
+      if (startNewConnection != null) {
+        startNewConnection.run();
+      }
+      return new CountingStream(
+          connection.transport.newStream(method, headers, callOptions, tracers), connection);
+    }
+
+    /** Returns the ready connection with the fewest active streams, if there is one. */
+    @GuardedBy("lock")
+    @Nullable
+    private Connection pickConnection() {
+      if (poolShutdown) {
+        return null;
+      }
+      Connection picked = null;
+      for (Connection connection : connections) {
+        if (connection.ready && !connection.shutdown
+            && (picked == null || connection.activeStreams < picked.activeStreams)) {
+          picked = connection;
+        }
+      }
+      return picked;
+    }
+
+    /**
+     * Whether a connection may be added: there is room, no other one is connecting, and it is not
+     * backing off after a connection failed to connect.
+     */
+    @GuardedBy("lock")
+    private boolean canGrow() {
+      if (growthBackoffPolicy != null
+          && growthTimer.elapsed(TimeUnit.NANOSECONDS) < growthBackoffNanos) {
+        return false;
+      }
+      int usable = 0;
+      for (Connection connection : connections) {
+        if (connection.shutdown) {
+          continue;
+        }
+        if (!connection.ready) {
+          return false;
+        }
+        usable++;
+      }
+      return usable < maxConnections;
+    }
+
+    private void streamClosed(Connection connection) {
+      boolean shrink;
+      synchronized (lock) {
+        connection.activeStreams--;
+        shrink = connection != first && connection.activeStreams == 0 && !connection.shutdown
+            && !poolShutdown && othersHaveRoom(connection);
+        if (shrink) {
+          connection.shutdown = true;
+        }
+      }
+      if (shrink) {
+        channelLogger.log(ChannelLogger.ChannelLogLevel.DEBUG, "Closing idle pooled connection");
+        connection.transport.shutdown(
+            Status.UNAVAILABLE.withDescription("Idle pooled connection closed"));
+      }
+    }
+
+    /** Backs off adding connections, measured from when the failed one was added. */
+    @GuardedBy("lock")
+    private void growthFailed(Status status) {
+      if (growthBackoffPolicy == null) {
+        growthBackoffPolicy = backoffPolicyProvider.get();
+      }
+      growthBackoffNanos = growthBackoffPolicy.nextBackoffNanos();
+      channelLogger.log(
+          ChannelLogger.ChannelLogLevel.DEBUG,
+          "Pooled connection failed to connect ({0}). Will not open another for {1} ns",
+          status, growthBackoffNanos - growthTimer.elapsed(TimeUnit.NANOSECONDS));
+    }
+
+    @GuardedBy("lock")
+    private boolean othersHaveRoom(Connection idle) {
+      for (Connection connection : connections) {
+        if (connection != idle && !connection.shutdown
+            && connection.activeStreams >= streamsPerConnection) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public void ping(PingCallback callback, Executor executor) {
+      first.transport.ping(callback, executor);
+    }
+
+    @Override
+    public void shutdown(Status reason) {
+      List<Connection> toShutdown;
+      synchronized (lock) {
+        toShutdown = startShutdown();
+      }
+      for (Connection connection : toShutdown) {
+        connection.transport.shutdown(reason);
+      }
+    }
+
+    @Override
+    public void shutdownNow(Status reason) {
+      List<Connection> toShutdown;
+      synchronized (lock) {
+        poolShutdown = true;
+        for (Connection connection : connections) {
+          connection.shutdown = true;
+        }
+        toShutdown = new ArrayList<>(connections);
+      }
+      for (Connection connection : toShutdown) {
+        connection.transport.shutdownNow(reason);
+      }
+    }
+
+    /** Marks the pool and its connections shut down, returning the ones not shut down before. */
+    @GuardedBy("lock")
+    private List<Connection> startShutdown() {
+      poolShutdown = true;
+      List<Connection> toShutdown = new ArrayList<>();
+      for (Connection connection : connections) {
+        if (!connection.shutdown) {
+          connection.shutdown = true;
+          toShutdown.add(connection);
+        }
+      }
+      return toShutdown;
+    }
+
+    @Override
+    public Attributes getAttributes() {
+      return first.transport.getAttributes();
+    }
+
+    @Override
+    public ListenableFuture<SocketStats> getStats() {
+      return first.transport.getStats();
+    }
+
+    @Override
+    public InternalLogId getLogId() {
+      return logId;
+    }
+
+    @Override
+    public String toString() {
+      return logId.toString();
+    }
+
+    @VisibleForTesting
+    int getConnectionCount() {
+      synchronized (lock) {
+        return connections.size();
+      }
+    }
+
+    private final class Connection implements ManagedClientTransport.Listener {
+      final ConnectionClientTransport transport;
+      @GuardedBy("lock")
+      boolean ready;
+      @GuardedBy("lock")
+      boolean inUse;
+      // Set once shutdown() was called, or the connection reported it is shutting down.
+      @GuardedBy("lock")
+      boolean shutdown;
+      @GuardedBy("lock")
+      int activeStreams;
+
+      Connection(ConnectionClientTransport transport) {
+        this.transport = checkNotNull(transport, "transport");
+      }
+
+      @Override
+      public void transportReady() {
+        synchronized (lock) {
+          ready = true;
+          if (this == first) {
+            syncContext.executeLater(new Runnable() {
+              @Override
+              public void run() {
+                listener.transportReady();
+              }
+            });
+          } else {
+            growthBackoffPolicy = null;
+          }
+        }
+        syncContext.drain();
+      }
+
+      @Override
+      public void transportInUse(boolean inUse) {
+        synchronized (lock) {
+          setInUse(inUse);
+        }
+        syncContext.drain();
+      }
+
+      @GuardedBy("lock")
+      private void setInUse(boolean inUse) {
+        if (this.inUse == inUse) {
+          return;
+        }
+        this.inUse = inUse;
+        connectionsInUse += inUse ? 1 : -1;
+        if (inUse ? connectionsInUse == 1 : connectionsInUse == 0) {
+          final boolean poolInUse = inUse;
+          syncContext.executeLater(new Runnable() {
+            @Override
+            public void run() {
+              listener.transportInUse(poolInUse);
+            }
+          });
+        }
+      }
+
+      @Override
+      public void transportShutdown(final Status s) {
+        List<Connection> others = new ArrayList<>();
+        synchronized (lock) {
+          boolean failedToConnect = !ready && !shutdown;
+          shutdown = true;
+          if (this != first && failedToConnect) {
+            growthFailed(s);
+          }
+          if (this == first) {
+            // The pool goes away with its first connection. Let the others finish their streams.
+            others = startShutdown();
+            syncContext.executeLater(new Runnable() {
+              @Override
+              public void run() {
+                listener.transportShutdown(s);
+              }
+            });
+          }
+        }
+        syncContext.drain();
+        for (Connection connection : others) {
+          connection.transport.shutdown(s);
+        }
+      }
+
+      @Override
+      public void transportTerminated() {
+        synchronized (lock) {
+          setInUse(false);
+          connections.remove(this);
+          if (poolShutdown && connections.isEmpty() && !terminated) {
+            terminated = true;
+            syncContext.executeLater(new Runnable() {
+              @Override
+              public void run() {
+                listener.transportTerminated();
+              }
+            });
+          }
+        }
+        syncContext.drain();
+      }
+    }
+
+    private final class CountingStream extends ForwardingClientStream {
+      private final ClientStream delegate;
+      private final Connection connection;
+
+      CountingStream(ClientStream delegate, Connection connection) {
+        this.delegate = delegate;
+        this.connection = connection;
+      }
+
+      @Override
+      protected ClientStream delegate() {
+        return delegate;
+      }
+
+      @Override
+      public void start(final ClientStreamListener listener) {
+        delegate.start(new ForwardingClientStreamListener() {
+          @Override
+          protected ClientStreamListener delegate() {
+            return listener;
+          }
+
+          @Override
+          public void closed(Status status, RpcProgress rpcProgress, Metadata trailers) {
+            streamClosed(connection);
+            super.closed(status, rpcProgress, trailers);
+          }
+        });
+      }
+    }
+  }
+}
@@ -69,6 +69,12 @@ public abstract class ForwardingClientStreamTracer extends ClientStreamTracer {
     delegate().outboundMessageSent(seqNo, optionalWireSize, optionalUncompressedSize);
   }
 
+  @Override
+  public void outboundMessageCompressed(
+      int seqNo, long uncompressedSize, long compressedSize, long compressionNanos) {
+    delegate().outboundMessageCompressed(seqNo, uncompressedSize, compressedSize, compressionNanos);
+  }
+
   @Override
   public void inboundMessageRead(int seqNo, long optionalWireSize, long optionalUncompressedSize) {
     delegate().inboundMessageRead(seqNo, optionalWireSize, optionalUncompressedSize);
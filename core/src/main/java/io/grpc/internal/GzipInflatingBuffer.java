@@ -18,6 +18,7 @@ package io.grpc.internal;
 
 import static com.google.common.base.Preconditions.checkState;
 
+import io.grpc.InternalZlibPool;
 import java.io.Closeable;
 import java.util.zip.CRC32;
 import java.util.zip.DataFormatException;
@@ -218,7 +219,7 @@ class GzipInflatingBuffer implements Closeable {
       closed = true;
       gzippedData.close();
       if (inflater != null) {
-        inflater.end();
+        InternalZlibPool.releaseInflater(inflater);
         inflater = null;
       }
     }
@@ -395,7 +396,7 @@ class GzipInflatingBuffer implements Closeable {
 
   private boolean initializeInflater() {
     if (inflater == null) {
-      inflater = new Inflater(true);
+      inflater = InternalZlibPool.acquireInflater();
     } else {
       inflater.reset();
     }
@@ -31,11 +31,13 @@ final class InternalHandlerRegistry extends HandlerRegistry {
 
   private final List<ServerServiceDefinition> services;
   private final Map<String, ServerMethodDefinition<?, ?>> methods;
+  private final MethodNameIndex methodNameIndex;
 
   private InternalHandlerRegistry(
       List<ServerServiceDefinition> services, Map<String, ServerMethodDefinition<?, ?>> methods) {
     this.services = services;
     this.methods = methods;
+    this.methodNameIndex = MethodNameIndex.create(methods.keySet());
   }
 
   /**
@@ -53,6 +55,14 @@ final class InternalHandlerRegistry extends HandlerRegistry {
     return methods.get(methodName);
   }
 
+  /**
+   * Returns an index of the names of the methods in this registry, for transports to find
+   * {@link #lookupMethod} keys from the request path bytes.
+   */
+  MethodNameIndex getMethodNameIndex() {
+    return methodNameIndex;
+  }
+
   static final class Builder {
 
     // Store per-service first, to make sure services are added/replaced atomically.
@@ -326,6 +326,12 @@ public final class ManagedChannelImplBuilder
     return this;
   }
 
+  @Override
+  public ManagedChannelImplBuilder useVirtualThreads() {
+    this.executorPool = new FixedObjectPool<>(VirtualThreads.executor());
+    return this;
+  }
+
   @Override
   public ManagedChannelImplBuilder offloadExecutor(Executor executor) {
     if (executor != null) {
@@ -22,6 +22,7 @@ import static com.google.common.base.Preconditions.checkState;
 import static java.lang.Math.min;
 
 import com.google.common.io.ByteStreams;
+import io.grpc.ByteBufferDrainable;
 import io.grpc.Codec;
 import io.grpc.Compressor;
 import io.grpc.Drainable;
@@ -135,6 +136,9 @@ public class MessageFramer implements Framer {
     int messageLength = -2;
     try {
       messageLength = getKnownLength(message);
+      if (compressed && compressor instanceof PolicyCompressor) {
+        compressed = ((PolicyCompressor) compressor).shouldCompress(messageLength);
+      }
       if (messageLength != 0 && compressed) {
         written = writeCompressed(message, messageLength);
       } else {
@@ -182,6 +186,7 @@ public class MessageFramer implements Framer {
   private int writeCompressed(InputStream message, int unusedMessageLength) throws IOException {
     BufferChainOutputStream bufferChain = new BufferChainOutputStream();
 
+    long startNanos = System.nanoTime();
     OutputStream compressingStream = compressor.compress(bufferChain);
     int written;
     try {
@@ -189,6 +194,12 @@ public class MessageFramer implements Framer {
     } finally {
       compressingStream.close();
     }
+    int compressedLength = bufferChain.readableBytes();
+    statsTraceCtx.outboundMessageCompressed(
+        currentMessageSeqNo, written, compressedLength, System.nanoTime() - startNanos);
+    if (compressor instanceof PolicyCompressor) {
+      ((PolicyCompressor) compressor).recordCompression(written, compressedLength);
+    }
     if (maxOutboundMessageSize >= 0 && written > maxOutboundMessageSize) {
       throw Status.RESOURCE_EXHAUSTED
           .withDescription(
@@ -226,6 +237,17 @@ public class MessageFramer implements Framer {
       buffer = bufferAllocator.allocate(headerScratch.position() + messageLength);
     }
     writeRaw(headerScratch.array(), 0, headerScratch.position());
+    if (message instanceof ByteBufferDrainable
+        && messageLength > 0
+        && buffer.byteBufferSupported()
+        && buffer.writableBytes() >= messageLength) {
+      // The whole message fits in the current buffer, so let it serialize itself straight into
+      // the buffer instead of going through outputStreamAdapter.
+      ByteBuffer target = buffer.getByteBuffer(messageLength);
+      int written = ((ByteBufferDrainable) message).drainTo(target);
+      buffer.commitByteBuffer(written);
+      return written;
+    }
     return writeToOutputStream(message, outputStreamAdapter);
   }
 
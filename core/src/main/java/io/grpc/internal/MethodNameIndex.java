@@ -0,0 +1,133 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * An immutable index from the bytes of a fully qualified method name, as received in the
+ * {@code :path} header, to the name the server registered the method with. Transports use it to
+ * find the method name of a new stream without decoding the header to a new {@link String}, and
+ * the registered instance then has its hash code cached and matches its registry entry by
+ * identity.
+ *
+ * <p>Only ASCII names are indexed, as transports otherwise decode the header one byte per char.
+ */
+public final class MethodNameIndex {
+  private static final MethodNameIndex EMPTY = new MethodNameIndex(new String[0]);
+
+  // Open addressing with linear probing, at most half full. Each slot keeps the hash and bytes of
+  // its name so that a lookup only compares bytes for a name with the same hash.
+  private final int mask;
+  private final int[] hashes;
+  private final byte[][] keys;
+  private final String[] names;
+
+  private MethodNameIndex(String[] fullMethodNames) {
+    int capacity = Integer.highestOneBit(Math.max(fullMethodNames.length, 1) * 4 - 1);
+    mask = capacity - 1;
+    hashes = new int[capacity];
+    keys = new byte[capacity][];
+    names = new String[capacity];
+    for (String name : fullMethodNames) {
+      byte[] key = new byte[name.length()];
+      for (int i = 0; i < key.length; i++) {
+        key[i] = (byte) name.charAt(i);
+      }
+      int hash = hash(key, 0, key.length);
+      int slot = hash & mask;
+      while (keys[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+      hashes[slot] = hash;
+      keys[slot] = key;
+      names[slot] = name;
+    }
+  }
+
+  /**
+   * Creates an index of the given names. Names that are not ASCII are left out, and so are not
+   * found by {@link #lookup}.
+   */
+  public static MethodNameIndex create(Collection<String> fullMethodNames) {
+    Set<String> indexed = new LinkedHashSet<>();
+    for (String name : fullMethodNames) {
+      if (isAscii(name)) {
+        indexed.add(name);
+      }
+    }
+    if (indexed.isEmpty()) {
+      return EMPTY;
+    }
+    return new MethodNameIndex(indexed.toArray(new String[0]));
+  }
+
+  /** Returns an index that finds no names. */
+  public static MethodNameIndex empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Returns the indexed name equal to the given ASCII bytes, or {@code null} if there is none.
+   *
+   * @param bytes the bytes of the fully qualified method name, without the leading slash of the
+   *     path
+   */
+  @Nullable
+  public String lookup(byte[] bytes, int offset, int length) {
+    int hash = hash(bytes, offset, length);
+    for (int slot = hash & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+      if (hashes[slot] == hash && bytesEqual(keys[slot], bytes, offset, length)) {
+        return names[slot];
+      }
+    }
+    return null;
+  }
+
+  private static int hash(byte[] bytes, int offset, int length) {
+    // Same as String.hashCode() for ASCII, spread so the low bits pick the slot well.
+    int h = 0;
+    for (int i = offset; i < offset + length; i++) {
+      h = 31 * h + (bytes[i] & 0xFF);
+    }
+    return h ^ (h >>> 16);
+  }
+
+  private static boolean bytesEqual(byte[] key, byte[] bytes, int offset, int length) {
+    if (key.length != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (key[i] != bytes[offset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isAscii(String name) {
+    for (int i = 0; i < name.length(); i++) {
+      if (name.charAt(i) > 0x7F) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
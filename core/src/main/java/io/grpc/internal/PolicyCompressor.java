@@ -0,0 +1,70 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import io.grpc.Compressor;
+import io.grpc.InternalMessageCompressionPolicy;
+import io.grpc.MessageCompressionPolicy;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A {@link Compressor} that carries a {@link MessageCompressionPolicy} down to the {@link
+ * MessageFramer}, which asks it whether each message should be compressed and reports back how
+ * well compression did.
+ */
+final class PolicyCompressor implements Compressor {
+  private final Compressor delegate;
+  private final MessageCompressionPolicy policy;
+  private final String fullMethodName;
+
+  PolicyCompressor(
+      Compressor delegate, MessageCompressionPolicy policy, String fullMethodName) {
+    this.delegate = checkNotNull(delegate, "delegate");
+    this.policy = checkNotNull(policy, "policy");
+    this.fullMethodName = checkNotNull(fullMethodName, "fullMethodName");
+  }
+
+  @Override
+  public String getMessageEncoding() {
+    return delegate.getMessageEncoding();
+  }
+
+  @Override
+  public OutputStream compress(OutputStream os) throws IOException {
+    return delegate.compress(os);
+  }
+
+  /**
+   * Returns whether a message of the given length, or -1 if unknown, should be compressed.
+   */
+  boolean shouldCompress(int messageLength) {
+    return InternalMessageCompressionPolicy.shouldCompress(policy, fullMethodName, messageLength);
+  }
+
+  void recordCompression(long uncompressedSize, long compressedSize) {
+    InternalMessageCompressionPolicy.recordCompression(
+        policy, fullMethodName, uncompressedSize, compressedSize);
+  }
+
+  @Override
+  public String toString() {
+    return delegate.toString();
+  }
+}
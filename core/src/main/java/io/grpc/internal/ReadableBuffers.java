@@ -227,6 +227,16 @@ public final class ReadableBuffers {
       }
       offset = mark;
     }
+
+    @Override
+    public boolean byteBufferSupported() {
+      return true;
+    }
+
+    @Override
+    public ByteBuffer getByteBuffer() {
+      return ByteBuffer.wrap(bytes, offset, end - offset).slice();
+    }
   }
 
   /**
@@ -34,8 +34,10 @@ import io.grpc.CompressorRegistry;
 import io.grpc.Context;
 import io.grpc.DecompressorRegistry;
 import io.grpc.InternalDecompressorRegistry;
+import io.grpc.MessageCompressionPolicy;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
+import io.grpc.PreSerializedMessage;
 import io.grpc.ServerCall;
 import io.grpc.Status;
 import io.perfmark.PerfMark;
@@ -43,6 +45,7 @@ import io.perfmark.Tag;
 import java.io.InputStream;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.annotation.Nullable;
 
 final class ServerCallImpl<ReqT, RespT> extends ServerCall<ReqT, RespT> {
 
@@ -67,6 +70,8 @@ final class ServerCallImpl<ReqT, RespT> extends ServerCall<ReqT, RespT> {
   private boolean sendHeadersCalled;
   private boolean closeCalled;
   private Compressor compressor;
+  @Nullable
+  private MessageCompressionPolicy messageCompressionPolicy;
   private boolean messageSent;
 
   ServerCallImpl(ServerStream stream, MethodDescriptor<ReqT, RespT> method,
@@ -129,7 +134,12 @@ final class ServerCallImpl<ReqT, RespT> extends ServerCall<ReqT, RespT> {
     // Always put compressor, even if it's identity.
     headers.put(MESSAGE_ENCODING_KEY, compressor.getMessageEncoding());
 
-    stream.setCompressor(compressor);
+    if (messageCompressionPolicy != null && compressor != Codec.Identity.NONE) {
+      stream.setCompressor(
+          new PolicyCompressor(compressor, messageCompressionPolicy, method.getFullMethodName()));
+    } else {
+      stream.setCompressor(compressor);
+    }
 
     headers.discardAll(MESSAGE_ACCEPT_ENCODING_KEY);
     byte[] advertisedEncodings =
@@ -148,13 +158,28 @@ final class ServerCallImpl<ReqT, RespT> extends ServerCall<ReqT, RespT> {
   public void sendMessage(RespT message) {
     PerfMark.startTask("ServerCall.sendMessage", tag);
     try {
-      sendMessageInternal(message);
+      sendMessageInternal(message, null);
     } finally {
       PerfMark.stopTask("ServerCall.sendMessage", tag);
     }
   }
 
-  private void sendMessageInternal(RespT message) {
+  @Override
+  public void sendPreSerializedMessage(PreSerializedMessage<RespT> message) {
+    PerfMark.startTask("ServerCall.sendPreSerializedMessage", tag);
+    try {
+      if (message.getMarshaller() == method.getResponseMarshaller()) {
+        sendMessageInternal(message.getMessage(), message);
+      } else {
+        sendMessageInternal(message.getMessage(), null);
+      }
+    } finally {
+      PerfMark.stopTask("ServerCall.sendPreSerializedMessage", tag);
+    }
+  }
+
+  private void sendMessageInternal(
+      RespT message, @Nullable PreSerializedMessage<RespT> serialized) {
     checkState(sendHeadersCalled, "sendHeaders has not been called");
     checkState(!closeCalled, "call is closed");
 
@@ -165,7 +190,9 @@ final class ServerCallImpl<ReqT, RespT> extends ServerCall<ReqT, RespT> {
 
     messageSent = true;
     try {
-      InputStream resp = method.streamResponse(message);
+      InputStream resp = serialized != null
+          ? serialized.stream()
+          : method.streamResponse(message);
       stream.writeMessage(resp);
       stream.flush();
     } catch (RuntimeException e) {
@@ -192,6 +219,12 @@ final class ServerCallImpl<ReqT, RespT> extends ServerCall<ReqT, RespT> {
     checkArgument(compressor != null, "Unable to find compressor by name %s", compressorName);
   }
 
+  @Override
+  public void setMessageCompressionPolicy(MessageCompressionPolicy policy) {
+    checkState(!sendHeadersCalled, "sendHeaders has been called");
+    messageCompressionPolicy = checkNotNull(policy, "policy");
+  }
+
   @Override
   public boolean isReady() {
     if (closeCalled) {
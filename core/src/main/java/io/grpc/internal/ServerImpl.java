@@ -97,7 +97,7 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
   private final ObjectPool<? extends Executor> executorPool;
   /** Executor for application processing. Safe to read after {@link #start()}. */
   private Executor executor;
-  private final HandlerRegistry registry;
+  private final InternalHandlerRegistry registry;
   private final HandlerRegistry fallbackRegistry;
   private final List<ServerTransportFilter> transportFilters;
   // This is iterated on a per-call basis.  Use an array instead of a Collection to avoid iterator
@@ -456,6 +456,10 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
       transportClosed(transport);
     }
 
+    @Override
+    public MethodNameIndex methodNameIndex() {
+      return registry.getMethodNameIndex();
+    }
 
     @Override
     public void streamCreated(ServerStream stream, String methodName, Metadata headers) {
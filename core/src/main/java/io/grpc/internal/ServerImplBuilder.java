@@ -125,6 +125,12 @@ public final class ServerImplBuilder extends ServerBuilder<ServerImplBuilder> {
     return this;
   }
 
+  @Override
+  public ServerImplBuilder useVirtualThreads() {
+    this.executorPool = new FixedObjectPool<>(VirtualThreads.executor());
+    return this;
+  }
+
   @Override
   public ServerImplBuilder callExecutor(ServerCallExecutorSupplier executorSupplier) {
     this.executorSupplier = checkNotNull(executorSupplier);
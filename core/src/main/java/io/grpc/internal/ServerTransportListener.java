@@ -18,6 +18,7 @@ package io.grpc.internal;
 
 import io.grpc.Attributes;
 import io.grpc.Metadata;
+import javax.annotation.Nullable;
 
 /**
  * A observer of a server-side transport for stream creation events. Notifications must occur from
@@ -46,4 +47,16 @@ public interface ServerTransportListener {
    * The transport completed shutting down. All resources have been released.
    */
   void transportTerminated();
+
+  /**
+   * Returns an index of the method names the server registered when it was built, which a
+   * transport may use to find the {@code method} to pass to {@link #streamCreated} without
+   * decoding it, or {@code null} if there is none and the transport should always decode. Names
+   * that are not in the index still have to be passed, as the server also looks them up in its
+   * fallback registry.
+   */
+  @Nullable
+  default MethodNameIndex methodNameIndex() {
+    return null;
+  }
 }
@@ -0,0 +1,508 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.ChannelCredentials;
+import io.grpc.ChannelLogger;
+import io.grpc.ClientStreamTracer;
+import io.grpc.InternalChannelz.SocketStats;
+import io.grpc.InternalLogId;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.SynchronizationContext;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Creates transports that share connections with the transports of other channels in the process.
+ * Transports created for the same address and options by factories with equal sharing keys use a
+ * single reference-counted connection, which is shut down once the last of them is shut down.
+ *
+ * <p>The sharing key must capture everything that makes connections of the delegate factory
+ * differ, such as the channel credentials and transport settings. Call credentials are applied
+ * above the transport, so they need not be part of it.
+ */
+public final class SharedTransportFactory implements ClientTransportFactory {
+  private static final Logger log = Logger.getLogger(SharedTransportFactory.class.getName());
+
+  @GuardedBy("registry")
+  private static final Map<Key, SharedTransport> registry = new HashMap<>();
+
+  private final ClientTransportFactory delegate;
+  private final Object sharingKey;
+  @GuardedBy("this")
+  private int liveTransports;
+  @GuardedBy("this")
+  private boolean closed;
+
+  public SharedTransportFactory(ClientTransportFactory delegate, Object sharingKey) {
+    this.delegate = checkNotNull(delegate, "delegate");
+    this.sharingKey = checkNotNull(sharingKey, "sharingKey");
+  }
+
+  @Override
+  public ConnectionClientTransport newClientTransport(
+      SocketAddress serverAddress, ClientTransportOptions options, ChannelLogger channelLogger) {
+    return new TransportHandle(
+        new Key(sharingKey, serverAddress, options), serverAddress, options, channelLogger);
+  }
+
+  @Override
+  public ScheduledExecutorService getScheduledExecutorService() {
+    return delegate.getScheduledExecutorService();
+  }
+
+  @Override
+  public SwapChannelCredentialsResult swapChannelCredentials(ChannelCredentials channelCreds) {
+    SwapChannelCredentialsResult result = delegate.swapChannelCredentials(channelCreds);
+    if (result == null) {
+      return null;
+    }
+    return new SwapChannelCredentialsResult(
+        new SharedTransportFactory(
+            result.transportFactory, Arrays.asList(sharingKey, channelCreds)),
+        result.callCredentials);
+  }
+
+  /**
+   * Closes the delegate once the connections this factory created, which other channels may still
+   * be using, have terminated.
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      if (liveTransports > 0) {
+        return;
+      }
+    }
+    delegate.close();
+  }
+
+  private void sharedTransportTerminated() {
+    synchronized (this) {
+      liveTransports--;
+      if (!closed || liveTransports > 0) {
+        return;
+      }
+    }
+    delegate.close();
+  }
+
+  /** Returns the number of connections that can still be shared. */
+  @VisibleForTesting
+  static int sharedTransportCount() {
+    synchronized (registry) {
+      return registry.size();
+    }
+  }
+
+  private static final class Key {
+    final Object sharingKey;
+    final SocketAddress serverAddress;
+    final ClientTransportOptions options;
+
+    Key(Object sharingKey, SocketAddress serverAddress, ClientTransportOptions options) {
+      this.sharingKey = sharingKey;
+      this.serverAddress = checkNotNull(serverAddress, "serverAddress");
+      this.options = checkNotNull(options, "options");
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(sharingKey, serverAddress, options);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) o;
+      return sharingKey.equals(that.sharingKey)
+          && serverAddress.equals(that.serverAddress)
+          && options.equals(that.options);
+    }
+  }
+
+  /** A connection and the transports of the channels that use it. */
+  private static final class SharedTransport implements ManagedClientTransport.Listener {
+    final Key key;
+    final SharedTransportFactory owner;
+    final ConnectionClientTransport transport;
+    final Object lock = new Object();
+    @GuardedBy("lock")
+    final List<TransportHandle> handles = new ArrayList<>();
+    @GuardedBy("lock")
+    boolean ready;
+    // No handles may be added once set.
+    @GuardedBy("lock")
+    boolean shutdown;
+
+    SharedTransport(Key key, SharedTransportFactory owner, ConnectionClientTransport transport) {
+      this.key = key;
+      this.owner = owner;
+      this.transport = transport;
+    }
+
+    @Override
+    public void transportReady() {
+      List<TransportHandle> toNotify;
+      synchronized (lock) {
+        ready = true;
+        for (TransportHandle handle : handles) {
+          handle.notifyReady();
+        }
+        toNotify = new ArrayList<>(handles);
+      }
+      drain(toNotify);
+    }
+
+    @Override
+    public void transportShutdown(Status s) {
+      unregister();
+      List<TransportHandle> toNotify;
+      synchronized (lock) {
+        shutdown = true;
+        for (TransportHandle handle : handles) {
+          handle.markShutdown(s);
+        }
+        toNotify = new ArrayList<>(handles);
+      }
+      drain(toNotify);
+    }
+
+    @Override
+    public void transportTerminated() {
+      List<TransportHandle> toNotify;
+      synchronized (lock) {
+        for (TransportHandle handle : handles) {
+          handle.markTerminated();
+        }
+        toNotify = new ArrayList<>(handles);
+        handles.clear();
+      }
+      drain(toNotify);
+      owner.sharedTransportTerminated();
+    }
+
+    @Override
+    public void transportInUse(boolean inUse) {
+      // Each handle reports whether it has streams of its own.
+    }
+
+    void unregister() {
+      synchronized (registry) {
+        if (registry.get(key) == this) {
+          registry.remove(key);
+        }
+      }
+    }
+
+    private static void drain(List<TransportHandle> handles) {
+      for (TransportHandle handle : handles) {
+        handle.syncContext.drain();
+      }
+    }
+  }
+
+  /** The transport of one channel, holding a reference to a shared connection. */
+  private final class TransportHandle implements ConnectionClientTransport {
+    private final Key key;
+    private final SocketAddress serverAddress;
+    private final ClientTransportOptions options;
+    private final ChannelLogger channelLogger;
+    private final InternalLogId logId;
+    // Listener calls are made in order, after releasing the lock.
+    private final SynchronizationContext syncContext = new SynchronizationContext(
+        new Thread.UncaughtExceptionHandler() {
+          @Override
+          public void uncaughtException(Thread t, Throwable e) {
+            log.log(Level.SEVERE, "Exception from transport listener", e);
+          }
+        });
+    private Listener listener;
+    private SharedTransport shared;
+    // The fields below are guarded by shared.lock
+    private final Set<ClientStream> streams = new HashSet<>();
+    private Status shutdownStatus;
+    private boolean terminated;
+
+    TransportHandle(
+        Key key, SocketAddress serverAddress, ClientTransportOptions options,
+        ChannelLogger channelLogger) {
+      this.key = key;
+      this.serverAddress = serverAddress;
+      this.options = options;
+      this.channelLogger = channelLogger;
+      this.logId = InternalLogId.allocate(getClass(), serverAddress.toString());
+    }
+
+    @Override
+    public Runnable start(Listener listener) {
+      this.listener = checkNotNull(listener, "listener");
+      Runnable startShared = null;
+      synchronized (registry) {
+        shared = registry.get(key);
+        if (shared != null) {
+          synchronized (shared.lock) {
+            if (shared.shutdown) {
+              shared = null;
+            } else {
+              shared.handles.add(this);
+              if (shared.ready) {
+                notifyReady();
+              }
+            }
+          }
+        }
+        if (shared == null) {
+          shared = new SharedTransport(
+              key, SharedTransportFactory.this,
+              delegate.newClientTransport(serverAddress, options, channelLogger));
+          synchronized (SharedTransportFactory.this) {
+            liveTransports++;
+          }
+          synchronized (shared.lock) {
+            shared.handles.add(this);
+          }
+          registry.put(key, shared);
+          startShared = shared.transport.start(shared);
+        } else {
+          channelLogger.log(ChannelLogger.ChannelLogLevel.DEBUG, "Sharing existing connection");
+        }
+      }
+      final Runnable finalStartShared = startShared;
+      return new Runnable() {
+        @Override
+        public void run() {
+          if (finalStartShared != null) {
+            finalStartShared.run();
+          }
+          syncContext.drain();
+        }
+      };
+    }
+
+    @Override
+    public ClientStream newStream(
+        MethodDescriptor<?, ?> method, Metadata headers, CallOptions callOptions,
+        ClientStreamTracer[] tracers) {
+      Status status;
+      synchronized (shared.lock) {
+        status = shutdownStatus;
+      }
+      if (status != null) {
+        return new FailingClientStream(status, tracers);
+      }
+      return new HandleStream(shared.transport.newStream(method, headers, callOptions, tracers));
+    }
+
+    @GuardedBy("shared.lock")
+    private void streamStarted(ClientStream stream) {
+      streams.add(stream);
+      if (streams.size() == 1) {
+        syncContext.executeLater(new Runnable() {
+          @Override
+          public void run() {
+            listener.transportInUse(true);
+          }
+        });
+      }
+    }
+
+    private void streamClosed(ClientStream stream) {
+      synchronized (shared.lock) {
+        if (streams.remove(stream) && streams.isEmpty()) {
+          syncContext.executeLater(new Runnable() {
+            @Override
+            public void run() {
+              listener.transportInUse(false);
+            }
+          });
+          if (shutdownStatus != null) {
+            markTerminated();
+          }
+        }
+      }
+      syncContext.drain();
+    }
+
+    @Override
+    public void ping(PingCallback callback, Executor executor) {
+      shared.transport.ping(callback, executor);
+    }
+
+    @Override
+    public void shutdown(Status reason) {
+      boolean last;
+      synchronized (shared.lock) {
+        if (shutdownStatus != null) {
+          return;
+        }
+        markShutdown(reason);
+        shared.handles.remove(this);
+        if (streams.isEmpty()) {
+          markTerminated();
+        }
+        last = shared.handles.isEmpty() && !shared.shutdown;
+        if (last) {
+          shared.shutdown = true;
+        }
+      }
+      syncContext.drain();
+      if (last) {
+        shared.unregister();
+        shared.transport.shutdown(reason);
+      }
+    }
+
+    /**
+     * Shuts down and cancels the streams of this channel. Only the last channel using the
+     * connection closes it forcefully.
+     */
+    @Override
+    public void shutdownNow(Status reason) {
+      shutdown(reason);
+      List<ClientStream> toCancel;
+      boolean last;
+      synchronized (shared.lock) {
+        toCancel = new ArrayList<>(streams);
+        last = shared.handles.isEmpty();
+      }
+      for (ClientStream stream : toCancel) {
+        stream.cancel(reason);
+      }
+      if (last) {
+        shared.transport.shutdownNow(reason);
+      }
+    }
+
+    @GuardedBy("shared.lock")
+    void notifyReady() {
+      syncContext.executeLater(new Runnable() {
+        @Override
+        public void run() {
+          listener.transportReady();
+        }
+      });
+    }
+
+    @GuardedBy("shared.lock")
+    void markShutdown(final Status reason) {
+      if (shutdownStatus != null) {
+        return;
+      }
+      shutdownStatus = reason;
+      syncContext.executeLater(new Runnable() {
+        @Override
+        public void run() {
+          listener.transportShutdown(reason);
+        }
+      });
+    }
+
+    @GuardedBy("shared.lock")
+    void markTerminated() {
+      if (terminated) {
+        return;
+      }
+      terminated = true;
+      syncContext.executeLater(new Runnable() {
+        @Override
+        public void run() {
+          listener.transportTerminated();
+        }
+      });
+    }
+
+    @Override
+    public Attributes getAttributes() {
+      return shared.transport.getAttributes();
+    }
+
+    @Override
+    public ListenableFuture<SocketStats> getStats() {
+      return shared.transport.getStats();
+    }
+
+    @Override
+    public InternalLogId getLogId() {
+      return logId;
+    }
+
+    @Override
+    public String toString() {
+      return logId.toString();
+    }
+
+    private final class HandleStream extends ForwardingClientStream {
+      private final ClientStream delegate;
+
+      HandleStream(ClientStream delegate) {
+        this.delegate = delegate;
+      }
+
+      @Override
+      protected ClientStream delegate() {
+        return delegate;
+      }
+
+      @Override
+      public void start(final ClientStreamListener listener) {
+        synchronized (shared.lock) {
+          streamStarted(this);
+        }
+        syncContext.drain();
+        delegate.start(new ForwardingClientStreamListener() {
+          @Override
+          protected ClientStreamListener delegate() {
+            return listener;
+          }
+
+          @Override
+          public void closed(Status status, RpcProgress rpcProgress, Metadata trailers) {
+            streamClosed(HandleStream.this);
+            super.closed(status, rpcProgress, trailers);
+          }
+        });
+      }
+    }
+  }
+}
@@ -201,6 +201,18 @@ public final class StatsTraceContext {
     }
   }
 
+  /**
+   * See {@link StreamTracer#outboundMessageCompressed}.
+   *
+   * <p>Called from {@link io.grpc.internal.Framer}.
+   */
+  public void outboundMessageCompressed(
+      int seqNo, long uncompressedSize, long compressedSize, long compressionNanos) {
+    for (StreamTracer tracer : tracers) {
+      tracer.outboundMessageCompressed(seqNo, uncompressedSize, compressedSize, compressionNanos);
+    }
+  }
+
   /**
    * See {@link StreamTracer#outboundUncompressedSize}.
    *
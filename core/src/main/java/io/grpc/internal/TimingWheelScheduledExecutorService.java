@@ -0,0 +1,504 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link ScheduledExecutorService} that keeps its delayed tasks in a hierarchical timing wheel
+ * rather than a heap, so that scheduling and cancelling a task take constant time no matter how
+ * many timers are pending. gRPC arms a timer for nearly every RPC deadline and keepalive, and most
+ * of them are cancelled long before they fire, which is the workload this is tuned for.
+ *
+ * <p>Tasks run on a single timer thread, like the single-threaded {@code
+ * ScheduledThreadPoolExecutor} this replaces, and should hand off any real work. Delays are rounded
+ * up to a whole tick, so a task never runs early but may run up to one tick late.
+ *
+ * <p>Only the timer thread touches the wheel. Other threads hand new tasks and cancellations over
+ * through queues, which the timer thread drains every time it wakes up. The timer thread sleeps
+ * until the earliest tick at which any level of the wheel has work, or until enough hand-offs have
+ * piled up that draining them is worth a wakeup, so that far-off and cancelled tasks are not
+ * retained until the next deadline.
+ */
+final class TimingWheelScheduledExecutorService extends AbstractExecutorService
+    implements ScheduledExecutorService {
+  private static final int WHEEL_BITS = 8;
+  private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+  private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+  private static final int LEVELS = 4;
+  /**
+   * The furthest out a task can be placed. Tasks beyond this (about 50 days with 1 ms ticks) sit in
+   * the last level and are placed again each time their slot comes up.
+   */
+  private static final long MAX_DELTA_TICKS = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+  private static final long MAX_DELAY_NANOS = Long.MAX_VALUE >> 2;
+
+  /** Number of queued tasks and cancellations after which the timer thread is woken to drain. */
+  @VisibleForTesting
+  static final int MAX_QUEUED_HANDOFFS = 1024;
+
+  private static final int RUNNING = 0;
+  private static final int SHUTDOWN = 1;
+
+  private final long tickNanos;
+  private final long startNanos;
+  private final Thread thread;
+  private final Queue<WheelTask<?>> pendingTasks = new ConcurrentLinkedQueue<>();
+  private final Queue<WheelTask<?>> cancelledTasks = new ConcurrentLinkedQueue<>();
+  /** Tasks and cancellations added since the timer thread last drained the queues. */
+  private final AtomicInteger queuedHandoffs = new AtomicInteger();
+  private final CountDownLatch terminated = new CountDownLatch(1);
+  /** Orders {@link #shutdown} with adding to {@link #pendingTasks}. */
+  private final Object stateLock = new Object();
+  private volatile int state = RUNNING;
+  /** The tick the timer thread will next wake up at, so that callers know when to wake it. */
+  private volatile long wakeupTick = Long.MAX_VALUE;
+
+  // Only accessed by the timer thread.
+  private final WheelTask<?>[][] wheels = new WheelTask<?>[LEVELS][WHEEL_SIZE];
+  private long currentTick;
+  private int wheelTasks;
+
+  TimingWheelScheduledExecutorService(
+      ThreadFactory threadFactory, long tickDuration, TimeUnit unit) {
+    checkNotNull(threadFactory, "threadFactory");
+    checkArgument(tickDuration > 0, "tickDuration must be positive");
+    this.tickNanos = unit.toNanos(tickDuration);
+    checkArgument(tickNanos > 0, "tickDuration must be at least 1 ns");
+    this.startNanos = System.nanoTime();
+    this.thread = threadFactory.newThread(new Runnable() {
+      @Override
+      public void run() {
+        runTimer();
+      }
+    });
+    thread.start();
+  }
+
+  @Override
+  public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+    return enqueue(new WheelTask<Void>(
+        Executors.callable(checkNotNull(command, "command"), (Void) null),
+        deadlineAfter(delay, unit), 0));
+  }
+
+  @Override
+  public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+    return enqueue(new WheelTask<V>(
+        checkNotNull(callable, "callable"), deadlineAfter(delay, unit), 0));
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleAtFixedRate(
+      Runnable command, long initialDelay, long period, TimeUnit unit) {
+    checkArgument(period > 0, "period must be positive");
+    return enqueue(new WheelTask<Void>(
+        Executors.callable(checkNotNull(command, "command"), (Void) null),
+        deadlineAfter(initialDelay, unit), unit.toNanos(period)));
+  }
+
+  @Override
+  public ScheduledFuture<?> scheduleWithFixedDelay(
+      Runnable command, long initialDelay, long delay, TimeUnit unit) {
+    checkArgument(delay > 0, "delay must be positive");
+    return enqueue(new WheelTask<Void>(
+        Executors.callable(checkNotNull(command, "command"), (Void) null),
+        deadlineAfter(initialDelay, unit), -unit.toNanos(delay)));
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    schedule(command, 0, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Stops the timer. Unlike {@code ScheduledThreadPoolExecutor}, tasks that have not run yet are
+   * cancelled rather than run.
+   */
+  @Override
+  public void shutdown() {
+    synchronized (stateLock) {
+      state = SHUTDOWN;
+    }
+    LockSupport.unpark(thread);
+  }
+
+  /**
+   * Same as {@link #shutdown}. Tasks that have not run yet are cancelled, so the returned list is
+   * always empty.
+   */
+  @Override
+  public List<Runnable> shutdownNow() {
+    shutdown();
+    return Collections.emptyList();
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return state != RUNNING;
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return terminated.getCount() == 0;
+  }
+
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return terminated.await(timeout, unit);
+  }
+
+  private long deadlineAfter(long delay, TimeUnit unit) {
+    checkNotNull(unit, "unit");
+    // Capped well below overflow; such a task never runs in practice anyway.
+    return System.nanoTime() + Math.min(unit.toNanos(Math.max(delay, 0)), MAX_DELAY_NANOS);
+  }
+
+  /** Rounds up, so that a task is never run before its deadline. */
+  private long tickFor(long deadlineNanos) {
+    long sinceStart = deadlineNanos - startNanos;
+    return sinceStart <= 0 ? 0 : (sinceStart - 1) / tickNanos + 1;
+  }
+
+  private <V> WheelTask<V> enqueue(WheelTask<V> task) {
+    // Once shutdown() returns no more tasks are added, so the timer thread cancels every task that
+    // was accepted and none is left pending forever.
+    synchronized (stateLock) {
+      if (state != RUNNING) {
+        throw new RejectedExecutionException("Timer has been shut down");
+      }
+      pendingTasks.add(task);
+    }
+    // The timer thread publishes wakeupTick before checking pendingTasks one last time, so either
+    // it sees this task or we see the tick it is about to sleep until.
+    if (task.deadlineTick < wakeupTick) {
+      LockSupport.unpark(thread);
+    } else {
+      countHandoff();
+    }
+    return task;
+  }
+
+  /**
+   * Wakes the timer thread once enough tasks and cancellations are waiting for it, so that a
+   * burst of far-off timers that are cancelled again does not pile up in the queues.
+   */
+  private void countHandoff() {
+    if (queuedHandoffs.incrementAndGet() == MAX_QUEUED_HANDOFFS) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  private void runTimer() {
+    try {
+      while (state == RUNNING) {
+        long nowTick = (System.nanoTime() - startNanos) / tickNanos;
+        if (wheelTasks == 0) {
+          // Nothing to cascade or run, so skip the idle ticks.
+          currentTick = Math.max(currentTick, nowTick);
+        }
+        // Reset before draining, so that a hand-off is at worst counted twice, never missed.
+        queuedHandoffs.set(0);
+        transferPendingTasks();
+        unlinkCancelledTasks();
+        while (currentTick < nowTick && state == RUNNING) {
+          // Go straight to the next tick with work rather than visiting every tick in between.
+          long next = nextTickWithWork();
+          if (next > nowTick) {
+            currentTick = nowTick;
+          } else {
+            advance(next);
+          }
+        }
+        long nextTick = nextTickWithWork();
+        wakeupTick = nextTick;
+        if (!pendingTasks.isEmpty() || state != RUNNING) {
+          continue;
+        }
+        if (nextTick == Long.MAX_VALUE) {
+          LockSupport.park(this);
+        } else {
+          long sleepNanos = startNanos + nextTick * tickNanos - System.nanoTime();
+          if (sleepNanos > 0) {
+            LockSupport.parkNanos(this, sleepNanos);
+          }
+        }
+      }
+    } finally {
+      cancelAll();
+      terminated.countDown();
+    }
+  }
+
+  private void transferPendingTasks() {
+    WheelTask<?> task;
+    while ((task = pendingTasks.poll()) != null) {
+      if (task.isCancelled()) {
+        continue;
+      }
+      if (task.deadlineTick <= currentTick) {
+        task.run();
+      } else {
+        place(task);
+      }
+    }
+  }
+
+  private void unlinkCancelledTasks() {
+    WheelTask<?> task;
+    while ((task = cancelledTasks.poll()) != null) {
+      if (task.level >= 0) {
+        unlink(task);
+      }
+    }
+  }
+
+  /** Moves the wheel forward to {@code tick}, running every task that is due at it. */
+  private void advance(long tick) {
+    currentTick = tick;
+    if ((tick & WHEEL_MASK) == 0) {
+      // Coarser levels are cascaded from the top down, so that a task can fall through several
+      // levels at once.
+      int level = 1;
+      while (level < LEVELS - 1 && slotAt(tick, level) == 0) {
+        level++;
+      }
+      for (; level > 0; level--) {
+        WheelTask<?> task = detach(level, slotAt(tick, level));
+        while (task != null) {
+          WheelTask<?> next = task.next;
+          task.next = null;
+          if (!task.isCancelled()) {
+            place(task);
+          }
+          task = next;
+        }
+      }
+    }
+    WheelTask<?> task = detach(0, slotAt(tick, 0));
+    while (task != null) {
+      WheelTask<?> next = task.next;
+      task.next = null;
+      if (task.deadlineTick > tick) {
+        place(task);
+      } else {
+        task.run();
+      }
+      task = next;
+    }
+  }
+
+  /**
+   * Returns the next tick after the current one at which there is work: the earliest tick at which
+   * a non-empty slot of any level comes up, to be run for the finest level or cascaded for the
+   * others.
+   */
+  private long nextTickWithWork() {
+    if (wheelTasks == 0) {
+      return Long.MAX_VALUE;
+    }
+    long next = Long.MAX_VALUE;
+    for (int level = 0; level < LEVELS; level++) {
+      next = Math.min(next, nextTickWithWork(level));
+    }
+    return next;
+  }
+
+  /**
+   * Returns the next tick after the current one at which a non-empty slot of {@code level} comes
+   * up, or {@code Long.MAX_VALUE} if the level is empty. A slot of a coarser level comes up at the
+   * first tick within it whose bits for the finer levels are all zero, which is when
+   * {@link #advance} cascades it.
+   */
+  private long nextTickWithWork(int level) {
+    int shift = WHEEL_BITS * level;
+    int rotationShift = shift + WHEEL_BITS;
+    long rotationStart = (currentTick >>> rotationShift) << rotationShift;
+    int currentSlot = slotAt(currentTick, level);
+    // Slots after the current one come up in this rotation of the level, the others in the next.
+    for (int i = 1; i <= WHEEL_SIZE; i++) {
+      int slot = (currentSlot + i) & WHEEL_MASK;
+      if (wheels[level][slot] != null) {
+        long tick = rotationStart + ((long) slot << shift);
+        return tick > currentTick ? tick : tick + (1L << rotationShift);
+      }
+    }
+    return Long.MAX_VALUE;
+  }
+
+  private void place(WheelTask<?> task) {
+    long delta = Math.min(task.deadlineTick - currentTick, MAX_DELTA_TICKS);
+    long tick = currentTick + delta;
+    int level = 0;
+    while (level < LEVELS - 1 && delta >= 1L << (WHEEL_BITS * (level + 1))) {
+      level++;
+    }
+    int slot = slotAt(tick, level);
+    WheelTask<?> head = wheels[level][slot];
+    task.level = level;
+    task.slot = slot;
+    task.prev = null;
+    task.next = head;
+    if (head != null) {
+      head.prev = task;
+    }
+    wheels[level][slot] = task;
+    wheelTasks++;
+  }
+
+  private void unlink(WheelTask<?> task) {
+    if (task.prev != null) {
+      task.prev.next = task.next;
+    } else {
+      wheels[task.level][task.slot] = task.next;
+    }
+    if (task.next != null) {
+      task.next.prev = task.prev;
+    }
+    task.prev = null;
+    task.next = null;
+    task.level = -1;
+    wheelTasks--;
+  }
+
+  /** Empties a slot, returning its tasks as a list linked through {@code next}. */
+  private WheelTask<?> detach(int level, int slot) {
+    WheelTask<?> head = wheels[level][slot];
+    wheels[level][slot] = null;
+    for (WheelTask<?> task = head; task != null; task = task.next) {
+      task.prev = null;
+      task.level = -1;
+      wheelTasks--;
+    }
+    return head;
+  }
+
+  private void cancelAll() {
+    List<WheelTask<?>> tasks = new ArrayList<>();
+    for (WheelTask<?>[] wheel : wheels) {
+      for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+        for (WheelTask<?> task = wheel[slot]; task != null; task = task.next) {
+          tasks.add(task);
+        }
+        wheel[slot] = null;
+      }
+    }
+    wheelTasks = 0;
+    WheelTask<?> task;
+    while ((task = pendingTasks.poll()) != null) {
+      tasks.add(task);
+    }
+    for (WheelTask<?> t : tasks) {
+      t.cancel(false);
+    }
+    cancelledTasks.clear();
+  }
+
+  private static int slotAt(long tick, int level) {
+    return (int) ((tick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+  }
+
+  private final class WheelTask<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+    /** Zero for one-shot tasks, positive for a fixed rate and negative for a fixed delay. */
+    private final long periodNanos;
+    private volatile long deadlineNanos;
+    private volatile long deadlineTick;
+
+    // Wheel links, only accessed by the timer thread.
+    private WheelTask<?> prev;
+    private WheelTask<?> next;
+    private int level = -1;
+    private int slot;
+
+    WheelTask(Callable<V> callable, long deadlineNanos, long periodNanos) {
+      super(callable);
+      this.periodNanos = periodNanos;
+      this.deadlineNanos = deadlineNanos;
+      this.deadlineTick = tickFor(deadlineNanos);
+    }
+
+    @Override
+    public boolean isPeriodic() {
+      return periodNanos != 0;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+      if (other == this) {
+        return 0;
+      }
+      long diff = getDelay(TimeUnit.NANOSECONDS) - other.getDelay(TimeUnit.NANOSECONDS);
+      return diff < 0 ? -1 : diff > 0 ? 1 : 0;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      boolean cancelled = super.cancel(mayInterruptIfRunning);
+      if (cancelled) {
+        // Unlinked by the timer thread the next time it wakes up.
+        cancelledTasks.add(this);
+        countHandoff();
+      }
+      return cancelled;
+    }
+
+    /** Only called on the timer thread. */
+    @Override
+    public void run() {
+      if (!isPeriodic()) {
+        super.run();
+        return;
+      }
+      if (!runAndReset() || state != RUNNING) {
+        return;
+      }
+      deadlineNanos =
+          periodNanos > 0 ? deadlineNanos + periodNanos : System.nanoTime() - periodNanos;
+      // A fixed-rate task that has fallen behind catches up one tick at a time.
+      deadlineTick = Math.max(tickFor(deadlineNanos), currentTick + 1);
+      place(this);
+    }
+  }
+}
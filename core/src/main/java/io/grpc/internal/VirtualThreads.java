@@ -0,0 +1,88 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+
+/**
+ * Access to virtual threads, which are only available on Java 21 and later and so are looked up
+ * reflectively.
+ */
+public final class VirtualThreads {
+  private static final Logger log = Logger.getLogger(VirtualThreads.class.getName());
+
+  @Nullable
+  private static final ThreadFactory FACTORY = createFactory("grpc-virtual-executor-");
+  @Nullable
+  private static final Executor EXECUTOR = FACTORY == null ? null : new Executor() {
+    @Override
+    public void execute(Runnable command) {
+      FACTORY.newThread(command).start();
+    }
+
+    @Override
+    public String toString() {
+      return "VirtualThreadPerTaskExecutor";
+    }
+  };
+
+  private VirtualThreads() {}
+
+  /**
+   * Returns whether virtual threads are available on this JVM.
+   */
+  public static boolean isSupported() {
+    return FACTORY != null;
+  }
+
+  /**
+   * Returns an executor that runs each task on a new virtual thread. It needs no shutdown.
+   *
+   * @throws UnsupportedOperationException if virtual threads are not available
+   */
+  public static Executor executor() {
+    if (EXECUTOR == null) {
+      throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+    }
+    return EXECUTOR;
+  }
+
+  @Nullable
+  private static ThreadFactory createFactory(String namePrefix) {
+    try {
+      // Thread.ofVirtual().name(namePrefix, 0).factory()
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Method name = builderClass.getMethod("name", String.class, long.class);
+      builder = name.invoke(builder, namePrefix, 0L);
+      return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+    } catch (ClassNotFoundException e) {
+      return null;
+    } catch (NoSuchMethodException e) {
+      return null;
+    } catch (Exception e) {
+      // Present but not usable, for instance a preview feature that is not enabled.
+      log.log(Level.FINE, "Virtual threads are not available", e);
+      return null;
+    }
+  }
+}
@@ -16,6 +16,8 @@
 
 package io.grpc.internal;
 
+import java.nio.ByteBuffer;
+
 /**
  * An interface for a byte buffer that can only be written to.
  * {@link WritableBuffer}s are a generic way to transfer bytes to
@@ -50,6 +52,31 @@ public interface WritableBuffer {
    */
   int readableBytes();
 
+  /**
+   * Indicates whether or not {@link #getByteBuffer} operation is supported for this buffer.
+   */
+  boolean byteBufferSupported();
+
+  /**
+   * Gets a {@link ByteBuffer} that shares memory with the next {@code length} writable bytes of
+   * this buffer, so that they can be filled in without an intermediate copy. The returned buffer
+   * has exactly {@code length} bytes remaining, starting at its position. Writing to it does not
+   * change this buffer until {@link #commitByteBuffer} is called. This is an optional method, so
+   * callers should first check {@link #byteBufferSupported}.
+   *
+   * @throws IndexOutOfBoundsException if {@code length} is greater than {@link #writableBytes()}
+   * @throws UnsupportedOperationException the buffer does not support this method.
+   */
+  ByteBuffer getByteBuffer(int length);
+
+  /**
+   * Makes {@code length} bytes written through the buffer returned by {@link #getByteBuffer}
+   * readable, as if they had been written with {@link #write(byte[], int, int)}.
+   *
+   * @throws UnsupportedOperationException the buffer does not support this method.
+   */
+  void commitByteBuffer(int length);
+
   /**
    * Releases the buffer, indicating to the {@link WritableBufferAllocator} that
    * this buffer is no longer used and its resources can be reused.
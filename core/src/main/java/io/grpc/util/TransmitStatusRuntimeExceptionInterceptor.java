@@ -22,6 +22,7 @@ import io.grpc.Attributes;
 import io.grpc.ExperimentalApi;
 import io.grpc.ForwardingServerCall;
 import io.grpc.ForwardingServerCallListener;
+import io.grpc.MessageCompressionPolicy;
 import io.grpc.Metadata;
 import io.grpc.ServerCall;
 import io.grpc.ServerCallHandler;
@@ -229,6 +230,16 @@ public final class TransmitStatusRuntimeExceptionInterceptor implements ServerIn
       });
     }
 
+    @Override
+    public void setMessageCompressionPolicy(final MessageCompressionPolicy policy) {
+      serializingExecutor.execute(new Runnable() {
+        @Override
+        public void run() {
+          SerializingServerCall.super.setMessageCompressionPolicy(policy);
+        }
+      });
+    }
+
     @Override
     public Attributes getAttributes() {
       final SettableFuture<Attributes> retVal = SettableFuture.create();
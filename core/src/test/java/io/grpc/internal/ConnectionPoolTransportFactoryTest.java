@@ -0,0 +1,348 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.ChannelCredentials;
+import io.grpc.ChannelLogger;
+import io.grpc.ClientStreamTracer;
+import io.grpc.InternalChannelz.SocketStats;
+import io.grpc.InternalLogId;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.internal.ClientStreamListener.RpcProgress;
+import io.grpc.internal.ClientTransportFactory.ClientTransportOptions;
+import io.grpc.testing.TestMethodDescriptors;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.InOrder;
+
+/** Unit tests for {@link ConnectionPoolTransportFactory}. */
+@RunWith(JUnit4.class)
+public class ConnectionPoolTransportFactoryTest {
+  private static final int MAX_CONNECTIONS = 2;
+  private static final int STREAMS_PER_CONNECTION = 2;
+  private static final MethodDescriptor<Void, Void> method = TestMethodDescriptors.voidMethod();
+
+  private final List<FakeTransport> transports = new ArrayList<>();
+  private final ClientTransportFactory delegate = new ClientTransportFactory() {
+    @Override
+    public ConnectionClientTransport newClientTransport(
+        SocketAddress serverAddress, ClientTransportOptions options,
+        ChannelLogger channelLogger) {
+      FakeTransport transport = new FakeTransport();
+      transports.add(transport);
+      return transport;
+    }
+
+    @Override
+    public ScheduledExecutorService getScheduledExecutorService() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SwapChannelCredentialsResult swapChannelCredentials(ChannelCredentials channelCreds) {
+      return null;
+    }
+
+    @Override
+    public void close() {}
+  };
+  private final ManagedClientTransport.Listener listener =
+      mock(ManagedClientTransport.Listener.class);
+  private final FakeClock fakeClock = new FakeClock();
+  // Backs off for 10, 20, 40... nanoseconds.
+  private final BackoffPolicy.Provider backoffPolicyProvider = new BackoffPolicy.Provider() {
+    @Override
+    public BackoffPolicy get() {
+      return new BackoffPolicy() {
+        long backoffNanos = 5;
+
+        @Override
+        public long nextBackoffNanos() {
+          return backoffNanos *= 2;
+        }
+      };
+    }
+  };
+  private ConnectionClientTransport transport;
+
+  @Before
+  public void setUp() {
+    transport = new ConnectionPoolTransportFactory(
+        delegate, MAX_CONNECTIONS, STREAMS_PER_CONNECTION, backoffPolicyProvider,
+        fakeClock.getStopwatchSupplier()).newClientTransport(
+            new InetSocketAddress("localhost", 443), new ClientTransportOptions(),
+            mock(ChannelLogger.class));
+    assertThat(transport.start(listener)).isNull();
+    assertThat(transports).hasSize(1);
+    transports.get(0).listener.transportReady();
+    verify(listener).transportReady();
+  }
+
+  @Test
+  public void opensConnectionOnceStreamsReachLimit() {
+    FakeTransport first = transports.get(0);
+    newStream();
+    newStream();
+    assertThat(transports).hasSize(1);
+
+    // Goes to the only ready connection, while the new one connects.
+    newStream();
+    assertThat(transports).hasSize(2);
+    assertThat(first.streams).hasSize(3);
+    newStream();
+    assertThat(transports).hasSize(2);
+
+    FakeTransport second = transports.get(1);
+    second.listener.transportReady();
+    newStream();
+    newStream();
+    assertThat(first.streams).hasSize(4);
+    assertThat(second.streams).hasSize(2);
+    // Only reported for the first connection.
+    verify(listener).transportReady();
+  }
+
+  @Test
+  public void doesNotGrowBeyondMaxConnections() {
+    for (int i = 0; i < STREAMS_PER_CONNECTION + 1; i++) {
+      newStream();
+    }
+    transports.get(1).listener.transportReady();
+    for (int i = 0; i < MAX_CONNECTIONS * STREAMS_PER_CONNECTION * 2; i++) {
+      newStream();
+    }
+
+    assertThat(transports).hasSize(MAX_CONNECTIONS);
+  }
+
+  @Test
+  public void backsOffAfterNewConnectionFailsToConnect() {
+    for (int i = 0; i < STREAMS_PER_CONNECTION + 1; i++) {
+      newStream();
+    }
+    assertThat(transports).hasSize(2);
+    failToConnect(transports.get(1));
+
+    newStream();
+    assertThat(transports).hasSize(2);
+    fakeClock.forwardNanos(10);
+    newStream();
+    assertThat(transports).hasSize(3);
+
+    // Backs off for longer after failing again.
+    failToConnect(transports.get(2));
+    fakeClock.forwardNanos(19);
+    newStream();
+    assertThat(transports).hasSize(3);
+    fakeClock.forwardNanos(1);
+    newStream();
+    assertThat(transports).hasSize(4);
+
+    // Connecting resets the backoff, and losing a connection that was ready does not back off.
+    FakeTransport connected = transports.get(3);
+    connected.listener.transportReady();
+    newStream();
+    assertThat(connected.streams).hasSize(1);
+    connected.listener.transportShutdown(Status.UNAVAILABLE.withDescription("GOAWAY"));
+    newStream();
+    assertThat(transports).hasSize(5);
+  }
+
+  @Test
+  public void closesIdleConnection() {
+    FakeTransport first = transports.get(0);
+    newStream();
+    newStream();
+    newStream();
+    FakeTransport second = transports.get(1);
+    second.listener.transportReady();
+    newStream();
+    assertThat(second.streams).hasSize(1);
+
+    // The first connection is still over the limit.
+    second.streams.get(0).close();
+    assertThat(second.shutdownStatus).isNull();
+
+    newStream();
+    first.streams.get(0).close();
+    first.streams.get(1).close();
+    second.streams.get(1).close();
+    assertThat(second.shutdownStatus).isNotNull();
+    assertThat(first.shutdownStatus).isNull();
+  }
+
+  @Test
+  public void inUseWhileAnyConnectionIsInUse() {
+    newStream();
+    newStream();
+    newStream();
+    FakeTransport first = transports.get(0);
+    FakeTransport second = transports.get(1);
+    second.listener.transportReady();
+
+    first.listener.transportInUse(true);
+    second.listener.transportInUse(true);
+    first.listener.transportInUse(false);
+    verify(listener, never()).transportInUse(false);
+    second.listener.transportInUse(false);
+
+    InOrder inOrder = inOrder(listener);
+    inOrder.verify(listener).transportInUse(true);
+    inOrder.verify(listener).transportInUse(false);
+  }
+
+  @Test
+  public void firstConnectionShutdownShutsDownPool() {
+    newStream();
+    newStream();
+    newStream();
+    FakeTransport first = transports.get(0);
+    FakeTransport second = transports.get(1);
+    second.listener.transportReady();
+
+    Status status = Status.UNAVAILABLE.withDescription("GOAWAY");
+    first.listener.transportShutdown(status);
+    verify(listener).transportShutdown(status);
+    assertThat(second.shutdownStatus).isSameInstanceAs(status);
+
+    // Streams go to the first connection, which fails them.
+    newStream();
+    assertThat(first.streams).hasSize(4);
+
+    first.listener.transportTerminated();
+    verify(listener, never()).transportTerminated();
+    second.listener.transportShutdown(status);
+    second.listener.transportTerminated();
+    verify(listener).transportShutdown(status);
+    verify(listener).transportTerminated();
+  }
+
+  @Test
+  public void shutdownShutsDownAllConnections() {
+    newStream();
+    newStream();
+    newStream();
+    FakeTransport first = transports.get(0);
+    FakeTransport second = transports.get(1);
+
+    Status status = Status.UNAVAILABLE.withDescription("shutdown");
+    transport.shutdown(status);
+    assertThat(first.shutdownStatus).isSameInstanceAs(status);
+    assertThat(second.shutdownStatus).isSameInstanceAs(status);
+
+    // Connecting when shut down; the first connection reports the shutdown.
+    second.listener.transportShutdown(status);
+    second.listener.transportTerminated();
+    verify(listener, never()).transportShutdown(status);
+    first.listener.transportShutdown(status);
+    first.listener.transportTerminated();
+    verify(listener).transportShutdown(status);
+    verify(listener).transportTerminated();
+  }
+
+  private static void failToConnect(FakeTransport transport) {
+    transport.listener.transportShutdown(Status.UNAVAILABLE.withDescription("connection refused"));
+    transport.listener.transportTerminated();
+  }
+
+  private void newStream() {
+    ClientStream stream = transport.newStream(
+        method, new Metadata(), CallOptions.DEFAULT, new ClientStreamTracer[0]);
+    stream.start(mock(ClientStreamListener.class));
+  }
+
+  private static final class FakeTransport implements ConnectionClientTransport {
+    final List<FakeStream> streams = new ArrayList<>();
+    ManagedClientTransport.Listener listener;
+    Status shutdownStatus;
+
+    @Override
+    public Runnable start(Listener listener) {
+      this.listener = listener;
+      return null;
+    }
+
+    @Override
+    public ClientStream newStream(
+        MethodDescriptor<?, ?> method, Metadata headers, CallOptions callOptions,
+        ClientStreamTracer[] tracers) {
+      FakeStream stream = new FakeStream();
+      streams.add(stream);
+      return stream;
+    }
+
+    @Override
+    public void shutdown(Status reason) {
+      shutdownStatus = reason;
+    }
+
+    @Override
+    public void shutdownNow(Status reason) {
+      shutdownStatus = reason;
+    }
+
+    @Override
+    public void ping(PingCallback callback, Executor executor) {}
+
+    @Override
+    public Attributes getAttributes() {
+      return Attributes.EMPTY;
+    }
+
+    @Override
+    public ListenableFuture<SocketStats> getStats() {
+      return null;
+    }
+
+    @Override
+    public InternalLogId getLogId() {
+      return InternalLogId.allocate(getClass(), null);
+    }
+  }
+
+  private static final class FakeStream extends NoopClientStream {
+    ClientStreamListener listener;
+
+    @Override
+    public void start(ClientStreamListener listener) {
+      this.listener = listener;
+    }
+
+    void close() {
+      listener.closed(Status.OK, RpcProgress.PROCESSED, new Metadata());
+    }
+  }
+}
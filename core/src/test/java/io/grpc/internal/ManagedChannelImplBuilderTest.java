@@ -163,6 +163,20 @@ public class ManagedChannelImplBuilderTest {
     assertEquals(MoreExecutors.directExecutor(), builder.executorPool.getObject());
   }
 
+  @Test
+  public void useVirtualThreads() {
+    if (VirtualThreads.isSupported()) {
+      assertEquals(builder, builder.useVirtualThreads());
+      assertEquals(VirtualThreads.executor(), builder.executorPool.getObject());
+    } else {
+      try {
+        builder.useVirtualThreads();
+        fail("Should have thrown");
+      } catch (UnsupportedOperationException expected) {
+      }
+    }
+  }
+
   @Test
   public void offloadExecutor_normal() {
     Executor executor = mock(Executor.class);
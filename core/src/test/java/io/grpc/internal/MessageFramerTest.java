@@ -17,6 +17,7 @@
 package io.grpc.internal;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -26,14 +27,20 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
+import io.grpc.ByteBufferDrainable;
 import io.grpc.Codec;
+import io.grpc.InternalMessageCompressionPolicy;
+import io.grpc.MessageCompressionPolicy;
 import io.grpc.StreamTracer;
 import io.grpc.internal.testing.TestStreamTracer.TestBaseStreamTracer;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -85,6 +92,36 @@ public class MessageFramerTest {
     checkStats(2, 2);
   }
 
+  @Test
+  public void byteBufferDrainablePayload() {
+    ByteBufferDrainableInputStream message =
+        new ByteBufferDrainableInputStream(new byte[] {3, 14});
+    framer.writePayload(message);
+    framer.flush();
+
+    assertTrue(message.drainedToByteBuffer);
+    verify(sink).deliverFrame(toWriteBuffer(new byte[] {0, 0, 0, 0, 2, 3, 14}), false, true, 1);
+    assertEquals(1, allocator.allocCount);
+    verifyNoMoreInteractions(sink);
+    checkStats(2, 2);
+  }
+
+  @Test
+  public void byteBufferDrainablePayload_doesNotFitInBuffer() {
+    allocator = new BytesWritableBufferAllocator(6, 6);
+    framer = new MessageFramer(sink, allocator, statsTraceCtx);
+    ByteBufferDrainableInputStream message =
+        new ByteBufferDrainableInputStream(new byte[] {3, 14});
+    framer.writePayload(message);
+    framer.flush();
+
+    assertFalse(message.drainedToByteBuffer);
+    verify(sink).deliverFrame(toWriteBuffer(new byte[] {0, 0, 0, 0, 2, 3}), false, false, 1);
+    verify(sink).deliverFrame(toWriteBuffer(new byte[] {14}), false, true, 0);
+    verifyNoMoreInteractions(sink);
+    checkStats(2, 2);
+  }
+
   @Test
   public void simpleUnknownLengthPayload() {
     writeUnknownLength(framer, new byte[]{3, 14});
@@ -322,6 +359,52 @@ public class MessageFramerTest {
     checkStats(1000, 1000);
   }
 
+  @Test
+  public void dontCompressBelowPolicyMinMessageSize() {
+    allocator = new BytesWritableBufferAllocator(100, Integer.MAX_VALUE);
+    MessageCompressionPolicy policy =
+        MessageCompressionPolicy.newBuilder().setMinMessageSize(1001).build();
+    framer = new MessageFramer(sink, allocator, statsTraceCtx)
+        .setCompressor(new PolicyCompressor(new Codec.Gzip(), policy, "service/method"));
+    writeKnownLength(framer, new byte[1000]);
+    framer.flush();
+    verify(sink).deliverFrame(frameCaptor.capture(), eq(false), eq(true), eq(1));
+
+    ByteWritableBuffer buffer = frameCaptor.getAllValues().get(0);
+    assertEquals(0x0, buffer.data[0]);
+    checkStats(1000, 1000);
+  }
+
+  @Test
+  public void compressedWithPolicy_reportsOutcome() {
+    final List<long[]> compressed = new ArrayList<>();
+    StreamTracer compressionTracer = new StreamTracer() {
+      @Override
+      public void outboundMessageCompressed(
+          int seqNo, long uncompressedSize, long compressedSize, long compressionNanos) {
+        compressed.add(new long[] {seqNo, uncompressedSize, compressedSize});
+      }
+    };
+    allocator = new BytesWritableBufferAllocator(100, Integer.MAX_VALUE);
+    MessageCompressionPolicy policy =
+        MessageCompressionPolicy.newBuilder().setMaxCompressionRatio(0.5).build();
+    framer = new MessageFramer(
+            sink, allocator, new StatsTraceContext(new StreamTracer[] {compressionTracer}))
+        .setCompressor(new PolicyCompressor(new Codec.Gzip(), policy, "service/method"));
+    byte[] incompressible = new byte[1000];
+    new Random(1).nextBytes(incompressible);
+    writeKnownLength(framer, incompressible);
+    writeKnownLength(framer, incompressible);
+    framer.flush();
+
+    // Only the first message was compressed; it didn't shrink enough so the second one was not.
+    assertEquals(1, compressed.size());
+    assertEquals(0, compressed.get(0)[0]);
+    assertEquals(1000, compressed.get(0)[1]);
+    assertTrue(compressed.get(0)[2] > 500);
+    assertFalse(InternalMessageCompressionPolicy.shouldCompress(policy, "service/method", 1000));
+  }
+
   @Test
   public void closeIsRentrantSafe() {
     MessageFramer.Sink reentrant = new MessageFramer.Sink() {
@@ -371,6 +454,24 @@ public class MessageFramerTest {
     // TODO(carl-mastrangelo): add framer.flush() here.
   }
 
+  private static final class ByteBufferDrainableInputStream extends ByteArrayInputStream
+      implements ByteBufferDrainable {
+    boolean drainedToByteBuffer;
+
+    ByteBufferDrainableInputStream(byte[] bytes) {
+      super(bytes);
+    }
+
+    @Override
+    public int drainTo(ByteBuffer target) {
+      drainedToByteBuffer = true;
+      int length = available();
+      target.put(buf, pos, length);
+      pos += length;
+      return length;
+    }
+  }
+
   /**
    * @param sizes in the format {wire0, uncompressed0, wire1, uncompressed1, ...}
    */
@@ -422,6 +523,24 @@ public class MessageFramerTest {
       return writeIdx;
     }
 
+    @Override
+    public boolean byteBufferSupported() {
+      return true;
+    }
+
+    @Override
+    public ByteBuffer getByteBuffer(int length) {
+      if (length > writableBytes()) {
+        throw new IndexOutOfBoundsException();
+      }
+      return ByteBuffer.wrap(data, writeIdx, length);
+    }
+
+    @Override
+    public void commitByteBuffer(int length) {
+      writeIdx += length;
+    }
+
     @Override
     public void release() {
       data = null;
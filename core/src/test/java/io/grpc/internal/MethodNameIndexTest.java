@@ -0,0 +1,96 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link MethodNameIndex}. */
+@RunWith(JUnit4.class)
+public class MethodNameIndexTest {
+
+  @Test
+  public void lookupReturnsRegisteredInstance() {
+    String name = new String("pkg.Service/Method");
+    MethodNameIndex index = MethodNameIndex.create(Arrays.asList(name, "pkg.Service/Other"));
+
+    byte[] path = "/pkg.Service/Method".getBytes(US_ASCII);
+    assertThat(index.lookup(path, 1, path.length - 1)).isSameInstanceAs(name);
+  }
+
+  @Test
+  public void lookupHonorsOffsetAndLength() {
+    MethodNameIndex index = MethodNameIndex.create(Arrays.asList("a/b", "a/bc"));
+
+    byte[] bytes = "xx/a/bcyy".getBytes(US_ASCII);
+    assertThat(index.lookup(bytes, 3, 3)).isEqualTo("a/b");
+    assertThat(index.lookup(bytes, 3, 4)).isEqualTo("a/bc");
+    assertThat(index.lookup(bytes, 3, 2)).isNull();
+  }
+
+  @Test
+  public void lookupOfUnknownNameReturnsNull() {
+    MethodNameIndex index = MethodNameIndex.create(Collections.singletonList("a/b"));
+
+    byte[] bytes = "a/c".getBytes(US_ASCII);
+    assertThat(index.lookup(bytes, 0, bytes.length)).isNull();
+    assertThat(index.lookup(new byte[0], 0, 0)).isNull();
+  }
+
+  @Test
+  public void emptyIndexFindsNothing() {
+    byte[] bytes = "a/b".getBytes(US_ASCII);
+    assertThat(MethodNameIndex.empty().lookup(bytes, 0, bytes.length)).isNull();
+    assertThat(MethodNameIndex.create(Collections.<String>emptyList()).lookup(bytes, 0, 3))
+        .isNull();
+  }
+
+  @Test
+  public void nonAsciiNamesAreNotIndexed() {
+    String name = "pkg.Serv\u00e9/M";
+    MethodNameIndex index = MethodNameIndex.create(Collections.singletonList(name));
+
+    // Transports decode one char per byte, so such a name could only match by its Latin-1 bytes.
+    byte[] bytes = name.getBytes(ISO_8859_1);
+    assertThat(index.lookup(bytes, 0, bytes.length)).isNull();
+  }
+
+  @Test
+  public void manyNames() {
+    List<String> names = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      names.add("pkg.Service" + (i % 50) + "/Method" + i);
+    }
+    MethodNameIndex index = MethodNameIndex.create(names);
+
+    for (String name : names) {
+      byte[] bytes = name.getBytes(US_ASCII);
+      assertThat(index.lookup(bytes, 0, bytes.length)).isSameInstanceAs(name);
+    }
+    byte[] missing = "pkg.Service0/Method5000".getBytes(US_ASCII);
+    assertThat(index.lookup(missing, 0, missing.length)).isNull();
+  }
+}
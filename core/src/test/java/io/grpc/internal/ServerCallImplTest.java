@@ -37,10 +37,12 @@ import io.grpc.CompressorRegistry;
 import io.grpc.Context;
 import io.grpc.DecompressorRegistry;
 import io.grpc.InternalChannelz.ServerStats;
+import io.grpc.KnownLength;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
 import io.grpc.MethodDescriptor.Marshaller;
 import io.grpc.MethodDescriptor.MethodType;
+import io.grpc.PreSerializedMessage;
 import io.grpc.ServerCall;
 import io.grpc.Status;
 import io.grpc.internal.ServerCallImpl.ServerStreamListenerImpl;
@@ -190,6 +192,34 @@ public class ServerCallImplTest {
     verify(stream).flush();
   }
 
+  @Test
+  public void sendPreSerializedMessage() throws Exception {
+    PreSerializedMessage<Long> message =
+        PreSerializedMessage.create(UNARY_METHOD.getResponseMarshaller(), 1234L);
+    call.sendHeaders(new Metadata());
+    call.sendPreSerializedMessage(message);
+
+    ArgumentCaptor<InputStream> streamCaptor = ArgumentCaptor.forClass(InputStream.class);
+    verify(stream).writeMessage(streamCaptor.capture());
+    verify(stream).flush();
+    assertTrue(streamCaptor.getValue() instanceof KnownLength);
+    assertEquals(
+        "1234", CharStreams.toString(new InputStreamReader(streamCaptor.getValue(), UTF_8)));
+  }
+
+  @Test
+  public void sendPreSerializedMessage_otherMarshallerSerializesAgain() throws Exception {
+    PreSerializedMessage<Long> message =
+        PreSerializedMessage.create(new LongMarshaller(), 1234L);
+    call.sendHeaders(new Metadata());
+    call.sendPreSerializedMessage(message);
+
+    ArgumentCaptor<InputStream> streamCaptor = ArgumentCaptor.forClass(InputStream.class);
+    verify(stream).writeMessage(streamCaptor.capture());
+    assertTrue(streamCaptor.getValue() instanceof ByteArrayInputStream);
+    assertFalse(streamCaptor.getValue() instanceof KnownLength);
+  }
+
   @Test
   public void sendMessage_failsOnClosed() {
     call.sendHeaders(new Metadata());
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.ChannelCredentials;
+import io.grpc.ChannelLogger;
+import io.grpc.ClientStreamTracer;
+import io.grpc.InternalChannelz.SocketStats;
+import io.grpc.InternalLogId;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.internal.ClientStreamListener.RpcProgress;
+import io.grpc.internal.ClientTransportFactory.ClientTransportOptions;
+import io.grpc.testing.TestMethodDescriptors;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link SharedTransportFactory}. */
+@RunWith(JUnit4.class)
+public class SharedTransportFactoryTest {
+  private static final MethodDescriptor<Void, Void> method = TestMethodDescriptors.voidMethod();
+
+  private final List<FakeTransport> transports = new ArrayList<>();
+  private int delegateCloses;
+  private final ClientTransportFactory delegate = new ClientTransportFactory() {
+    @Override
+    public ConnectionClientTransport newClientTransport(
+        SocketAddress serverAddress, ClientTransportOptions options,
+        ChannelLogger channelLogger) {
+      FakeTransport transport = new FakeTransport();
+      transports.add(transport);
+      return transport;
+    }
+
+    @Override
+    public ScheduledExecutorService getScheduledExecutorService() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SwapChannelCredentialsResult swapChannelCredentials(ChannelCredentials channelCreds) {
+      return null;
+    }
+
+    @Override
+    public void close() {
+      delegateCloses++;
+    }
+  };
+  // The registry is process-wide, so each test uses its own key.
+  private final Object sharingKey = new Object();
+  private final SocketAddress address = new InetSocketAddress("localhost", 443);
+
+  @Test
+  public void sameKeySharesConnection() {
+    ManagedClientTransport.Listener listener1 = mock(ManagedClientTransport.Listener.class);
+    ManagedClientTransport.Listener listener2 = mock(ManagedClientTransport.Listener.class);
+    ConnectionClientTransport transport1 = newTransport(sharingKey, listener1);
+    FakeTransport connection = transports.get(0);
+    connection.listener.transportReady();
+    verify(listener1).transportReady();
+
+    // Attaching to a ready connection reports it ready.
+    ConnectionClientTransport transport2 = newTransport(sharingKey, listener2);
+    assertThat(transports).hasSize(1);
+    verify(listener2).transportReady();
+
+    newStream(transport1);
+    newStream(transport2);
+    assertThat(connection.streams).hasSize(2);
+    verify(listener1).transportInUse(true);
+    verify(listener2).transportInUse(true);
+
+    connection.streams.get(1).close();
+    verify(listener2).transportInUse(false);
+    verify(listener1, never()).transportInUse(false);
+  }
+
+  @Test
+  public void differentKeysDoNotShare() {
+    newTransport(sharingKey, mock(ManagedClientTransport.Listener.class));
+    newTransport(new Object(), mock(ManagedClientTransport.Listener.class));
+
+    assertThat(transports).hasSize(2);
+  }
+
+  @Test
+  public void lastShutdownShutsDownConnection() {
+    ManagedClientTransport.Listener listener1 = mock(ManagedClientTransport.Listener.class);
+    ManagedClientTransport.Listener listener2 = mock(ManagedClientTransport.Listener.class);
+    ConnectionClientTransport transport1 = newTransport(sharingKey, listener1);
+    ConnectionClientTransport transport2 = newTransport(sharingKey, listener2);
+    FakeTransport connection = transports.get(0);
+    connection.listener.transportReady();
+    newStream(transport1);
+
+    Status status = Status.UNAVAILABLE.withDescription("shutdown");
+    transport1.shutdown(status);
+    verify(listener1).transportShutdown(status);
+    assertThat(connection.shutdownStatus).isNull();
+    // Streams of a shut down transport fail, while those started before continue.
+    newStream(transport1);
+    assertThat(connection.streams).hasSize(1);
+    verify(listener1, never()).transportTerminated();
+    connection.streams.get(0).close();
+    verify(listener1).transportTerminated();
+
+    transport2.shutdown(status);
+    verify(listener2).transportShutdown(status);
+    verify(listener2).transportTerminated();
+    assertThat(connection.shutdownStatus).isSameInstanceAs(status);
+  }
+
+  @Test
+  public void connectionShutdownShutsDownTransports() {
+    ManagedClientTransport.Listener listener1 = mock(ManagedClientTransport.Listener.class);
+    ManagedClientTransport.Listener listener2 = mock(ManagedClientTransport.Listener.class);
+    newTransport(sharingKey, listener1);
+    newTransport(sharingKey, listener2);
+    FakeTransport connection = transports.get(0);
+
+    Status status = Status.UNAVAILABLE.withDescription("GOAWAY");
+    connection.listener.transportShutdown(status);
+    verify(listener1).transportShutdown(status);
+    verify(listener2).transportShutdown(status);
+
+    // A draining connection is not shared.
+    newTransport(sharingKey, mock(ManagedClientTransport.Listener.class));
+    assertThat(transports).hasSize(2);
+
+    connection.listener.transportTerminated();
+    verify(listener1).transportTerminated();
+    verify(listener2).transportTerminated();
+  }
+
+  @Test
+  public void closeWaitsForConnectionsToTerminate() {
+    SharedTransportFactory factory = new SharedTransportFactory(delegate, sharingKey);
+    ConnectionClientTransport transport = factory.newClientTransport(
+        address, new ClientTransportOptions(), mock(ChannelLogger.class));
+    start(transport, mock(ManagedClientTransport.Listener.class));
+    FakeTransport connection = transports.get(0);
+
+    factory.close();
+    assertThat(delegateCloses).isEqualTo(0);
+    transport.shutdown(Status.UNAVAILABLE);
+    connection.listener.transportShutdown(Status.UNAVAILABLE);
+    assertThat(delegateCloses).isEqualTo(0);
+    connection.listener.transportTerminated();
+    assertThat(delegateCloses).isEqualTo(1);
+  }
+
+  private ConnectionClientTransport newTransport(
+      Object sharingKey, ManagedClientTransport.Listener listener) {
+    ConnectionClientTransport transport = new SharedTransportFactory(delegate, sharingKey)
+        .newClientTransport(address, new ClientTransportOptions(), mock(ChannelLogger.class));
+    start(transport, listener);
+    return transport;
+  }
+
+  private static void start(
+      ConnectionClientTransport transport, ManagedClientTransport.Listener listener) {
+    Runnable runnable = transport.start(listener);
+    if (runnable != null) {
+      runnable.run();
+    }
+  }
+
+  private static void newStream(ClientTransport transport) {
+    ClientStream stream = transport.newStream(
+        method, new Metadata(), CallOptions.DEFAULT, new ClientStreamTracer[0]);
+    stream.start(mock(ClientStreamListener.class));
+  }
+
+  private static final class FakeTransport implements ConnectionClientTransport {
+    final List<FakeStream> streams = new ArrayList<>();
+    ManagedClientTransport.Listener listener;
+    Status shutdownStatus;
+
+    @Override
+    public Runnable start(Listener listener) {
+      this.listener = listener;
+      return null;
+    }
+
+    @Override
+    public ClientStream newStream(
+        MethodDescriptor<?, ?> method, Metadata headers, CallOptions callOptions,
+        ClientStreamTracer[] tracers) {
+      FakeStream stream = new FakeStream();
+      streams.add(stream);
+      return stream;
+    }
+
+    @Override
+    public void shutdown(Status reason) {
+      shutdownStatus = reason;
+    }
+
+    @Override
+    public void shutdownNow(Status reason) {
+      shutdownStatus = reason;
+    }
+
+    @Override
+    public void ping(PingCallback callback, Executor executor) {}
+
+    @Override
+    public Attributes getAttributes() {
+      return Attributes.EMPTY;
+    }
+
+    @Override
+    public ListenableFuture<SocketStats> getStats() {
+      return null;
+    }
+
+    @Override
+    public InternalLogId getLogId() {
+      return InternalLogId.allocate(getClass(), null);
+    }
+  }
+
+  private static final class FakeStream extends NoopClientStream {
+    ClientStreamListener listener;
+
+    @Override
+    public void start(ClientStreamListener listener) {
+      this.listener = listener;
+    }
+
+    void close() {
+      listener.closed(Status.OK, RpcProgress.PROCESSED, new Metadata());
+    }
+  }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.Range;
+import com.google.common.testing.GcFinalization;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link TimingWheelScheduledExecutorService}. */
+@RunWith(JUnit4.class)
+public class TimingWheelScheduledExecutorServiceTest {
+  private final TimingWheelScheduledExecutorService timer =
+      new TimingWheelScheduledExecutorService(
+          MoreExecutors.platformThreadFactory(), 1, TimeUnit.MILLISECONDS);
+
+  @After
+  public void tearDown() throws Exception {
+    timer.shutdown();
+    assertThat(timer.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  public void runsTaskNoEarlierThanDelay() throws Exception {
+    final CountDownLatch ran = new CountDownLatch(1);
+    long start = System.nanoTime();
+    timer.schedule(new Runnable() {
+      @Override
+      public void run() {
+        ran.countDown();
+      }
+    }, 20, TimeUnit.MILLISECONDS);
+
+    assertThat(ran.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(System.nanoTime() - start).isAtLeast(TimeUnit.MILLISECONDS.toNanos(20));
+  }
+
+  @Test
+  public void runsTasksInDeadlineOrder() throws Exception {
+    final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+    final CountDownLatch done = new CountDownLatch(3);
+    for (final int delay : new int[] {300, 10, 100}) {
+      timer.schedule(new Runnable() {
+        @Override
+        public void run() {
+          order.add(delay);
+          done.countDown();
+        }
+      }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    // 300 ms lands in the second level of the wheel and has to be cascaded down.
+    assertThat(order).containsExactly(10, 100, 300).inOrder();
+  }
+
+  @Test
+  public void cascadesThroughAllLevels() throws Exception {
+    // With 1 ns ticks, 1 ms lands in the third level of the wheel and 50 ms in the fourth.
+    TimingWheelScheduledExecutorService fineTimer = new TimingWheelScheduledExecutorService(
+        MoreExecutors.platformThreadFactory(), 1, TimeUnit.NANOSECONDS);
+    try {
+      final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+      final CountDownLatch done = new CountDownLatch(3);
+      final long start = System.nanoTime();
+      for (final int delayMillis : new int[] {50, 1, 10}) {
+        fineTimer.schedule(new Runnable() {
+          @Override
+          public void run() {
+            if (System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(delayMillis)) {
+              order.add(delayMillis);
+            }
+            done.countDown();
+          }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+      }
+
+      assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+      assertThat(order).containsExactly(1, 10, 50).inOrder();
+    } finally {
+      fineTimer.shutdown();
+    }
+  }
+
+  @Test
+  public void delayBeyondWheelIsPlacedAgain() throws Exception {
+    // With 1 ns ticks the wheel spans about 4.3 seconds, so the task is placed in the last slot
+    // it can reach and placed again when that slot comes up.
+    TimingWheelScheduledExecutorService fineTimer = new TimingWheelScheduledExecutorService(
+        MoreExecutors.platformThreadFactory(), 1, TimeUnit.NANOSECONDS);
+    try {
+      final long delayNanos = TimeUnit.MILLISECONDS.toNanos(4500);
+      final long start = System.nanoTime();
+      final AtomicLong ranAfterNanos = new AtomicLong();
+      ScheduledFuture<?> future = fineTimer.schedule(new Runnable() {
+        @Override
+        public void run() {
+          ranAfterNanos.set(System.nanoTime() - start);
+        }
+      }, delayNanos, TimeUnit.NANOSECONDS);
+
+      future.get(10, TimeUnit.SECONDS);
+      assertThat(ranAfterNanos.get()).isAtLeast(delayNanos);
+    } finally {
+      fineTimer.shutdown();
+    }
+  }
+
+  @Test
+  public void callableResult() throws Exception {
+    ScheduledFuture<String> future = timer.schedule(new Callable<String>() {
+      @Override
+      public String call() {
+        return "done";
+      }
+    }, 1, TimeUnit.MILLISECONDS);
+
+    assertThat(future.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+  }
+
+  @Test
+  public void cancelledTaskDoesNotRun() throws Exception {
+    final AtomicInteger runs = new AtomicInteger();
+    ScheduledFuture<?> cancelled = timer.schedule(new Runnable() {
+      @Override
+      public void run() {
+        runs.incrementAndGet();
+      }
+    }, 20, TimeUnit.MILLISECONDS);
+    final CountDownLatch later = new CountDownLatch(1);
+    timer.schedule(new Runnable() {
+      @Override
+      public void run() {
+        later.countDown();
+      }
+    }, 50, TimeUnit.MILLISECONDS);
+
+    assertThat(cancelled.cancel(false)).isTrue();
+    assertThat(later.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(runs.get()).isEqualTo(0);
+    assertThat(cancelled.isCancelled()).isTrue();
+  }
+
+  @Test
+  public void cancelledFarOffTasksAreReleased() throws Exception {
+    int count = 4 * TimingWheelScheduledExecutorService.MAX_QUEUED_HANDOFFS;
+    List<WeakReference<ScheduledFuture<?>>> refs = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      ScheduledFuture<?> future = timer.schedule(new Runnable() {
+        @Override
+        public void run() {
+          fail("Should have been cancelled");
+        }
+      }, 1, TimeUnit.HOURS);
+      future.cancel(false);
+      refs.add(new WeakReference<ScheduledFuture<?>>(future));
+    }
+
+    // The timer thread is asleep until the first deadline an hour from now, but it is woken to
+    // drain the queued tasks and cancellations. Only the last few may still be waiting.
+    for (WeakReference<ScheduledFuture<?>> ref : refs.subList(0, count / 2)) {
+      GcFinalization.awaitClear(ref);
+    }
+  }
+
+  @Test
+  public void fixedRate() throws Exception {
+    final CountDownLatch ticks = new CountDownLatch(5);
+    ScheduledFuture<?> future = timer.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        ticks.countDown();
+      }
+    }, 0, 2, TimeUnit.MILLISECONDS);
+
+    assertThat(ticks.await(5, TimeUnit.SECONDS)).isTrue();
+    future.cancel(false);
+    assertThat(future.isDone()).isTrue();
+  }
+
+  @Test
+  public void fixedDelay() throws Exception {
+    final CountDownLatch ticks = new CountDownLatch(3);
+    ScheduledFuture<?> future = timer.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        ticks.countDown();
+      }
+    }, 1, 2, TimeUnit.MILLISECONDS);
+
+    assertThat(ticks.await(5, TimeUnit.SECONDS)).isTrue();
+    future.cancel(false);
+  }
+
+  @Test
+  public void getDelay() {
+    ScheduledFuture<?> future = timer.schedule(new Runnable() {
+      @Override
+      public void run() {}
+    }, 1, TimeUnit.HOURS);
+
+    assertThat(future.getDelay(TimeUnit.MINUTES)).isIn(Range.closed(59L, 60L));
+    future.cancel(false);
+  }
+
+  @Test
+  public void shutdown_cancelsPendingAndRejectsNew() throws Exception {
+    ScheduledFuture<?> future = timer.schedule(new Runnable() {
+      @Override
+      public void run() {}
+    }, 1, TimeUnit.HOURS);
+
+    timer.shutdown();
+
+    assertThat(timer.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(timer.isTerminated()).isTrue();
+    assertThat(future.isCancelled()).isTrue();
+    try {
+      timer.schedule(new Runnable() {
+        @Override
+        public void run() {}
+      }, 1, TimeUnit.MILLISECONDS);
+      fail("Should have thrown");
+    } catch (RejectedExecutionException expected) {
+    }
+  }
+
+  @Test
+  public void shutdown_racingScheduleLeavesNoTaskPending() throws Exception {
+    final List<ScheduledFuture<?>> futures =
+        Collections.synchronizedList(new ArrayList<ScheduledFuture<?>>());
+    final CountDownLatch started = new CountDownLatch(1);
+    Thread scheduler = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        started.countDown();
+        try {
+          while (true) {
+            futures.add(timer.schedule(new Runnable() {
+              @Override
+              public void run() {}
+            }, 1, TimeUnit.HOURS));
+          }
+        } catch (RejectedExecutionException expected) {
+          // Shut down.
+        }
+      }
+    });
+    scheduler.start();
+    started.await();
+
+    timer.shutdown();
+    scheduler.join();
+
+    assertThat(timer.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+    for (ScheduledFuture<?> future : futures) {
+      assertThat(future.isCancelled()).isTrue();
+    }
+  }
+
+  @Test
+  public void execute_runsOnTimerThread() throws Exception {
+    final CountDownLatch ran = new CountDownLatch(1);
+    final Thread[] thread = new Thread[1];
+    timer.execute(new Runnable() {
+      @Override
+      public void run() {
+        thread[0] = Thread.currentThread();
+        ran.countDown();
+      }
+    });
+
+    assertThat(ran.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(thread[0]).isNotSameInstanceAs(Thread.currentThread());
+  }
+}
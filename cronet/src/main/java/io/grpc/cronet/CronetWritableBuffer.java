@@ -18,6 +18,7 @@ package io.grpc.cronet;
 
 import com.google.common.base.Preconditions;
 import io.grpc.internal.WritableBuffer;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 
 class CronetWritableBuffer implements WritableBuffer {
@@ -47,6 +48,27 @@ class CronetWritableBuffer implements WritableBuffer {
     return buffer.position();
   }
 
+  @Override
+  public boolean byteBufferSupported() {
+    return true;
+  }
+
+  @Override
+  public ByteBuffer getByteBuffer(int length) {
+    if (length > buffer.remaining()) {
+      throw new IndexOutOfBoundsException(
+          "length " + length + " exceeds writable bytes " + buffer.remaining());
+    }
+    ByteBuffer view = buffer.duplicate();
+    ((Buffer) view).limit(view.position() + length);
+    return view;
+  }
+
+  @Override
+  public void commitByteBuffer(int length) {
+    ((Buffer) buffer).position(buffer.position() + length);
+  }
+
   @Override
   public void release() {
   }
@@ -16,8 +16,10 @@
 
 package io.grpc.netty;
 
+import io.grpc.InternalStatus;
 import io.grpc.Metadata;
 import io.grpc.Metadata.AsciiMarshaller;
+import io.grpc.Status;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.handler.codec.http2.DefaultHttp2HeadersEncoder;
@@ -99,4 +101,33 @@ public class OutboundHeadersBenchmark {
     headersEncoder.encodeHeaders(1, headers, scratchBuffer);
     return scratchBuffer;
   }
+
+  /**
+   * Converts the trailers of a call that succeeded without trailing metadata, as every successful
+   * unary call without trailing metadata does.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Http2Headers convertStatusOkTrailers() {
+    Metadata trailers = new Metadata();
+    trailers.put(InternalStatus.CODE_KEY, Status.OK);
+    return Utils.convertTrailers(trailers, true);
+  }
+
+  /**
+   * Encodes the response headers and trailers of a successful unary call, with the random
+   * metadata fields in the headers.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public ByteBuf encodeServerHeadersAndTrailers() throws Exception {
+    scratchBuffer.clear();
+    headersEncoder.encodeHeaders(1, Utils.convertServerHeaders(metadata), scratchBuffer);
+    Metadata trailers = new Metadata();
+    trailers.put(InternalStatus.CODE_KEY, Status.OK);
+    headersEncoder.encodeHeaders(1, Utils.convertTrailers(trailers, true), scratchBuffer);
+    return scratchBuffer;
+  }
 }
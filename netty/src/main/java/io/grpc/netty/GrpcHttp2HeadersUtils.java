@@ -40,7 +40,10 @@ import static io.netty.util.AsciiString.isUpperCase;
 
 import com.google.common.io.BaseEncoding;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import io.grpc.InternalMetadata;
+import io.grpc.InternalStatus;
 import io.grpc.Metadata;
+import io.grpc.internal.GrpcUtil;
 import io.netty.handler.codec.CharSequenceValueConverter;
 import io.netty.handler.codec.http2.DefaultHttp2HeadersDecoder;
 import io.netty.handler.codec.http2.Http2Headers;
@@ -48,7 +51,9 @@ import io.netty.util.AsciiString;
 import io.netty.util.internal.PlatformDependent;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A headers utils providing custom gRPC implementations of {@link DefaultHttp2HeadersDecoder}.
@@ -93,6 +98,22 @@ class GrpcHttp2HeadersUtils {
     private static final AsciiString binaryHeaderSuffix =
         new AsciiString(Metadata.BINARY_HEADER_SUFFIX.getBytes(US_ASCII));
 
+    /**
+     * Names of headers gRPC itself reads, mapped to the name arrays of their keys. Received headers
+     * use those arrays as their names, so that Metadata finds them by identity instead of comparing
+     * bytes, and so that no name array needs to be copied out of the decoder's buffer.
+     */
+    private static final Map<AsciiString, byte[]> wellKnownNames = namesOf(
+        GrpcUtil.TIMEOUT_KEY,
+        GrpcUtil.MESSAGE_ENCODING_KEY,
+        GrpcUtil.MESSAGE_ACCEPT_ENCODING_KEY,
+        GrpcUtil.CONTENT_ENCODING_KEY,
+        GrpcUtil.CONTENT_ACCEPT_ENCODING_KEY,
+        GrpcUtil.CONTENT_TYPE_KEY,
+        GrpcUtil.USER_AGENT_KEY,
+        InternalStatus.CODE_KEY,
+        InternalStatus.MESSAGE_KEY);
+
     private byte[][] namesAndValues;
     private AsciiString[] values;
     private int namesAndValuesIdx;
@@ -105,7 +126,10 @@ class GrpcHttp2HeadersUtils {
     }
 
     protected Http2Headers add(AsciiString name, AsciiString value) {
-      byte[] nameBytes = bytes(name);
+      byte[] nameBytes = wellKnownNames.get(name);
+      if (nameBytes == null) {
+        nameBytes = bytes(name);
+      }
       byte[] valueBytes;
       if (!name.endsWith(binaryHeaderSuffix)) {
         valueBytes = bytes(value);
@@ -243,6 +267,15 @@ class GrpcHttp2HeadersUtils {
       return PlatformDependent.equals(bytes0, offset0, bytes1, offset1, length0);
     }
 
+    private static Map<AsciiString, byte[]> namesOf(Metadata.Key<?>... keys) {
+      Map<AsciiString, byte[]> names = new HashMap<>();
+      for (Metadata.Key<?> key : keys) {
+        byte[] name = InternalMetadata.asciiName(key);
+        names.put(new AsciiString(name, false), name);
+      }
+      return Collections.unmodifiableMap(names);
+    }
+
     protected static byte[] bytes(AsciiString str) {
       return str.isEntireArrayUsed() ? str.array() : str.toByteArray();
     }
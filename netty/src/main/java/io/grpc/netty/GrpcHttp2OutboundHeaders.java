@@ -16,6 +16,11 @@
 
 package io.grpc.netty;
 
+import io.grpc.InternalMetadata;
+import io.grpc.InternalStatus;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.internal.GrpcUtil;
 import io.netty.handler.codec.http2.Http2Headers;
 import io.netty.util.AsciiString;
 import java.util.Iterator;
@@ -30,6 +35,27 @@ final class GrpcHttp2OutboundHeaders extends AbstractHttp2Headers {
   private final AsciiString[] normalHeaders;
   private final AsciiString[] preHeaders;
   private static final AsciiString[] EMPTY = new AsciiString[]{};
+  private static final AsciiString[] RESPONSE_PRE_HEADERS = new AsciiString[] {
+      Http2Headers.PseudoHeaderName.STATUS.value(), Utils.STATUS_OK,
+      Utils.CONTENT_TYPE_HEADER, Utils.CONTENT_TYPE_GRPC,
+  };
+
+  /**
+   * Names of the keys gRPC itself sends, and the value of {@code grpc-status: 0}. Metadata
+   * serializes them as the same arrays every time, so these are used in place of new AsciiStrings
+   * for them, and keep the hash code HpackEncoder computed the first time.
+   */
+  private static final AsciiString[] WELL_KNOWN = new AsciiString[] {
+      asciiName(InternalStatus.CODE_KEY),
+      asciiName(InternalStatus.MESSAGE_KEY),
+      asciiName(GrpcUtil.MESSAGE_ENCODING_KEY),
+      asciiName(GrpcUtil.MESSAGE_ACCEPT_ENCODING_KEY),
+      new AsciiString(statusOkTrailers()[1], false),
+  };
+
+  /** Trailers of a call that succeeded without trailing metadata, the common case. */
+  private static final GrpcHttp2OutboundHeaders STATUS_OK_TRAILERS =
+      new GrpcHttp2OutboundHeaders(EMPTY, statusOkTrailers());
 
   static GrpcHttp2OutboundHeaders clientRequestHeaders(byte[][] serializedMetadata,
       AsciiString authority, AsciiString path, AsciiString method, AsciiString scheme,
@@ -47,25 +73,45 @@ final class GrpcHttp2OutboundHeaders extends AbstractHttp2Headers {
   }
 
   static GrpcHttp2OutboundHeaders serverResponseHeaders(byte[][] serializedMetadata) {
-    AsciiString[] preHeaders = new AsciiString[] {
-        Http2Headers.PseudoHeaderName.STATUS.value(), Utils.STATUS_OK,
-        Utils.CONTENT_TYPE_HEADER, Utils.CONTENT_TYPE_GRPC,
-    };
-    return new GrpcHttp2OutboundHeaders(preHeaders, serializedMetadata);
+    return new GrpcHttp2OutboundHeaders(RESPONSE_PRE_HEADERS, serializedMetadata);
   }
 
   static GrpcHttp2OutboundHeaders serverResponseTrailers(byte[][] serializedMetadata) {
+    if (serializedMetadata.length == 2
+        && serializedMetadata[0] == STATUS_OK_TRAILERS.normalHeaders[0].array()
+        && serializedMetadata[1] == STATUS_OK_TRAILERS.normalHeaders[1].array()) {
+      return STATUS_OK_TRAILERS;
+    }
     return new GrpcHttp2OutboundHeaders(EMPTY, serializedMetadata);
   }
 
   private GrpcHttp2OutboundHeaders(AsciiString[] preHeaders, byte[][] serializedMetadata) {
     normalHeaders = new AsciiString[serializedMetadata.length];
     for (int i = 0; i < normalHeaders.length; i++) {
-      normalHeaders[i] = new AsciiString(serializedMetadata[i], false);
+      normalHeaders[i] = asciiString(serializedMetadata[i]);
     }
     this.preHeaders = preHeaders;
   }
 
+  private static AsciiString asciiString(byte[] bytes) {
+    for (AsciiString wellKnown : WELL_KNOWN) {
+      if (wellKnown.array() == bytes) {
+        return wellKnown;
+      }
+    }
+    return new AsciiString(bytes, false);
+  }
+
+  private static AsciiString asciiName(Metadata.Key<?> key) {
+    return new AsciiString(InternalMetadata.asciiName(key), false);
+  }
+
+  private static byte[][] statusOkTrailers() {
+    Metadata trailers = new Metadata();
+    trailers.put(InternalStatus.CODE_KEY, Status.OK);
+    return InternalMetadata.serialize(trailers);
+  }
+
   @Override
   @SuppressWarnings("ReferenceEquality") // STATUS.value() never changes.
   public CharSequence status() {
@@ -29,15 +29,19 @@ import io.grpc.Attributes;
 import io.grpc.CallCredentials;
 import io.grpc.ChannelCredentials;
 import io.grpc.ChannelLogger;
+import io.grpc.CompositeChannelCredentials;
 import io.grpc.EquivalentAddressGroup;
 import io.grpc.ExperimentalApi;
 import io.grpc.HttpConnectProxiedSocketAddress;
+import io.grpc.InsecureChannelCredentials;
 import io.grpc.Internal;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.TlsChannelCredentials;
 import io.grpc.internal.AbstractManagedChannelImplBuilder;
 import io.grpc.internal.AtomicBackoff;
 import io.grpc.internal.ClientTransportFactory;
 import io.grpc.internal.ConnectionClientTransport;
+import io.grpc.internal.ConnectionPoolTransportFactory;
 import io.grpc.internal.FixedObjectPool;
 import io.grpc.internal.GrpcUtil;
 import io.grpc.internal.KeepAliveManager;
@@ -46,6 +50,7 @@ import io.grpc.internal.ManagedChannelImplBuilder.ChannelBuilderDefaultPortProvi
 import io.grpc.internal.ManagedChannelImplBuilder.ClientTransportFactoryBuilder;
 import io.grpc.internal.ObjectPool;
 import io.grpc.internal.SharedResourcePool;
+import io.grpc.internal.SharedTransportFactory;
 import io.grpc.internal.TransportTracer;
 import io.grpc.netty.ProtocolNegotiators.FromChannelCredentialsResult;
 import io.netty.channel.Channel;
@@ -57,6 +62,7 @@ import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.ssl.SslContext;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Executor;
@@ -104,6 +110,14 @@ public final class NettyChannelBuilder extends
   private long keepAliveTimeNanos = KEEPALIVE_TIME_NANOS_DISABLED;
   private long keepAliveTimeoutNanos = DEFAULT_KEEPALIVE_TIMEOUT_NANOS;
   private boolean keepAliveWithoutCalls;
+  @Nullable
+  private WriteQueue.FlushCoalescing flushCoalescing;
+  private int maxConnectionsPerSubchannel = 1;
+  private int streamsPerConnection;
+  private boolean shareTransports;
+  // Null when not using ChannelCredentials
+  @Nullable
+  private final ChannelCredentials channelCredentials;
   private ProtocolNegotiator.ClientFactory protocolNegotiatorFactory
       = new DefaultProtocolNegotiator();
   private final boolean freezeProtocolNegotiatorFactory;
@@ -201,6 +215,7 @@ public final class NettyChannelBuilder extends
     managedChannelImplBuilder = new ManagedChannelImplBuilder(target,
         new NettyChannelTransportFactoryBuilder(),
         new NettyChannelDefaultPortProvider());
+    this.channelCredentials = null;
     this.freezeProtocolNegotiatorFactory = false;
   }
 
@@ -212,6 +227,7 @@ public final class NettyChannelBuilder extends
         new NettyChannelTransportFactoryBuilder(),
         new NettyChannelDefaultPortProvider());
     this.protocolNegotiatorFactory = checkNotNull(negotiator, "negotiator");
+    this.channelCredentials = channelCreds;
     this.freezeProtocolNegotiatorFactory = true;
   }
 
@@ -221,6 +237,7 @@ public final class NettyChannelBuilder extends
         getAuthorityFromAddress(address),
         new NettyChannelTransportFactoryBuilder(),
         new NettyChannelDefaultPortProvider());
+    this.channelCredentials = null;
     this.freezeProtocolNegotiatorFactory = false;
   }
 
@@ -233,6 +250,7 @@ public final class NettyChannelBuilder extends
         new NettyChannelTransportFactoryBuilder(),
         new NettyChannelDefaultPortProvider());
     this.protocolNegotiatorFactory = checkNotNull(negotiator, "negotiator");
+    this.channelCredentials = channelCreds;
     this.freezeProtocolNegotiatorFactory = true;
   }
 
@@ -385,6 +403,61 @@ public final class NettyChannelBuilder extends
     return this;
   }
 
+  /**
+   * Lets the transport coalesce flushes of the streams of a connection while it is busy, so that
+   * many small messages share a {@code write} system call. A flush is deferred by at most {@code
+   * maxDelay}, scaled by how busy the connection is, and is never deferred once {@code maxBytes}
+   * are waiting or the connection is lightly used, where the transport behaves as if this was not
+   * called. Disabled by default.
+   *
+   * @param maxDelay the longest a write may wait for a flush, such as 50 microseconds
+   * @param maxBytes the number of unflushed bytes at which a flush is no longer deferred
+   */
+  public NettyChannelBuilder flushCoalescing(long maxDelay, TimeUnit unit, int maxBytes) {
+    this.flushCoalescing = new WriteQueue.FlushCoalescing(unit.toNanos(maxDelay), maxBytes);
+    return this;
+  }
+
+  /**
+   * Lets each subchannel spread its streams over up to {@code maxConnections} connections to its
+   * address, instead of queuing them once a single connection reaches the server's {@code
+   * MAX_CONCURRENT_STREAMS}. Another connection is opened when every connection of the subchannel
+   * has at least {@code streamsPerConnection} active streams, new streams go to the connection
+   * with the fewest active streams, and connections beyond the first are closed again once they
+   * become idle. By default, a subchannel uses a single connection.
+   *
+   * @param maxConnections the most connections a subchannel may open, or 1 to disable pooling
+   * @param streamsPerConnection the active streams at which another connection is opened, which
+   *     should be somewhat below the server's {@code MAX_CONCURRENT_STREAMS}
+   * @since 1.46.0
+   */
+  public NettyChannelBuilder maxConnectionsPerSubchannel(
+      int maxConnections, int streamsPerConnection) {
+    checkArgument(maxConnections > 0, "maxConnections must be positive");
+    checkArgument(streamsPerConnection > 0, "streamsPerConnection must be positive");
+    this.maxConnectionsPerSubchannel = maxConnections;
+    this.streamsPerConnection = streamsPerConnection;
+    return this;
+  }
+
+  /**
+   * Lets the channel share connections with other channels in the process that share transports,
+   * when they connect to the same address with the same credentials and transport settings. A
+   * shared connection is closed once no channel uses it anymore. This avoids a connection per
+   * channel when many channels are created for the same server. By default, connections are not
+   * shared.
+   *
+   * <p>Channels using {@link ChannelCredentials} other than insecure credentials or TLS
+   * credentials without custom key or trust material only share connections when they use the
+   * same credentials instance.
+   *
+   * @since 1.46.0
+   */
+  public NettyChannelBuilder shareTransports(boolean enable) {
+    this.shareTransports = enable;
+    return this;
+  }
+
   /**
    * Sets the maximum size of header list allowed to be received. This is cumulative size of the
    * headers with some overhead, as defined for
@@ -528,11 +601,63 @@ public final class NettyChannelBuilder extends
     assertEventLoopAndChannelType();
 
     ProtocolNegotiator negotiator = protocolNegotiatorFactory.newNegotiator();
-    return new NettyTransportFactory(
+    ClientTransportFactory factory = new NettyTransportFactory(
         negotiator, channelFactory, channelOptions,
         eventLoopGroupPool, autoFlowControl, flowControlWindow, maxInboundMessageSize,
         maxHeaderListSize, keepAliveTimeNanos, keepAliveTimeoutNanos, keepAliveWithoutCalls,
-        transportTracerFactory, localSocketPicker, useGetForSafeMethods);
+        transportTracerFactory, localSocketPicker, useGetForSafeMethods, flushCoalescing);
+    if (maxConnectionsPerSubchannel > 1) {
+      factory = new ConnectionPoolTransportFactory(
+          factory, maxConnectionsPerSubchannel, streamsPerConnection);
+    }
+    if (shareTransports) {
+      factory = new SharedTransportFactory(factory, sharingKey());
+    }
+    return factory;
+  }
+
+  /**
+   * Returns a key that is equal for builders whose transports can share connections, which is the
+   * case when they secure connections and configure the transport the same way.
+   */
+  private Object sharingKey() {
+    Object securityKey;
+    if (channelCredentials != null) {
+      securityKey = credentialsKey(channelCredentials);
+    } else if (protocolNegotiatorFactory instanceof DefaultProtocolNegotiator) {
+      DefaultProtocolNegotiator negotiator = (DefaultProtocolNegotiator) protocolNegotiatorFactory;
+      securityKey = Arrays.asList(negotiator.negotiationType, negotiator.sslContext);
+    } else {
+      securityKey = protocolNegotiatorFactory;
+    }
+    return Arrays.asList(
+        securityKey, channelFactory, new HashMap<>(channelOptions), eventLoopGroupPool,
+        autoFlowControl, flowControlWindow, maxInboundMessageSize, maxHeaderListSize,
+        keepAliveTimeNanos, keepAliveTimeoutNanos, keepAliveWithoutCalls, transportTracerFactory,
+        localSocketPicker, useGetForSafeMethods, flushCoalescing, maxConnectionsPerSubchannel,
+        streamsPerConnection);
+  }
+
+  private static Object credentialsKey(ChannelCredentials creds) {
+    if (creds instanceof InsecureChannelCredentials) {
+      return InsecureChannelCredentials.class;
+    }
+    if (creds instanceof TlsChannelCredentials) {
+      TlsChannelCredentials tlsCreds = (TlsChannelCredentials) creds;
+      if (tlsCreds.getCertificateChain() == null
+          && tlsCreds.getPrivateKey() == null
+          && tlsCreds.getKeyManagers() == null
+          && tlsCreds.getRootCertificates() == null
+          && tlsCreds.getTrustManagers() == null) {
+        return TlsChannelCredentials.class;
+      }
+      return creds;
+    }
+    if (creds instanceof CompositeChannelCredentials) {
+      // Call credentials are applied per call, not per connection.
+      return credentialsKey(((CompositeChannelCredentials) creds).getChannelCredentials());
+    }
+    return creds;
   }
 
   @VisibleForTesting
@@ -669,6 +794,8 @@ public final class NettyChannelBuilder extends
     private final TransportTracer.Factory transportTracerFactory;
     private final LocalSocketPicker localSocketPicker;
     private final boolean useGetForSafeMethods;
+    @Nullable
+    private final WriteQueue.FlushCoalescing flushCoalescing;
 
     private boolean closed;
 
@@ -679,7 +806,7 @@ public final class NettyChannelBuilder extends
         boolean autoFlowControl, int flowControlWindow, int maxMessageSize, int maxHeaderListSize,
         long keepAliveTimeNanos, long keepAliveTimeoutNanos, boolean keepAliveWithoutCalls,
         TransportTracer.Factory transportTracerFactory, LocalSocketPicker localSocketPicker,
-        boolean useGetForSafeMethods) {
+        boolean useGetForSafeMethods, @Nullable WriteQueue.FlushCoalescing flushCoalescing) {
       this.protocolNegotiator = checkNotNull(protocolNegotiator, "protocolNegotiator");
       this.channelFactory = channelFactory;
       this.channelOptions = new HashMap<ChannelOption<?>, Object>(channelOptions);
@@ -697,6 +824,7 @@ public final class NettyChannelBuilder extends
       this.localSocketPicker =
           localSocketPicker != null ? localSocketPicker : new LocalSocketPicker();
       this.useGetForSafeMethods = useGetForSafeMethods;
+      this.flushCoalescing = flushCoalescing;
     }
 
     @Override
@@ -730,7 +858,7 @@ public final class NettyChannelBuilder extends
           maxMessageSize, maxHeaderListSize, keepAliveTimeNanosState.get(), keepAliveTimeoutNanos,
           keepAliveWithoutCalls, options.getAuthority(), options.getUserAgent(),
           tooManyPingsRunnable, transportTracerFactory.create(), options.getEagAttributes(),
-          localSocketPicker, channelLogger, useGetForSafeMethods);
+          localSocketPicker, channelLogger, useGetForSafeMethods, flushCoalescing);
       return transport;
     }
 
@@ -750,7 +878,7 @@ public final class NettyChannelBuilder extends
           result.negotiator.newNegotiator(), channelFactory, channelOptions, groupPool,
           autoFlowControl, flowControlWindow, maxMessageSize, maxHeaderListSize, keepAliveTimeNanos,
           keepAliveTimeoutNanos, keepAliveWithoutCalls, transportTracerFactory,  localSocketPicker,
-          useGetForSafeMethods);
+          useGetForSafeMethods, flushCoalescing);
       return new SwapChannelCredentialsResult(factory, result.callCredentials);
     }
 
@@ -341,8 +341,8 @@ class NettyClientHandler extends AbstractNettyHandler {
     }
   }
 
-  void startWriteQueue(Channel channel) {
-    clientWriteQueue = new WriteQueue(channel);
+  void startWriteQueue(Channel channel, @Nullable WriteQueue.FlushCoalescing flushCoalescing) {
+    clientWriteQueue = new WriteQueue(channel, flushCoalescing);
   }
 
   WriteQueue getWriteQueue() {
@@ -686,14 +686,17 @@ class NettyClientHandler extends AbstractNettyHandler {
    */
   private void sendGrpcFrame(ChannelHandlerContext ctx, SendGrpcFrameCommand cmd,
       ChannelPromise promise) {
-    PerfMark.startTask("NettyClientHandler.sendGrpcFrame", cmd.stream().tag());
+    StreamIdHolder stream = cmd.stream();
+    PerfMark.startTask("NettyClientHandler.sendGrpcFrame", stream.tag());
     PerfMark.linkIn(cmd.getLink());
     try {
       // Call the base class to write the HTTP/2 DATA frame.
       // Note: no need to flush since this is handled by the outbound flow controller.
-      encoder().writeData(ctx, cmd.stream().id(), cmd.content(), 0, cmd.endStream(), promise);
+      encoder().writeData(ctx, stream.id(), cmd.content(), 0, cmd.endStream(), promise);
+      // The encoder owns the content now.
+      cmd.recycle();
     } finally {
-      PerfMark.stopTask("NettyClientHandler.sendGrpcFrame", cmd.stream().tag());
+      PerfMark.stopTask("NettyClientHandler.sendGrpcFrame", stream.tag());
     }
   }
 
@@ -183,7 +183,8 @@ class NettyClientStream extends AbstractClientStream {
       if (numBytes > 0) {
         // Add the bytes to outbound flow control.
         onSendingBytes(numBytes);
-        writeQueue.enqueue(new SendGrpcFrameCommand(transportState(), bytebuf, endOfStream), flush)
+        writeQueue.enqueue(
+            SendGrpcFrameCommand.newInstance(transportState(), bytebuf, endOfStream), flush)
             .addListener(new ChannelFutureListener() {
               @Override
               public void operationComplete(ChannelFuture future) throws Exception {
@@ -200,7 +201,7 @@ class NettyClientStream extends AbstractClientStream {
       } else {
         // The frame is empty and will not impact outbound flow control. Just send it.
         writeQueue.enqueue(
-            new SendGrpcFrameCommand(transportState(), bytebuf, endOfStream), flush);
+            SendGrpcFrameCommand.newInstance(transportState(), bytebuf, endOfStream), flush);
       }
     }
 
@@ -102,6 +102,8 @@ class NettyClientTransport implements ConnectionClientTransport {
   private final LocalSocketPicker localSocketPicker;
   private final ChannelLogger channelLogger;
   private final boolean useGetForSafeMethods;
+  @Nullable
+  private final WriteQueue.FlushCoalescing flushCoalescing;
 
   NettyClientTransport(
       SocketAddress address, ChannelFactory<? extends Channel> channelFactory,
@@ -112,7 +114,7 @@ class NettyClientTransport implements ConnectionClientTransport {
       boolean keepAliveWithoutCalls, String authority, @Nullable String userAgent,
       Runnable tooManyPingsRunnable, TransportTracer transportTracer, Attributes eagAttributes,
       LocalSocketPicker localSocketPicker, ChannelLogger channelLogger,
-      boolean useGetForSafeMethods) {
+      boolean useGetForSafeMethods, @Nullable WriteQueue.FlushCoalescing flushCoalescing) {
     this.negotiator = Preconditions.checkNotNull(negotiator, "negotiator");
     this.negotiationScheme = this.negotiator.scheme();
     this.remoteAddress = Preconditions.checkNotNull(address, "address");
@@ -137,6 +139,7 @@ class NettyClientTransport implements ConnectionClientTransport {
     this.logId = InternalLogId.allocate(getClass(), remoteAddress.toString());
     this.channelLogger = Preconditions.checkNotNull(channelLogger, "channelLogger");
     this.useGetForSafeMethods = useGetForSafeMethods;
+    this.flushCoalescing = flushCoalescing;
   }
 
   @Override
@@ -281,7 +284,7 @@ class NettyClientTransport implements ConnectionClientTransport {
     }
     channel = regFuture.channel();
     // Start the write queue as soon as the channel is constructed
-    handler.startWriteQueue(channel);
+    handler.startWriteQueue(channel, flushCoalescing);
     // This write will have no effect, yet it will only complete once the negotiationHandler
     // flushes any pending writes. We need it to be staged *before* the `connect` so that
     // the channel can't have been closed yet, removing all handlers. This write will sit in the
@@ -60,6 +60,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.CheckReturnValue;
+import javax.annotation.Nullable;
 import javax.net.ssl.SSLException;
 
 /**
@@ -113,6 +114,8 @@ public final class NettyServerBuilder extends AbstractServerImplBuilder<NettySer
   private long maxConnectionAgeGraceInNanos = MAX_CONNECTION_AGE_GRACE_NANOS_INFINITE;
   private boolean permitKeepAliveWithoutCalls;
   private long permitKeepAliveTimeInNanos = TimeUnit.MINUTES.toNanos(5);
+  @Nullable
+  private WriteQueue.FlushCoalescing flushCoalescing;
   private Attributes eagAttributes = Attributes.EMPTY;
 
   /**
@@ -619,6 +622,21 @@ public final class NettyServerBuilder extends AbstractServerImplBuilder<NettySer
     return this;
   }
 
+  /**
+   * Lets the transport coalesce flushes of the streams of a connection while it is busy, so that
+   * many small messages share a {@code write} system call. A flush is deferred by at most {@code
+   * maxDelay}, scaled by how busy the connection is, and is never deferred once {@code maxBytes}
+   * are waiting or the connection is lightly used, where the transport behaves as if this was not
+   * called. Disabled by default.
+   *
+   * @param maxDelay the longest a write may wait for a flush, such as 50 microseconds
+   * @param maxBytes the number of unflushed bytes at which a flush is no longer deferred
+   */
+  public NettyServerBuilder flushCoalescing(long maxDelay, TimeUnit unit, int maxBytes) {
+    this.flushCoalescing = new WriteQueue.FlushCoalescing(unit.toNanos(maxDelay), maxBytes);
+    return this;
+  }
+
   /** Sets the EAG attributes available to protocol negotiators. Not for general use. */
   void eagAttributes(Attributes eagAttributes) {
     this.eagAttributes = checkNotNull(eagAttributes, "eagAttributes");
@@ -640,7 +658,7 @@ public final class NettyServerBuilder extends AbstractServerImplBuilder<NettySer
         keepAliveTimeInNanos, keepAliveTimeoutInNanos,
         maxConnectionIdleInNanos, maxConnectionAgeInNanos,
         maxConnectionAgeGraceInNanos, permitKeepAliveWithoutCalls, permitKeepAliveTimeInNanos,
-        eagAttributes, this.serverImplBuilder.getChannelz());
+        flushCoalescing, eagAttributes, this.serverImplBuilder.getChannelz());
   }
 
   @VisibleForTesting
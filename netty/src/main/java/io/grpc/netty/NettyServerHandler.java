@@ -46,6 +46,7 @@ import io.grpc.Status;
 import io.grpc.internal.GrpcUtil;
 import io.grpc.internal.KeepAliveManager;
 import io.grpc.internal.LogExceptionRunnable;
+import io.grpc.internal.MethodNameIndex;
 import io.grpc.internal.ServerTransportListener;
 import io.grpc.internal.StatsTraceContext;
 import io.grpc.internal.TransportTracer;
@@ -115,6 +116,8 @@ class NettyServerHandler extends AbstractNettyHandler {
 
   private final Http2Connection.PropertyKey streamKey;
   private final ServerTransportListener transportListener;
+  @Nullable
+  private final MethodNameIndex methodNameIndex;
   private final int maxMessageSize;
   private final long keepAliveTimeInNanos;
   private final long keepAliveTimeoutInNanos;
@@ -123,6 +126,8 @@ class NettyServerHandler extends AbstractNettyHandler {
   private final List<? extends ServerStreamTracer.Factory> streamTracerFactories;
   private final TransportTracer transportTracer;
   private final KeepAliveEnforcer keepAliveEnforcer;
+  @Nullable
+  private final WriteQueue.FlushCoalescing flushCoalescing;
   private final Attributes eagAttributes;
   /** Incomplete attributes produced by negotiator. */
   private Attributes negotiationAttributes;
@@ -159,6 +164,7 @@ class NettyServerHandler extends AbstractNettyHandler {
       long maxConnectionAgeGraceInNanos,
       boolean permitKeepAliveWithoutCalls,
       long permitKeepAliveTimeInNanos,
+      @Nullable WriteQueue.FlushCoalescing flushCoalescing,
       Attributes eagAttributes) {
     Preconditions.checkArgument(maxHeaderListSize > 0, "maxHeaderListSize must be positive: %s",
         maxHeaderListSize);
@@ -187,6 +193,7 @@ class NettyServerHandler extends AbstractNettyHandler {
         maxConnectionAgeGraceInNanos,
         permitKeepAliveWithoutCalls,
         permitKeepAliveTimeInNanos,
+        flushCoalescing,
         eagAttributes);
   }
 
@@ -209,6 +216,7 @@ class NettyServerHandler extends AbstractNettyHandler {
       long maxConnectionAgeGraceInNanos,
       boolean permitKeepAliveWithoutCalls,
       long permitKeepAliveTimeInNanos,
+      @Nullable WriteQueue.FlushCoalescing flushCoalescing,
       Attributes eagAttributes) {
     Preconditions.checkArgument(maxStreams > 0, "maxStreams must be positive: %s", maxStreams);
     Preconditions.checkArgument(flowControlWindow > 0, "flowControlWindow must be positive: %s",
@@ -255,6 +263,7 @@ class NettyServerHandler extends AbstractNettyHandler {
         maxConnectionAgeInNanos, maxConnectionAgeGraceInNanos,
         keepAliveEnforcer,
         autoFlowControl,
+        flushCoalescing,
         eagAttributes);
   }
 
@@ -275,6 +284,7 @@ class NettyServerHandler extends AbstractNettyHandler {
       long maxConnectionAgeGraceInNanos,
       final KeepAliveEnforcer keepAliveEnforcer,
       boolean autoFlowControl,
+      @Nullable WriteQueue.FlushCoalescing flushCoalescing,
       Attributes eagAttributes) {
     super(channelUnused, decoder, encoder, settings, new ServerChannelLogger(),
         autoFlowControl, null);
@@ -325,10 +335,12 @@ class NettyServerHandler extends AbstractNettyHandler {
     this.maxConnectionAgeInNanos = maxConnectionAgeInNanos;
     this.maxConnectionAgeGraceInNanos = maxConnectionAgeGraceInNanos;
     this.keepAliveEnforcer = checkNotNull(keepAliveEnforcer, "keepAliveEnforcer");
+    this.flushCoalescing = flushCoalescing;
     this.eagAttributes = checkNotNull(eagAttributes, "eagAttributes");
 
     streamKey = encoder.connection().newKey();
     this.transportListener = checkNotNull(transportListener, "transportListener");
+    this.methodNameIndex = transportListener.methodNameIndex();
     this.streamTracerFactories = checkNotNull(streamTracerFactories, "streamTracerFactories");
     this.transportTracer = checkNotNull(transportTracer, "transportTracer");
 
@@ -343,7 +355,7 @@ class NettyServerHandler extends AbstractNettyHandler {
 
   @Override
   public void handlerAdded(final ChannelHandlerContext ctx) throws Exception {
-    serverWriteQueue = new WriteQueue(ctx.channel());
+    serverWriteQueue = new WriteQueue(ctx.channel(), flushCoalescing);
 
     // init max connection age monitor
     if (maxConnectionAgeInNanos != MAX_CONNECTION_AGE_NANOS_DISABLED) {
@@ -417,7 +429,7 @@ class NettyServerHandler extends AbstractNettyHandler {
         return;
       }
 
-      String method = path.subSequence(1, path.length()).toString();
+      String method = getMethodName(path);
 
       // Verify that the Content-Type is correct in the request.
       CharSequence contentType = headers.get(CONTENT_TYPE_HEADER);
@@ -486,6 +498,19 @@ class NettyServerHandler extends AbstractNettyHandler {
     }
   }
 
+  private String getMethodName(CharSequence path) {
+    if (methodNameIndex != null && path instanceof AsciiString) {
+      // Registered methods are found from the header bytes, without decoding a new String.
+      AsciiString asciiPath = (AsciiString) path;
+      String method = methodNameIndex.lookup(
+          asciiPath.array(), asciiPath.arrayOffset() + 1, asciiPath.length() - 1);
+      if (method != null) {
+        return method;
+      }
+    }
+    return path.subSequence(1, path.length()).toString();
+  }
+
   private String getOrUpdateAuthority(AsciiString authority) {
     if (authority == null) {
       return null;
@@ -689,16 +714,19 @@ class NettyServerHandler extends AbstractNettyHandler {
    */
   private void sendGrpcFrame(ChannelHandlerContext ctx, SendGrpcFrameCommand cmd,
       ChannelPromise promise) throws Http2Exception {
-    PerfMark.startTask("NettyServerHandler.sendGrpcFrame", cmd.stream().tag());
+    StreamIdHolder stream = cmd.stream();
+    PerfMark.startTask("NettyServerHandler.sendGrpcFrame", stream.tag());
     PerfMark.linkIn(cmd.getLink());
     try {
       if (cmd.endStream()) {
-        closeStreamWhenDone(promise, cmd.stream().id());
+        closeStreamWhenDone(promise, stream.id());
       }
       // Call the base class to write the HTTP/2 DATA frame.
-      encoder().writeData(ctx, cmd.stream().id(), cmd.content(), 0, cmd.endStream(), promise);
+      encoder().writeData(ctx, stream.id(), cmd.content(), 0, cmd.endStream(), promise);
+      // The encoder owns the content now.
+      cmd.recycle();
     } finally {
-      PerfMark.stopTask("NettyServerHandler.sendGrpcFrame", cmd.stream().tag());
+      PerfMark.stopTask("NettyServerHandler.sendGrpcFrame", stream.tag());
     }
   }
 
@@ -116,7 +116,8 @@ class NettyServerStream extends AbstractServerStream {
       final int numBytes = bytebuf.readableBytes();
       // Add the bytes to outbound flow control.
       onSendingBytes(numBytes);
-      writeQueue.enqueue(new SendGrpcFrameCommand(transportState(), bytebuf, false), flush)
+      writeQueue.enqueue(
+          SendGrpcFrameCommand.newInstance(transportState(), bytebuf, false), flush)
           .addListener(new ChannelFutureListener() {
             @Override
             public void operationComplete(ChannelFuture future) throws Exception {
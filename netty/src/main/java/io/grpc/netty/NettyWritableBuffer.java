@@ -18,6 +18,7 @@ package io.grpc.netty;
 
 import io.grpc.internal.WritableBuffer;
 import io.netty.buffer.ByteBuf;
+import java.nio.ByteBuffer;
 
 /**
  * The {@link WritableBuffer} used by the Netty transport.
@@ -50,6 +51,25 @@ class NettyWritableBuffer implements WritableBuffer {
     return bytebuf.readableBytes();
   }
 
+  @Override
+  public boolean byteBufferSupported() {
+    return bytebuf.nioBufferCount() == 1;
+  }
+
+  @Override
+  public ByteBuffer getByteBuffer(int length) {
+    if (length > bytebuf.writableBytes()) {
+      throw new IndexOutOfBoundsException(
+          "length " + length + " exceeds writable bytes " + bytebuf.writableBytes());
+    }
+    return bytebuf.nioBuffer(bytebuf.writerIndex(), length);
+  }
+
+  @Override
+  public void commitByteBuffer(int length) {
+    bytebuf.writerIndex(bytebuf.writerIndex() + length);
+  }
+
   @Override
   public void release() {
     bytebuf.release();
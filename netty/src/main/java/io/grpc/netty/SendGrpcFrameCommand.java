@@ -18,29 +18,81 @@ package io.grpc.netty;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufHolder;
-import io.netty.buffer.DefaultByteBufHolder;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelPromise;
+import io.netty.util.IllegalReferenceCountException;
+import io.netty.util.Recycler;
 import io.perfmark.Link;
 import io.perfmark.PerfMark;
+import javax.annotation.Nullable;
 
 /**
  * Command sent from the transport to the Netty channel to send a GRPC frame to the remote endpoint.
+ *
+ * <p>Commands obtained from {@link #newInstance} are pooled and must not be used once the handler
+ * has passed their content on to the HTTP/2 encoder and called {@link #recycle}.
  */
-final class SendGrpcFrameCommand extends DefaultByteBufHolder implements WriteQueue.QueuedCommand {
-  private final StreamIdHolder stream;
-  private final boolean endStream;
-  private final Link link;
+final class SendGrpcFrameCommand implements ByteBufHolder, WriteQueue.QueuedCommand {
+  private static final Recycler<SendGrpcFrameCommand> RECYCLER =
+      new Recycler<SendGrpcFrameCommand>() {
+        @Override
+        protected SendGrpcFrameCommand newObject(Handle<SendGrpcFrameCommand> handle) {
+          return new SendGrpcFrameCommand(handle);
+        }
+      };
+
+  @Nullable
+  private final Recycler.Handle<SendGrpcFrameCommand> handle;
+  private StreamIdHolder stream;
+  private ByteBuf content;
+  private boolean endStream;
+  private Link link;
 
   private ChannelPromise promise;
 
   SendGrpcFrameCommand(StreamIdHolder stream, ByteBuf content, boolean endStream) {
-    super(content);
+    this.handle = null;
+    init(stream, content, endStream);
+  }
+
+  private SendGrpcFrameCommand(Recycler.Handle<SendGrpcFrameCommand> handle) {
+    this.handle = handle;
+  }
+
+  /**
+   * Returns a pooled command. It goes back to the pool when the handler calls {@link #recycle}.
+   */
+  static SendGrpcFrameCommand newInstance(
+      StreamIdHolder stream, ByteBuf content, boolean endStream) {
+    SendGrpcFrameCommand cmd = RECYCLER.get();
+    cmd.init(stream, content, endStream);
+    return cmd;
+  }
+
+  private void init(StreamIdHolder stream, ByteBuf content, boolean endStream) {
     this.stream = stream;
+    this.content = content;
     this.endStream = endStream;
     this.link = PerfMark.linkOut();
   }
 
+  /**
+   * Returns a pooled command to the pool. Must only be called once the content has been handed
+   * off, since the command may be reused by another stream right away. Does nothing for commands
+   * that were not obtained from {@link #newInstance}.
+   */
+  void recycle() {
+    if (handle == null) {
+      return;
+    }
+    stream = null;
+    content = null;
+    endStream = false;
+    link = null;
+    promise = null;
+    handle.recycle(this);
+  }
+
   @Override
   public Link getLink() {
     return link;
@@ -54,40 +106,73 @@ final class SendGrpcFrameCommand extends DefaultByteBufHolder implements WriteQu
     return endStream;
   }
 
+  @Override
+  public ByteBuf content() {
+    if (content.refCnt() <= 0) {
+      throw new IllegalReferenceCountException(content.refCnt());
+    }
+    return content;
+  }
+
   @Override
   public ByteBufHolder copy() {
-    return new SendGrpcFrameCommand(stream, content().copy(), endStream);
+    return replace(content().copy());
   }
 
   @Override
   public ByteBufHolder duplicate() {
-    return new SendGrpcFrameCommand(stream, content().duplicate(), endStream);
+    return replace(content().duplicate());
+  }
+
+  @Override
+  public ByteBufHolder retainedDuplicate() {
+    return replace(content().retainedDuplicate());
+  }
+
+  @Override
+  public ByteBufHolder replace(ByteBuf content) {
+    return new SendGrpcFrameCommand(stream, content, endStream);
+  }
+
+  @Override
+  public int refCnt() {
+    return content.refCnt();
   }
 
   @Override
   public SendGrpcFrameCommand retain() {
-    super.retain();
+    content.retain();
     return this;
   }
 
   @Override
   public SendGrpcFrameCommand retain(int increment) {
-    super.retain(increment);
+    content.retain(increment);
     return this;
   }
 
   @Override
   public SendGrpcFrameCommand touch() {
-    super.touch();
+    content.touch();
     return this;
   }
 
   @Override
   public SendGrpcFrameCommand touch(Object hint) {
-    super.touch(hint);
+    content.touch(hint);
     return this;
   }
 
+  @Override
+  public boolean release() {
+    return content.release();
+  }
+
+  @Override
+  public boolean release(int decrement) {
+    return content.release(decrement);
+  }
+
   @Override
   public boolean equals(Object that) {
     if (that == null || !that.getClass().equals(SendGrpcFrameCommand.class)) {
@@ -22,11 +22,13 @@ import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelPromise;
+import io.netty.util.internal.PlatformDependent;
 import io.perfmark.Link;
 import io.perfmark.PerfMark;
 import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
 
 /**
  * A queue of pending writes to a {@link Channel} that is flushed as a single unit.
@@ -37,6 +39,25 @@ class WriteQueue {
   @VisibleForTesting
   static final int DEQUE_CHUNK_SIZE = 128;
 
+  /**
+   * Below this average number of commands per drain of the queue the connection is considered
+   * lightly used, and flushes are never deferred.
+   */
+  @VisibleForTesting
+  static final double LIGHT_LOAD_BATCH_SIZE = 2;
+
+  /**
+   * At or above this average number of commands per drain of the queue flushes are deferred by
+   * the full {@link FlushCoalescing#maxDelayNanos}.
+   */
+  @VisibleForTesting
+  static final double FULL_LOAD_BATCH_SIZE = 16;
+
+  /** Weight of the latest drain in the moving average of commands per drain. */
+  private static final double BATCH_SIZE_WEIGHT = 0.25;
+
+  private static final long NOT_DEFERRED = -1;
+
   /**
    * {@link Runnable} used to schedule work onto the tail of the event loop.
    */
@@ -47,13 +68,58 @@ class WriteQueue {
     }
   };
 
+  /**
+   * {@link Runnable} used to perform a flush that was deferred to coalesce it with later writes.
+   */
+  private final Runnable deferredFlush = new Runnable() {
+    @Override
+    public void run() {
+      deferredFlushScheduled = false;
+      if (unflushedSinceNanos != NOT_DEFERRED) {
+        deferredFlushes++;
+        flushChannel("WriteQueue.deferredFlush");
+      }
+    }
+  };
+
   private final Channel channel;
   private final Queue<QueuedCommand> queue;
   private final AtomicBoolean scheduled = new AtomicBoolean();
+  @Nullable
+  private final FlushCoalescing coalescing;
+
+  // Only accessed from the event loop.
+  private double averageBatchSize;
+  private boolean deferredFlushScheduled;
+  private long unflushedBytes;
+  // When the oldest write waiting for the deferred flush was written, or NOT_DEFERRED
+  private long unflushedSinceNanos = NOT_DEFERRED;
+  private long commandsWritten;
+  private long flushes;
+  private long deferredFlushes;
+  private long totalFlushDelayNanos;
 
   public WriteQueue(Channel channel) {
+    this(channel, null);
+  }
+
+  /**
+   * Creates a queue that, if {@code coalescing} is non-{@code null}, defers flushes of stream
+   * data while the connection is busy so that writes of several streams go out together.
+   */
+  WriteQueue(Channel channel, @Nullable FlushCoalescing coalescing) {
     this.channel = Preconditions.checkNotNull(channel, "channel");
-    queue = new ConcurrentLinkedQueue<>();
+    this.coalescing = coalescing;
+    // Only the event loop polls, so a multi-producer single-consumer queue is enough. It stores
+    // commands in array chunks instead of allocating a node per command.
+    //
+    // The queue is deliberately unbounded, like the ConcurrentLinkedQueue it replaced. A bound
+    // would have to either block the application thread that enqueues or drop the command, and
+    // dropping a write, cancel or close breaks the stream. Stream data is limited before it gets
+    // here: it counts against the stream's onReady threshold (see AbstractStream.onSendingBytes()),
+    // and a sender that ignores isReady() would buffer the same bytes in the HTTP/2 flow
+    // controller anyway. The other commands are per-stream or per-connection control messages.
+    queue = PlatformDependent.newMpscQueue();
   }
 
   /**
@@ -123,30 +189,43 @@ class WriteQueue {
     try {
       QueuedCommand cmd;
       int i = 0;
+      int batchSize = 0;
       boolean flushedOnce = false;
+      // Whether everything written since the last flush may wait a little for other streams
+      boolean coalescable = coalescing != null;
       while ((cmd = queue.poll()) != null) {
+        if (coalescable) {
+          if (cmd instanceof SendGrpcFrameCommand) {
+            unflushedBytes += ((SendGrpcFrameCommand) cmd).content().readableBytes();
+          } else if (!(cmd instanceof CreateStreamCommand)
+              && !(cmd instanceof SendResponseHeadersCommand)) {
+            // Cancellations, pings, shutdown and arbitrary runnables are sent right away.
+            coalescable = false;
+          }
+        }
         cmd.run(channel);
+        batchSize++;
         if (++i == DEQUE_CHUNK_SIZE) {
           i = 0;
           // Flush each chunk so we are releasing buffers periodically. In theory this loop
           // might never end as new events are continuously added to the queue, if we never
           // flushed in that case we would be guaranteed to OOM.
-          PerfMark.startTask("WriteQueue.flush0");
-          try {
-            channel.flush();
-          } finally {
-            PerfMark.stopTask("WriteQueue.flush0");
-          }
+          flushChannel("WriteQueue.flush0");
           flushedOnce = true;
         }
       }
+      commandsWritten += batchSize;
+      if (coalescing != null) {
+        // Every drain counts towards the load, including those that must be flushed right away.
+        averageBatchSize += (batchSize - averageBatchSize) * BATCH_SIZE_WEIGHT;
+      }
       // Must flush at least once, even if there were no writes.
       if (i != 0 || !flushedOnce) {
-        PerfMark.startTask("WriteQueue.flush1");
-        try {
-          channel.flush();
-        } finally {
-          PerfMark.stopTask("WriteQueue.flush1");
+        long delayNanos = coalescable && i != 0 ? flushDelayNanos() : 0;
+        if (delayNanos > 0) {
+          deferFlush(delayNanos);
+        } else {
+          flushChannel("WriteQueue.flush1");
         }
       }
     } finally {
@@ -159,6 +238,105 @@ class WriteQueue {
     }
   }
 
+  /**
+   * Returns how long the flush of the current drain may be deferred, scaling with the average
+   * number of commands per drain. Returns 0 for a lightly used connection or when enough bytes are
+   * waiting.
+   */
+  private long flushDelayNanos() {
+    if (averageBatchSize < LIGHT_LOAD_BATCH_SIZE || unflushedBytes >= coalescing.maxBytes) {
+      return 0;
+    }
+    double load = Math.min(1,
+        (averageBatchSize - LIGHT_LOAD_BATCH_SIZE)
+            / (FULL_LOAD_BATCH_SIZE - LIGHT_LOAD_BATCH_SIZE));
+    return (long) (coalescing.maxDelayNanos * load);
+  }
+
+  private void deferFlush(long delayNanos) {
+    if (unflushedSinceNanos == NOT_DEFERRED) {
+      unflushedSinceNanos = System.nanoTime();
+    }
+    if (!deferredFlushScheduled) {
+      deferredFlushScheduled = true;
+      channel.eventLoop().schedule(deferredFlush, delayNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private void flushChannel(String taskName) {
+    PerfMark.startTask(taskName);
+    try {
+      channel.flush();
+    } finally {
+      PerfMark.stopTask(taskName);
+    }
+    flushes++;
+    unflushedBytes = 0;
+    if (unflushedSinceNanos != NOT_DEFERRED) {
+      totalFlushDelayNanos += System.nanoTime() - unflushedSinceNanos;
+      unflushedSinceNanos = NOT_DEFERRED;
+    }
+  }
+
+  /** Number of commands written to the channel. Must be called from the event loop. */
+  long getCommandsWritten() {
+    return commandsWritten;
+  }
+
+  /** Number of times the channel was flushed. Must be called from the event loop. */
+  long getFlushes() {
+    return flushes;
+  }
+
+  /**
+   * Number of flushes that were deferred to coalesce writes and performed when the delay elapsed.
+   * Must be called from the event loop.
+   */
+  long getDeferredFlushes() {
+    return deferredFlushes;
+  }
+
+  /**
+   * Total time writes waited for a deferred flush, summed over flushes. This is the latency that
+   * coalescing added. Must be called from the event loop.
+   */
+  long getTotalFlushDelayNanos() {
+    return totalFlushDelayNanos;
+  }
+
+  /**
+   * Settings for coalescing flushes across the streams of a connection.
+   */
+  static final class FlushCoalescing {
+    final long maxDelayNanos;
+    final int maxBytes;
+
+    /**
+     * Flushes of stream data may be deferred by up to {@code maxDelayNanos} while the connection
+     * is busy, unless at least {@code maxBytes} are waiting to be flushed.
+     */
+    FlushCoalescing(long maxDelayNanos, int maxBytes) {
+      Preconditions.checkArgument(maxDelayNanos > 0, "maxDelayNanos must be positive");
+      Preconditions.checkArgument(maxBytes > 0, "maxBytes must be positive");
+      this.maxDelayNanos = maxDelayNanos;
+      this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof FlushCoalescing)) {
+        return false;
+      }
+      FlushCoalescing that = (FlushCoalescing) o;
+      return maxDelayNanos == that.maxDelayNanos && maxBytes == that.maxBytes;
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) (maxDelayNanos ^ (maxDelayNanos >>> 32)) * 31 + maxBytes;
+    }
+  }
+
   private static class RunnableCommand implements QueuedCommand {
     private final Runnable runnable;
     private final Link link;
@@ -16,6 +16,7 @@
 
 package io.grpc.netty;
 
+import static com.google.common.base.Charsets.US_ASCII;
 import static com.google.common.truth.Truth.assertThat;
 import static io.grpc.Metadata.BINARY_BYTE_MARSHALLER;
 import static io.grpc.internal.GrpcUtil.DEFAULT_MAX_HEADER_LIST_SIZE;
@@ -25,8 +26,10 @@ import static org.junit.Assert.assertTrue;
 
 import com.google.common.collect.Iterables;
 import com.google.common.io.BaseEncoding;
+import io.grpc.InternalMetadata;
 import io.grpc.Metadata;
 import io.grpc.Metadata.Key;
+import io.grpc.internal.GrpcUtil;
 import io.grpc.netty.GrpcHttp2HeadersUtils.GrpcHttp2ClientHeadersDecoder;
 import io.grpc.netty.GrpcHttp2HeadersUtils.GrpcHttp2RequestHeaders;
 import io.grpc.netty.GrpcHttp2HeadersUtils.GrpcHttp2ServerHeadersDecoder;
@@ -155,6 +158,20 @@ public class GrpcHttp2HeadersUtilsTest {
         values));
   }
 
+  @Test
+  public void wellKnownHeaderNamesShareKeyName() {
+    GrpcHttp2RequestHeaders http2Headers = new GrpcHttp2RequestHeaders(2);
+    http2Headers.add(AsciiString.of("grpc-encoding"), AsciiString.of("gzip"));
+    http2Headers.add(AsciiString.of("custom"), AsciiString.of("value"));
+
+    byte[][] namesAndValues = http2Headers.namesAndValues();
+    assertThat(namesAndValues[0])
+        .isSameInstanceAs(InternalMetadata.asciiName(GrpcUtil.MESSAGE_ENCODING_KEY));
+    assertThat(new String(namesAndValues[2], US_ASCII)).isEqualTo("custom");
+    assertThat(Utils.convertHeaders(http2Headers).get(GrpcUtil.MESSAGE_ENCODING_KEY))
+        .isEqualTo("gzip");
+  }
+
   @Test
   public void headerGetAll_notPresent() {
     Http2Headers http2Headers = new GrpcHttp2RequestHeaders(2);
@@ -27,6 +27,8 @@ import io.grpc.InsecureChannelCredentials;
 import io.grpc.ManagedChannel;
 import io.grpc.internal.ClientTransportFactory;
 import io.grpc.internal.ClientTransportFactory.SwapChannelCredentialsResult;
+import io.grpc.internal.ConnectionPoolTransportFactory;
+import io.grpc.internal.SharedTransportFactory;
 import io.grpc.netty.NettyTestUtil.TrackingObjectPoolForTest;
 import io.grpc.netty.ProtocolNegotiators.PlaintextProtocolNegotiatorClientFactory;
 import io.netty.channel.Channel;
@@ -324,4 +326,41 @@ public class NettyChannelBuilderTest {
         NettyChannelCredentials.create(new PlaintextProtocolNegotiatorClientFactory()));
     assertThat(result).isNotNull();
   }
+
+  @Test
+  public void maxConnectionsPerSubchannel_poolsTransports() {
+    NettyChannelBuilder builder = NettyChannelBuilder.forTarget("foo");
+    assertThat(builder.buildTransportFactory())
+        .isNotInstanceOf(ConnectionPoolTransportFactory.class);
+
+    builder.maxConnectionsPerSubchannel(4, 80);
+    ClientTransportFactory transportFactory = builder.buildTransportFactory();
+    assertThat(transportFactory).isInstanceOf(ConnectionPoolTransportFactory.class);
+
+    SwapChannelCredentialsResult result = transportFactory.swapChannelCredentials(
+        NettyChannelCredentials.create(new PlaintextProtocolNegotiatorClientFactory()));
+    assertThat(result).isNotNull();
+    transportFactory.close();
+  }
+
+  @Test
+  public void maxConnectionsPerSubchannel_mustBePositive() {
+    NettyChannelBuilder builder = NettyChannelBuilder.forTarget("foo");
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("maxConnections must be positive");
+
+    builder.maxConnectionsPerSubchannel(0, 80);
+  }
+
+  @Test
+  public void shareTransports_sharesTransports() {
+    NettyChannelBuilder builder =
+        NettyChannelBuilder.forTarget("foo", InsecureChannelCredentials.create());
+    assertThat(builder.buildTransportFactory()).isNotInstanceOf(SharedTransportFactory.class);
+
+    builder.shareTransports(true);
+    ClientTransportFactory transportFactory = builder.buildTransportFactory();
+    assertThat(transportFactory).isInstanceOf(SharedTransportFactory.class);
+    transportFactory.close();
+  }
 }
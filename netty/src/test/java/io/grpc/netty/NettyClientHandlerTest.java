@@ -297,6 +297,22 @@ public class NettyClientHandlerTest extends NettyHandlerTestBase<NettyClientHand
     verifyNoMoreInteractions(mockKeepAliveManager);
   }
 
+  @Test
+  public void sendPooledFrameShouldRecycleCommand() throws Exception {
+    createStream();
+
+    SendGrpcFrameCommand cmd =
+        SendGrpcFrameCommand.newInstance(streamTransportState, content(), true);
+    ChannelFuture future = enqueue(cmd);
+
+    assertTrue(future.isSuccess());
+    verifyWrite().writeData(eq(ctx()), eq(3), eq(content()), eq(0), eq(true),
+        any(ChannelPromise.class));
+    // Once written, the command has been cleared and returned to the pool.
+    assertNull(cmd.stream());
+    assertNull(cmd.promise());
+  }
+
   @Test
   public void sendForUnknownStreamShouldFail() throws Exception {
     ChannelFuture future
@@ -933,7 +949,7 @@ public class NettyClientHandlerTest extends NettyHandlerTestBase<NettyClientHand
 
   @Override
   protected WriteQueue initWriteQueue() {
-    handler().startWriteQueue(channel());
+    handler().startWriteQueue(channel(), null);
     return handler().getWriteQueue();
   }
 
@@ -43,6 +43,7 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isA;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -62,6 +63,7 @@ import io.grpc.Status.Code;
 import io.grpc.StreamTracer;
 import io.grpc.internal.GrpcUtil;
 import io.grpc.internal.KeepAliveManager;
+import io.grpc.internal.MethodNameIndex;
 import io.grpc.internal.ServerStream;
 import io.grpc.internal.ServerStreamListener;
 import io.grpc.internal.ServerTransportListener;
@@ -84,6 +86,7 @@ import io.netty.handler.codec.http2.Http2Stream;
 import io.netty.util.AsciiString;
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
@@ -113,6 +116,7 @@ public class NettyServerHandlerTest extends NettyHandlerTestBase<NettyServerHand
 
   private static final int STREAM_ID = 3;
 
+  private static final String INDEXED_METHOD = "foo/indexed";
   private static final AsciiString HTTP_FAKE_METHOD = AsciiString.of("FAKE");
 
 
@@ -587,6 +591,25 @@ public class NettyServerHandlerTest extends NettyHandlerTestBase<NettyServerHand
     stream = streamCaptor.getValue();
   }
 
+  @Test
+  public void indexedMethodNamePassedWithoutDecoding() throws Exception {
+    doReturn(MethodNameIndex.create(Collections.singletonList(INDEXED_METHOD)))
+        .when(transportListener).methodNameIndex();
+    manualSetUp();
+    Http2Headers headers = new DefaultHttp2Headers()
+        .method(HTTP_METHOD)
+        .set(CONTENT_TYPE_HEADER, CONTENT_TYPE_GRPC)
+        .set(TE_HEADER, TE_TRAILERS)
+        .path(new AsciiString("/" + INDEXED_METHOD));
+    ByteBuf headersFrame = headersFrame(STREAM_ID, headers);
+    channelRead(headersFrame);
+
+    ArgumentCaptor<String> methodCaptor = ArgumentCaptor.forClass(String.class);
+    verify(transportListener).streamCreated(any(NettyServerStream.class), methodCaptor.capture(),
+        any(Metadata.class));
+    assertSame(INDEXED_METHOD, methodCaptor.getValue());
+  }
+
   @Test
   public void headersWithConnectionHeaderShouldFail() throws Exception {
     manualSetUp();
@@ -1267,6 +1290,7 @@ public class NettyServerHandlerTest extends NettyHandlerTestBase<NettyServerHand
         maxConnectionAgeGraceInNanos,
         permitKeepAliveWithoutCalls,
         permitKeepAliveTimeInNanos,
+        /* flushCoalescing= */ null,
         Attributes.EMPTY);
   }
 
@@ -25,6 +25,7 @@ import static org.junit.Assert.assertSame;
 import com.google.common.base.MoreObjects;
 import io.grpc.InternalChannelz;
 import io.grpc.InternalChannelz.SocketOptions;
+import io.grpc.InternalStatus;
 import io.grpc.Metadata;
 import io.grpc.Status;
 import io.grpc.internal.GrpcUtil;
@@ -134,6 +135,35 @@ public class UtilsTest {
     assertEquals(Utils.CONTENT_TYPE_GRPC, headers.get(GrpcUtil.CONTENT_TYPE_KEY.name()));
   }
 
+  @Test
+  public void convertTrailers_statusOkReusesHeaders() {
+    Metadata trailers = new Metadata();
+    trailers.put(InternalStatus.CODE_KEY, Status.OK);
+    Http2Headers first = Utils.convertTrailers(trailers, true);
+
+    Metadata otherTrailers = new Metadata();
+    otherTrailers.put(InternalStatus.CODE_KEY, Status.OK);
+    assertSame(first, Utils.convertTrailers(otherTrailers, true));
+    assertThat(first.size()).isEqualTo(1);
+    assertThat(first.iterator().next().getKey().toString()).isEqualTo("grpc-status");
+    assertThat(first.iterator().next().getValue().toString()).isEqualTo("0");
+  }
+
+  @Test
+  public void convertTrailers_withMetadataOrErrorConvertsAll() {
+    Metadata trailers = new Metadata();
+    trailers.put(InternalStatus.CODE_KEY, Status.OK);
+    trailers.put(userKey, userValue);
+    Http2Headers withMetadata = Utils.convertTrailers(trailers, true);
+    assertThat(withMetadata.size()).isEqualTo(2);
+
+    Metadata errorTrailers = new Metadata();
+    errorTrailers.put(InternalStatus.CODE_KEY, Status.INTERNAL);
+    Http2Headers error = Utils.convertTrailers(errorTrailers, true);
+    assertThat(error.size()).isEqualTo(1);
+    assertThat(error.iterator().next().getValue().toString()).isEqualTo("13");
+  }
+
   @Test
   public void channelOptionsTest_noLinger() {
     Channel channel = new EmbeddedChannel();
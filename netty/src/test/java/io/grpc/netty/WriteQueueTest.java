@@ -16,21 +16,28 @@
 
 package io.grpc.netty;
 
+import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isA;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import io.grpc.netty.WriteQueue.FlushCoalescing;
 import io.grpc.netty.WriteQueue.QueuedCommand;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.EventLoop;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.Before;
 import org.junit.Rule;
@@ -38,6 +45,7 @@ import org.junit.Test;
 import org.junit.rules.Timeout;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
@@ -50,6 +58,8 @@ public class WriteQueueTest {
   @Rule
   public final Timeout globalTimeout = Timeout.seconds(60);
 
+  private static final long MAX_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
   private final Object lock = new Object();
 
   @Mock
@@ -58,6 +68,8 @@ public class WriteQueueTest {
   @Mock
   public ChannelPromise promise;
 
+  private EventLoop eventLoop;
+
   private long writeCalledNanos;
   private long flushCalledNanos = writeCalledNanos;
 
@@ -69,7 +81,7 @@ public class WriteQueueTest {
     MockitoAnnotations.initMocks(this);
     when(channel.newPromise()).thenReturn(promise);
 
-    EventLoop eventLoop = Mockito.mock(EventLoop.class);
+    eventLoop = Mockito.mock(EventLoop.class);
     doAnswer(new Answer<Void>() {
       @Override
       public Void answer(InvocationOnMock invocation) throws Throwable {
@@ -201,6 +213,106 @@ public class WriteQueueTest {
     verify(channel, times(writes)).write(isA(CuteCommand.class), eq(promise));
   }
 
+  @Test
+  public void coalescing_lightLoadFlushesImmediately() {
+    WriteQueue queue = new WriteQueue(channel, new FlushCoalescing(MAX_DELAY_NANOS, 1 << 20));
+    queue.enqueue(newDataCommand(10), true);
+
+    verify(channel).flush();
+    verify(eventLoop, never()).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+    assertThat(queue.getCommandsWritten()).isEqualTo(1);
+    assertThat(queue.getFlushes()).isEqualTo(1);
+    assertThat(queue.getDeferredFlushes()).isEqualTo(0);
+    assertThat(queue.getTotalFlushDelayNanos()).isEqualTo(0L);
+  }
+
+  @Test
+  public void coalescing_busyConnectionDefersFlush() {
+    WriteQueue queue = new WriteQueue(channel, new FlushCoalescing(MAX_DELAY_NANOS, 1 << 20));
+    int writes = (int) WriteQueue.FULL_LOAD_BATCH_SIZE;
+    for (int i = 0; i < writes; i++) {
+      queue.enqueue(newDataCommand(10), false);
+    }
+    queue.scheduleFlush();
+
+    verify(channel, times(writes)).write(isA(QueuedCommand.class), eq(promise));
+    verify(channel, never()).flush();
+    ArgumentCaptor<Long> delayCaptor = ArgumentCaptor.forClass(Long.class);
+    ArgumentCaptor<Runnable> flushCaptor = ArgumentCaptor.forClass(Runnable.class);
+    verify(eventLoop).schedule(
+        flushCaptor.capture(), delayCaptor.capture(), eq(TimeUnit.NANOSECONDS));
+    assertThat(delayCaptor.getValue()).isGreaterThan(0L);
+    assertThat(delayCaptor.getValue()).isAtMost(MAX_DELAY_NANOS);
+
+    // Writes arriving before the deferred flush join it without scheduling another one.
+    queue.enqueue(newDataCommand(10), true);
+    verify(channel, never()).flush();
+    verify(eventLoop).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+
+    flushCaptor.getValue().run();
+    verify(channel, times(writes + 1)).write(isA(QueuedCommand.class), eq(promise));
+    verify(channel).flush();
+    assertThat(queue.getCommandsWritten()).isEqualTo(writes + 1);
+    assertThat(queue.getFlushes()).isEqualTo(1);
+    assertThat(queue.getDeferredFlushes()).isEqualTo(1);
+    assertThat(queue.getTotalFlushDelayNanos()).isAtLeast(0L);
+  }
+
+  @Test
+  public void coalescing_drainsFlushedImmediatelyStillCountTowardsLoad() {
+    WriteQueue queue = new WriteQueue(channel, new FlushCoalescing(MAX_DELAY_NANOS, 1 << 20));
+    int writes = (int) WriteQueue.FULL_LOAD_BATCH_SIZE;
+    for (int i = 0; i < writes; i++) {
+      queue.enqueue(new CuteCommand(), false);
+    }
+    queue.scheduleFlush();
+    verify(channel).flush();
+
+    // A single data frame on a connection that was just busy waits for other streams.
+    queue.enqueue(newDataCommand(10), true);
+    verify(channel).flush();
+    verify(eventLoop).schedule(any(Runnable.class), anyLong(), eq(TimeUnit.NANOSECONDS));
+  }
+
+  @Test
+  public void coalescing_maxBytesFlushesImmediately() {
+    WriteQueue queue = new WriteQueue(channel, new FlushCoalescing(MAX_DELAY_NANOS, 100));
+    int writes = (int) WriteQueue.FULL_LOAD_BATCH_SIZE;
+    for (int i = 0; i < writes; i++) {
+      queue.enqueue(newDataCommand(10), false);
+    }
+    queue.scheduleFlush();
+
+    verify(channel).flush();
+    verify(eventLoop, never()).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+    assertThat(queue.getCommandsWritten()).isEqualTo(1);
+    assertThat(queue.getFlushes()).isEqualTo(1);
+    assertThat(queue.getDeferredFlushes()).isEqualTo(0);
+    assertThat(queue.getTotalFlushDelayNanos()).isEqualTo(0L);
+  }
+
+  @Test
+  public void coalescing_nonDataCommandFlushesImmediately() {
+    WriteQueue queue = new WriteQueue(channel, new FlushCoalescing(MAX_DELAY_NANOS, 1 << 20));
+    int writes = (int) WriteQueue.FULL_LOAD_BATCH_SIZE;
+    for (int i = 0; i < writes; i++) {
+      queue.enqueue(newDataCommand(10), false);
+    }
+    queue.enqueue(new CuteCommand(), true);
+
+    verify(channel).flush();
+    verify(eventLoop, never()).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+    assertThat(queue.getCommandsWritten()).isEqualTo(1);
+    assertThat(queue.getFlushes()).isEqualTo(1);
+    assertThat(queue.getDeferredFlushes()).isEqualTo(0);
+    assertThat(queue.getTotalFlushDelayNanos()).isEqualTo(0L);
+  }
+
+  private static SendGrpcFrameCommand newDataCommand(int size) {
+    return new SendGrpcFrameCommand(
+        mock(StreamIdHolder.class), Unpooled.wrappedBuffer(new byte[size]), false);
+  }
+
   static class CuteCommand extends WriteQueue.AbstractQueuedCommand {
 
   }
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.okhttp.internal.framed;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import okio.Buffer;
+import okio.ByteString;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Huffman coding of header values that are typically sent on every call.
+ */
+@State(Scope.Benchmark)
+public class HuffmanBenchmark {
+
+  public enum HeaderValue {
+    /** An OAuth2 bearer token, as sent in the {@code authorization} header. */
+    JWT_BEARER_TOKEN("Bearer eyJhbGciOiJSUzI1NiIsImtpZCI6IjFlOWdkazcifQ.eyJpc3MiOiJodHRwczovL2"
+        + "FjY291bnRzLmV4YW1wbGUuY29tIiwic3ViIjoiMTEwMTY5NDg0NDc0Mzg2Mjc2MzM0IiwiYXVkIjoiaHR0cHM6"
+        + "Ly9ncnBjLmV4YW1wbGUuY29tIiwiZXhwIjoxNjQxNzY5MjAwLCJpYXQiOjE2NDE3NjU2MDB9.Xj3hb0Kk6CmRsm"
+        + "Y2W1Aw-LY2bNOSZR0yGPjyyP8K5nHB8rQz4Oi7OYbc0cG8Xz4V6Km3vLj7bKa2dRl4QmJrWUqkO1vpnAwcbRm"
+        + "T1gFQ0Jm9hWcz3WxOYmsH8NNfzHr0LQVdp5SMGIPpMJYyJ3NoQ8BpA6GX9cGAe2dy0DfNIgaMUi2fLlXlU1Rf0"),
+    /** A W3C trace context {@code traceparent}. */
+    TRACEPARENT("00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01"),
+    /** A {@code user-agent}. */
+    USER_AGENT("grpc-java-okhttp/1.46.0-SNAPSHOT");
+
+    private final String value;
+
+    HeaderValue(String value) {
+      this.value = value;
+    }
+  }
+
+  @Param
+  public HeaderValue headerValue;
+
+  private ByteString value;
+  private byte[] encoded;
+  private final Buffer sink = new Buffer();
+
+  /** Encodes the value to decode. */
+  @Setup
+  public void setUp() throws IOException {
+    value = ByteString.of(headerValue.value.getBytes(US_ASCII));
+    Huffman.get().encode(value, sink);
+    encoded = sink.readByteArray();
+  }
+
+  /** Decodes the value, as {@code Hpack.Reader} does for each Huffman coded string. */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public byte[] decode() throws IOException {
+    return Huffman.get().decode(encoded);
+  }
+
+  /** Encodes the value, as {@code Hpack.Writer} does when compression is enabled. */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public long encode() throws IOException {
+    sink.clear();
+    if (Huffman.get().encodedLength(value) < value.size()) {
+      Huffman.get().encode(value, sink);
+    }
+    return sink.size();
+  }
+}
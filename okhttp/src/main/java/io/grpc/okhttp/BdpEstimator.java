@@ -0,0 +1,81 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.okhttp;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Stopwatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estimates the bandwidth-delay product of a connection from the data received while a ping is
+ * outstanding, and picks the receive window to grow to. This is the algorithm of the Netty
+ * transport's {@code AbstractNettyHandler.FlowControlPinger}.
+ *
+ * <p>A ping is only sent once data is received and no other BDP ping is outstanding, so every ping
+ * follows data sent by the server and does not count against its ping limits.
+ */
+final class BdpEstimator {
+  /** The payload of BDP pings, which tells their acks from those of keepalive pings. */
+  static final long BDP_PING_PAYLOAD = 1234;
+  static final int MAX_WINDOW_SIZE = 8 * 1024 * 1024;
+
+  private final Stopwatch stopwatch;
+  private boolean pinging;
+  private int dataSincePing;
+  private long lastBandwidth; // bytes per second
+
+  BdpEstimator(Stopwatch stopwatch) {
+    this.stopwatch = checkNotNull(stopwatch, "stopwatch");
+  }
+
+  /**
+   * Records {@code length} bytes of received DATA. Returns true if a BDP ping should be sent before
+   * the data is processed.
+   */
+  boolean onDataRead(int length) {
+    boolean sendPing = false;
+    if (!pinging) {
+      pinging = true;
+      dataSincePing = 0;
+      stopwatch.reset().start();
+      sendPing = true;
+    }
+    dataSincePing += length;
+    return sendPing;
+  }
+
+  /**
+   * Records the ack of the BDP ping. Returns the window to grow to, or {@code currentWindow} if it
+   * should not change.
+   */
+  int onPingAck(int currentWindow) {
+    if (!pinging) {
+      return currentWindow;
+    }
+    pinging = false;
+    long elapsedNanos = Math.max(stopwatch.elapsed(TimeUnit.NANOSECONDS), 1);
+    long bandwidth = dataSincePing * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    // Double the observed BDP, for as long as a larger window keeps increasing the bandwidth.
+    int targetWindow = (int) Math.min(dataSincePing * 2L, MAX_WINDOW_SIZE);
+    if (targetWindow > currentWindow && bandwidth > lastBandwidth) {
+      lastBandwidth = bandwidth;
+      return targetWindow;
+    }
+    return currentWindow;
+  }
+}
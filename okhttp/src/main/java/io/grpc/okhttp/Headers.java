@@ -41,6 +41,7 @@ class Headers {
   public static final Header CONTENT_TYPE_HEADER =
       new Header(CONTENT_TYPE_KEY.name(), GrpcUtil.CONTENT_TYPE_GRPC);
   public static final Header TE_HEADER = new Header("te", GrpcUtil.TE_TRAILERS);
+  private static final ByteString USER_AGENT_NAME = ByteString.encodeUtf8(USER_AGENT_KEY.name());
 
   /**
    * Serializes the given headers and creates a list of OkHttp {@link Header}s to be used when
@@ -82,7 +83,7 @@ class Headers {
     String path = defaultPath;
     okhttpHeaders.add(new Header(Header.TARGET_PATH, path));
 
-    okhttpHeaders.add(new Header(GrpcUtil.USER_AGENT_KEY.name(), userAgent));
+    okhttpHeaders.add(new Header(USER_AGENT_NAME, userAgent));
 
     // All non-pseudo headers must come after pseudo headers.
     okhttpHeaders.add(CONTENT_TYPE_HEADER);
@@ -92,8 +93,7 @@ class Headers {
     byte[][] serializedHeaders = TransportFrameUtil.toHttp2Headers(headers);
     for (int i = 0; i < serializedHeaders.length; i += 2) {
       ByteString key = ByteString.of(serializedHeaders[i]);
-      String keyString = key.utf8();
-      if (isApplicationHeader(keyString)) {
+      if (isApplicationHeader(key)) {
         ByteString value = ByteString.of(serializedHeaders[i + 1]);
         okhttpHeaders.add(new Header(key, value));
       }
@@ -106,10 +106,14 @@ class Headers {
    * Returns {@code true} if the given header is an application-provided header. Otherwise, returns
    * {@code false} if the header is reserved by GRPC.
    */
-  private static boolean isApplicationHeader(String key) {
-    // Don't allow HTTP/2 pseudo headers or content-type to be added by the application.
-    return (!key.startsWith(":")
-            && !CONTENT_TYPE_KEY.name().equalsIgnoreCase(key))
-            && !USER_AGENT_KEY.name().equalsIgnoreCase(key);
+  private static boolean isApplicationHeader(ByteString key) {
+    // Don't allow HTTP/2 pseudo headers or content-type to be added by the application. Compared
+    // as bytes, as this runs for every header of every call. toAsciiLowercase() returns the same
+    // ByteString when it is already lowercase, as Metadata keys are.
+    if (key.size() > 0 && key.getByte(0) == ':') {
+      return false;
+    }
+    ByteString name = key.toAsciiLowercase();
+    return !CONTENT_TYPE_HEADER.name.equals(name) && !USER_AGENT_NAME.equals(name);
   }
 }
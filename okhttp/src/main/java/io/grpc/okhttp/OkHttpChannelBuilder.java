@@ -180,8 +180,10 @@ public final class OkHttpChannelBuilder extends
   private long keepAliveTimeNanos = KEEPALIVE_TIME_NANOS_DISABLED;
   private long keepAliveTimeoutNanos = DEFAULT_KEEPALIVE_TIMEOUT_NANOS;
   private int flowControlWindow = DEFAULT_FLOW_CONTROL_WINDOW;
+  private boolean autoFlowControl;
   private boolean keepAliveWithoutCalls;
   private int maxInboundMetadataSize = Integer.MAX_VALUE;
+  private boolean nonBlockingReader;
 
   /**
    * If true, indicates that the transport may use the GET method for RPCs, and may include the
@@ -323,12 +325,30 @@ public final class OkHttpChannelBuilder extends
   }
 
   /**
-   * Sets the flow control window in bytes. If not called, the default value
-   * is {@link #DEFAULT_FLOW_CONTROL_WINDOW}).
+   * Sets the initial flow control window in bytes. Setting initial flow control window enables auto
+   * flow control tuning using bandwidth-delay product algorithm, which grows the window of a
+   * connection while it limits throughput, such as on high-latency links. To disable auto flow
+   * control tuning, use {@link #flowControlWindow(int)}. By default, auto flow control is disabled.
+   *
+   * @since 1.46.0
+   */
+  public OkHttpChannelBuilder initialFlowControlWindow(int initialFlowControlWindow) {
+    Preconditions.checkArgument(
+        initialFlowControlWindow > 0, "initialFlowControlWindow must be positive");
+    this.flowControlWindow = initialFlowControlWindow;
+    this.autoFlowControl = true;
+    return this;
+  }
+
+  /**
+   * Sets the flow control window in bytes. Setting flowControlWindow disables auto flow control
+   * tuning; use {@link #initialFlowControlWindow(int)} to enable auto flow control tuning. If not
+   * called, the default value is {@link #DEFAULT_FLOW_CONTROL_WINDOW}).
    */
   public OkHttpChannelBuilder flowControlWindow(int flowControlWindow) {
     Preconditions.checkState(flowControlWindow > 0, "flowControlWindow must be positive");
     this.flowControlWindow = flowControlWindow;
+    this.autoFlowControl = false;
     return this;
   }
 
@@ -473,6 +493,25 @@ public final class OkHttpChannelBuilder extends
     return this;
   }
 
+  /**
+   * Sets whether to read from connections on a small pool of selector threads shared by all
+   * channels, instead of dedicating a thread of the transport executor to each connection. This
+   * reduces the number of threads when connecting to many servers.
+   *
+   * <p>Only plaintext connections made without a proxy or a custom {@link SocketFactory} can be
+   * read this way. Other connections still use a thread each.
+   *
+   * <p>Default: {@code false}
+   *
+   * @return this
+   *
+   * @since 1.46.0
+   */
+  public OkHttpChannelBuilder nonBlockingReader(boolean enable) {
+    this.nonBlockingReader = enable;
+    return this;
+  }
+
   /**
    * Sets the maximum size of metadata allowed to be received. {@code Integer.MAX_VALUE} disables
    * the enforcement. Defaults to no limit ({@code Integer.MAX_VALUE}).
@@ -519,10 +558,12 @@ public final class OkHttpChannelBuilder extends
         keepAliveTimeNanos,
         keepAliveTimeoutNanos,
         flowControlWindow,
+        autoFlowControl,
         keepAliveWithoutCalls,
         maxInboundMetadataSize,
         transportTracerFactory,
-        useGetForSafeMethods);
+        useGetForSafeMethods,
+        nonBlockingReader);
   }
 
   OkHttpChannelBuilder disableCheckAuthority() {
@@ -727,10 +768,12 @@ public final class OkHttpChannelBuilder extends
     private final AtomicBackoff keepAliveBackoff;
     private final long keepAliveTimeoutNanos;
     private final int flowControlWindow;
+    private final boolean autoFlowControl;
     private final boolean keepAliveWithoutCalls;
     private final int maxInboundMetadataSize;
     private final ScheduledExecutorService timeoutService;
     private final boolean useGetForSafeMethods;
+    @Nullable private final SelectorReaderPool selectorReaderPool;
     private boolean closed;
 
     private OkHttpTransportFactory(
@@ -745,10 +788,12 @@ public final class OkHttpChannelBuilder extends
         long keepAliveTimeNanos,
         long keepAliveTimeoutNanos,
         int flowControlWindow,
+        boolean autoFlowControl,
         boolean keepAliveWithoutCalls,
         int maxInboundMetadataSize,
         TransportTracer.Factory transportTracerFactory,
-        boolean useGetForSafeMethods) {
+        boolean useGetForSafeMethods,
+        boolean nonBlockingReader) {
       usingSharedScheduler = timeoutService == null;
       this.timeoutService = usingSharedScheduler
           ? SharedResourceHolder.get(GrpcUtil.TIMER_SERVICE) : timeoutService;
@@ -762,9 +807,12 @@ public final class OkHttpChannelBuilder extends
       this.keepAliveBackoff = new AtomicBackoff("keepalive time nanos", keepAliveTimeNanos);
       this.keepAliveTimeoutNanos = keepAliveTimeoutNanos;
       this.flowControlWindow = flowControlWindow;
+      this.autoFlowControl = autoFlowControl;
       this.keepAliveWithoutCalls = keepAliveWithoutCalls;
       this.maxInboundMetadataSize = maxInboundMetadataSize;
       this.useGetForSafeMethods = useGetForSafeMethods;
+      this.selectorReaderPool =
+          nonBlockingReader ? SharedResourceHolder.get(SelectorReaderPool.SHARED_POOL) : null;
 
       usingSharedExecutor = executor == null;
       this.transportTracerFactory =
@@ -813,6 +861,13 @@ public final class OkHttpChannelBuilder extends
         transport.enableKeepAlive(
             true, keepAliveTimeNanosState.get(), keepAliveTimeoutNanos, keepAliveWithoutCalls);
       }
+      if (autoFlowControl) {
+        transport.enableAutoFlowControl();
+      }
+      if (selectorReaderPool != null && socketFactory == null && sslSocketFactory == null
+          && options.getHttpConnectProxiedSocketAddress() == null) {
+        transport.enableSelectorReader(selectorReaderPool);
+      }
       return transport;
     }
 
@@ -841,10 +896,12 @@ public final class OkHttpChannelBuilder extends
           keepAliveTimeNanos,
           keepAliveTimeoutNanos,
           flowControlWindow,
+          autoFlowControl,
           keepAliveWithoutCalls,
           maxInboundMetadataSize,
           transportTracerFactory,
-          useGetForSafeMethods);
+          useGetForSafeMethods,
+          selectorReaderPool != null);
       return new SwapChannelCredentialsResult(factory, result.callCredentials);
     }
 
@@ -862,6 +919,10 @@ public final class OkHttpChannelBuilder extends
       if (usingSharedExecutor) {
         SharedResourceHolder.release(SHARED_EXECUTOR, executor);
       }
+
+      if (selectorReaderPool != null) {
+        SharedResourceHolder.release(SelectorReaderPool.SHARED_POOL, selectorReaderPool);
+      }
     }
   }
 }
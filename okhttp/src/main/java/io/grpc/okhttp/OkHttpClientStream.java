@@ -58,6 +58,7 @@ class OkHttpClientStream extends AbstractClientStream {
   private final TransportState state;
   private final Sink sink = new Sink();
   private final Attributes attributes;
+  private final WriteQueue writeQueue;
 
   private boolean useGet = false;
 
@@ -68,6 +69,7 @@ class OkHttpClientStream extends AbstractClientStream {
       OkHttpClientTransport transport,
       OutboundFlowController outboundFlow,
       Object lock,
+      WriteQueue writeQueue,
       int maxMessageSize,
       int initialWindowSize,
       String authority,
@@ -87,6 +89,7 @@ class OkHttpClientStream extends AbstractClientStream {
     this.method = method;
     this.authority = authority;
     this.userAgent = userAgent;
+    this.writeQueue = checkNotNull(writeQueue, "writeQueue");
     // OkHttpClientStream is only created after the transport has finished connecting,
     // so it is safe to read the transport attributes.
     // We make a copy here for convenience, even though we can ask the transport.
@@ -162,9 +165,10 @@ class OkHttpClientStream extends AbstractClientStream {
 
     @Override
     public void writeFrame(
-        WritableBuffer frame, boolean endOfStream, boolean flush, int numMessages) {
+        WritableBuffer frame, final boolean endOfStream, final boolean flush,
+        final int numMessages) {
       PerfMark.startTask("OkHttpClientStream$Sink.writeFrame");
-      Buffer buffer;
+      final Buffer buffer;
       if (frame == null) {
         buffer = EMPTY_BUFFER;
       } else {
@@ -176,10 +180,15 @@ class OkHttpClientStream extends AbstractClientStream {
       }
 
       try {
-        synchronized (state.lock) {
-          state.sendBuffer(buffer, endOfStream, flush);
-          getTransportTracer().reportMessageSent(numMessages);
-        }
+        // Frames of a stream stay in order, as the queue only has one writer at a time.
+        writeQueue.enqueue(new Runnable() {
+          @SuppressWarnings("GuardedBy") // Run holding state.lock
+          @Override
+          public void run() {
+            state.sendBuffer(buffer, endOfStream, flush);
+            getTransportTracer().reportMessageSent(numMessages);
+          }
+        }, flush);
       } finally {
         PerfMark.stopTask("OkHttpClientStream$Sink.writeFrame");
       }
@@ -199,7 +208,8 @@ class OkHttpClientStream extends AbstractClientStream {
   }
 
   class TransportState extends Http2ClientStreamTransportState {
-    private final int initialWindowSize;
+    @GuardedBy("lock")
+    private int initialWindowSize;
     private final Object lock;
     @GuardedBy("lock")
     private List<Header> requestHeaders;
@@ -297,6 +307,18 @@ class OkHttpClientStream extends AbstractClientStream {
       }
     }
 
+    /**
+     * Changes the window that {@link #bytesRead} restores. The receive window changes by the same
+     * amount, as it does for a new initial window size in a SETTINGS frame.
+     */
+    @GuardedBy("lock")
+    void setInitialWindowSize(int initialWindowSize) {
+      int delta = initialWindowSize - this.initialWindowSize;
+      this.initialWindowSize = initialWindowSize;
+      window += delta;
+      processedWindow += delta;
+    }
+
     @Override
     @GuardedBy("lock")
     public void deframerClosed(boolean hasPartialMessage) {
@@ -395,8 +417,8 @@ class OkHttpClientStream extends AbstractClientStream {
       } else {
         checkState(id() != ABSENT_ID, "streamId should be set");
         // If buffer > frameWriter.maxDataLength() the flow-controller will ensure that it is
-        // properly chunked.
-        outboundFlow.data(endOfStream, id(), buffer, flush);
+        // properly chunked. The write queue flushes once per chunk of writes it drains.
+        outboundFlow.data(endOfStream, id(), buffer, false);
       }
     }
 
@@ -75,6 +75,7 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.URI;
+import java.nio.channels.SocketChannel;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.EnumMap;
@@ -147,13 +148,15 @@ class OkHttpClientTransport implements ConnectionClientTransport, TransportExcep
   private final Random random = new Random();
   // Returns new unstarted stopwatches
   private final Supplier<Stopwatch> stopwatchFactory;
-  private final int initialWindowSize;
+  // Only changed by the frame handler, while holding the lock.
+  private int initialWindowSize;
   private Listener listener;
   private FrameReader testFrameReader;
   private OkHttpFrameLogger testFrameLogger;
   @GuardedBy("lock")
   private ExceptionHandlingFrameWriter frameWriter;
   private OutboundFlowController outboundFlow;
+  private WriteQueue writeQueue;
   private final Object lock = new Object();
   private final InternalLogId logId;
   @GuardedBy("lock")
@@ -199,6 +202,14 @@ class OkHttpClientTransport implements ConnectionClientTransport, TransportExcep
   private long keepAliveTimeNanos;
   private long keepAliveTimeoutNanos;
   private boolean keepAliveWithoutCalls;
+  @Nullable
+  private SelectorReaderPool selectorReaderPool;
+  // Set and read in the serializingExecutor.
+  @Nullable
+  private SelectorReaderPool.Connection selectorConnection;
+  // Only used by the frame handler.
+  @Nullable
+  private BdpEstimator bdpEstimator;
   private final Runnable tooManyPingsRunnable;
   private final int maxInboundMetadataSize;
   private final boolean useGetForSafeMethods;
@@ -349,6 +360,21 @@ class OkHttpClientTransport implements ConnectionClientTransport, TransportExcep
     this.keepAliveWithoutCalls = keepAliveWithoutCalls;
   }
 
+  /**
+   * Read frames on one of the selector threads of {@code pool}, instead of on a thread of the
+   * executor. Only for plaintext connections made without a proxy or a custom socket factory.
+   */
+  void enableSelectorReader(SelectorReaderPool pool) {
+    this.selectorReaderPool = Preconditions.checkNotNull(pool, "pool");
+  }
+
+  /**
+   * Grow the receive window from its initial size as BDP pings show that it limits throughput.
+   */
+  void enableAutoFlowControl() {
+    bdpEstimator = new BdpEstimator(stopwatchFactory.get());
+  }
+
   private boolean isForTest() {
     return address == null;
   }
@@ -404,6 +430,7 @@ class OkHttpClientTransport implements ConnectionClientTransport, TransportExcep
           OkHttpClientTransport.this,
           outboundFlow,
           lock,
+          writeQueue,
           maxMessageSize,
           initialWindowSize,
           defaultAuthority,
@@ -437,6 +464,8 @@ class OkHttpClientTransport implements ConnectionClientTransport, TransportExcep
     setInUse(stream);
     // TODO(b/145386688): This access should be guarded by 'stream.transportState().lock'; instead
     // found: 'this.lock'
+    // The window may have grown since the stream was created.
+    stream.transportState().setInitialWindowSize(initialWindowSize);
     stream.transportState().start(nextStreamId);
     // For unary and server streaming, there will be a data frame soon, no need to flush the header.
     if ((stream.getType() != MethodType.UNARY && stream.getType() != MethodType.SERVER_STREAMING)
@@ -493,6 +522,7 @@ class OkHttpClientTransport implements ConnectionClientTransport, TransportExcep
         frameWriter = new ExceptionHandlingFrameWriter(OkHttpClientTransport.this, testFrameWriter,
             testFrameLogger);
         outboundFlow = new OutboundFlowController(OkHttpClientTransport.this, frameWriter);
+        writeQueue = new WriteQueue(lock, frameWriter, serializingExecutor);
       }
       serializingExecutor.execute(new Runnable() {
         @Override
@@ -519,6 +549,7 @@ class OkHttpClientTransport implements ConnectionClientTransport, TransportExcep
     synchronized (lock) {
       frameWriter = new ExceptionHandlingFrameWriter(this, rawFrameWriter);
       outboundFlow = new OutboundFlowController(this, frameWriter);
+      writeQueue = new WriteQueue(lock, frameWriter, serializingExecutor);
     }
     final CountDownLatch latch = new CountDownLatch(1);
     // Connecting in the serializingExecutor, so that some stream operations like synStream
@@ -554,7 +585,9 @@ class OkHttpClientTransport implements ConnectionClientTransport, TransportExcep
         Socket sock;
         SSLSession sslSession = null;
         try {
-          if (proxiedAddr == null) {
+          if (selectorReaderPool != null) {
+            sock = SocketChannel.open(address).socket();
+          } else if (proxiedAddr == null) {
             sock = socketFactory.createSocket(address.getAddress(), address.getPort());
           } else {
             if (proxiedAddr.getProxyAddress() instanceof InetSocketAddress) {
@@ -578,8 +611,14 @@ class OkHttpClientTransport implements ConnectionClientTransport, TransportExcep
             sock = sslSocket;
           }
           sock.setTcpNoDelay(true);
-          source = Okio.buffer(Okio.source(sock));
-          asyncSink.becomeConnected(Okio.sink(sock), sock);
+          if (selectorReaderPool != null) {
+            selectorConnection = selectorReaderPool.register(sock.getChannel());
+            source = selectorConnection.source();
+            asyncSink.becomeConnected(selectorConnection, sock);
+          } else {
+            source = Okio.buffer(Okio.source(sock));
+            asyncSink.becomeConnected(Okio.sink(sock), sock);
+          }
 
           // The return value of OkHttpTlsUpgrader.upgrade is an SSLSocket that has this info
           attributes = attributes.toBuilder()
@@ -618,7 +657,11 @@ class OkHttpClientTransport implements ConnectionClientTransport, TransportExcep
       public void run() {
         // ClientFrameHandler need to be started after connectionPreface / settings, otherwise it
         // may send goAway immediately.
-        executor.execute(clientFrameHandler);
+        if (selectorConnection != null) {
+          selectorConnection.startReading(clientFrameHandler);
+        } else {
+          executor.execute(clientFrameHandler);
+        }
         synchronized (lock) {
           maxConcurrentStreams = Integer.MAX_VALUE;
           startPendingStreams();
@@ -1078,10 +1121,11 @@ class OkHttpClientTransport implements ConnectionClientTransport, TransportExcep
   }
 
   /**
-   * Runnable which reads frames and dispatches them to in flight calls.
+   * Runnable which reads frames and dispatches them to in flight calls. Alternatively, a
+   * {@link SelectorReaderPool} passes it the bytes read and it dispatches the complete frames.
    */
   @VisibleForTesting
-  class ClientFrameHandler implements FrameReader.Handler, Runnable {
+  class ClientFrameHandler implements FrameReader.Handler, SelectorReaderPool.Handler, Runnable {
 
     private final OkHttpFrameLogger logger;
     FrameReader frameReader;
@@ -1102,29 +1146,57 @@ class OkHttpClientTransport implements ConnectionClientTransport, TransportExcep
       String threadName = Thread.currentThread().getName();
       Thread.currentThread().setName("OkHttpClientTransport");
       try {
-        // Read until the underlying socket closes.
-        while (frameReader.nextFrame(this)) {
-          if (keepAliveManager != null) {
-            keepAliveManager.onDataReceived();
+        Throwable cause = null;
+        try {
+          // Read until the underlying socket closes.
+          while (frameReader.nextFrame(this)) {
+            if (keepAliveManager != null) {
+              keepAliveManager.onDataReceived();
+            }
           }
+        } catch (Throwable t) {
+          cause = t;
         }
-        // frameReader.nextFrame() returns false when the underlying read encounters an IOException,
-        // it may be triggered by the socket closing, in such case, the startGoAway() will do
-        // nothing, otherwise, we finish all streams since it's a real IO issue.
-        Status status;
-        synchronized (lock) {
-          status = goAwayStatus;
+        readingStopped(cause);
+      } finally {
+        Thread.currentThread().setName(threadName);
+      }
+    }
+
+    @Override
+    public void bytesRead(Buffer buffer) throws IOException {
+      // The frameReader reads from the same buffer, so never waits for bytes that are not there.
+      while (Http2.hasCompleteFrame(buffer)) {
+        frameReader.nextFrame(this);
+        if (keepAliveManager != null) {
+          keepAliveManager.onDataReceived();
         }
-        if (status == null) {
-          status = Status.UNAVAILABLE.withDescription("End of stream or IOException");
+      }
+    }
+
+    @Override
+    public void readingStopped(@Nullable Throwable cause) {
+      try {
+        if (cause == null) {
+          // Reading stops without a cause when the underlying read encounters an IOException or
+          // the end of the stream. It may be triggered by the socket closing, in such case, the
+          // startGoAway() will do nothing, otherwise, we finish all streams since it's a real IO
+          // issue.
+          Status status;
+          synchronized (lock) {
+            status = goAwayStatus;
+          }
+          if (status == null) {
+            status = Status.UNAVAILABLE.withDescription("End of stream or IOException");
+          }
+          startGoAway(0, ErrorCode.INTERNAL_ERROR, status);
+        } else {
+          // TODO(madongfly): Send the exception message to the server.
+          startGoAway(
+              0,
+              ErrorCode.PROTOCOL_ERROR,
+              Status.INTERNAL.withDescription("error in frame handler").withCause(cause));
         }
-        startGoAway(0, ErrorCode.INTERNAL_ERROR, status);
-      } catch (Throwable t) {
-        // TODO(madongfly): Send the exception message to the server.
-        startGoAway(
-            0,
-            ErrorCode.PROTOCOL_ERROR,
-            Status.INTERNAL.withDescription("error in frame handler").withCause(t));
       } finally {
         try {
           frameReader.close();
@@ -1132,7 +1204,6 @@ class OkHttpClientTransport implements ConnectionClientTransport, TransportExcep
           log.log(Level.INFO, "Exception closing frame reader", ex);
         }
         listener.transportTerminated();
-        Thread.currentThread().setName(threadName);
       }
     }
 
@@ -1145,6 +1216,12 @@ class OkHttpClientTransport implements ConnectionClientTransport, TransportExcep
         throws IOException {
       logger.logData(OkHttpFrameLogger.Direction.INBOUND,
           streamId, in.getBuffer(), length, inFinished);
+      if (bdpEstimator != null && bdpEstimator.onDataRead(length)) {
+        synchronized (lock) {
+          frameWriter.ping(false, (int) (BdpEstimator.BDP_PING_PAYLOAD >>> 32),
+              (int) BdpEstimator.BDP_PING_PAYLOAD);
+        }
+      }
       OkHttpClientStream stream = getStream(streamId);
       if (stream == null) {
         if (mayHaveCreatedStream(streamId)) {
@@ -1307,6 +1384,8 @@ class OkHttpClientTransport implements ConnectionClientTransport, TransportExcep
         synchronized (lock) {
           frameWriter.ping(true, payload1, payload2);
         }
+      } else if (bdpEstimator != null && ackPayload == BdpEstimator.BDP_PING_PAYLOAD) {
+        bdpPingAcked();
       } else {
         Http2Ping p = null;
         synchronized (lock) {
@@ -1329,6 +1408,28 @@ class OkHttpClientTransport implements ConnectionClientTransport, TransportExcep
       }
     }
 
+    @SuppressWarnings("GuardedBy")
+    private void bdpPingAcked() {
+      synchronized (lock) {
+        int targetWindow = bdpEstimator.onPingAck(initialWindowSize);
+        if (targetWindow <= initialWindowSize) {
+          return;
+        }
+        int delta = targetWindow - initialWindowSize;
+        initialWindowSize = targetWindow;
+        // The new setting grows the window of each stream by the delta, for both endpoints.
+        Settings settings = new Settings();
+        OkHttpSettingsUtil.set(settings, OkHttpSettingsUtil.INITIAL_WINDOW_SIZE, targetWindow);
+        frameWriter.settings(settings);
+        frameWriter.windowUpdate(Utils.CONNECTION_STREAM_ID, delta);
+        for (OkHttpClientStream stream : streams.values()) {
+          // TODO(b/145386688): This access should be guarded by 'stream.transportState().lock';
+          // instead found: 'OkHttpClientTransport.this.lock'
+          stream.transportState().setInitialWindowSize(targetWindow);
+        }
+      }
+    }
+
     @Override
     public void ackSettings() {
       // Do nothing currently.
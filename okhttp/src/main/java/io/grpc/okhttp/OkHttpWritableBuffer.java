@@ -17,6 +17,7 @@
 package io.grpc.okhttp;
 
 import io.grpc.internal.WritableBuffer;
+import java.nio.ByteBuffer;
 import okio.Buffer;
 
 class OkHttpWritableBuffer implements WritableBuffer {
@@ -54,6 +55,22 @@ class OkHttpWritableBuffer implements WritableBuffer {
     return readableBytes;
   }
 
+  @Override
+  public boolean byteBufferSupported() {
+    // okio does not expose the memory of its segments.
+    return false;
+  }
+
+  @Override
+  public ByteBuffer getByteBuffer(int length) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void commitByteBuffer(int length) {
+    throw new UnsupportedOperationException();
+  }
+
   @Override
   public void release() {
   }
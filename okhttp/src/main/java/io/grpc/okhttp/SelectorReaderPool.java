@@ -0,0 +1,362 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.okhttp;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.SharedResourceHolder.Resource;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import okio.Buffer;
+import okio.Sink;
+import okio.Timeout;
+
+/**
+ * A small pool of selector threads that read from the non-blocking channels of many transports,
+ * instead of each transport parking a thread in a blocking read.
+ */
+final class SelectorReaderPool {
+  private static final Logger log = Logger.getLogger(SelectorReaderPool.class.getName());
+
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+  static final Resource<SelectorReaderPool> SHARED_POOL =
+      new Resource<SelectorReaderPool>() {
+        @Override
+        public SelectorReaderPool create() {
+          int threads = Math.min(4, Runtime.getRuntime().availableProcessors());
+          return new SelectorReaderPool(
+              threads, GrpcUtil.getThreadFactory("grpc-okhttp-selector-%d", true));
+        }
+
+        @Override
+        public void close(SelectorReaderPool pool) {
+          pool.shutdown();
+        }
+      };
+
+  /**
+   * Consumes the bytes read from a channel. Its methods are called from the selector thread of the
+   * channel, so they must not block.
+   */
+  interface Handler {
+    /**
+     * Called after more bytes are appended to {@code buffer}, which holds all bytes read from the
+     * channel that the handler has not consumed yet. Throwing stops reading.
+     */
+    void bytesRead(Buffer buffer) throws IOException;
+
+    /**
+     * Called once when reading stops, after the channel is closed. {@code cause} is {@code null} if
+     * the peer closed the connection, reading failed or the connection was closed locally, and is
+     * what {@link #bytesRead} threw otherwise.
+     */
+    void readingStopped(@Nullable Throwable cause);
+  }
+
+  private final SelectorLoop[] loops;
+  private final AtomicInteger nextLoop = new AtomicInteger();
+
+  @VisibleForTesting
+  SelectorReaderPool(int threads, ThreadFactory threadFactory) {
+    checkArgument(threads > 0, "threads must be positive");
+    loops = new SelectorLoop[threads];
+    try {
+      for (int i = 0; i < threads; i++) {
+        loops[i] = new SelectorLoop(Selector.open());
+      }
+    } catch (IOException e) {
+      for (SelectorLoop loop : loops) {
+        if (loop != null) {
+          loop.shutdown();
+        }
+      }
+      throw new RuntimeException("Unable to open selector", e);
+    }
+    for (SelectorLoop loop : loops) {
+      threadFactory.newThread(loop).start();
+    }
+  }
+
+  /**
+   * Puts the connected {@code channel} in non-blocking mode and assigns it to a selector thread.
+   * The returned connection owns the channel: writes should go through it, and closing it closes
+   * the channel and stops reading.
+   */
+  Connection register(SocketChannel channel) throws IOException {
+    channel.configureBlocking(false);
+    SelectorLoop loop = loops[(nextLoop.getAndIncrement() & Integer.MAX_VALUE) % loops.length];
+    return new Connection(loop, channel);
+  }
+
+  /** Stops the selector threads, which stop reading from any connections that are still open. */
+  void shutdown() {
+    for (SelectorLoop loop : loops) {
+      loop.shutdown();
+    }
+  }
+
+  private static final class SelectorLoop implements Runnable {
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    // Only used by the selector thread, and so shared by all of its connections.
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private volatile boolean shutdown;
+
+    SelectorLoop(Selector selector) {
+      this.selector = selector;
+    }
+
+    void execute(Runnable task) {
+      tasks.add(task);
+      selector.wakeup();
+    }
+
+    void shutdown() {
+      shutdown = true;
+      selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (!shutdown) {
+          selector.select();
+          runTasks();
+          Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+          while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            if (key.isValid() && key.isReadable()) {
+              ((Connection) key.attachment()).read(readBuffer);
+            }
+          }
+        }
+      } catch (IOException | RuntimeException e) {
+        log.log(Level.WARNING, "Selector failed", e);
+      } finally {
+        runTasks();
+        for (SelectionKey key : selector.keys()) {
+          ((Connection) key.attachment()).stopReading(null);
+        }
+        try {
+          selector.close();
+        } catch (IOException e) {
+          log.log(Level.INFO, "Exception closing selector", e);
+        }
+      }
+    }
+
+    private void runTasks() {
+      Runnable task;
+      while ((task = tasks.poll()) != null) {
+        task.run();
+      }
+    }
+  }
+
+  /**
+   * A channel registered with the pool. Reads happen on the selector thread, while writes block
+   * the calling thread until the channel accepts all of the bytes.
+   */
+  static final class Connection implements Sink {
+    private final SelectorLoop loop;
+    private final SocketChannel channel;
+    // Only accessed from the selector thread.
+    private final Buffer buffer = new Buffer();
+    private Handler handler;
+    private SelectionKey key;
+    private boolean stopped;
+    // Only accessed from the writing thread, apart from close().
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(8192);
+    private volatile Selector writeSelector;
+
+    private Connection(SelectorLoop loop, SocketChannel channel) {
+      this.loop = loop;
+      this.channel = checkNotNull(channel, "channel");
+    }
+
+    /**
+     * Returns the buffer that holds the bytes read but not yet consumed. It is only safe to read
+     * from it in {@link Handler#bytesRead}.
+     */
+    Buffer source() {
+      return buffer;
+    }
+
+    /** Starts reading from the channel, passing the bytes to {@code handler}. */
+    void startReading(final Handler handler) {
+      checkNotNull(handler, "handler");
+      loop.execute(new Runnable() {
+        @Override
+        public void run() {
+          Connection.this.handler = handler;
+          if (stopped) {
+            // Closed before reading started.
+            notifyReadingStopped(null);
+            return;
+          }
+          if (loop.shutdown) {
+            stopReading(null);
+            return;
+          }
+          try {
+            key = channel.register(loop.selector, SelectionKey.OP_READ, Connection.this);
+          } catch (ClosedChannelException e) {
+            stopReading(null);
+          }
+        }
+      });
+    }
+
+    private void read(ByteBuffer readBuffer) {
+      readBuffer.clear();
+      int read;
+      try {
+        read = channel.read(readBuffer);
+      } catch (IOException e) {
+        stopReading(null);
+        return;
+      }
+      if (read < 0) {
+        stopReading(null);
+        return;
+      }
+      buffer.write(readBuffer.array(), 0, read);
+      try {
+        handler.bytesRead(buffer);
+      } catch (Throwable t) {
+        stopReading(t);
+      }
+    }
+
+    private void stopReading(@Nullable Throwable cause) {
+      if (stopped) {
+        return;
+      }
+      stopped = true;
+      if (key != null) {
+        key.cancel();
+      }
+      closeChannel();
+      buffer.clear();
+      if (handler != null) {
+        notifyReadingStopped(cause);
+      }
+    }
+
+    private void notifyReadingStopped(@Nullable Throwable cause) {
+      try {
+        handler.readingStopped(cause);
+      } catch (RuntimeException e) {
+        // Keep the selector thread alive for the other connections.
+        log.log(Level.WARNING, "Exception when reading stopped", e);
+      }
+    }
+
+    @Override
+    public void write(Buffer source, long byteCount) throws IOException {
+      while (byteCount > 0) {
+        writeBuffer.clear();
+        int count = source.read(writeBuffer.array(), 0, (int) Math.min(byteCount, 8192));
+        writeBuffer.limit(count);
+        while (writeBuffer.hasRemaining()) {
+          if (channel.write(writeBuffer) == 0) {
+            awaitWritable();
+          }
+        }
+        byteCount -= count;
+      }
+    }
+
+    private void awaitWritable() throws IOException {
+      Selector selector = writeSelector;
+      if (selector == null) {
+        selector = Selector.open();
+        // Set before registering, so that close() either closes the selector or has already
+        // closed the channel.
+        writeSelector = selector;
+        try {
+          channel.register(selector, SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+          selector.close();
+          throw e;
+        }
+      }
+      try {
+        selector.select();
+        selector.selectedKeys().clear();
+      } catch (ClosedSelectorException e) {
+        throw new ClosedChannelException();
+      }
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public Timeout timeout() {
+      return Timeout.NONE;
+    }
+
+    /** Closes the channel and stops reading. May be called from any thread. */
+    @Override
+    public void close() {
+      closeChannel();
+      // A closed channel is silently deregistered, so tell the selector thread to stop reading.
+      loop.execute(new Runnable() {
+        @Override
+        public void run() {
+          stopReading(null);
+        }
+      });
+    }
+
+    private void closeChannel() {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        log.log(Level.INFO, "Exception closing channel", e);
+      }
+      // Closing the selector wakes up a write that is waiting for the channel.
+      Selector selector = writeSelector;
+      if (selector != null) {
+        try {
+          selector.close();
+        } catch (IOException e) {
+          log.log(Level.INFO, "Exception closing selector", e);
+        }
+      }
+    }
+  }
+}
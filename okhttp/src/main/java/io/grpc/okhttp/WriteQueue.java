@@ -0,0 +1,134 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.okhttp;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.perfmark.PerfMark;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A queue of stream writes that is drained by a single writer, similar to the Netty transport's
+ * {@code WriteQueue}. OkHttp has no event loop, so the thread that enqueues a write while nobody is
+ * draining becomes the writer: it runs up to a chunk of queued commands holding the transport lock
+ * and then flushes once. Whatever is left is drained a chunk at a time on the transport's
+ * serializing executor, so no caller is kept writing for other threads indefinitely. Other threads
+ * only add to the queue, without waiting for the lock.
+ */
+final class WriteQueue {
+
+  // Drain at most this many commands per turn, so the lock is released, the frames flushed and
+  // the writer handed over periodically.
+  @VisibleForTesting
+  static final int DEQUE_CHUNK_SIZE = 128;
+
+  /** Marks that the commands before it asked for a flush. */
+  private static final Runnable FLUSH = new Runnable() {
+    @Override
+    public void run() {}
+  };
+
+  private final Object lock;
+  private final ExceptionHandlingFrameWriter frameWriter;
+  private final Executor executor;
+  private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean draining = new AtomicBoolean();
+  private final Runnable later = new Runnable() {
+    @Override
+    public void run() {
+      drain();
+    }
+  };
+
+  /**
+   * Creates a queue writing through {@code frameWriter}.
+   *
+   * @param executor runs the rest of a drain that exceeds one chunk. Must run tasks in order, one
+   *     at a time, like the transport's serializing executor.
+   */
+  WriteQueue(Object lock, ExceptionHandlingFrameWriter frameWriter, Executor executor) {
+    this.lock = checkNotNull(lock, "lock");
+    this.frameWriter = checkNotNull(frameWriter, "frameWriter");
+    this.executor = checkNotNull(executor, "executor");
+  }
+
+  /**
+   * Enqueues {@code command}, which is run holding the transport lock. If nobody is draining the
+   * queue, the calling thread drains up to a chunk of commands before returning.
+   *
+   * @param flush true if the frames written by the command should be flushed
+   */
+  void enqueue(Runnable command, boolean flush) {
+    queue.add(command);
+    if (flush) {
+      queue.add(FLUSH);
+    }
+    if (draining.compareAndSet(false, true)) {
+      drain();
+    }
+  }
+
+  /** Runs one chunk of commands as the writer, then hands the rest to the executor. */
+  private void drain() {
+    PerfMark.startTask("WriteQueue.drain");
+    try {
+      drainChunk();
+    } finally {
+      PerfMark.stopTask("WriteQueue.drain");
+      // Whoever enqueued a command while the queue was being drained relies on the writer to run
+      // it, so check the queue again after giving up the writer role.
+      draining.set(false);
+      if (!queue.isEmpty() && draining.compareAndSet(false, true)) {
+        scheduleDrain();
+      }
+    }
+  }
+
+  private void scheduleDrain() {
+    try {
+      executor.execute(later);
+    } catch (RuntimeException e) {
+      // Let the next enqueue() become the writer instead.
+      draining.set(false);
+      throw e;
+    }
+  }
+
+  private void drainChunk() {
+    boolean flush = false;
+    synchronized (lock) {
+      for (int i = 0; i < DEQUE_CHUNK_SIZE; i++) {
+        Runnable command = queue.poll();
+        if (command == null) {
+          break;
+        }
+        if (command == FLUSH) {
+          flush = true;
+        } else {
+          command.run();
+        }
+      }
+    }
+    if (flush) {
+      frameWriter.flush();
+    }
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.okhttp;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.base.Stopwatch;
+import io.grpc.internal.FakeClock;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link BdpEstimator}. */
+@RunWith(JUnit4.class)
+public class BdpEstimatorTest {
+  private static final int WINDOW = 64 * 1024;
+
+  private final FakeClock fakeClock = new FakeClock();
+  private final BdpEstimator estimator =
+      new BdpEstimator(Stopwatch.createUnstarted(fakeClock.getTicker()));
+
+  @Test
+  public void pingsOncePerRoundTrip() {
+    assertThat(estimator.onDataRead(100)).isTrue();
+    assertThat(estimator.onDataRead(100)).isFalse();
+    estimator.onPingAck(WINDOW);
+    assertThat(estimator.onDataRead(100)).isTrue();
+  }
+
+  @Test
+  public void growsToTwiceTheDataOfARoundTrip() {
+    estimator.onDataRead(WINDOW);
+    estimator.onDataRead(WINDOW / 2);
+    fakeClock.forwardTime(10, TimeUnit.MILLISECONDS);
+
+    assertThat(estimator.onPingAck(WINDOW)).isEqualTo(3 * WINDOW);
+  }
+
+  @Test
+  public void keepsWindowWhenBdpIsSmaller() {
+    estimator.onDataRead(WINDOW / 4);
+    fakeClock.forwardTime(10, TimeUnit.MILLISECONDS);
+
+    assertThat(estimator.onPingAck(WINDOW)).isEqualTo(WINDOW);
+  }
+
+  @Test
+  public void stopsGrowingWhenBandwidthDoesNot() {
+    estimator.onDataRead(WINDOW);
+    fakeClock.forwardTime(10, TimeUnit.MILLISECONDS);
+    int window = estimator.onPingAck(WINDOW);
+    assertThat(window).isEqualTo(2 * WINDOW);
+
+    // Twice the data, but in twice the time.
+    estimator.onDataRead(2 * WINDOW);
+    fakeClock.forwardTime(20, TimeUnit.MILLISECONDS);
+    assertThat(estimator.onPingAck(window)).isEqualTo(window);
+  }
+
+  @Test
+  public void capsWindow() {
+    estimator.onDataRead(BdpEstimator.MAX_WINDOW_SIZE);
+    fakeClock.forwardTime(10, TimeUnit.MILLISECONDS);
+
+    assertThat(estimator.onPingAck(WINDOW)).isEqualTo(BdpEstimator.MAX_WINDOW_SIZE);
+  }
+
+  @Test
+  public void ignoresAckWithoutPing() {
+    assertThat(estimator.onPingAck(WINDOW)).isEqualTo(WINDOW);
+  }
+}
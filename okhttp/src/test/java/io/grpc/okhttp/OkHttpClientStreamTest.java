@@ -28,6 +28,7 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import com.google.common.io.BaseEncoding;
+import com.google.common.util.concurrent.MoreExecutors;
 import io.grpc.CallOptions;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
@@ -73,6 +74,7 @@ public class OkHttpClientStreamTest {
   private final TransportTracer transportTracer = new TransportTracer();
 
   private MethodDescriptor<?, ?> methodDescriptor;
+  private WriteQueue writeQueue;
   private OkHttpClientStream stream;
 
   @Before
@@ -87,6 +89,7 @@ public class OkHttpClientStreamTest {
 
     frameWriter =
         new ExceptionHandlingFrameWriter(transport, mockedFrameWriter);
+    writeQueue = new WriteQueue(lock, frameWriter, MoreExecutors.directExecutor());
     stream = new OkHttpClientStream(
         methodDescriptor,
         new Metadata(),
@@ -94,6 +97,7 @@ public class OkHttpClientStreamTest {
         transport,
         flowController,
         lock,
+        writeQueue,
         MAX_MESSAGE_SIZE,
         INITIAL_WINDOW_SIZE,
         "localhost",
@@ -162,7 +166,7 @@ public class OkHttpClientStreamTest {
     Metadata metaData = new Metadata();
     metaData.put(GrpcUtil.USER_AGENT_KEY, "misbehaving-application");
     stream = new OkHttpClientStream(methodDescriptor, metaData, frameWriter, transport,
-        flowController, lock, MAX_MESSAGE_SIZE, INITIAL_WINDOW_SIZE, "localhost",
+        flowController, lock, writeQueue, MAX_MESSAGE_SIZE, INITIAL_WINDOW_SIZE, "localhost",
         "good-application", StatsTraceContext.NOOP, transportTracer, CallOptions.DEFAULT, false);
     stream.start(new BaseClientStreamListener());
     stream.transportState().start(3);
@@ -179,7 +183,7 @@ public class OkHttpClientStreamTest {
     Metadata metaData = new Metadata();
     metaData.put(GrpcUtil.USER_AGENT_KEY, "misbehaving-application");
     stream = new OkHttpClientStream(methodDescriptor, metaData, frameWriter, transport,
-        flowController, lock, MAX_MESSAGE_SIZE, INITIAL_WINDOW_SIZE, "localhost",
+        flowController, lock, writeQueue, MAX_MESSAGE_SIZE, INITIAL_WINDOW_SIZE, "localhost",
         "good-application", StatsTraceContext.NOOP, transportTracer, CallOptions.DEFAULT, false);
     stream.start(new BaseClientStreamListener());
     stream.transportState().start(3);
@@ -204,7 +208,7 @@ public class OkHttpClientStreamTest {
     metaData.put(GrpcUtil.USER_AGENT_KEY, "misbehaving-application");
     when(transport.isUsingPlaintext()).thenReturn(true);
     stream = new OkHttpClientStream(methodDescriptor, metaData, frameWriter, transport,
-        flowController, lock, MAX_MESSAGE_SIZE, INITIAL_WINDOW_SIZE, "localhost",
+        flowController, lock, writeQueue, MAX_MESSAGE_SIZE, INITIAL_WINDOW_SIZE, "localhost",
         "good-application", StatsTraceContext.NOOP, transportTracer, CallOptions.DEFAULT, false);
     stream.start(new BaseClientStreamListener());
     stream.transportState().start(3);
@@ -234,7 +238,7 @@ public class OkHttpClientStreamTest {
         .setResponseMarshaller(marshaller)
         .build();
     stream = new OkHttpClientStream(getMethod, new Metadata(), frameWriter, transport,
-        flowController, lock, MAX_MESSAGE_SIZE, INITIAL_WINDOW_SIZE, "localhost",
+        flowController, lock, writeQueue, MAX_MESSAGE_SIZE, INITIAL_WINDOW_SIZE, "localhost",
         "good-application", StatsTraceContext.NOOP, transportTracer, CallOptions.DEFAULT, true);
     stream.start(new BaseClientStreamListener());
 
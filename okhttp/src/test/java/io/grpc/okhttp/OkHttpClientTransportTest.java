@@ -871,6 +871,65 @@ public class OkHttpClientTransportTest {
     shutdownAndVerify();
   }
 
+  @Test
+  public void autoFlowControlGrowsWindow() throws Exception {
+    initTransport();
+    clientTransport.enableAutoFlowControl();
+    MockStreamListener listener = new MockStreamListener();
+    OkHttpClientStream stream =
+        clientTransport.newStream(method, new Metadata(), CallOptions.DEFAULT, tracers);
+    stream.start(listener);
+    frameHandler().headers(false, false, 3, 0, grpcResponseHeaders(), HeadersMode.HTTP_20_HEADERS);
+
+    // The first DATA frame starts a BDP ping, which counts the data received until its ack.
+    Buffer buffer = createMessageFrame(new byte[INITIAL_WINDOW_SIZE / 4]);
+    int messageFrameLength = (int) buffer.size();
+    frameHandler().data(false, 3, buffer, messageFrameLength);
+    verify(frameWriter, timeout(TIME_OUT_MS))
+        .ping(eq(false), eq(0), eq((int) BdpEstimator.BDP_PING_PAYLOAD));
+    for (int i = 0; i < 2; i++) {
+      frameHandler().data(
+          false, 3, createMessageFrame(new byte[INITIAL_WINDOW_SIZE / 4]), messageFrameLength);
+    }
+    nanoTime += TimeUnit.MILLISECONDS.toNanos(10);
+    frameHandler().ping(true, 0, (int) BdpEstimator.BDP_PING_PAYLOAD);
+
+    int targetWindow = 2 * 3 * messageFrameLength;
+    ArgumentCaptor<Settings> settingsCaptor = ArgumentCaptor.forClass(Settings.class);
+    verify(frameWriter, timeout(TIME_OUT_MS)).settings(settingsCaptor.capture());
+    assertEquals(targetWindow, OkHttpSettingsUtil.get(
+        settingsCaptor.getValue(), OkHttpSettingsUtil.INITIAL_WINDOW_SIZE));
+    verify(frameWriter, timeout(TIME_OUT_MS))
+        .windowUpdate(eq(0), eq((long) targetWindow - INITIAL_WINDOW_SIZE));
+
+    // The stream accepts data beyond what is left of the initial window.
+    buffer = createMessageFrame(new byte[INITIAL_WINDOW_SIZE / 2]);
+    frameHandler().data(false, 3, buffer, (int) buffer.size());
+    verify(frameWriter, never()).rstStream(eq(3), any(ErrorCode.class));
+
+    getStream(3).cancel(Status.CANCELLED);
+    listener.waitUntilStreamClosed();
+    shutdownAndVerify();
+  }
+
+  @Test
+  public void autoFlowControlDisabledByDefault() throws Exception {
+    initTransport();
+    MockStreamListener listener = new MockStreamListener();
+    OkHttpClientStream stream =
+        clientTransport.newStream(method, new Metadata(), CallOptions.DEFAULT, tracers);
+    stream.start(listener);
+    frameHandler().headers(false, false, 3, 0, grpcResponseHeaders(), HeadersMode.HTTP_20_HEADERS);
+
+    Buffer buffer = createMessageFrame(new byte[INITIAL_WINDOW_SIZE / 4]);
+    frameHandler().data(false, 3, buffer, (int) buffer.size());
+    verify(frameWriter, never()).ping(anyBoolean(), anyInt(), anyInt());
+
+    getStream(3).cancel(Status.CANCELLED);
+    listener.waitUntilStreamClosed();
+    shutdownAndVerify();
+  }
+
   /**
    * Outbound flow control where the initial flow control window stays at the default size of 65535.
    */
@@ -37,14 +37,19 @@ import org.junit.runners.JUnit4;
 public class OkHttpTransportTest extends AbstractTransportTest {
   private final FakeClock fakeClock = new FakeClock();
   private ClientTransportFactory clientFactory =
-      OkHttpChannelBuilder
+      configureChannel(OkHttpChannelBuilder
           // Although specified here, address is ignored because we never call build.
           .forAddress("localhost", 0)
           .usePlaintext()
           .setTransportTracerFactory(fakeClockTransportTracer)
-          .maxInboundMetadataSize(GrpcUtil.DEFAULT_MAX_HEADER_LIST_SIZE)
+          .maxInboundMetadataSize(GrpcUtil.DEFAULT_MAX_HEADER_LIST_SIZE))
           .buildTransportFactory();
 
+  /** Lets subclasses run the tests with other client options. */
+  protected OkHttpChannelBuilder configureChannel(OkHttpChannelBuilder builder) {
+    return builder;
+  }
+
   @After
   public void releaseClientFactory() {
     clientFactory.close();
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.okhttp;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import io.grpc.internal.GrpcUtil;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
+import okio.Buffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link SelectorReaderPool}. */
+@RunWith(JUnit4.class)
+public class SelectorReaderPoolTest {
+  private final SelectorReaderPool pool =
+      new SelectorReaderPool(1, GrpcUtil.getThreadFactory("selector-test-%d", true));
+  private final RecordingHandler handler = new RecordingHandler();
+  private ServerSocket serverSocket;
+  private SocketChannel channel;
+  private Socket peer;
+
+  @Before
+  public void setUp() throws Exception {
+    serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    channel = SocketChannel.open(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort()));
+    peer = serverSocket.accept();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    pool.shutdown();
+    channel.close();
+    peer.close();
+    serverSocket.close();
+  }
+
+  @Test
+  public void readsUntilPeerCloses() throws Exception {
+    SelectorReaderPool.Connection connection = pool.register(channel);
+    connection.startReading(handler);
+
+    peer.getOutputStream().write("hello".getBytes(US_ASCII));
+    assertThat(handler.reads.poll(5, TimeUnit.SECONDS)).isEqualTo("hello");
+    peer.close();
+
+    assertThat(handler.stopped.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(handler.cause.get()).isNull();
+    assertThat(channel.isOpen()).isFalse();
+  }
+
+  @Test
+  public void writesToChannel() throws Exception {
+    SelectorReaderPool.Connection connection = pool.register(channel);
+    connection.startReading(handler);
+
+    Buffer buffer = new Buffer().writeUtf8("hello");
+    connection.write(buffer, buffer.size());
+
+    byte[] bytes = new byte[5];
+    int read = 0;
+    while (read < bytes.length) {
+      read += peer.getInputStream().read(bytes, read, bytes.length - read);
+    }
+    assertThat(new String(bytes, US_ASCII)).isEqualTo("hello");
+  }
+
+  @Test
+  public void handlerFailureStopsReading() throws Exception {
+    final IOException failure = new IOException("bad frame");
+    RecordingHandler failingHandler = new RecordingHandler() {
+      @Override
+      public void bytesRead(Buffer buffer) throws IOException {
+        throw failure;
+      }
+    };
+    SelectorReaderPool.Connection connection = pool.register(channel);
+    connection.startReading(failingHandler);
+
+    peer.getOutputStream().write(1);
+
+    assertThat(failingHandler.stopped.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(failingHandler.cause.get()).isSameInstanceAs(failure);
+    assertThat(channel.isOpen()).isFalse();
+  }
+
+  @Test
+  public void closeStopsReading() throws Exception {
+    SelectorReaderPool.Connection connection = pool.register(channel);
+    connection.startReading(handler);
+
+    connection.close();
+
+    assertThat(handler.stopped.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(handler.cause.get()).isNull();
+    assertThat(channel.isOpen()).isFalse();
+  }
+
+  @Test
+  public void closeBeforeStartReading() throws Exception {
+    SelectorReaderPool.Connection connection = pool.register(channel);
+    connection.close();
+    connection.startReading(handler);
+
+    assertThat(handler.stopped.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(handler.cause.get()).isNull();
+  }
+
+  @Test
+  public void closeWakesBlockedWriter() throws Exception {
+    final SelectorReaderPool.Connection connection = pool.register(channel);
+    connection.startReading(handler);
+    final AtomicReference<Throwable> writeFailure = new AtomicReference<>();
+    Thread writer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          // The peer never reads, so the socket buffers fill up and the write waits.
+          while (true) {
+            Buffer buffer = new Buffer().write(new byte[8192]);
+            connection.write(buffer, buffer.size());
+          }
+        } catch (Throwable t) {
+          writeFailure.set(t);
+        }
+      }
+    });
+    writer.start();
+    // Give the writer time to fill the socket buffers.
+    Thread.sleep(100);
+
+    connection.close();
+    writer.join(TimeUnit.SECONDS.toMillis(5));
+
+    assertThat(writer.isAlive()).isFalse();
+    assertThat(writeFailure.get()).isInstanceOf(IOException.class);
+  }
+
+  private static class RecordingHandler implements SelectorReaderPool.Handler {
+    final BlockingQueue<String> reads = new LinkedBlockingQueue<>();
+    final CountDownLatch stopped = new CountDownLatch(1);
+    final AtomicReference<Throwable> cause = new AtomicReference<>();
+
+    @Override
+    public void bytesRead(Buffer buffer) throws IOException {
+      reads.add(buffer.readUtf8());
+    }
+
+    @Override
+    public void readingStopped(@Nullable Throwable cause) {
+      this.cause.set(cause);
+      stopped.countDown();
+    }
+  }
+}
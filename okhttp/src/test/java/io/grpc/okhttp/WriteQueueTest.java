@@ -0,0 +1,167 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.okhttp;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import io.grpc.internal.FakeClock;
+import io.grpc.okhttp.ExceptionHandlingFrameWriter.TransportExceptionHandler;
+import io.grpc.okhttp.internal.framed.FrameWriter;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class WriteQueueTest {
+  private final Object lock = new Object();
+  private final FrameWriter mockedFrameWriter = mock(FrameWriter.class);
+  private final FakeClock executor = new FakeClock();
+  private final WriteQueue writeQueue = new WriteQueue(lock, new ExceptionHandlingFrameWriter(
+      mock(TransportExceptionHandler.class), mockedFrameWriter),
+      executor.getScheduledExecutorService());
+  private final List<String> ran = new CopyOnWriteArrayList<>();
+
+  @Test
+  public void uncontendedWriteRunsImmediately() throws IOException {
+    writeQueue.enqueue(new Runnable() {
+      @Override
+      public void run() {
+        assertThat(Thread.holdsLock(lock)).isTrue();
+        ran.add("a");
+      }
+    }, false);
+
+    assertThat(ran).containsExactly("a");
+    verify(mockedFrameWriter, never()).flush();
+
+    writeQueue.enqueue(record("b"), true);
+
+    assertThat(ran).containsExactly("a", "b").inOrder();
+    verify(mockedFrameWriter).flush();
+  }
+
+  @Test
+  public void writesEnqueuedWhileDrainingShareOneFlush() throws IOException {
+    writeQueue.enqueue(new Runnable() {
+      @Override
+      public void run() {
+        ran.add("a");
+        writeQueue.enqueue(record("b"), true);
+        writeQueue.enqueue(record("c"), true);
+        // Left for the drainer instead of run reentrantly.
+        assertThat(ran).containsExactly("a");
+      }
+    }, false);
+
+    assertThat(ran).containsExactly("a", "b", "c").inOrder();
+    verify(mockedFrameWriter).flush();
+  }
+
+  @Test
+  public void flushesEachChunk() throws IOException {
+    writeQueue.enqueue(new Runnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < WriteQueue.DEQUE_CHUNK_SIZE; i++) {
+          writeQueue.enqueue(record("x"), true);
+        }
+      }
+    }, true);
+    executor.runDueTasks();
+
+    assertThat(ran).hasSize(WriteQueue.DEQUE_CHUNK_SIZE);
+    // Each flushing command is queued with a flush marker, so there are just over two chunks.
+    verify(mockedFrameWriter, times(3)).flush();
+  }
+
+  @Test
+  public void callerDrainsOneChunkAndExecutorTheRest() throws IOException {
+    writeQueue.enqueue(new Runnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < 2 * WriteQueue.DEQUE_CHUNK_SIZE; i++) {
+          writeQueue.enqueue(record("x"), false);
+        }
+      }
+    }, true);
+
+    // The chunk also held the command and its flush marker.
+    assertThat(ran).hasSize(WriteQueue.DEQUE_CHUNK_SIZE - 2);
+    verify(mockedFrameWriter).flush();
+
+    // Left for the executor, which is already the writer.
+    writeQueue.enqueue(record("y"), true);
+    assertThat(ran).hasSize(WriteQueue.DEQUE_CHUNK_SIZE - 2);
+
+    assertThat(executor.runDueTasks()).isEqualTo(2);
+    assertThat(ran).hasSize(2 * WriteQueue.DEQUE_CHUNK_SIZE + 1);
+    assertThat(ran.get(ran.size() - 1)).isEqualTo("y");
+    verify(mockedFrameWriter, times(2)).flush();
+    assertThat(executor.numPendingTasks()).isEqualTo(0);
+  }
+
+  @Test
+  public void otherThreadsDoNotWaitForDrainer() throws Exception {
+    final CountDownLatch draining = new CountDownLatch(1);
+    final CountDownLatch enqueued = new CountDownLatch(1);
+    Thread drainer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        writeQueue.enqueue(new Runnable() {
+          @Override
+          public void run() {
+            draining.countDown();
+            try {
+              enqueued.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            ran.add("a");
+          }
+        }, true);
+      }
+    });
+    drainer.start();
+    assertThat(draining.await(5, TimeUnit.SECONDS)).isTrue();
+
+    writeQueue.enqueue(record("b"), true);
+    assertThat(ran).isEmpty();
+    enqueued.countDown();
+    drainer.join(TimeUnit.SECONDS.toMillis(5));
+
+    assertThat(ran).containsExactly("a", "b").inOrder();
+    verify(mockedFrameWriter).flush();
+  }
+
+  private Runnable record(final String name) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        ran.add(name);
+      }
+    };
+  }
+}
@@ -519,16 +519,16 @@ final class Hpack {
     }
 
     void writeByteString(ByteString data) throws IOException {
-      if (useCompression && io.grpc.okhttp.internal.framed.Huffman.get().encodedLength(data.toByteArray()) < data.size()) {
-        Buffer huffmanBuffer = new Buffer();
-        io.grpc.okhttp.internal.framed.Huffman.get().encode(data.toByteArray(), huffmanBuffer.outputStream());
-        ByteString huffmanBytes = huffmanBuffer.readByteString();
-        writeInt(huffmanBytes.size(), PREFIX_7_BITS, 0x80);
-        out.write(huffmanBytes);
-      } else {
-        writeInt(data.size(), PREFIX_7_BITS, 0);
-        out.write(data);
+      if (useCompression) {
+        int huffmanLength = io.grpc.okhttp.internal.framed.Huffman.get().encodedLength(data);
+        if (huffmanLength < data.size()) {
+          writeInt(huffmanLength, PREFIX_7_BITS, 0x80);
+          io.grpc.okhttp.internal.framed.Huffman.get().encode(data, out);
+          return;
+        }
       }
+      writeInt(data.size(), PREFIX_7_BITS, 0);
+      out.write(data);
     }
 
     int maxDynamicTableByteCount() {
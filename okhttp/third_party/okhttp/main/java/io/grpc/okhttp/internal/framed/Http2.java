@@ -90,6 +90,31 @@ public final class Http2 implements Variant {
     return new Writer(sink, client);
   }
 
+  /**
+   * Returns true if {@link FrameReader#nextFrame} can read the frame at the start of
+   * {@code buffer} without needing more bytes: a complete frame, a HEADERS or PUSH_PROMISE frame
+   * with all of its CONTINUATION frames, or a frame header that the reader will reject.
+   */
+  public static boolean hasCompleteFrame(Buffer buffer) {
+    long pos = 0;
+    boolean continuation = false;
+    while (true) {
+      if (buffer.size() < pos + 9) return false;
+      int length = (buffer.getByte(pos) & 0xff) << 16
+          |  (buffer.getByte(pos + 1) & 0xff) <<  8
+          |  (buffer.getByte(pos + 2) & 0xff);
+      if (length > INITIAL_MAX_FRAME_SIZE) return true; // FRAME_SIZE_ERROR
+      byte type = buffer.getByte(pos + 3);
+      byte flags = buffer.getByte(pos + 4);
+      if (continuation && type != TYPE_CONTINUATION) return true; // PROTOCOL_ERROR
+      pos += 9 + length;
+      if (buffer.size() < pos) return false;
+      if (!continuation && type != TYPE_HEADERS && type != TYPE_PUSH_PROMISE) return true;
+      if ((flags & FLAG_END_HEADERS) != 0) return true;
+      continuation = true;
+    }
+  }
+
   static final class Reader implements FrameReader {
     private final BufferedSource source;
     private final ContinuationSource continuation;
@@ -19,9 +19,10 @@
 
 package io.grpc.okhttp.internal.framed;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.util.Arrays;
+import okio.BufferedSink;
+import okio.ByteString;
 
 /**
  * This class was originally composed from the following classes in
@@ -31,6 +32,10 @@ import java.io.OutputStream;
  * <li>{@code com.twitter.hpack.HuffmanDecoder}</li>
  * <li>{@code com.twitter.hpack.HpackUtil}</li>
  * </ul>
+ *
+ * <p>Decoding is table driven, a byte of input at a time. The code is split into 8-bit tables,
+ * indexed by the next 8 bits of input: an entry is either a symbol and the number of those bits
+ * its code ends with, or the table for the next 8 bits of longer codes.
  */
 class Huffman {
 
@@ -78,24 +83,31 @@ class Huffman {
       27, 27, 27, 27, 26
   };
 
+  /**
+   * The decoding tables, 256 entries each, starting with the one for the first 8 bits of a code.
+   * A positive entry is {@code symbol << 8 | bits}, where {@code bits} is how many of the 8 bits
+   * the code ends with. A negative entry is minus the offset of the table for the next 8 bits.
+   * Zero is not a prefix of any code.
+   */
+  private static final int[] DECODE_TABLE = buildDecodeTable();
+
   private static final Huffman INSTANCE = new Huffman();
 
   public static Huffman get() {
     return INSTANCE;
   }
 
-  private final Node root = new Node();
-
   private Huffman() {
-    buildTree();
   }
 
-  void encode(byte[] data, OutputStream out) throws IOException {
+  void encode(ByteString data, BufferedSink sink) throws IOException {
+    byte[] out = new byte[encodedLength(data)];
+    int outIndex = 0;
     long current = 0;
     int n = 0;
 
-    for (int i = 0; i < data.length; i++) {
-      int b = data[i] & 0xFF;
+    for (int i = 0, size = data.size(); i < size; i++) {
+      int b = data.getByte(i) & 0xFF;
       int code = CODES[b];
       int nbits = CODE_LENGTHS[b];
 
@@ -105,22 +117,23 @@ class Huffman {
 
       while (n >= 8) {
         n -= 8;
-        out.write(((int) (current >> n)));
+        out[outIndex++] = (byte) (current >> n);
       }
     }
 
     if (n > 0) {
       current <<= (8 - n);
       current |= (0xFF >>> n);
-      out.write((int) current);
+      out[outIndex] = (byte) current;
     }
+    sink.write(out);
   }
 
-  int encodedLength(byte[] bytes) {
+  int encodedLength(ByteString bytes) {
     long len = 0;
 
-    for (int i = 0; i < bytes.length; i++) {
-      int b = bytes[i] & 0xFF;
+    for (int i = 0, size = bytes.size(); i < size; i++) {
+      int b = bytes.getByte(i) & 0xFF;
       len += CODE_LENGTHS[b];
     }
 
@@ -128,103 +141,73 @@ class Huffman {
   }
 
   byte[] decode(byte[] buf) throws IOException {
-    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    Node node = root;
+    // No code is shorter than 5 bits.
+    byte[] out = new byte[(int) (buf.length * 8L / 5)];
+    int outIndex = 0;
+    int table = 0;
     int current = 0;
     int nbits = 0;
     for (int i = 0; i < buf.length; i++) {
-      int b = buf[i] & 0xFF;
-      current = (current << 8) | b;
+      current = (current << 8) | (buf[i] & 0xFF);
       nbits += 8;
       while (nbits >= 8) {
-        int c = (current >>> (nbits - 8)) & 0xFF;
-        node = node.children[c];
-        if (node.children == null) {
-          // terminal node
-          baos.write(node.symbol);
-          nbits -= node.terminalBits;
-          node = root;
-        } else {
-          // non-terminal node
+        int entry = DECODE_TABLE[table + ((current >>> (nbits - 8)) & 0xFF)];
+        if (entry > 0) {
+          out[outIndex++] = (byte) (entry >>> 8);
+          nbits -= entry & 0xFF;
+          table = 0;
+        } else if (entry < 0) {
           nbits -= 8;
+          table = -entry;
+        } else {
+          throw new IOException("Invalid Huffman code");
         }
       }
     }
 
+    // The rest is either the end of a last code, or padding with the most significant bits of EOS.
     while (nbits > 0) {
-      int c = (current << (8 - nbits)) & 0xFF;
-      node = node.children[c];
-      if (node.children != null || node.terminalBits > nbits) {
+      int entry = DECODE_TABLE[table + ((current << (8 - nbits)) & 0xFF)];
+      if (entry <= 0 || (entry & 0xFF) > nbits) {
         break;
       }
-      baos.write(node.symbol);
-      nbits -= node.terminalBits;
-      node = root;
+      out[outIndex++] = (byte) (entry >>> 8);
+      nbits -= entry & 0xFF;
+      table = 0;
     }
 
-    return baos.toByteArray();
-  }
-
-  private void buildTree() {
-    for (int i = 0; i < CODE_LENGTHS.length; i++) {
-      addCode(i, CODES[i], CODE_LENGTHS[i]);
-    }
+    return Arrays.copyOf(out, outIndex);
   }
 
-  @SuppressWarnings("NarrowingCompoundAssignment")
-  private void addCode(int sym, int code, byte len) {
-    Node terminal = new Node(sym, len);
-
-    Node current = root;
-    while (len > 8) {
-      len -= 8;
-      int i = ((code >>> len) & 0xFF);
-      if (current.children == null) {
-        throw new IllegalStateException("invalid dictionary: prefix not unique");
-      }
-      if (current.children[i] == null) {
-        current.children[i] = new Node();
+  private static int[] buildDecodeTable() {
+    int[] decodeTable = new int[256];
+    int tableCount = 1;
+    for (int sym = 0; sym < CODE_LENGTHS.length; sym++) {
+      int code = CODES[sym];
+      int len = CODE_LENGTHS[sym];
+      int table = 0;
+      while (len > 8) {
+        len -= 8;
+        int i = table + ((code >>> len) & 0xFF);
+        if (decodeTable[i] > 0) {
+          throw new IllegalStateException("invalid dictionary: prefix not unique");
+        }
+        if (decodeTable[i] == 0) {
+          if (decodeTable.length == tableCount * 256) {
+            decodeTable = Arrays.copyOf(decodeTable, decodeTable.length * 2);
+          }
+          decodeTable[i] = -(tableCount++ * 256);
+        }
+        table = -decodeTable[i];
       }
-      current = current.children[i];
-    }
-
-    int shift = 8 - len;
-    int start = (code << shift) & 0xFF;
-    int end = 1 << shift;
-    for (int i = start; i < start + end; i++) {
-      current.children[i] = terminal;
-    }
-  }
-
-  private static final class Node {
-
-    // Null if terminal.
-    private final Node[] children;
 
-    // Terminal nodes have a symbol.
-    private final int symbol;
-
-    // Number of bits represented in the terminal node.
-    private final int terminalBits;
-
-    /** Construct an internal node. */
-    Node() {
-      this.children = new Node[256];
-      this.symbol = 0; // Not read.
-      this.terminalBits = 0; // Not read.
-    }
-
-    /**
-     * Construct a terminal node.
-     *
-     * @param symbol symbol the node represents
-     * @param bits length of Huffman code in bits
-     */
-    Node(int symbol, int bits) {
-      this.children = null;
-      this.symbol = symbol;
-      int b = bits & 0x07;
-      this.terminalBits = b == 0 ? 8 : b;
+      int shift = 8 - len;
+      int start = table + ((code << shift) & 0xFF);
+      int end = start + (1 << shift);
+      for (int i = start; i < end; i++) {
+        decodeTable[i] = (sym << 8) | len;
+      }
     }
+    return Arrays.copyOf(decodeTable, tableCount * 256);
   }
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.okhttp.internal.framed;
+
+import static io.grpc.okhttp.internal.framed.Http2.FLAG_END_HEADERS;
+import static io.grpc.okhttp.internal.framed.Http2.FLAG_NONE;
+import static io.grpc.okhttp.internal.framed.Http2.TYPE_CONTINUATION;
+import static io.grpc.okhttp.internal.framed.Http2.TYPE_DATA;
+import static io.grpc.okhttp.internal.framed.Http2.TYPE_HEADERS;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import okio.Buffer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class Http2Test {
+
+  @Test public void hasCompleteFrame_needsHeaderAndPayload() {
+    Buffer buffer = new Buffer();
+    assertFalse(Http2.hasCompleteFrame(buffer));
+    byte[] frame = frame(10, TYPE_DATA, FLAG_NONE);
+    for (int i = 0; i < frame.length - 1; i++) {
+      buffer.writeByte(frame[i]);
+      assertFalse(Http2.hasCompleteFrame(buffer));
+    }
+    buffer.writeByte(frame[frame.length - 1]);
+    assertTrue(Http2.hasCompleteFrame(buffer));
+  }
+
+  @Test public void hasCompleteFrame_needsAllContinuations() {
+    Buffer buffer = new Buffer();
+    buffer.write(frame(3, TYPE_HEADERS, FLAG_NONE));
+    assertFalse(Http2.hasCompleteFrame(buffer));
+    buffer.write(frame(3, TYPE_CONTINUATION, FLAG_NONE));
+    assertFalse(Http2.hasCompleteFrame(buffer));
+    buffer.write(frame(3, TYPE_CONTINUATION, FLAG_END_HEADERS));
+    assertTrue(Http2.hasCompleteFrame(buffer));
+  }
+
+  @Test public void hasCompleteFrame_ignoresFollowingFrames() {
+    Buffer buffer = new Buffer();
+    buffer.write(frame(3, TYPE_HEADERS, FLAG_END_HEADERS));
+    buffer.write(frame(3, TYPE_HEADERS, FLAG_NONE));
+    assertTrue(Http2.hasCompleteFrame(buffer));
+  }
+
+  @Test public void hasCompleteFrame_trueForFramesTheReaderRejects() {
+    Buffer oversized = new Buffer();
+    oversized.write(frame(Http2.INITIAL_MAX_FRAME_SIZE + 1, TYPE_DATA, FLAG_NONE), 0, 9);
+    assertTrue(Http2.hasCompleteFrame(oversized));
+
+    Buffer notContinuation = new Buffer();
+    notContinuation.write(frame(3, TYPE_HEADERS, FLAG_NONE));
+    notContinuation.write(frame(3, TYPE_DATA, FLAG_NONE), 0, 9);
+    assertTrue(Http2.hasCompleteFrame(notContinuation));
+  }
+
+  private static byte[] frame(int length, byte type, byte flags) {
+    byte[] frame = new byte[9 + length];
+    frame[0] = (byte) (length >>> 16);
+    frame[1] = (byte) (length >>> 8);
+    frame[2] = (byte) length;
+    frame[3] = type;
+    frame[4] = flags;
+    frame[8] = 1; // Stream ID.
+    return frame;
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.okhttp.internal.framed;
+
+import static okio.ByteString.decodeHex;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Random;
+import okio.Buffer;
+import okio.ByteString;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class HuffmanTest {
+
+  @Test public void rfcExamples() throws IOException {
+    // RFC 7541 Appendix C.4.
+    assertRoundTrip("www.example.com", "f1e3c2e5f23a6ba0ab90f4ff");
+    assertRoundTrip("no-cache", "a8eb10649cbf");
+    assertRoundTrip("custom-key", "25a849e95ba97d7f");
+    assertRoundTrip("custom-value", "25a849e95bb8e8b4bf");
+  }
+
+  @Test public void roundTripsEveryByte() throws IOException {
+    byte[] data = new byte[256];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) i;
+    }
+    assertRoundTrip(data);
+  }
+
+  @Test public void roundTripsRandomBytes() throws IOException {
+    Random random = new Random(1);
+    for (int i = 0; i < 1000; i++) {
+      byte[] data = new byte[random.nextInt(100)];
+      random.nextBytes(data);
+      assertRoundTrip(data);
+    }
+  }
+
+  @Test public void roundTripsHeaderValues() throws IOException {
+    assertRoundTrip(("Bearer eyJhbGciOiJSUzI1NiIsInR5cCI6IkpXVCJ9.eyJzdWIiOiIxMjM0NTY3ODkwIn0."
+        + "NHVaYe26MbtOYhSKkoKYdFVomg4i8ZJd8_-RU8VNbftc4TSMb4bXP3l00GBcKw").getBytes("US-ASCII"));
+    assertRoundTrip(
+        "00-0af7651916cd43dd8448eb211c80319c-b7ad6b7169203331-01".getBytes("US-ASCII"));
+  }
+
+  @Test public void decodeIgnoresEosPadding() throws IOException {
+    // 'a' is the 5 bits 00011, padded with the most significant bits of EOS.
+    assertArrayEquals(new byte[] {'a'}, Huffman.get().decode(new byte[] {0x1f}));
+  }
+
+  @Test public void decodeRejectsEos() {
+    try {
+      Huffman.get().decode(decodeHex("ffffffff").toByteArray());
+      fail("Should have thrown");
+    } catch (IOException expected) {
+      assertEquals("Invalid Huffman code", expected.getMessage());
+    }
+  }
+
+  private static void assertRoundTrip(String data, String encodedHex) throws IOException {
+    ByteString encoded = encode(data.getBytes("US-ASCII"));
+    assertEquals(decodeHex(encodedHex), encoded);
+    assertEquals(data, new String(Huffman.get().decode(encoded.toByteArray()), "US-ASCII"));
+  }
+
+  private static void assertRoundTrip(byte[] data) throws IOException {
+    ByteString encoded = encode(data);
+    assertEquals(encoded.size(), Huffman.get().encodedLength(ByteString.of(data)));
+    assertArrayEquals(data, Huffman.get().decode(encoded.toByteArray()));
+  }
+
+  private static ByteString encode(byte[] data) throws IOException {
+    Buffer buffer = new Buffer();
+    Huffman.get().encode(ByteString.of(data), buffer);
+    return buffer.readByteString();
+  }
+}
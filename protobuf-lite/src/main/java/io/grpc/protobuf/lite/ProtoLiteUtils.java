@@ -19,12 +19,16 @@ package io.grpc.protobuf.lite;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.protobuf.ByteString;
 import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.ExtensionRegistryLite;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.MessageLite;
 import com.google.protobuf.Parser;
+import com.google.protobuf.UnsafeByteOperations;
+import io.grpc.Detachable;
 import io.grpc.ExperimentalApi;
+import io.grpc.HasByteBuffer;
 import io.grpc.KnownLength;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor.Marshaller;
@@ -35,6 +39,13 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
 
 /**
  * Utility methods for using protobuf with grpc.
@@ -84,6 +95,17 @@ public final class ProtoLiteUtils {
     return new MessageMarshaller<>(defaultInstance);
   }
 
+  /**
+   * Creates an {@link AliasingMarshaller} for protos of the same type as {@code defaultInstance}.
+   * Unlike {@link #marshaller}, {@code bytes} fields of parsed messages alias the transport's
+   * buffers instead of being copied out of them.
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/7387")
+  public static <T extends MessageLite> AliasingMarshaller<T> aliasingMarshaller(
+      T defaultInstance) {
+    return new AliasingMarshaller<>(defaultInstance);
+  }
+
   /**
    * Produce a metadata marshaller for a protobuf type.
    *
@@ -112,6 +134,59 @@ public final class ProtoLiteUtils {
     return total;
   }
 
+  /**
+   * Returns {@code true} if the stream can lend its backing {@link ByteBuffer}s, so parsing can
+   * avoid copying the message into a heap array first.
+   */
+  static boolean isZeroCopyCandidate(InputStream stream) {
+    return stream instanceof KnownLength
+        && stream instanceof Detachable
+        && stream instanceof HasByteBuffer
+        && ((HasByteBuffer) stream).byteBufferSupported()
+        && stream.markSupported();
+  }
+
+  /**
+   * Returns the {@link ByteBuffer}s holding the remaining bytes of a detached stream, or {@code
+   * null} if the stream can't lend all of them. The stream is consumed but keeps the buffers alive
+   * until it is closed. If {@code null} is returned the stream is left unconsumed.
+   */
+  @Nullable
+  static List<ByteBuffer> lendByteBuffers(InputStream detached) throws IOException {
+    if (!(detached instanceof HasByteBuffer)) {
+      return null;
+    }
+    // Marking keeps the buffers we skip past alive until the detached stream is closed.
+    detached.mark(detached.available());
+    List<ByteBuffer> buffers = new ArrayList<>();
+    HasByteBuffer hasByteBuffer = (HasByteBuffer) detached;
+    while (detached.available() > 0) {
+      ByteBuffer buffer = hasByteBuffer.getByteBuffer();
+      if (buffer == null || !buffer.hasRemaining()) {
+        detached.reset();
+        return null;
+      }
+      buffers.add(buffer);
+      long remaining = buffer.remaining();
+      while (remaining > 0) {
+        long skipped = detached.skip(remaining);
+        if (skipped <= 0) {
+          throw new RuntimeException("size inaccurate: unable to skip " + remaining + " bytes");
+        }
+        remaining -= skipped;
+      }
+    }
+    return buffers;
+  }
+
+  static void closeQuietly(InputStream stream) {
+    try {
+      stream.close();
+    } catch (IOException ignored) {
+      // The buffers are in-memory, so close does not fail in practice.
+    }
+  }
+
   private ProtoLiteUtils() {
   }
 
@@ -169,6 +244,9 @@ public final class ProtoLiteUtils {
           }
         }
       }
+      if (isZeroCopyCandidate(stream)) {
+        return parseZeroCopy(stream);
+      }
       CodedInputStream cis = null;
       try {
         if (stream instanceof KnownLength) {
@@ -207,6 +285,33 @@ public final class ProtoLiteUtils {
       if (cis == null) {
         cis = CodedInputStream.newInstance(stream);
       }
+      return parseFromCodedInput(cis);
+    }
+
+    /**
+     * Parses directly from the transport buffers backing {@code stream}. The buffers are detached
+     * from the stream so that they stay valid while parsing, and are released once parsing is done.
+     * Since aliasing is not enabled the parsed message does not reference the buffers afterwards.
+     */
+    private T parseZeroCopy(InputStream stream) {
+      InputStream detached = ((Detachable) stream).detach();
+      try {
+        if (detached.available() == 0) {
+          return defaultInstance;
+        }
+        List<ByteBuffer> buffers = lendByteBuffers(detached);
+        CodedInputStream cis = buffers != null
+            ? CodedInputStream.newInstance(buffers)
+            : CodedInputStream.newInstance(detached);
+        return parseFromCodedInput(cis);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      } finally {
+        closeQuietly(detached);
+      }
+    }
+
+    T parseFromCodedInput(CodedInputStream cis) {
       // Pre-create the CodedInputStream so that we can remove the size limit restriction
       // when parsing.
       cis.setSizeLimit(Integer.MAX_VALUE);
@@ -231,6 +336,93 @@ public final class ProtoLiteUtils {
     }
   }
 
+  /**
+   * A marshaller that parses messages with aliasing enabled over the transport's buffers, so
+   * large {@code bytes} fields are not copied. The buffers stay retained after {@link #parse}
+   * returns, and the application must call {@link #release} once it is done with each parsed
+   * message; the message and any {@link ByteString} obtained from it must not be used after that.
+   *
+   * <p>Messages that can't be parsed from the transport's buffers, such as compressed messages,
+   * are parsed as by {@link ProtoLiteUtils#marshaller} and releasing them is a no-op.
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/7387")
+  public static final class AliasingMarshaller<T extends MessageLite>
+      implements PrototypeMarshaller<T> {
+    private final MessageMarshaller<T> delegate;
+    private final Map<T, InputStream> retainedBuffers =
+        Collections.synchronizedMap(new IdentityHashMap<T, InputStream>());
+
+    AliasingMarshaller(T defaultInstance) {
+      delegate = new MessageMarshaller<>(defaultInstance);
+    }
+
+    @Override
+    public Class<T> getMessageClass() {
+      return delegate.getMessageClass();
+    }
+
+    @Override
+    public T getMessagePrototype() {
+      return delegate.getMessagePrototype();
+    }
+
+    @Override
+    public InputStream stream(T value) {
+      return delegate.stream(value);
+    }
+
+    @Override
+    public T parse(InputStream stream) {
+      if (!isZeroCopyCandidate(stream)) {
+        return delegate.parse(stream);
+      }
+      InputStream detached = ((Detachable) stream).detach();
+      boolean retained = false;
+      try {
+        if (detached.available() == 0) {
+          return delegate.getMessagePrototype();
+        }
+        List<ByteBuffer> buffers = lendByteBuffers(detached);
+        if (buffers == null) {
+          return delegate.parseFromCodedInput(CodedInputStream.newInstance(detached));
+        }
+        List<ByteString> chunks = new ArrayList<>(buffers.size());
+        for (ByteBuffer buffer : buffers) {
+          chunks.add(UnsafeByteOperations.unsafeWrap(buffer));
+        }
+        // A ByteString's coded input is immutable, which is what allows aliasing.
+        CodedInputStream cis = ByteString.copyFrom(chunks).newCodedInput();
+        cis.enableAliasing(true);
+        T message = delegate.parseFromCodedInput(cis);
+        retainedBuffers.put(message, detached);
+        retained = true;
+        return message;
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      } finally {
+        if (!retained) {
+          closeQuietly(detached);
+        }
+      }
+    }
+
+    /**
+     * Releases the transport buffers backing {@code message}. Does nothing if the message does not
+     * hold any buffers, or was already released.
+     */
+    public void release(T message) {
+      InputStream buffers = retainedBuffers.remove(message);
+      if (buffers != null) {
+        closeQuietly(buffers);
+      }
+    }
+
+    @VisibleForTesting
+    int retainedCount() {
+      return retainedBuffers.size();
+    }
+  }
+
   private static final class MetadataMarshaller<T extends MessageLite>
       implements Metadata.BinaryMarshaller<T> {
 
@@ -18,8 +18,10 @@ package io.grpc.protobuf.lite;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import com.google.common.io.ByteStreams;
@@ -28,6 +30,7 @@ import com.google.protobuf.Empty;
 import com.google.protobuf.Enum;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Type;
+import io.grpc.ByteBufferDrainable;
 import io.grpc.Drainable;
 import io.grpc.KnownLength;
 import io.grpc.Metadata;
@@ -35,12 +38,18 @@ import io.grpc.MethodDescriptor.Marshaller;
 import io.grpc.MethodDescriptor.PrototypeMarshaller;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
+import io.grpc.internal.CompositeReadableBuffer;
+import io.grpc.internal.ForwardingReadableBuffer;
 import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.ReadableBuffer;
+import io.grpc.internal.ReadableBuffers;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -191,6 +200,38 @@ public class ProtoLiteUtilsTest {
     assertEquals(0, is.available());
   }
 
+  @Test
+  public void testDrainToByteBuffer_all() throws Exception {
+    byte[] golden = ByteStreams.toByteArray(marshaller.stream(proto));
+    InputStream is = marshaller.stream(proto);
+    ByteBuffer target = ByteBuffer.allocateDirect(is.available());
+    int drained = ((ByteBufferDrainable) is).drainTo(target);
+    assertEquals(golden.length, drained);
+    assertEquals(golden.length, target.position());
+    target.flip();
+    byte[] actual = new byte[target.remaining()];
+    target.get(actual);
+    assertArrayEquals(golden, actual);
+    assertEquals(0, is.available());
+  }
+
+  @Test
+  public void testDrainToByteBuffer_partial() throws Exception {
+    final byte[] golden;
+    {
+      InputStream is = marshaller.stream(proto);
+      is.read();
+      golden = ByteStreams.toByteArray(is);
+    }
+    InputStream is = marshaller.stream(proto);
+    is.read();
+    ByteBuffer target = ByteBuffer.allocate(is.available());
+    int drained = ((ByteBufferDrainable) is).drainTo(target);
+    assertEquals(golden.length, drained);
+    assertArrayEquals(golden, target.array());
+    assertEquals(0, is.available());
+  }
+
   @Test
   public void metadataMarshaller_roundtrip() {
     Metadata.BinaryMarshaller<Type> metadataMarshaller =
@@ -227,6 +268,69 @@ public class ProtoLiteUtilsTest {
     assertEquals(expect, result);
   }
 
+  @Test
+  public void parseFromByteBuffers() throws Exception {
+    Type expect = Type.newBuilder().setName("expected name").build();
+    byte[] bytes = expect.toByteArray();
+    int split = bytes.length / 2;
+    CompositeReadableBuffer composite = new CompositeReadableBuffer();
+    composite.addBuffer(ReadableBuffers.wrap(Arrays.copyOfRange(bytes, 0, split)));
+    composite.addBuffer(ReadableBuffers.wrap(Arrays.copyOfRange(bytes, split, bytes.length)));
+    InputStream stream = ReadableBuffers.openStream(composite, true);
+
+    assertEquals(expect, marshaller.parse(stream));
+    assertEquals(0, stream.available());
+  }
+
+  @Test
+  public void parseFromByteBuffers_invalid() throws Exception {
+    InputStream stream = ReadableBuffers.openStream(
+        ReadableBuffers.wrap(new byte[] {-127}), true);
+    try {
+      marshaller.parse(stream);
+      fail("Expected exception");
+    } catch (StatusRuntimeException ex) {
+      assertEquals(Status.Code.INTERNAL, ex.getStatus().getCode());
+    }
+  }
+
+  @Test
+  public void aliasingMarshaller_retainsBuffersUntilReleased() throws Exception {
+    ProtoLiteUtils.AliasingMarshaller<Type> aliasingMarshaller =
+        ProtoLiteUtils.aliasingMarshaller(Type.getDefaultInstance());
+    final AtomicBoolean closed = new AtomicBoolean();
+    ReadableBuffer buffer = new ForwardingReadableBuffer(
+        ReadableBuffers.wrap(proto.toByteArray())) {
+      @Override
+      public void close() {
+        closed.set(true);
+        super.close();
+      }
+    };
+    InputStream stream = ReadableBuffers.openStream(buffer, true);
+
+    Type result = aliasingMarshaller.parse(stream);
+    stream.close();
+    assertEquals(proto, result);
+    assertFalse(closed.get());
+    assertEquals(1, aliasingMarshaller.retainedCount());
+
+    aliasingMarshaller.release(result);
+    assertTrue(closed.get());
+    assertEquals(0, aliasingMarshaller.retainedCount());
+  }
+
+  @Test
+  public void aliasingMarshaller_fallsBackForPlainStreams() throws Exception {
+    ProtoLiteUtils.AliasingMarshaller<Type> aliasingMarshaller =
+        ProtoLiteUtils.aliasingMarshaller(Type.getDefaultInstance());
+
+    Type result = aliasingMarshaller.parse(new ByteArrayInputStream(proto.toByteArray()));
+    assertEquals(proto, result);
+    assertEquals(0, aliasingMarshaller.retainedCount());
+    aliasingMarshaller.release(result);
+  }
+
   @Test
   public void defaultMaxMessageSize() {
     assertEquals(GrpcUtil.DEFAULT_MAX_MESSAGE_SIZE, ProtoLiteUtils.DEFAULT_MAX_MESSAGE_SIZE);
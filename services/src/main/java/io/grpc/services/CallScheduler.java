@@ -0,0 +1,456 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.services;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.ExperimentalApi;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallExecutorSupplier;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Runs the work of server calls on a fixed number of threads of an executor, picking queued work
+ * by deadline or by priority instead of in arrival order, and sharing the threads between tenants
+ * in proportion to their weights.
+ *
+ * <p>Install it as both the call executor supplier and an interceptor:
+ *
+ * <pre>
+ *   CallScheduler scheduler = CallScheduler.newBuilder(executor, 16).build();
+ *   serverBuilder.callExecutor(scheduler).intercept(scheduler);
+ * </pre>
+ *
+ * <p>The tenant and priority of a call come from a {@link Classifier} provided by the server, so
+ * clients cannot claim a higher priority or another tenant's share just by setting a header.
+ * Tenants without a configured weight share the default tenant's queue once the maximum number of
+ * tenants is reached, and a tenant's queue is dropped as soon as it is empty, so the scheduler's
+ * memory stays bounded whatever tenants calls claim.
+ *
+ * <p>As an interceptor it fails calls with {@link Status.Code#DEADLINE_EXCEEDED} when their
+ * deadline has passed, or with {@link Status.Code#CANCELLED} when the client gave up, before the
+ * service's handler gets to run. It should be the first interceptor to run, so it has to be the
+ * last one added.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/8274")
+@ThreadSafe
+public final class CallScheduler implements ServerCallExecutorSupplier, ServerInterceptor {
+  private static final Logger log = Logger.getLogger(CallScheduler.class.getName());
+
+  /** How queued work of a single tenant is ordered. */
+  public enum Ordering {
+    /** Work of the call with the earliest deadline runs first. Calls without deadline go last. */
+    EARLIEST_DEADLINE_FIRST,
+    /**
+     * Work of the call with the highest priority runs first. Calls with the same priority are
+     * ordered by deadline.
+     */
+    PRIORITY
+  }
+
+  /**
+   * Decides the tenant and priority of calls. It is called once per call, before the call's work is
+   * queued. Implementations should classify calls by something the server trusts, such as the
+   * authenticated identity of the peer, rather than by values the client picked.
+   */
+  public interface Classifier {
+    /**
+     * Returns the tenant of a call, or {@code null} for the default tenant.
+     */
+    @Nullable
+    String getTenant(ServerCall<?, ?> call, Metadata headers);
+
+    /**
+     * Returns the priority of a call. With {@link Ordering#PRIORITY}, higher priorities run first.
+     */
+    int getPriority(ServerCall<?, ?> call, Metadata headers);
+  }
+
+  /** The tenant of calls the classifier does not assign to one. */
+  private static final String DEFAULT_TENANT = "";
+
+  /** Virtual time a tenant of weight one is charged for each task it runs. */
+  private static final long STRIDE = 1 << 20;
+
+  private static final Comparator<Task> EDF = new Comparator<Task>() {
+    @Override
+    public int compare(Task t1, Task t2) {
+      int c = compareDeadlines(t1.call.deadline, t2.call.deadline);
+      return c != 0 ? c : Long.compare(t1.seq, t2.seq);
+    }
+  };
+
+  private static final Comparator<Task> BY_PRIORITY = new Comparator<Task>() {
+    @Override
+    public int compare(Task t1, Task t2) {
+      int c = Integer.compare(t2.call.priority, t1.call.priority);
+      return c != 0 ? c : EDF.compare(t1, t2);
+    }
+  };
+
+  private final Executor executor;
+  private final int maxRunningTasks;
+  private final Comparator<Task> ordering;
+  @Nullable
+  private final Classifier classifier;
+  private final int maxTenants;
+  private final Map<String, Integer> tenantWeights;
+  private final AtomicLong droppedCalls = new AtomicLong();
+
+  private final Object lock = new Object();
+  /** Tenants with queued tasks. Tenants are removed as soon as they have none. */
+  @GuardedBy("lock")
+  private final Map<String, Tenant> tenants = new HashMap<>();
+  /** The values of {@link #tenants}, for picking the next one. */
+  @GuardedBy("lock")
+  private final List<Tenant> activeTenants = new ArrayList<>();
+  @GuardedBy("lock")
+  private long virtualTime;
+  @GuardedBy("lock")
+  private long nextSeq;
+  @GuardedBy("lock")
+  private int runningTasks;
+  @GuardedBy("lock")
+  private int queuedTasks;
+
+  private CallScheduler(Builder builder) {
+    this.executor = builder.executor;
+    this.maxRunningTasks = builder.maxRunningTasks;
+    this.ordering = builder.ordering == Ordering.PRIORITY ? BY_PRIORITY : EDF;
+    this.classifier = builder.classifier;
+    this.maxTenants = builder.maxTenants;
+    this.tenantWeights = Collections.unmodifiableMap(new HashMap<>(builder.tenantWeights));
+  }
+
+  /**
+   * Creates a builder for a scheduler that runs at most {@code maxRunningTasks} tasks at a time on
+   * {@code executor}. The executor must run tasks on other threads; it should have at least
+   * {@code maxRunningTasks} threads so that tasks don't queue up in it. If it rejects a task, the
+   * task's call is closed with {@link Status.Code#RESOURCE_EXHAUSTED} and the task is run on the
+   * calling thread, so that the call's remaining callbacks are still delivered.
+   */
+  public static Builder newBuilder(Executor executor, int maxRunningTasks) {
+    return new Builder(executor, maxRunningTasks);
+  }
+
+  @Override
+  public <ReqT, RespT> Executor getExecutor(ServerCall<ReqT, RespT> call, Metadata metadata) {
+    String tenant = DEFAULT_TENANT;
+    int priority = 0;
+    if (classifier != null) {
+      String value = classifier.getTenant(call, metadata);
+      if (value != null) {
+        tenant = value;
+      }
+      priority = classifier.getPriority(call, metadata);
+    }
+    // Called while looking up the method, within the Context of the call.
+    return new CallExecutor(call, tenant, priority, Context.current().getDeadline());
+  }
+
+  @Override
+  public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+      ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+    Context context = Context.current();
+    Deadline deadline = context.getDeadline();
+    Status status = null;
+    if (deadline != null && deadline.isExpired()) {
+      status = Status.DEADLINE_EXCEEDED.withDescription("Deadline expired before the call ran");
+    } else if (context.isCancelled()) {
+      status = Status.CANCELLED.withDescription("Call cancelled before it ran");
+    }
+    if (status == null) {
+      return next.startCall(call, headers);
+    }
+    droppedCalls.incrementAndGet();
+    call.close(status, new Metadata());
+    return new ServerCall.Listener<ReqT>() {};
+  }
+
+  /**
+   * Returns the number of tasks waiting to run.
+   */
+  public int getQueuedTasks() {
+    synchronized (lock) {
+      return queuedTasks;
+    }
+  }
+
+  /**
+   * Returns the number of tenants with queued tasks.
+   */
+  @VisibleForTesting
+  int getActiveTenants() {
+    synchronized (lock) {
+      return tenants.size();
+    }
+  }
+
+  /**
+   * Returns the number of calls failed because their deadline had passed or they were cancelled
+   * before their handler ran.
+   */
+  public long getDroppedCalls() {
+    return droppedCalls.get();
+  }
+
+  private void enqueue(CallExecutor call, Runnable runnable) {
+    synchronized (lock) {
+      String name = call.tenant;
+      Tenant tenant = tenants.get(name);
+      if (tenant == null && tenants.size() >= maxTenants && !tenantWeights.containsKey(name)) {
+        // Too many tenants are waiting; tenants without a configured weight share a queue.
+        name = DEFAULT_TENANT;
+        tenant = tenants.get(name);
+      }
+      if (tenant == null) {
+        Integer weight = tenantWeights.get(name);
+        tenant = new Tenant(name, weight != null ? weight : 1, ordering);
+        // A tenant that was idle starts at the current virtual time, so it doesn't catch up on
+        // the time it didn't use.
+        tenant.pass = virtualTime;
+        tenants.put(name, tenant);
+        activeTenants.add(tenant);
+      }
+      tenant.tasks.add(new Task(call, runnable, nextSeq++));
+      queuedTasks++;
+    }
+    dispatch();
+  }
+
+  /**
+   * Hands queued tasks to the executor while fewer than the maximum are running.
+   */
+  private void dispatch() {
+    while (true) {
+      final Task task;
+      synchronized (lock) {
+        if (runningTasks >= maxRunningTasks || queuedTasks == 0) {
+          return;
+        }
+        task = pollLocked();
+        runningTasks++;
+      }
+      try {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              task.runnable.run();
+            } finally {
+              synchronized (lock) {
+                runningTasks--;
+              }
+              dispatch();
+            }
+          }
+        });
+      } catch (RuntimeException e) {
+        synchronized (lock) {
+          runningTasks--;
+        }
+        log.log(Level.WARNING, "Executor rejected task, failing the call", e);
+        try {
+          task.call.serverCall.close(
+              Status.RESOURCE_EXHAUSTED.withDescription("Call scheduler's executor rejected work")
+                  .withCause(e),
+              new Metadata());
+        } catch (RuntimeException closeFailure) {
+          // The call has already been closed.
+          log.log(Level.FINE, "Failed to close call after rejected task", closeFailure);
+        }
+        // The task drains the call's serializing executor, which stays busy until it runs. If it
+        // were dropped, no later callback of the call would be delivered, including the onCancel()
+        // that closing the call causes, and the call's Context would never be cancelled. It may
+        // run application code on a transport thread, but only for a call that is already closed.
+        task.runnable.run();
+      }
+    }
+  }
+
+  /**
+   * Takes the next task of the tenant that is furthest behind its share.
+   */
+  @GuardedBy("lock")
+  private Task pollLocked() {
+    int next = 0;
+    for (int i = 1; i < activeTenants.size(); i++) {
+      if (activeTenants.get(i).pass < activeTenants.get(next).pass) {
+        next = i;
+      }
+    }
+    Tenant tenant = activeTenants.get(next);
+    Task task = tenant.tasks.poll();
+    queuedTasks--;
+    virtualTime = tenant.pass;
+    tenant.pass += STRIDE / tenant.weight;
+    if (tenant.tasks.isEmpty()) {
+      // Evict the idle tenant. Only the part of its pass ahead of the virtual time is forgotten,
+      // which is at most one stride.
+      activeTenants.remove(next);
+      tenants.remove(tenant.name);
+    }
+    return task;
+  }
+
+  private static int compareDeadlines(@Nullable Deadline d1, @Nullable Deadline d2) {
+    if (d1 == null) {
+      return d2 == null ? 0 : 1;
+    }
+    if (d2 == null) {
+      return -1;
+    }
+    return d1.compareTo(d2);
+  }
+
+  /**
+   * The executor of a single call. The server submits a call's work to it one task at a time, so
+   * tasks of a call never run concurrently.
+   */
+  private final class CallExecutor implements Executor {
+    final ServerCall<?, ?> serverCall;
+    final String tenant;
+    final int priority;
+    @Nullable
+    final Deadline deadline;
+
+    CallExecutor(
+        ServerCall<?, ?> serverCall, String tenant, int priority, @Nullable Deadline deadline) {
+      this.serverCall = serverCall;
+      this.tenant = tenant;
+      this.priority = priority;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      enqueue(this, checkNotNull(command, "command"));
+    }
+  }
+
+  private static final class Task {
+    final CallExecutor call;
+    final Runnable runnable;
+    final long seq;
+
+    Task(CallExecutor call, Runnable runnable, long seq) {
+      this.call = call;
+      this.runnable = runnable;
+      this.seq = seq;
+    }
+  }
+
+  private static final class Tenant {
+    final String name;
+    final int weight;
+    final PriorityQueue<Task> tasks;
+    long pass;
+
+    Tenant(String name, int weight, Comparator<Task> ordering) {
+      this.name = name;
+      this.weight = weight;
+      this.tasks = new PriorityQueue<>(11, ordering);
+    }
+  }
+
+  /**
+   * Builder for {@link CallScheduler}.
+   */
+  public static final class Builder {
+    private final Executor executor;
+    private final int maxRunningTasks;
+    private Ordering ordering = Ordering.EARLIEST_DEADLINE_FIRST;
+    @Nullable
+    private Classifier classifier;
+    private int maxTenants = 64;
+    private final Map<String, Integer> tenantWeights = new HashMap<>();
+
+    private Builder(Executor executor, int maxRunningTasks) {
+      checkArgument(maxRunningTasks > 0, "maxRunningTasks must be positive");
+      this.executor = checkNotNull(executor, "executor");
+      this.maxRunningTasks = maxRunningTasks;
+    }
+
+    /**
+     * Sets how the queued work of a tenant is ordered. Defaults to
+     * {@link Ordering#EARLIEST_DEADLINE_FIRST}.
+     */
+    public Builder setOrdering(Ordering ordering) {
+      this.ordering = checkNotNull(ordering, "ordering");
+      return this;
+    }
+
+    /**
+     * Sets the classifier deciding the tenant and priority of calls. Without a classifier all
+     * calls belong to the default tenant and have priority 0. Required for
+     * {@link Ordering#PRIORITY}.
+     */
+    public Builder setClassifier(Classifier classifier) {
+      this.classifier = checkNotNull(classifier, "classifier");
+      return this;
+    }
+
+    /**
+     * Sets how many tenants may have work queued at the same time. Work of further tenants without
+     * a configured weight is queued as the default tenant's. Defaults to 64.
+     */
+    public Builder setMaxTenants(int maxTenants) {
+      checkArgument(maxTenants > 0, "maxTenants must be positive");
+      this.maxTenants = maxTenants;
+      return this;
+    }
+
+    /**
+     * Sets the weight of a tenant. While tenants compete for threads, each gets to run a number of
+     * tasks proportional to its weight. Tenants have a weight of one by default.
+     */
+    public Builder setTenantWeight(String tenant, int weight) {
+      checkNotNull(tenant, "tenant");
+      checkArgument(weight > 0 && weight <= STRIDE, "weight must be in [1, %s]", STRIDE);
+      tenantWeights.put(tenant, weight);
+      return this;
+    }
+
+    public CallScheduler build() {
+      checkState(ordering != Ordering.PRIORITY || classifier != null,
+          "PRIORITY ordering requires a classifier");
+      return new CallScheduler(this);
+    }
+  }
+}
@@ -0,0 +1,523 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.services;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import io.grpc.ExperimentalApi;
+import io.grpc.ForwardingServerCall.SimpleForwardingServerCall;
+import io.grpc.ForwardingServerCallListener.SimpleForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallExecutorSupplier;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A {@link ServerInterceptor} that limits the number of calls in flight and fails calls over the
+ * limit right away with {@link Status.Code#RESOURCE_EXHAUSTED}, instead of letting them queue up
+ * in the server's executor. The limit adapts to the observed latency of calls, separately for each
+ * method or for each service.
+ *
+ * <p>On every call the number of calls in flight, the current limit and the number of calls
+ * rejected so far are recorded with {@link CallMetricRecorder}, so that they are sent to clients
+ * in ORCA load reports when ORCA reporting is enabled on the server.
+ *
+ * <p>Calls are only admitted once the interceptor runs, which is after they have been dispatched
+ * to the server's executor. To also keep rejected calls out of the queue of an application
+ * executor, pass {@link #executorSupplier} to {@link io.grpc.ServerBuilder#callExecutor}.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/6012")
+@ThreadSafe
+public final class ConcurrencyLimitServerInterceptor implements ServerInterceptor {
+  /** Name of the call metric holding the number of calls in flight. */
+  public static final String IN_FLIGHT_METRIC = "concurrency_limit.in_flight";
+  /** Name of the call metric holding the current limit. */
+  public static final String LIMIT_METRIC = "concurrency_limit.limit";
+  /** Name of the call metric holding the number of calls rejected so far. */
+  public static final String SHED_METRIC = "concurrency_limit.shed";
+
+  /** How the limit reacts to the latency of completed calls. */
+  public enum Algorithm {
+    /**
+     * Additive increase, multiplicative decrease. The limit grows by one for each call that
+     * completes within the latency threshold while at least half of the limit is in use, and is
+     * multiplied by the backoff ratio for each call that is slower, fails with an overload status
+     * or is cancelled.
+     */
+    AIMD,
+    /**
+     * Grows or shrinks the limit with the ratio of the long-term average latency to the latency of
+     * each completed call, so the limit shrinks as soon as calls get slower than usual.
+     */
+    GRADIENT
+  }
+
+  /** What a limit applies to. */
+  public enum Granularity {
+    /** Each method has its own limit. */
+    METHOD,
+    /** All methods of a service share a limit. */
+    SERVICE
+  }
+
+  private final Builder config;
+  private final Ticker ticker;
+  private final ConcurrentMap<String, Limit> limits = new ConcurrentHashMap<>();
+  private final RejectingExecutor rejectingExecutor = new RejectingExecutor();
+
+  private ConcurrencyLimitServerInterceptor(Builder builder, Ticker ticker) {
+    this.config = builder.copy();
+    this.ticker = checkNotNull(ticker, "ticker");
+  }
+
+  /**
+   * Creates a builder with an AIMD limit per method.
+   */
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  @Override
+  public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+      ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+    Limit limit = limitFor(call.getMethodDescriptor());
+    // A call that executorSupplier() sent to the rejecting executor was already counted as shed,
+    // and must be rejected even if calls completed since.
+    if (rejectingExecutor.isRunningTask() || !limit.tryAcquire()) {
+      limit.recordMetrics(CallMetricRecorder.getCurrent());
+      call.close(
+          Status.RESOURCE_EXHAUSTED.withDescription(
+              "Concurrency limit of " + limit.getLimit() + " reached"),
+          new Metadata());
+      return new ServerCall.Listener<ReqT>() {};
+    }
+    limit.recordMetrics(CallMetricRecorder.getCurrent());
+    LimitedCall<ReqT, RespT> limitedCall = new LimitedCall<>(call, limit, ticker.read());
+    ServerCall.Listener<ReqT> listener;
+    try {
+      listener = next.startCall(limitedCall, headers);
+    } catch (RuntimeException e) {
+      limitedCall.complete(true);
+      throw e;
+    } catch (Error e) {
+      limitedCall.complete(true);
+      throw e;
+    }
+    return new LimitedListener<>(listener, limitedCall);
+  }
+
+  /**
+   * Returns a {@link ServerCallExecutorSupplier} that keeps calls that will be rejected out of the
+   * queue of {@code delegate}'s executors. While the limit of a call's method is reached, the call
+   * is given an executor that runs it on the thread that dispatched it, and this interceptor always
+   * rejects calls running on that executor, even if other calls completed in the meantime. Other
+   * calls get the executor chosen by {@code delegate}, or the server's executor if {@code delegate}
+   * is {@code null}, and are admitted or rejected by the interceptor as usual.
+   */
+  public ServerCallExecutorSupplier executorSupplier(
+      @Nullable final ServerCallExecutorSupplier delegate) {
+    return new ServerCallExecutorSupplier() {
+      @Nullable
+      @Override
+      public <ReqT, RespT> Executor getExecutor(ServerCall<ReqT, RespT> call, Metadata metadata) {
+        Limit limit = limitFor(call.getMethodDescriptor());
+        if (limit.shedIfSaturated()) {
+          return rejectingExecutor;
+        }
+        return delegate == null ? null : delegate.getExecutor(call, metadata);
+      }
+    };
+  }
+
+  /**
+   * Returns the current limit for the given method, or the initial limit if the method has not
+   * been called yet.
+   */
+  public int getLimit(MethodDescriptor<?, ?> method) {
+    return limitFor(method).getLimit();
+  }
+
+  /**
+   * Returns the number of calls in flight that count against the limit of the given method.
+   */
+  public int getInFlight(MethodDescriptor<?, ?> method) {
+    return limitFor(method).getInFlight();
+  }
+
+  /**
+   * Returns the number of calls that were rejected because the limit of the given method was
+   * reached.
+   */
+  public long getShedCount(MethodDescriptor<?, ?> method) {
+    return limitFor(method).getShedCount();
+  }
+
+  private Limit limitFor(MethodDescriptor<?, ?> method) {
+    String key = method.getFullMethodName();
+    if (config.granularity == Granularity.SERVICE) {
+      String serviceName = method.getServiceName();
+      if (serviceName != null) {
+        key = serviceName;
+      }
+    }
+    Limit limit = limits.get(key);
+    if (limit == null) {
+      Limit newLimit = config.algorithm == Algorithm.AIMD
+          ? new AimdLimit(config) : new GradientLimit(config);
+      limit = limits.putIfAbsent(key, newLimit);
+      if (limit == null) {
+        limit = newLimit;
+      }
+    }
+    return limit;
+  }
+
+  /**
+   * Runs tasks on the calling thread, marking them as belonging to calls that the interceptor must
+   * reject. The flag is only visible to the interceptor while one of these tasks runs, which is
+   * when the server starts the call.
+   */
+  private static final class RejectingExecutor implements Executor {
+    private final ThreadLocal<Boolean> runningTask = new ThreadLocal<>();
+
+    @Override
+    public void execute(Runnable command) {
+      Boolean previous = runningTask.get();
+      runningTask.set(Boolean.TRUE);
+      try {
+        command.run();
+      } finally {
+        if (previous == null) {
+          runningTask.remove();
+        } else {
+          runningTask.set(previous);
+        }
+      }
+    }
+
+    boolean isRunningTask() {
+      return runningTask.get() != null;
+    }
+  }
+
+  private static boolean isOverloadStatus(Status.Code code) {
+    return code == Status.Code.RESOURCE_EXHAUSTED
+        || code == Status.Code.DEADLINE_EXCEEDED
+        || code == Status.Code.UNAVAILABLE;
+  }
+
+  private final class LimitedCall<ReqT, RespT> extends SimpleForwardingServerCall<ReqT, RespT> {
+    private final Limit limit;
+    private final long startNanos;
+    private final AtomicBoolean completed = new AtomicBoolean();
+    private volatile Status.Code closeCode;
+
+    LimitedCall(ServerCall<ReqT, RespT> delegate, Limit limit, long startNanos) {
+      super(delegate);
+      this.limit = limit;
+      this.startNanos = startNanos;
+    }
+
+    @Override
+    public void close(Status status, Metadata trailers) {
+      closeCode = status.getCode();
+      super.close(status, trailers);
+    }
+
+    void complete(boolean cancelled) {
+      if (!completed.compareAndSet(false, true)) {
+        return;
+      }
+      Status.Code code = closeCode;
+      boolean dropped = cancelled || (code != null && isOverloadStatus(code));
+      limit.release(ticker.read() - startNanos, dropped);
+    }
+  }
+
+  private static final class LimitedListener<ReqT>
+      extends SimpleForwardingServerCallListener<ReqT> {
+    private final LimitedCall<ReqT, ?> call;
+
+    LimitedListener(ServerCall.Listener<ReqT> delegate, LimitedCall<ReqT, ?> call) {
+      super(delegate);
+      this.call = call;
+    }
+
+    @Override
+    public void onComplete() {
+      try {
+        super.onComplete();
+      } finally {
+        call.complete(false);
+      }
+    }
+
+    @Override
+    public void onCancel() {
+      try {
+        super.onCancel();
+      } finally {
+        call.complete(true);
+      }
+    }
+  }
+
+  /**
+   * The limit of a method or service and the calls counted against it.
+   */
+  private abstract static class Limit {
+    private final int minLimit;
+    private final int maxLimit;
+    @GuardedBy("this")
+    double limit;
+    @GuardedBy("this")
+    private int inFlight;
+    @GuardedBy("this")
+    private long shed;
+
+    Limit(Builder config) {
+      this.minLimit = config.minLimit;
+      this.maxLimit = config.maxLimit;
+      this.limit = config.initialLimit;
+    }
+
+    synchronized boolean tryAcquire() {
+      if (inFlight >= (int) limit) {
+        shed++;
+        return false;
+      }
+      inFlight++;
+      return true;
+    }
+
+    synchronized void release(long latencyNanos, boolean dropped) {
+      double next = nextLimit(latencyNanos, dropped, inFlight);
+      limit = Math.max(minLimit, Math.min(maxLimit, next));
+      inFlight--;
+    }
+
+    /**
+     * Counts a call as rejected if the limit is reached, without admitting it otherwise. Returns
+     * whether the call was counted.
+     */
+    synchronized boolean shedIfSaturated() {
+      if (inFlight >= (int) limit) {
+        shed++;
+        return true;
+      }
+      return false;
+    }
+
+    synchronized int getLimit() {
+      return (int) limit;
+    }
+
+    synchronized int getInFlight() {
+      return inFlight;
+    }
+
+    synchronized long getShedCount() {
+      return shed;
+    }
+
+    synchronized void recordMetrics(CallMetricRecorder recorder) {
+      recorder.recordCallMetric(IN_FLIGHT_METRIC, inFlight);
+      recorder.recordCallMetric(LIMIT_METRIC, (int) limit);
+      recorder.recordCallMetric(SHED_METRIC, shed);
+    }
+
+    /**
+     * Returns the new limit after a call completed, given the number of calls in flight including
+     * the completed one.
+     */
+    @GuardedBy("this")
+    abstract double nextLimit(long latencyNanos, boolean dropped, int inFlight);
+  }
+
+  private static final class AimdLimit extends Limit {
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+
+    AimdLimit(Builder config) {
+      super(config);
+      this.latencyThresholdNanos = config.latencyThresholdNanos;
+      this.backoffRatio = config.backoffRatio;
+    }
+
+    @Override
+    @GuardedBy("this")
+    double nextLimit(long latencyNanos, boolean dropped, int inFlight) {
+      if (dropped || latencyNanos > latencyThresholdNanos) {
+        return limit * backoffRatio;
+      }
+      if (inFlight * 2 >= limit) {
+        return limit + 1;
+      }
+      return limit;
+    }
+  }
+
+  private static final class GradientLimit extends Limit {
+    /** Weight of each call in the long-term average latency. */
+    private static final double LATENCY_WEIGHT = 0.05;
+    /** Weight of each new estimate in the limit. */
+    private static final double SMOOTHING = 0.2;
+    /** How much slower than the long-term average calls may get before the limit shrinks. */
+    private static final double TOLERANCE = 1.5;
+    private static final double MIN_GRADIENT = 0.5;
+
+    @GuardedBy("this")
+    private double averageLatencyNanos;
+
+    GradientLimit(Builder config) {
+      super(config);
+    }
+
+    @Override
+    @GuardedBy("this")
+    double nextLimit(long latencyNanos, boolean dropped, int inFlight) {
+      double gradient;
+      if (dropped) {
+        gradient = MIN_GRADIENT;
+      } else {
+        if (averageLatencyNanos == 0) {
+          averageLatencyNanos = latencyNanos;
+        } else {
+          averageLatencyNanos += (latencyNanos - averageLatencyNanos) * LATENCY_WEIGHT;
+        }
+        // Don't grow the limit while the application isn't using it.
+        if (inFlight * 2 < limit) {
+          return limit;
+        }
+        gradient = Math.max(MIN_GRADIENT,
+            Math.min(1.0, TOLERANCE * averageLatencyNanos / Math.max(1, latencyNanos)));
+      }
+      // Allow some queueing so the limit can grow when latency is stable.
+      double estimate = limit * gradient + Math.sqrt(limit);
+      return limit * (1 - SMOOTHING) + estimate * SMOOTHING;
+    }
+  }
+
+  /**
+   * Builder for {@link ConcurrencyLimitServerInterceptor}.
+   */
+  public static final class Builder {
+    private Algorithm algorithm = Algorithm.AIMD;
+    private Granularity granularity = Granularity.METHOD;
+    private int initialLimit = 20;
+    private int minLimit = 1;
+    private int maxLimit = 1000;
+    private long latencyThresholdNanos = TimeUnit.SECONDS.toNanos(5);
+    private double backoffRatio = 0.9;
+
+    private Builder() {}
+
+    /**
+     * Sets how the limit adapts to latency. Defaults to {@link Algorithm#AIMD}.
+     */
+    public Builder setAlgorithm(Algorithm algorithm) {
+      this.algorithm = checkNotNull(algorithm, "algorithm");
+      return this;
+    }
+
+    /**
+     * Sets whether each method or each service has its own limit. Defaults to
+     * {@link Granularity#METHOD}.
+     */
+    public Builder setGranularity(Granularity granularity) {
+      this.granularity = checkNotNull(granularity, "granularity");
+      return this;
+    }
+
+    /**
+     * Sets the limit used before any calls completed. Defaults to 20.
+     */
+    public Builder setInitialLimit(int initialLimit) {
+      checkArgument(initialLimit > 0, "initialLimit must be positive");
+      this.initialLimit = initialLimit;
+      return this;
+    }
+
+    /**
+     * Sets the range the limit stays within. Defaults to 1 to 1000.
+     */
+    public Builder setLimitRange(int minLimit, int maxLimit) {
+      checkArgument(minLimit > 0, "minLimit must be positive");
+      checkArgument(maxLimit >= minLimit, "maxLimit must not be smaller than minLimit");
+      this.minLimit = minLimit;
+      this.maxLimit = maxLimit;
+      return this;
+    }
+
+    /**
+     * Sets the latency above which {@link Algorithm#AIMD} treats a call as a sign of overload.
+     * Defaults to 5 seconds.
+     */
+    public Builder setLatencyThreshold(long latencyThreshold, TimeUnit unit) {
+      checkArgument(latencyThreshold > 0, "latencyThreshold must be positive");
+      this.latencyThresholdNanos = unit.toNanos(latencyThreshold);
+      return this;
+    }
+
+    /**
+     * Sets the factor {@link Algorithm#AIMD} multiplies the limit with on overload. Defaults to
+     * 0.9.
+     */
+    public Builder setBackoffRatio(double backoffRatio) {
+      checkArgument(backoffRatio > 0 && backoffRatio < 1, "backoffRatio must be in (0, 1)");
+      this.backoffRatio = backoffRatio;
+      return this;
+    }
+
+    public ConcurrencyLimitServerInterceptor build() {
+      return build(Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    ConcurrencyLimitServerInterceptor build(Ticker ticker) {
+      checkArgument(initialLimit >= minLimit && initialLimit <= maxLimit,
+          "initialLimit must be within the limit range");
+      return new ConcurrencyLimitServerInterceptor(this, ticker);
+    }
+
+    private Builder copy() {
+      Builder copy = new Builder();
+      copy.algorithm = algorithm;
+      copy.granularity = granularity;
+      copy.initialLimit = initialLimit;
+      copy.minLimit = minLimit;
+      copy.maxLimit = maxLimit;
+      copy.latencyThresholdNanos = latencyThresholdNanos;
+      copy.backoffRatio = backoffRatio;
+      return copy;
+    }
+  }
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.services;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.Status;
+import io.grpc.internal.FakeClock;
+import io.grpc.internal.SerializingExecutor;
+import io.grpc.services.CallScheduler.Ordering;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+/** Tests for {@link CallScheduler}. */
+@RunWith(JUnit4.class)
+public class CallSchedulerTest {
+  private static final Metadata.Key<String> PRIORITY_KEY =
+      Metadata.Key.of("priority", Metadata.ASCII_STRING_MARSHALLER);
+  private static final Metadata.Key<String> TENANT_KEY =
+      Metadata.Key.of("tenant", Metadata.ASCII_STRING_MARSHALLER);
+
+  @Rule
+  public final MockitoRule mocks = MockitoJUnit.rule();
+
+  private final FakeClock fakeClock = new FakeClock();
+  private final Queue<Runnable> workerTasks = new ArrayDeque<>();
+  private final Executor workers = new Executor() {
+    @Override
+    public void execute(Runnable command) {
+      workerTasks.add(command);
+    }
+  };
+  private final Executor rejecting = new Executor() {
+    @Override
+    public void execute(Runnable command) {
+      throw new RejectedExecutionException("shut down");
+    }
+  };
+  private final List<String> ran = new ArrayList<>();
+
+  @Mock
+  private ServerCall<Void, Void> call;
+  @Mock
+  private ServerCallHandler<Void, Void> next;
+
+  /** Classifies calls by headers. A real server would use something it trusts instead. */
+  private final CallScheduler.Classifier classifier = new CallScheduler.Classifier() {
+    @Override
+    public String getTenant(ServerCall<?, ?> call, Metadata headers) {
+      return headers.get(TENANT_KEY);
+    }
+
+    @Override
+    public int getPriority(ServerCall<?, ?> call, Metadata headers) {
+      String value = headers.get(PRIORITY_KEY);
+      return value == null ? 0 : Integer.parseInt(value);
+    }
+  };
+
+  @Test
+  public void earliestDeadlineFirst() {
+    CallScheduler scheduler = CallScheduler.newBuilder(workers, 1).build();
+    submit(executorFor(scheduler, new Metadata(), null), "busy");
+    submit(executorFor(scheduler, new Metadata(), deadlineAfter(30)), "30s");
+    submit(executorFor(scheduler, new Metadata(), deadlineAfter(10)), "10s");
+    submit(executorFor(scheduler, new Metadata(), null), "none");
+    submit(executorFor(scheduler, new Metadata(), deadlineAfter(20)), "20s");
+    assertThat(scheduler.getQueuedTasks()).isEqualTo(4);
+
+    runAll();
+
+    assertThat(ran).containsExactly("busy", "10s", "20s", "30s", "none").inOrder();
+    assertThat(scheduler.getQueuedTasks()).isEqualTo(0);
+  }
+
+  @Test
+  public void priorityFromClassifier() {
+    CallScheduler scheduler = CallScheduler.newBuilder(workers, 1)
+        .setOrdering(Ordering.PRIORITY)
+        .setClassifier(classifier)
+        .build();
+    submit(executorFor(scheduler, priority("0"), null), "busy");
+    submit(executorFor(scheduler, priority("1"), null), "p1");
+    submit(executorFor(scheduler, priority("5"), deadlineAfter(20)), "p5-20s");
+    submit(executorFor(scheduler, new Metadata(), null), "default");
+    submit(executorFor(scheduler, priority("5"), deadlineAfter(10)), "p5-10s");
+
+    runAll();
+
+    assertThat(ran).containsExactly("busy", "p5-10s", "p5-20s", "p1", "default").inOrder();
+  }
+
+  @Test
+  public void priorityIgnoredWithoutClassifier() {
+    CallScheduler scheduler = CallScheduler.newBuilder(workers, 1).build();
+    submit(executorFor(scheduler, new Metadata(), null), "busy");
+    submit(executorFor(scheduler, priority("1"), deadlineAfter(20)), "p1-20s");
+    submit(executorFor(scheduler, priority("5"), deadlineAfter(30)), "p5-30s");
+
+    runAll();
+
+    assertThat(ran).containsExactly("busy", "p1-20s", "p5-30s").inOrder();
+  }
+
+  @Test
+  public void tasksOfOneCallRunInOrder() {
+    CallScheduler scheduler = CallScheduler.newBuilder(workers, 1).build();
+    Executor callExecutor = executorFor(scheduler, new Metadata(), deadlineAfter(10));
+    submit(executorFor(scheduler, new Metadata(), null), "busy");
+    submit(callExecutor, "first");
+    submit(callExecutor, "second");
+
+    runAll();
+
+    assertThat(ran).containsExactly("busy", "first", "second").inOrder();
+  }
+
+  @Test
+  public void weightedFairSharingAcrossTenants() {
+    CallScheduler scheduler = CallScheduler.newBuilder(workers, 1)
+        .setClassifier(classifier)
+        .setTenantWeight("a", 2)
+        .build();
+    submit(executorFor(scheduler, new Metadata(), null), "busy");
+    for (int i = 0; i < 6; i++) {
+      submit(executorFor(scheduler, tenant("a"), null), "a");
+      submit(executorFor(scheduler, tenant("b"), null), "b");
+    }
+
+    runAll();
+
+    List<String> firstSix = ran.subList(1, 7);
+    assertThat(Collections.frequency(firstSix, "a")).isEqualTo(4);
+    assertThat(Collections.frequency(firstSix, "b")).isEqualTo(2);
+  }
+
+  @Test
+  public void tenantsOverMaximumShareDefaultQueue() {
+    CallScheduler scheduler = CallScheduler.newBuilder(workers, 1)
+        .setClassifier(classifier)
+        .setMaxTenants(2)
+        .setTenantWeight("weighted", 1)
+        .build();
+    submit(executorFor(scheduler, new Metadata(), null), "busy");
+    submit(executorFor(scheduler, tenant("a"), null), "a");
+    submit(executorFor(scheduler, tenant("b"), null), "b");
+    assertThat(scheduler.getActiveTenants()).isEqualTo(2);
+
+    submit(executorFor(scheduler, tenant("c"), null), "c");
+    submit(executorFor(scheduler, tenant("d"), null), "d");
+    // c and d are queued as the default tenant; configured tenants always get their own queue.
+    assertThat(scheduler.getActiveTenants()).isEqualTo(3);
+    submit(executorFor(scheduler, tenant("weighted"), null), "weighted");
+    assertThat(scheduler.getActiveTenants()).isEqualTo(4);
+
+    runAll();
+
+    assertThat(ran).containsExactly("busy", "a", "b", "c", "d", "weighted");
+  }
+
+  @Test
+  public void idleTenantsAreEvicted() {
+    CallScheduler scheduler = CallScheduler.newBuilder(workers, 1)
+        .setClassifier(classifier)
+        .build();
+    submit(executorFor(scheduler, new Metadata(), null), "busy");
+    for (int i = 0; i < 10; i++) {
+      submit(executorFor(scheduler, tenant("tenant-" + i), null), "t" + i);
+    }
+    assertThat(scheduler.getActiveTenants()).isEqualTo(10);
+
+    runAll();
+
+    assertThat(ran).hasSize(11);
+    assertThat(scheduler.getActiveTenants()).isEqualTo(0);
+  }
+
+  @Test
+  public void rejectedTaskFailsCall() {
+    CallScheduler scheduler = CallScheduler.newBuilder(rejecting, 1).build();
+
+    submit(executorFor(scheduler, new Metadata(), null), "rejected");
+
+    // Run anyway, so that the call's callbacks are still delivered.
+    assertThat(ran).containsExactly("rejected");
+    ArgumentCaptor<Status> statusCaptor = ArgumentCaptor.forClass(Status.class);
+    verify(call).close(statusCaptor.capture(), any(Metadata.class));
+    assertThat(statusCaptor.getValue().getCode()).isEqualTo(Status.Code.RESOURCE_EXHAUSTED);
+    assertThat(scheduler.getQueuedTasks()).isEqualTo(0);
+  }
+
+  @Test
+  public void rejectedTask_serializingExecutorKeepsDraining() {
+    CallScheduler scheduler = CallScheduler.newBuilder(rejecting, 1).build();
+    // As ServerImpl wraps the call's executor.
+    SerializingExecutor callExecutor =
+        new SerializingExecutor(executorFor(scheduler, new Metadata(), null));
+
+    submit(callExecutor, "onMessage");
+    submit(callExecutor, "onCancel");
+
+    assertThat(ran).containsExactly("onMessage", "onCancel").inOrder();
+  }
+
+  @Test
+  public void runsUpToMaxTasksAtOnce() {
+    CallScheduler scheduler = CallScheduler.newBuilder(workers, 2).build();
+    for (int i = 0; i < 5; i++) {
+      submit(executorFor(scheduler, new Metadata(), null), "task");
+    }
+
+    assertThat(workerTasks).hasSize(2);
+    assertThat(scheduler.getQueuedTasks()).isEqualTo(3);
+    workerTasks.poll().run();
+    assertThat(workerTasks).hasSize(2);
+    assertThat(scheduler.getQueuedTasks()).isEqualTo(2);
+  }
+
+  @Test
+  public void interceptor_dropsExpiredCall() {
+    CallScheduler scheduler = CallScheduler.newBuilder(workers, 1).build();
+    Context.CancellableContext ctx = Context.ROOT.withDeadline(
+        deadlineAfter(1), fakeClock.getScheduledExecutorService());
+    fakeClock.forwardTime(2, TimeUnit.SECONDS);
+
+    Context prev = ctx.attach();
+    try {
+      scheduler.interceptCall(call, new Metadata(), next);
+    } finally {
+      ctx.detach(prev);
+    }
+
+    ArgumentCaptor<Status> statusCaptor = ArgumentCaptor.forClass(Status.class);
+    verify(call).close(statusCaptor.capture(), any(Metadata.class));
+    assertThat(statusCaptor.getValue().getCode()).isEqualTo(Status.Code.DEADLINE_EXCEEDED);
+    verify(next, never())
+        .startCall(ArgumentMatchers.<ServerCall<Void, Void>>any(), any(Metadata.class));
+    assertThat(scheduler.getDroppedCalls()).isEqualTo(1);
+  }
+
+  @Test
+  public void interceptor_dropsCancelledCall() {
+    CallScheduler scheduler = CallScheduler.newBuilder(workers, 1).build();
+    Context.CancellableContext ctx = Context.ROOT.withCancellation();
+    ctx.cancel(null);
+
+    Context prev = ctx.attach();
+    try {
+      scheduler.interceptCall(call, new Metadata(), next);
+    } finally {
+      ctx.detach(prev);
+    }
+
+    ArgumentCaptor<Status> statusCaptor = ArgumentCaptor.forClass(Status.class);
+    verify(call).close(statusCaptor.capture(), any(Metadata.class));
+    assertThat(statusCaptor.getValue().getCode()).isEqualTo(Status.Code.CANCELLED);
+    assertThat(scheduler.getDroppedCalls()).isEqualTo(1);
+  }
+
+  @Test
+  public void interceptor_startsLiveCall() {
+    CallScheduler scheduler = CallScheduler.newBuilder(workers, 1).build();
+    Metadata headers = new Metadata();
+
+    scheduler.interceptCall(call, headers, next);
+
+    verify(next).startCall(same(call), same(headers));
+    verify(call, never()).close(any(Status.class), any(Metadata.class));
+    assertThat(scheduler.getDroppedCalls()).isEqualTo(0);
+  }
+
+  private Executor executorFor(
+      CallScheduler scheduler, Metadata headers, @Nullable Deadline deadline) {
+    if (deadline == null) {
+      return scheduler.getExecutor(call, headers);
+    }
+    Context.CancellableContext ctx =
+        Context.ROOT.withDeadline(deadline, fakeClock.getScheduledExecutorService());
+    Context prev = ctx.attach();
+    try {
+      return scheduler.getExecutor(call, headers);
+    } finally {
+      ctx.detach(prev);
+    }
+  }
+
+  private void submit(Executor executor, final String name) {
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        ran.add(name);
+      }
+    });
+  }
+
+  private void runAll() {
+    Runnable task;
+    while ((task = workerTasks.poll()) != null) {
+      task.run();
+    }
+  }
+
+  private Deadline deadlineAfter(int seconds) {
+    return Deadline.after(seconds, TimeUnit.SECONDS, fakeClock.getDeadlineTicker());
+  }
+
+  private static Metadata priority(String value) {
+    Metadata headers = new Metadata();
+    headers.put(PRIORITY_KEY, value);
+    return headers;
+  }
+
+  private static Metadata tenant(String value) {
+    Metadata headers = new Metadata();
+    headers.put(TENANT_KEY, value);
+    return headers;
+  }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.services;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Ticker;
+import io.grpc.Context;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallExecutorSupplier;
+import io.grpc.ServerCallHandler;
+import io.grpc.Status;
+import io.grpc.internal.FakeClock;
+import io.grpc.services.ConcurrencyLimitServerInterceptor.Algorithm;
+import io.grpc.services.ConcurrencyLimitServerInterceptor.Granularity;
+import io.grpc.testing.TestMethodDescriptors;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+/** Tests for {@link ConcurrencyLimitServerInterceptor}. */
+@RunWith(JUnit4.class)
+public class ConcurrencyLimitServerInterceptorTest {
+  @Rule
+  public final MockitoRule mocks = MockitoJUnit.rule();
+
+  private final FakeClock fakeClock = new FakeClock();
+  private final MethodDescriptor<Void, Void> method = TestMethodDescriptors.voidMethod();
+  private final MethodDescriptor<Void, Void> otherMethod = method.toBuilder()
+      .setFullMethodName(MethodDescriptor.generateFullMethodName("service_foo", "other"))
+      .build();
+  private final List<ServerCall.Listener<Void>> pending = new ArrayList<>();
+
+  @Mock
+  private ServerCallHandler<Void, Void> next;
+  @Mock
+  private ServerCall.Listener<Void> nextListener;
+
+  @Test
+  public void callsOverLimitAreRejected() {
+    ConcurrencyLimitServerInterceptor interceptor = newBuilder().setInitialLimit(2).build(ticker());
+
+    startCall(interceptor, method);
+    startCall(interceptor, method);
+    ServerCall<Void, Void> rejected = startCall(interceptor, method);
+
+    ArgumentCaptor<Status> statusCaptor = ArgumentCaptor.forClass(Status.class);
+    verify(rejected).close(statusCaptor.capture(), any(Metadata.class));
+    assertThat(statusCaptor.getValue().getCode()).isEqualTo(Status.Code.RESOURCE_EXHAUSTED);
+    assertThat(interceptor.getInFlight(method)).isEqualTo(2);
+    assertThat(interceptor.getShedCount(method)).isEqualTo(1);
+    // Other methods have their own limit.
+    assertThat(interceptor.getInFlight(otherMethod)).isEqualTo(0);
+  }
+
+  @Test
+  public void serviceGranularity_sharesLimitAcrossMethods() {
+    ConcurrencyLimitServerInterceptor interceptor = newBuilder()
+        .setGranularity(Granularity.SERVICE)
+        .setInitialLimit(1)
+        .build(ticker());
+
+    startCall(interceptor, method);
+    ServerCall<Void, Void> rejected = startCall(interceptor, otherMethod);
+
+    verify(rejected).close(any(Status.class), any(Metadata.class));
+    assertThat(interceptor.getShedCount(otherMethod)).isEqualTo(1);
+  }
+
+  @Test
+  public void aimd_growsWhileBusyAndFast() {
+    ConcurrencyLimitServerInterceptor interceptor = newBuilder().setInitialLimit(2).build(ticker());
+
+    ServerCall.Listener<Void> listener = interceptCall(interceptor, mockCall(method));
+    interceptCall(interceptor, mockCall(method));
+    fakeClock.forwardTime(10, TimeUnit.MILLISECONDS);
+    listener.onComplete();
+
+    assertThat(interceptor.getLimit(method)).isEqualTo(3);
+    assertThat(interceptor.getInFlight(method)).isEqualTo(1);
+  }
+
+  @Test
+  public void aimd_backsOffOnSlowCall() {
+    ConcurrencyLimitServerInterceptor interceptor = newBuilder()
+        .setInitialLimit(20)
+        .setLatencyThreshold(1, TimeUnit.SECONDS)
+        .build(ticker());
+
+    ServerCall.Listener<Void> listener = interceptCall(interceptor, mockCall(method));
+    fakeClock.forwardTime(2, TimeUnit.SECONDS);
+    listener.onComplete();
+
+    assertThat(interceptor.getLimit(method)).isEqualTo(18);
+    assertThat(interceptor.getInFlight(method)).isEqualTo(0);
+  }
+
+  @Test
+  public void aimd_backsOffOnCancelAndOverloadStatus() {
+    ConcurrencyLimitServerInterceptor interceptor =
+        newBuilder().setInitialLimit(20).build(ticker());
+
+    interceptCall(interceptor, mockCall(method)).onCancel();
+    assertThat(interceptor.getLimit(method)).isEqualTo(18);
+
+    ServerCall.Listener<Void> listener = interceptCall(interceptor, mockCall(method));
+    ArgumentCaptor<ServerCall<Void, Void>> callCaptor = startCallCaptor();
+    verify(next, atLeastOnce()).startCall(callCaptor.capture(), any(Metadata.class));
+    callCaptor.getValue().close(Status.RESOURCE_EXHAUSTED, new Metadata());
+    listener.onComplete();
+
+    assertThat(interceptor.getLimit(method)).isEqualTo(16);
+    assertThat(interceptor.getInFlight(method)).isEqualTo(0);
+  }
+
+  @Test
+  public void gradient_shrinksWhenLatencyRises() {
+    ConcurrencyLimitServerInterceptor interceptor = newBuilder()
+        .setAlgorithm(Algorithm.GRADIENT)
+        .setInitialLimit(4)
+        .build(ticker());
+
+    for (int i = 0; i < 10; i++) {
+      ServerCall.Listener<Void> listener = startCalls(interceptor, 4);
+      fakeClock.forwardTime(10, TimeUnit.MILLISECONDS);
+      listener.onComplete();
+      completeAll(interceptor);
+    }
+    int stableLimit = interceptor.getLimit(method);
+    assertThat(stableLimit).isAtLeast(4);
+
+    for (int i = 0; i < 10; i++) {
+      ServerCall.Listener<Void> listener = startCalls(interceptor, stableLimit);
+      fakeClock.forwardTime(1, TimeUnit.SECONDS);
+      listener.onComplete();
+      completeAll(interceptor);
+    }
+    assertThat(interceptor.getLimit(method)).isLessThan(stableLimit);
+  }
+
+  @Test
+  public void recordsMetricsOnCallMetricRecorder() {
+    ConcurrencyLimitServerInterceptor interceptor = newBuilder().setInitialLimit(1).build(ticker());
+    startCall(interceptor, method);
+
+    CallMetricRecorder recorder = new CallMetricRecorder();
+    Context ctx = Context.ROOT.withValue(CallMetricRecorder.CONTEXT_KEY, recorder);
+    Context origCtx = ctx.attach();
+    try {
+      startCall(interceptor, method);
+    } finally {
+      ctx.detach(origCtx);
+    }
+
+    assertThat(recorder.finalizeAndDump()).containsExactly(
+        ConcurrencyLimitServerInterceptor.IN_FLIGHT_METRIC, 1.0,
+        ConcurrencyLimitServerInterceptor.LIMIT_METRIC, 1.0,
+        ConcurrencyLimitServerInterceptor.SHED_METRIC, 1.0);
+  }
+
+  @Test
+  public void executorSupplier_keepsRejectedCallsOffDelegate() {
+    ConcurrencyLimitServerInterceptor interceptor = newBuilder().setInitialLimit(1).build(ticker());
+    final Executor appExecutor = mock(Executor.class);
+    ServerCallExecutorSupplier supplier =
+        interceptor.executorSupplier(new ServerCallExecutorSupplier() {
+          @Override
+          public <ReqT, RespT> Executor getExecutor(ServerCall<ReqT, RespT> call, Metadata md) {
+            return appExecutor;
+          }
+        });
+
+    assertThat(supplier.getExecutor(mockCall(method), new Metadata()))
+        .isSameInstanceAs(appExecutor);
+    startCall(interceptor, method);
+    Executor rejectingExecutor = supplier.getExecutor(mockCall(method), new Metadata());
+    assertThat(rejectingExecutor).isNotSameInstanceAs(appExecutor);
+    assertThat(rejectingExecutor).isNotNull();
+    assertThat(interceptor.getShedCount(method)).isEqualTo(1);
+    assertThat(interceptor.executorSupplier(null)
+        .getExecutor(mockCall(otherMethod), new Metadata())).isNull();
+  }
+
+  @Test
+  public void executorSupplier_callsOnRejectingExecutorAreAlwaysRejected() {
+    final ConcurrencyLimitServerInterceptor interceptor =
+        newBuilder().setInitialLimit(1).build(ticker());
+    ServerCallExecutorSupplier supplier = interceptor.executorSupplier(null);
+    ServerCall.Listener<Void> admitted = interceptCall(interceptor, mockCall(method));
+    Executor rejectingExecutor = supplier.getExecutor(mockCall(method), new Metadata());
+
+    // The admitted call completes before the rejected one starts.
+    admitted.onComplete();
+    final ServerCall<Void, Void> call = mockCall(method);
+    rejectingExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        interceptCall(interceptor, call);
+      }
+    });
+
+    ArgumentCaptor<Status> statusCaptor = ArgumentCaptor.forClass(Status.class);
+    verify(call).close(statusCaptor.capture(), any(Metadata.class));
+    assertThat(statusCaptor.getValue().getCode()).isEqualTo(Status.Code.RESOURCE_EXHAUSTED);
+    assertThat(interceptor.getInFlight(method)).isEqualTo(0);
+    assertThat(interceptor.getShedCount(method)).isEqualTo(1);
+
+    // Calls not started on the rejecting executor are admitted again.
+    startCall(interceptor, method);
+    assertThat(interceptor.getInFlight(method)).isEqualTo(1);
+  }
+
+  @Test
+  public void startCallThrows_releasesPermit() {
+    ConcurrencyLimitServerInterceptor interceptor = newBuilder().setInitialLimit(1).build(ticker());
+    ServerCall<Void, Void> call = mockCall(method);
+    when(next.startCall(ArgumentMatchers.<ServerCall<Void, Void>>any(), any(Metadata.class)))
+        .thenThrow(new IllegalStateException("boom"));
+
+    try {
+      interceptor.interceptCall(call, new Metadata(), next);
+      fail("Should have thrown");
+    } catch (IllegalStateException expected) {
+    }
+
+    assertThat(interceptor.getInFlight(method)).isEqualTo(0);
+    verify(call, never()).close(any(Status.class), any(Metadata.class));
+  }
+
+  private ServerCall.Listener<Void> startCalls(
+      ConcurrencyLimitServerInterceptor interceptor, int count) {
+    ServerCall.Listener<Void> first = interceptCall(interceptor, mockCall(method));
+    for (int i = 1; i < count; i++) {
+      pending.add(interceptCall(interceptor, mockCall(method)));
+    }
+    return first;
+  }
+
+  private void completeAll(ConcurrencyLimitServerInterceptor interceptor) {
+    for (ServerCall.Listener<Void> listener : pending) {
+      listener.onComplete();
+    }
+    pending.clear();
+    assertThat(interceptor.getInFlight(method)).isEqualTo(0);
+  }
+
+  private ServerCall<Void, Void> startCall(
+      ConcurrencyLimitServerInterceptor interceptor, MethodDescriptor<Void, Void> method) {
+    ServerCall<Void, Void> call = mockCall(method);
+    interceptCall(interceptor, call);
+    return call;
+  }
+
+  private ServerCall.Listener<Void> interceptCall(
+      ConcurrencyLimitServerInterceptor interceptor, ServerCall<Void, Void> call) {
+    when(next.startCall(ArgumentMatchers.<ServerCall<Void, Void>>any(), any(Metadata.class)))
+        .thenReturn(nextListener);
+    return interceptor.interceptCall(call, new Metadata(), next);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ArgumentCaptor<ServerCall<Void, Void>> startCallCaptor() {
+    return ArgumentCaptor.forClass((Class<ServerCall<Void, Void>>) (Class<?>) ServerCall.class);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ServerCall<Void, Void> mockCall(MethodDescriptor<Void, Void> method) {
+    ServerCall<Void, Void> call = mock(ServerCall.class);
+    when(call.getMethodDescriptor()).thenReturn(method);
+    return call;
+  }
+
+  private static ConcurrencyLimitServerInterceptor.Builder newBuilder() {
+    return ConcurrencyLimitServerInterceptor.newBuilder();
+  }
+
+  private Ticker ticker() {
+    return fakeClock.getTicker();
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.stub;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import io.grpc.ExperimentalApi;
+import io.grpc.MethodDescriptor;
+import io.grpc.PreSerializedMessage;
+import io.grpc.Status;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A group of server streams that all receive the same messages, such as the subscribers of a
+ * server-streaming method. Each broadcast message is serialized once and the serialized bytes are
+ * shared by all the streams, instead of being serialized again for every stream.
+ *
+ * <p>Members are only written to by {@link #broadcast}, which skips streams that are not {@link
+ * ServerCallStreamObserver#isReady() ready} rather than buffering for them, and removes streams
+ * that have been cancelled. The application must not call {@code onNext()} on a member itself,
+ * but completing or failing a member should be done after {@link #remove removing} it. {@code
+ * remove()} waits for a write to that stream that is already in progress, so nothing is written
+ * to the stream once it returns.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/7387")
+@ThreadSafe
+public final class BroadcastGroup<T> {
+  private static final Logger log = Logger.getLogger(BroadcastGroup.class.getName());
+
+  private final MethodDescriptor.Marshaller<T> marshaller;
+  @GuardedBy("this")
+  private final Map<ServerCallStreamObserver<T>, Member<T>> members = new LinkedHashMap<>();
+
+  /**
+   * Creates a group for streams of {@code method}. Messages are serialized with the method's
+   * response marshaller.
+   */
+  public BroadcastGroup(MethodDescriptor<?, T> method) {
+    this.marshaller = checkNotNull(method, "method").getResponseMarshaller();
+  }
+
+  /**
+   * Adds a stream to the group. Does nothing if the stream is already a member.
+   */
+  public synchronized void add(ServerCallStreamObserver<T> observer) {
+    checkNotNull(observer, "observer");
+    if (!members.containsKey(observer)) {
+      members.put(observer, new Member<>(observer));
+    }
+  }
+
+  /**
+   * Removes a stream from the group. If a broadcast is writing to the stream, this waits for that
+   * write to finish, after which the stream can be completed or failed.
+   *
+   * @return {@code true} if the stream was a member
+   */
+  public boolean remove(ServerCallStreamObserver<T> observer) {
+    Member<T> member;
+    synchronized (this) {
+      member = members.remove(observer);
+    }
+    if (member == null) {
+      return false;
+    }
+    member.remove();
+    return true;
+  }
+
+  /**
+   * Returns the number of streams in the group.
+   */
+  public synchronized int size() {
+    return members.size();
+  }
+
+  /**
+   * Serializes {@code message} once and sends it to every member that is ready. Cancelled members
+   * are removed from the group. Members that are not ready do not receive the message.
+   *
+   * @return the number of streams the message was sent to
+   */
+  public int broadcast(T message) {
+    return broadcast(PreSerializedMessage.create(marshaller, message));
+  }
+
+  /**
+   * Sends an already serialized message to every member that is ready. Cancelled members are
+   * removed from the group. Members that are not ready do not receive the message. A member whose
+   * stream fails the write is removed and closed with an {@code INTERNAL} status.
+   *
+   * <p>The members are written to without holding the group's lock, so {@link #add} does not
+   * wait for a broadcast, and {@link #remove} only waits for the write to the stream it removes.
+   * As with {@link io.grpc.stub.StreamObserver#onNext}, calls to {@code broadcast()} must not
+   * overlap each other.
+   *
+   * @return the number of streams the message was sent to
+   */
+  public int broadcast(PreSerializedMessage<T> message) {
+    checkNotNull(message, "message");
+    List<Member<T>> snapshot;
+    synchronized (this) {
+      snapshot = new ArrayList<>(members.values());
+    }
+    int sent = 0;
+    List<Member<T>> dead = null;
+    for (Member<T> member : snapshot) {
+      switch (member.send(message)) {
+        case SENT:
+          sent++;
+          break;
+        case DEAD:
+          dead = addTo(dead, member);
+          break;
+        default:
+          break;
+      }
+    }
+    if (dead != null) {
+      synchronized (this) {
+        for (Member<T> member : dead) {
+          // Only if it has not been removed, and possibly added again, in the meantime.
+          if (members.get(member.observer) == member) {
+            members.remove(member.observer);
+          }
+        }
+      }
+    }
+    return sent;
+  }
+
+  private enum SendResult {
+    SENT, SKIPPED, DEAD
+  }
+
+  /**
+   * A member stream. Its lock is held while writing to the stream, so that {@link #remove} can wait
+   * for the write.
+   */
+  private static final class Member<T> {
+    final ServerCallStreamObserver<T> observer;
+    @GuardedBy("this")
+    private boolean removed;
+
+    Member(ServerCallStreamObserver<T> observer) {
+      this.observer = observer;
+    }
+
+    synchronized SendResult send(PreSerializedMessage<T> message) {
+      if (removed) {
+        return SendResult.SKIPPED;
+      }
+      if (observer.isCancelled()) {
+        return SendResult.DEAD;
+      }
+      if (!observer.isReady()) {
+        return SendResult.SKIPPED;
+      }
+      try {
+        observer.onNextPreSerialized(message);
+        return SendResult.SENT;
+      } catch (RuntimeException e) {
+        // One bad member must not stop the broadcast to the others.
+        log.log(Level.WARNING, "Failed to send broadcast message, closing the stream", e);
+        removed = true;
+        fail(observer, e);
+        return SendResult.DEAD;
+      }
+    }
+
+    synchronized void remove() {
+      removed = true;
+    }
+  }
+
+  private static <T> void fail(ServerCallStreamObserver<T> observer, RuntimeException cause) {
+    try {
+      observer.onError(Status.INTERNAL
+          .withDescription("Failed to send broadcast message")
+          .withCause(cause)
+          .asRuntimeException());
+    } catch (RuntimeException e) {
+      // The stream has already been completed or cancelled.
+      log.log(Level.FINE, "Failed to close stream after failed broadcast", e);
+    }
+  }
+
+  private static <T> List<T> addTo(List<T> list, T item) {
+    if (list == null) {
+      list = new ArrayList<>();
+    }
+    list.add(item);
+    return list;
+  }
+}
@@ -17,6 +17,7 @@
 package io.grpc.stub;
 
 import io.grpc.ExperimentalApi;
+import io.grpc.PreSerializedMessage;
 
 /**
  * A refinement of {@link CallStreamObserver} to allows for interaction with call
@@ -148,6 +149,21 @@ public abstract class ServerCallStreamObserver<RespT> extends CallStreamObserver
   @Override
   public abstract void setMessageCompression(boolean enable);
 
+  /**
+   * Receives a value that was serialized ahead of time, typically because it is sent on many
+   * calls. Behaves like {@link #onNext}, except that the serialized bytes may be sent instead of
+   * serializing the value again.
+   *
+   * <p>This abstract class's implementation calls {@link #onNext} with {@link
+   * PreSerializedMessage#getMessage}.
+   *
+   * @see BroadcastGroup
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/7387")
+  public void onNextPreSerialized(PreSerializedMessage<RespT> value) {
+    onNext(value.getMessage());
+  }
+
   /**
    * Sets a {@link Runnable} to be executed when the call is closed cleanly from the server's
    * point of view: either {@link #onCompleted()} or {@link #onError(Throwable)} has been called,
@@ -23,6 +23,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
+import io.grpc.PreSerializedMessage;
 import io.grpc.ServerCall;
 import io.grpc.ServerCallHandler;
 import io.grpc.Status;
@@ -358,6 +359,17 @@ public final class ServerCalls {
 
     @Override
     public void onNext(RespT response) {
+      prepareToSend();
+      call.sendMessage(response);
+    }
+
+    @Override
+    public void onNextPreSerialized(PreSerializedMessage<RespT> response) {
+      prepareToSend();
+      call.sendPreSerializedMessage(response);
+    }
+
+    private void prepareToSend() {
       if (cancelled) {
         if (serverStreamingOrBidi) {
           throw Status.CANCELLED
@@ -377,7 +389,6 @@ public final class ServerCalls {
         call.sendHeaders(new Metadata());
         sentHeaders = true;
       }
-      call.sendMessage(response);
     }
 
     @Override
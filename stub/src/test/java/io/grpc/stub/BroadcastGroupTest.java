@@ -0,0 +1,244 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.stub;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import io.grpc.PreSerializedMessage;
+import io.grpc.Status;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link BroadcastGroup}.
+ */
+@RunWith(JUnit4.class)
+public class BroadcastGroupTest {
+  private final BroadcastGroup<Integer> group =
+      new BroadcastGroup<>(ServerCallsTest.SERVER_STREAMING_METHOD);
+
+  @Test
+  public void broadcast_serializesOnceForAllMembers() {
+    RecordingObserver first = new RecordingObserver();
+    RecordingObserver second = new RecordingObserver();
+    group.add(first);
+    group.add(second);
+
+    assertEquals(2, group.broadcast(42));
+
+    assertThat(first.values).hasSize(1);
+    assertSame(first.values.get(0), second.values.get(0));
+    assertEquals(Integer.valueOf(42), first.values.get(0).getMessage());
+    assertSame(
+        ServerCallsTest.SERVER_STREAMING_METHOD.getResponseMarshaller(),
+        first.values.get(0).getMarshaller());
+  }
+
+  @Test
+  public void broadcast_skipsMembersThatAreNotReady() {
+    RecordingObserver ready = new RecordingObserver();
+    RecordingObserver notReady = new RecordingObserver();
+    notReady.ready = false;
+    group.add(ready);
+    group.add(notReady);
+
+    assertEquals(1, group.broadcast(42));
+
+    assertThat(ready.values).hasSize(1);
+    assertThat(notReady.values).isEmpty();
+    assertEquals(2, group.size());
+  }
+
+  @Test
+  public void broadcast_removesCancelledMembers() {
+    RecordingObserver cancelled = new RecordingObserver();
+    cancelled.cancelled = true;
+    group.add(cancelled);
+
+    assertEquals(0, group.broadcast(42));
+
+    assertThat(cancelled.values).isEmpty();
+    assertEquals(0, group.size());
+  }
+
+  @Test
+  public void broadcast_removesFailingMembers() {
+    RecordingObserver failing = new RecordingObserver();
+    failing.failure = new IllegalStateException("Stream is already completed");
+    RecordingObserver healthy = new RecordingObserver();
+    group.add(failing);
+    group.add(healthy);
+
+    assertEquals(1, group.broadcast(42));
+
+    assertThat(healthy.values).hasSize(1);
+    assertEquals(1, group.size());
+    Status status = Status.fromThrowable(failing.error);
+    assertEquals(Status.Code.INTERNAL, status.getCode());
+    assertSame(failing.failure, status.getCause());
+    assertThat(healthy.error).isNull();
+  }
+
+  @Test
+  public void broadcast_writesWithoutHoldingLock() {
+    final List<Boolean> heldLock = new ArrayList<>();
+    RecordingObserver observer = new RecordingObserver() {
+      @Override
+      public void onNextPreSerialized(PreSerializedMessage<Integer> value) {
+        heldLock.add(Thread.holdsLock(group));
+        super.onNextPreSerialized(value);
+      }
+    };
+    group.add(observer);
+
+    assertEquals(1, group.broadcast(42));
+
+    assertThat(heldLock).containsExactly(false);
+  }
+
+  @Test
+  public void remove() {
+    RecordingObserver observer = new RecordingObserver();
+    group.add(observer);
+
+    assertThat(group.remove(observer)).isTrue();
+    assertThat(group.remove(observer)).isFalse();
+    assertEquals(0, group.broadcast(42));
+    assertThat(observer.values).isEmpty();
+  }
+
+  @Test
+  public void remove_waitsForWriteInProgress() throws Exception {
+    final CountDownLatch writing = new CountDownLatch(1);
+    final CountDownLatch finishWrite = new CountDownLatch(1);
+    final List<String> events = new ArrayList<>();
+    final RecordingObserver observer = new RecordingObserver() {
+      @Override
+      public void onNextPreSerialized(PreSerializedMessage<Integer> value) {
+        writing.countDown();
+        try {
+          finishWrite.await();
+        } catch (InterruptedException e) {
+          throw new AssertionError(e);
+        }
+        synchronized (events) {
+          events.add("onNext");
+        }
+      }
+
+      @Override
+      public void onCompleted() {
+        synchronized (events) {
+          events.add("onCompleted");
+        }
+      }
+    };
+    group.add(observer);
+    Thread broadcaster = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        group.broadcast(42);
+      }
+    });
+    broadcaster.start();
+    assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+
+    Thread remover = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        group.remove(observer);
+        observer.onCompleted();
+      }
+    });
+    remover.start();
+    remover.join(100);
+    assertThat(remover.isAlive()).isTrue();
+
+    finishWrite.countDown();
+    remover.join(5000);
+    broadcaster.join(5000);
+    synchronized (events) {
+      assertThat(events).containsExactly("onNext", "onCompleted");
+    }
+    assertEquals(0, group.broadcast(43));
+    assertEquals(0, group.size());
+  }
+
+  private static class RecordingObserver extends ServerCallStreamObserver<Integer> {
+    final List<PreSerializedMessage<Integer>> values = new ArrayList<>();
+    boolean ready = true;
+    boolean cancelled;
+    RuntimeException failure;
+    Throwable error;
+
+    @Override
+    public void onNextPreSerialized(PreSerializedMessage<Integer> value) {
+      if (failure != null) {
+        throw failure;
+      }
+      values.add(value);
+    }
+
+    @Override
+    public void onNext(Integer value) {
+      throw new AssertionError("message should have been sent pre-serialized");
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      error = t;
+    }
+
+    @Override
+    public void onCompleted() {}
+
+    @Override
+    public boolean isCancelled() {
+      return cancelled;
+    }
+
+    @Override
+    public void setOnCancelHandler(Runnable onCancelHandler) {}
+
+    @Override
+    public void setCompression(String compression) {}
+
+    @Override
+    public boolean isReady() {
+      return ready;
+    }
+
+    @Override
+    public void setOnReadyHandler(Runnable onReadyHandler) {}
+
+    @Override
+    public void disableAutoInboundFlowControl() {}
+
+    @Override
+    public void request(int count) {}
+
+    @Override
+    public void setMessageCompression(boolean enable) {}
+  }
+}
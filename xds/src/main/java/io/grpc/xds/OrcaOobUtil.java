@@ -166,7 +166,7 @@ abstract class OrcaOobUtil {
 
     return new OrcaReportingHelperWrapper() {
       @Override
-      public void setReportingConfig(OrcaReportingConfig config) {
+      public void setReportingConfig(@Nullable OrcaReportingConfig config) {
         orcaHelper.setReportingConfig(config);
       }
 
@@ -215,9 +215,10 @@ abstract class OrcaOobUtil {
      * <p>If multiple load balancing policies configure reporting with different intervals, reports
      * come with the minimum of those intervals.
      *
-     * @param config the configuration to be set.
+     * @param config the configuration to be set, or {@code null} to stop receiving reports. The
+     *     reporting streams are closed once no load balancing policy wants reports.
      */
-    public abstract void setReportingConfig(OrcaReportingConfig config);
+    public abstract void setReportingConfig(@Nullable OrcaReportingConfig config);
 
     /**
      * Returns a wrapped {@link LoadBalancer.Helper}. Subchannels created through it will retrieve
@@ -286,7 +287,7 @@ abstract class OrcaOobUtil {
       return subchannel;
     }
 
-    void setReportingConfig(final OrcaReportingConfig config) {
+    void setReportingConfig(@Nullable final OrcaReportingConfig config) {
       syncContext.throwIfNotInThisSynchronizationContext();
       orcaConfig = config;
       for (OrcaReportingState state : orcaStates) {
@@ -349,12 +350,20 @@ abstract class OrcaOobUtil {
         this.stateListener = checkNotNull(stateListener, "stateListener");
       }
 
-      void setReportingConfig(OrcaReportingHelper helper, OrcaReportingConfig config) {
+      void setReportingConfig(
+          OrcaReportingHelper helper, @Nullable OrcaReportingConfig config) {
         boolean reconfigured = false;
-        configs.put(helper, config);
+        if (config == null) {
+          configs.remove(helper);
+        } else {
+          configs.put(helper, config);
+        }
         // Real reporting interval is the minimum of intervals requested by all participating
-        // helpers.
-        if (overallConfig == null) {
+        // helpers. Reporting stops once none of them wants reports.
+        if (configs.isEmpty()) {
+          reconfigured = overallConfig != null;
+          overallConfig = null;
+        } else if (overallConfig == null) {
           overallConfig = config.toBuilder().build();
           reconfigured = true;
         } else {
@@ -0,0 +1,601 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static io.grpc.ConnectivityState.CONNECTING;
+import static io.grpc.ConnectivityState.IDLE;
+import static io.grpc.ConnectivityState.READY;
+import static io.grpc.ConnectivityState.SHUTDOWN;
+import static io.grpc.ConnectivityState.TRANSIENT_FAILURE;
+import static io.grpc.xds.WeightedRoundRobinLoadBalancerProvider.DEFAULT_BLACKOUT_PERIOD_NANOS;
+import static io.grpc.xds.WeightedRoundRobinLoadBalancerProvider.DEFAULT_OOB_REPORTING_PERIOD_NANOS;
+import static io.grpc.xds.WeightedRoundRobinLoadBalancerProvider.DEFAULT_WEIGHT_EXPIRATION_PERIOD_NANOS;
+import static io.grpc.xds.WeightedRoundRobinLoadBalancerProvider.DEFAULT_WEIGHT_UPDATE_PERIOD_NANOS;
+
+import com.github.xds.data.orca.v3.OrcaLoadReport;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+import com.google.common.base.Ticker;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ConnectivityState;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer;
+import io.grpc.Status;
+import io.grpc.SynchronizationContext;
+import io.grpc.SynchronizationContext.ScheduledHandle;
+import io.grpc.xds.OrcaOobUtil.OrcaOobReportListener;
+import io.grpc.xds.OrcaOobUtil.OrcaReportingConfig;
+import io.grpc.xds.OrcaOobUtil.OrcaReportingHelperWrapper;
+import io.grpc.xds.OrcaPerRequestUtil.OrcaPerRequestReportListener;
+import io.grpc.xds.ThreadSafeRandom.ThreadSafeRandomImpl;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * A {@link LoadBalancer} that picks ready subchannels in proportion to weights derived from the
+ * ORCA load reports of the backends, so that faster backends get more requests than slower ones.
+ * The weight of a backend is its queries per second divided by its CPU utilization. It is only
+ * used once the backend has reported load for the blackout period, so that a backend that just
+ * connected is not flooded on the strength of a few reports, and is dropped again when the
+ * backend stops reporting for the expiration period. Backends without a weight get the mean
+ * weight, which makes the policy behave like round robin until load is reported.
+ *
+ * <p>Load is reported in the trailers of each call, or out-of-band on a stream per backend when
+ * {@code enableOobLoadReport} is configured.
+ */
+final class WeightedRoundRobinLoadBalancer extends LoadBalancer {
+  private static final WeightedRoundRobinConfig DEFAULT_CONFIG = new WeightedRoundRobinConfig(
+      false, DEFAULT_OOB_REPORTING_PERIOD_NANOS, DEFAULT_BLACKOUT_PERIOD_NANOS,
+      DEFAULT_WEIGHT_EXPIRATION_PERIOD_NANOS, DEFAULT_WEIGHT_UPDATE_PERIOD_NANOS);
+  private static final Status EMPTY_OK = Status.OK.withDescription("no subchannels ready");
+
+  private final Helper helper;
+  private final SynchronizationContext syncContext;
+  private final Ticker ticker;
+  private final OrcaOobUtil orcaOobUtil;
+  // Shared by the pickers, so that a new picker continues where the last one stopped. Starts at
+  // random, so that channels created at the same time do not pick the same backends in step.
+  private final AtomicInteger sequence;
+  private final Map<EquivalentAddressGroup, Endpoint> endpoints = new HashMap<>();
+
+  private WeightedRoundRobinConfig config = DEFAULT_CONFIG;
+  private ConnectivityState currentState;
+  private WeightedRoundRobinPicker currentPicker = new EmptyPicker(EMPTY_OK);
+  @Nullable
+  private ScheduledHandle weightUpdateTimer;
+
+  WeightedRoundRobinLoadBalancer(Helper helper) {
+    this(helper, Ticker.systemTicker(), OrcaOobUtil.getInstance(), ThreadSafeRandomImpl.instance);
+  }
+
+  @VisibleForTesting
+  WeightedRoundRobinLoadBalancer(
+      Helper helper, Ticker ticker, OrcaOobUtil orcaOobUtil, ThreadSafeRandom random) {
+    this.helper = checkNotNull(helper, "helper");
+    this.syncContext = checkNotNull(helper.getSynchronizationContext(), "syncContext");
+    this.ticker = checkNotNull(ticker, "ticker");
+    this.orcaOobUtil = checkNotNull(orcaOobUtil, "orcaOobUtil");
+    this.sequence = new AtomicInteger((int) random.nextLong());
+  }
+
+  @Override
+  public void handleResolvedAddresses(ResolvedAddresses resolvedAddresses) {
+    WeightedRoundRobinConfig newConfig =
+        (WeightedRoundRobinConfig) resolvedAddresses.getLoadBalancingPolicyConfig();
+    // Config may be null if weighted_round_robin is used outside xDS
+    if (newConfig == null) {
+      newConfig = DEFAULT_CONFIG;
+    }
+    boolean configChanged = !newConfig.equals(config);
+    config = newConfig;
+
+    Map<EquivalentAddressGroup, EquivalentAddressGroup> latestAddrs =
+        stripAttrs(resolvedAddresses.getAddresses());
+    Set<EquivalentAddressGroup> removedAddrs = new HashSet<>(endpoints.keySet());
+    removedAddrs.removeAll(latestAddrs.keySet());
+
+    for (Map.Entry<EquivalentAddressGroup, EquivalentAddressGroup> latestEntry :
+        latestAddrs.entrySet()) {
+      EquivalentAddressGroup strippedAddressGroup = latestEntry.getKey();
+      EquivalentAddressGroup originalAddressGroup = latestEntry.getValue();
+      Endpoint existingEndpoint = endpoints.get(strippedAddressGroup);
+      if (existingEndpoint != null) {
+        // EAG's Attributes may have changed.
+        existingEndpoint.subchannel.updateAddresses(
+            Collections.singletonList(originalAddressGroup));
+        if (configChanged) {
+          // Also stops the reports if the new config disabled them.
+          existingEndpoint.orcaHelper.setReportingConfig(oobReportingConfig());
+        }
+        continue;
+      }
+      // Each subchannel gets its own ORCA helper, as reports do not say which backend sent them.
+      final Endpoint endpoint = new Endpoint(ticker);
+      endpoint.orcaHelper = orcaOobUtil.newOrcaReportingHelperWrapper(helper, endpoint);
+      if (config.enableOobLoadReport) {
+        endpoint.orcaHelper.setReportingConfig(oobReportingConfig());
+      }
+      endpoint.subchannel = checkNotNull(
+          endpoint.orcaHelper.asHelper().createSubchannel(CreateSubchannelArgs.newBuilder()
+              .setAddresses(originalAddressGroup)
+              .build()),
+          "subchannel");
+      endpoint.subchannel.start(new SubchannelStateListener() {
+        @Override
+        public void onSubchannelState(ConnectivityStateInfo state) {
+          processSubchannelState(endpoint, state);
+        }
+      });
+      endpoints.put(strippedAddressGroup, endpoint);
+      endpoint.subchannel.requestConnection();
+    }
+
+    List<Endpoint> removedEndpoints = new ArrayList<>();
+    for (EquivalentAddressGroup addressGroup : removedAddrs) {
+      removedEndpoints.add(endpoints.remove(addressGroup));
+    }
+
+    // Update the picker before shutting down the subchannels, to reduce the chance of the race
+    // between picking a subchannel and shutting it down.
+    updateBalancingState();
+    if (weightUpdateTimer == null) {
+      scheduleWeightUpdate();
+    }
+
+    for (Endpoint removedEndpoint : removedEndpoints) {
+      shutdownEndpoint(removedEndpoint);
+    }
+  }
+
+  /** Returns the config for out-of-band load reports, or {@code null} if they are disabled. */
+  @Nullable
+  private OrcaReportingConfig oobReportingConfig() {
+    if (!config.enableOobLoadReport) {
+      return null;
+    }
+    return OrcaReportingConfig.newBuilder()
+        .setReportInterval(config.oobReportingPeriodNanos, TimeUnit.NANOSECONDS)
+        .build();
+  }
+
+  @Override
+  public void handleNameResolutionError(Status error) {
+    if (currentState != READY)  {
+      updateBalancingState(TRANSIENT_FAILURE, new EmptyPicker(error));
+    }
+  }
+
+  private void processSubchannelState(Endpoint endpoint, ConnectivityStateInfo stateInfo) {
+    if (endpoints.get(stripAttrs(endpoint.subchannel.getAddresses())) != endpoint) {
+      return;
+    }
+    if (stateInfo.getState() == TRANSIENT_FAILURE || stateInfo.getState() == IDLE) {
+      helper.refreshNameResolution();
+    }
+    if (stateInfo.getState() == IDLE) {
+      endpoint.subchannel.requestConnection();
+    }
+    if (endpoint.stateInfo.getState().equals(TRANSIENT_FAILURE)) {
+      if (stateInfo.getState().equals(CONNECTING) || stateInfo.getState().equals(IDLE)) {
+        return;
+      }
+    }
+    if (stateInfo.getState() == READY && endpoint.stateInfo.getState() != READY) {
+      // Load reported before the backend went away says little about it now.
+      endpoint.resetWeight();
+    }
+    endpoint.stateInfo = stateInfo;
+    updateBalancingState();
+  }
+
+  private static void shutdownEndpoint(Endpoint endpoint) {
+    endpoint.subchannel.shutdown();
+    endpoint.stateInfo = ConnectivityStateInfo.forNonError(SHUTDOWN);
+  }
+
+  @Override
+  public void shutdown() {
+    if (weightUpdateTimer != null) {
+      weightUpdateTimer.cancel();
+      weightUpdateTimer = null;
+    }
+    for (Endpoint endpoint : endpoints.values()) {
+      shutdownEndpoint(endpoint);
+    }
+    endpoints.clear();
+  }
+
+  private void scheduleWeightUpdate() {
+    weightUpdateTimer = syncContext.schedule(new Runnable() {
+      @Override
+      public void run() {
+        if (currentPicker instanceof ReadyPicker) {
+          ((ReadyPicker) currentPicker).updateWeights(ticker.read(), config);
+        }
+        scheduleWeightUpdate();
+      }
+    }, config.weightUpdatePeriodNanos, TimeUnit.NANOSECONDS, helper.getScheduledExecutorService());
+  }
+
+  /**
+   * Updates picker with the list of active subchannels (state == READY).
+   */
+  private void updateBalancingState() {
+    List<Endpoint> activeList = new ArrayList<>(endpoints.size());
+    for (Endpoint endpoint : endpoints.values()) {
+      if (endpoint.stateInfo.getState() == READY) {
+        activeList.add(endpoint);
+      }
+    }
+    if (activeList.isEmpty()) {
+      // No READY subchannels, determine aggregate state and error status
+      boolean isConnecting = false;
+      Status aggStatus = EMPTY_OK;
+      for (Endpoint endpoint : endpoints.values()) {
+        ConnectivityStateInfo stateInfo = endpoint.stateInfo;
+        if (stateInfo.getState() == CONNECTING || stateInfo.getState() == IDLE) {
+          isConnecting = true;
+        }
+        if (aggStatus == EMPTY_OK || !aggStatus.isOk()) {
+          aggStatus = stateInfo.getStatus();
+        }
+      }
+      updateBalancingState(isConnecting ? CONNECTING : TRANSIENT_FAILURE,
+          // If all subchannels are TRANSIENT_FAILURE, return the Status associated with
+          // an arbitrary subchannel, otherwise return OK.
+          new EmptyPicker(aggStatus));
+    } else {
+      ReadyPicker picker = new ReadyPicker(activeList, config.enableOobLoadReport, sequence);
+      if (picker.isEquivalentTo(currentPicker)) {
+        // The weights of the current picker are kept up to date.
+        return;
+      }
+      picker.updateWeights(ticker.read(), config);
+      updateBalancingState(READY, picker);
+    }
+  }
+
+  private void updateBalancingState(ConnectivityState state, WeightedRoundRobinPicker picker) {
+    if (state != currentState || !picker.isEquivalentTo(currentPicker)) {
+      helper.updateBalancingState(state, picker);
+      currentState = state;
+      currentPicker = picker;
+    }
+  }
+
+  /**
+   * Converts list of {@link EquivalentAddressGroup} to {@link EquivalentAddressGroup} set and
+   * remove all attributes. The values are the original EAGs.
+   */
+  private static Map<EquivalentAddressGroup, EquivalentAddressGroup> stripAttrs(
+      List<EquivalentAddressGroup> groupList) {
+    Map<EquivalentAddressGroup, EquivalentAddressGroup> addrs = new HashMap<>(groupList.size() * 2);
+    for (EquivalentAddressGroup group : groupList) {
+      addrs.put(stripAttrs(group), group);
+    }
+    return addrs;
+  }
+
+  private static EquivalentAddressGroup stripAttrs(EquivalentAddressGroup eag) {
+    return new EquivalentAddressGroup(eag.getAddresses());
+  }
+
+  @VisibleForTesting
+  Collection<Subchannel> getSubchannels() {
+    List<Subchannel> subchannels = new ArrayList<>(endpoints.size());
+    for (Endpoint endpoint : endpoints.values()) {
+      subchannels.add(endpoint.subchannel);
+    }
+    return subchannels;
+  }
+
+  /**
+   * A backend and the weight derived from its load reports. Reports arrive on the synchronization
+   * context when they are out-of-band, and on transport threads when they come with calls.
+   */
+  private static final class Endpoint
+      implements OrcaOobReportListener, OrcaPerRequestReportListener {
+    private final Ticker ticker;
+    private final ClientStreamTracer.Factory perRequestTracerFactory;
+    // The fields below are only accessed from the synchronization context.
+    private OrcaReportingHelperWrapper orcaHelper;
+    private Subchannel subchannel;
+    private ConnectivityStateInfo stateInfo = ConnectivityStateInfo.forNonError(IDLE);
+    @GuardedBy("this")
+    private boolean hasWeight;
+    @GuardedBy("this")
+    private long nonEmptySinceNanos;
+    @GuardedBy("this")
+    private long lastUpdatedNanos;
+    @GuardedBy("this")
+    private double weight;
+
+    Endpoint(Ticker ticker) {
+      this.ticker = ticker;
+      this.perRequestTracerFactory =
+          OrcaPerRequestUtil.getInstance().newOrcaClientStreamTracerFactory(this);
+    }
+
+    @Override
+    public void onLoadReport(OrcaLoadReport report) {
+      double utilization = report.getCpuUtilization();
+      long qps = report.getRps();
+      if (utilization <= 0 || qps <= 0) {
+        // The backend does not report load.
+        return;
+      }
+      long now = ticker.read();
+      synchronized (this) {
+        if (!hasWeight) {
+          hasWeight = true;
+          nonEmptySinceNanos = now;
+        }
+        lastUpdatedNanos = now;
+        weight = qps / utilization;
+      }
+    }
+
+    synchronized void resetWeight() {
+      hasWeight = false;
+    }
+
+    /** Returns the weight of the backend, or 0 if it has none. */
+    synchronized double getWeight(long nowNanos, WeightedRoundRobinConfig config) {
+      if (!hasWeight) {
+        return 0;
+      }
+      if (nowNanos - lastUpdatedNanos >= config.weightExpirationPeriodNanos) {
+        // Reporting stopped, so start the blackout period again when it resumes.
+        hasWeight = false;
+        return 0;
+      }
+      if (nowNanos - nonEmptySinceNanos < config.blackoutPeriodNanos) {
+        return 0;
+      }
+      return weight;
+    }
+
+    @Override
+    public String toString() {
+      return subchannel.toString();
+    }
+  }
+
+  // Only subclasses are ReadyPicker or EmptyPicker
+  private abstract static class WeightedRoundRobinPicker extends SubchannelPicker {
+    abstract boolean isEquivalentTo(WeightedRoundRobinPicker picker);
+  }
+
+  @VisibleForTesting
+  static final class ReadyPicker extends WeightedRoundRobinPicker {
+    private final List<Endpoint> list; // non-empty
+    private final boolean enableOobLoadReport;
+    private final AtomicInteger sequence;
+    private volatile StaticStrideScheduler scheduler;
+
+    ReadyPicker(List<Endpoint> list, boolean enableOobLoadReport, AtomicInteger sequence) {
+      checkArgument(!list.isEmpty(), "empty list");
+      this.list = list;
+      this.enableOobLoadReport = enableOobLoadReport;
+      this.sequence = checkNotNull(sequence, "sequence");
+    }
+
+    void updateWeights(long nowNanos, WeightedRoundRobinConfig config) {
+      double[] weights = new double[list.size()];
+      for (int i = 0; i < weights.length; i++) {
+        weights[i] = list.get(i).getWeight(nowNanos, config);
+      }
+      scheduler = new StaticStrideScheduler(weights, sequence);
+    }
+
+    @Override
+    public PickResult pickSubchannel(PickSubchannelArgs args) {
+      Endpoint endpoint = list.get(scheduler.pick());
+      if (enableOobLoadReport) {
+        return PickResult.withSubchannel(endpoint.subchannel);
+      }
+      return PickResult.withSubchannel(endpoint.subchannel, endpoint.perRequestTracerFactory);
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(ReadyPicker.class)
+                        .add("list", list)
+                        .add("enableOobLoadReport", enableOobLoadReport)
+                        .toString();
+    }
+
+    @VisibleForTesting
+    List<Subchannel> getList() {
+      List<Subchannel> subchannels = new ArrayList<>(list.size());
+      for (Endpoint endpoint : list) {
+        subchannels.add(endpoint.subchannel);
+      }
+      return subchannels;
+    }
+
+    @Override
+    boolean isEquivalentTo(WeightedRoundRobinPicker picker) {
+      if (!(picker instanceof ReadyPicker)) {
+        return false;
+      }
+      ReadyPicker other = (ReadyPicker) picker;
+      // the lists cannot contain duplicate endpoints
+      return other == this
+          || (list.size() == other.list.size() && new HashSet<>(list).containsAll(other.list)
+                && enableOobLoadReport == other.enableOobLoadReport);
+    }
+  }
+
+  @VisibleForTesting
+  static final class EmptyPicker extends WeightedRoundRobinPicker {
+
+    private final Status status;
+
+    EmptyPicker(@Nonnull Status status) {
+      this.status = checkNotNull(status, "status");
+    }
+
+    @Override
+    public PickResult pickSubchannel(PickSubchannelArgs args) {
+      return status.isOk() ? PickResult.withNoResult() : PickResult.withError(status);
+    }
+
+    @Override
+    boolean isEquivalentTo(WeightedRoundRobinPicker picker) {
+      return picker instanceof EmptyPicker && (Objects.equal(status, ((EmptyPicker) picker).status)
+          || (status.isOk() && ((EmptyPicker) picker).status.isOk()));
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(EmptyPicker.class).add("status", status).toString();
+    }
+  }
+
+  /**
+   * Picks indices in proportion to fixed weights, without locking. The weights are scaled to at
+   * most {@link #MAX_WEIGHT}, and the shared sequence number walks the indices round robin. An
+   * index is picked in a round with probability {@code weight / MAX_WEIGHT}, spread evenly over
+   * consecutive rounds, and is skipped otherwise. As the weights are kept within a bounded ratio
+   * of their mean, a pick takes a constant number of steps on average.
+   */
+  @VisibleForTesting
+  static final class StaticStrideScheduler {
+    @VisibleForTesting
+    static final int MAX_WEIGHT = 0xFFFF;
+    // Weights are capped at this multiple of their mean.
+    private static final double MAX_RATIO = 10;
+    // Weights are raised to this fraction of their mean.
+    private static final double MIN_RATIO = 0.1;
+
+    private final int[] scaledWeights;
+    private final AtomicInteger sequence;
+
+    /**
+     * Creates a scheduler for {@code weights}. Indices with a weight of 0 get the mean weight of
+     * the others, and all indices get the same weight if none has one.
+     */
+    StaticStrideScheduler(double[] weights, AtomicInteger sequence) {
+      checkArgument(weights.length > 0, "empty weights");
+      this.sequence = checkNotNull(sequence, "sequence");
+      int weightedCount = 0;
+      double sum = 0;
+      double max = 0;
+      for (double weight : weights) {
+        if (weight > 0) {
+          weightedCount++;
+          sum += weight;
+          max = Math.max(max, weight);
+        }
+      }
+      double mean = weightedCount == 0 ? 1 : sum / weightedCount;
+      double cap = weightedCount == 0 ? 1 : Math.min(max, mean * MAX_RATIO);
+      double scale = MAX_WEIGHT / cap;
+      int scaledMean = (int) Math.round(mean * scale);
+      int scaledMin = Math.max((int) Math.round(scaledMean * MIN_RATIO), 1);
+      scaledWeights = new int[weights.length];
+      for (int i = 0; i < weights.length; i++) {
+        if (weights[i] <= 0) {
+          scaledWeights[i] = scaledMean;
+        } else {
+          scaledWeights[i] =
+              Math.max((int) Math.round(Math.min(weights[i], cap) * scale), scaledMin);
+        }
+      }
+    }
+
+    int pick() {
+      while (true) {
+        long next = sequence.getAndIncrement() & 0xFFFFFFFFL;
+        int index = (int) (next % scaledWeights.length);
+        long round = next / scaledWeights.length;
+        long weight = scaledWeights[index];
+        // Offsets the rounds in which each index is picked, so that indices of the same weight
+        // are not all picked or skipped together.
+        long offset = (long) MAX_WEIGHT / 2 * index;
+        if ((weight * round + offset) % MAX_WEIGHT >= MAX_WEIGHT - weight) {
+          return index;
+        }
+      }
+    }
+  }
+
+  static final class WeightedRoundRobinConfig {
+    final boolean enableOobLoadReport;
+    final long oobReportingPeriodNanos;
+    final long blackoutPeriodNanos;
+    final long weightExpirationPeriodNanos;
+    final long weightUpdatePeriodNanos;
+
+    WeightedRoundRobinConfig(
+        boolean enableOobLoadReport, long oobReportingPeriodNanos, long blackoutPeriodNanos,
+        long weightExpirationPeriodNanos, long weightUpdatePeriodNanos) {
+      this.enableOobLoadReport = enableOobLoadReport;
+      this.oobReportingPeriodNanos = oobReportingPeriodNanos;
+      this.blackoutPeriodNanos = blackoutPeriodNanos;
+      this.weightExpirationPeriodNanos = weightExpirationPeriodNanos;
+      this.weightUpdatePeriodNanos = weightUpdatePeriodNanos;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof WeightedRoundRobinConfig)) {
+        return false;
+      }
+      WeightedRoundRobinConfig that = (WeightedRoundRobinConfig) o;
+      return enableOobLoadReport == that.enableOobLoadReport
+          && oobReportingPeriodNanos == that.oobReportingPeriodNanos
+          && blackoutPeriodNanos == that.blackoutPeriodNanos
+          && weightExpirationPeriodNanos == that.weightExpirationPeriodNanos
+          && weightUpdatePeriodNanos == that.weightUpdatePeriodNanos;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(
+          enableOobLoadReport, oobReportingPeriodNanos, blackoutPeriodNanos,
+          weightExpirationPeriodNanos, weightUpdatePeriodNanos);
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("enableOobLoadReport", enableOobLoadReport)
+          .add("oobReportingPeriodNanos", oobReportingPeriodNanos)
+          .add("blackoutPeriodNanos", blackoutPeriodNanos)
+          .add("weightExpirationPeriodNanos", weightExpirationPeriodNanos)
+          .add("weightUpdatePeriodNanos", weightUpdatePeriodNanos)
+          .toString();
+    }
+  }
+}
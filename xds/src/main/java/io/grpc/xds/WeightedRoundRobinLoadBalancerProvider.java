@@ -0,0 +1,105 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.grpc.Internal;
+import io.grpc.LoadBalancer;
+import io.grpc.LoadBalancerProvider;
+import io.grpc.NameResolver.ConfigOrError;
+import io.grpc.Status;
+import io.grpc.internal.JsonUtil;
+import io.grpc.xds.WeightedRoundRobinLoadBalancer.WeightedRoundRobinConfig;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provider for the "weighted_round_robin" balancing policy.
+ */
+@Internal
+public final class WeightedRoundRobinLoadBalancerProvider extends LoadBalancerProvider {
+  @VisibleForTesting
+  static final long DEFAULT_OOB_REPORTING_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(10);
+  @VisibleForTesting
+  static final long DEFAULT_BLACKOUT_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(10);
+  @VisibleForTesting
+  static final long DEFAULT_WEIGHT_EXPIRATION_PERIOD_NANOS = TimeUnit.MINUTES.toNanos(3);
+  @VisibleForTesting
+  static final long DEFAULT_WEIGHT_UPDATE_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(1);
+  // Shorter update periods are raised to this.
+  static final long MIN_WEIGHT_UPDATE_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  @Override
+  public LoadBalancer newLoadBalancer(LoadBalancer.Helper helper) {
+    return new WeightedRoundRobinLoadBalancer(helper);
+  }
+
+  @Override
+  public boolean isAvailable() {
+    return true;
+  }
+
+  @Override
+  public int getPriority() {
+    return 5;
+  }
+
+  @Override
+  public String getPolicyName() {
+    return "weighted_round_robin";
+  }
+
+  @Override
+  public ConfigOrError parseLoadBalancingPolicyConfig(Map<String, ?> rawConfig) {
+    try {
+      Boolean enableOobLoadReport = JsonUtil.getBoolean(rawConfig, "enableOobLoadReport");
+      Long oobReportingPeriodNanos = JsonUtil.getStringAsDuration(rawConfig, "oobReportingPeriod");
+      Long blackoutPeriodNanos = JsonUtil.getStringAsDuration(rawConfig, "blackoutPeriod");
+      Long weightExpirationPeriodNanos =
+          JsonUtil.getStringAsDuration(rawConfig, "weightExpirationPeriod");
+      Long weightUpdatePeriodNanos = JsonUtil.getStringAsDuration(rawConfig, "weightUpdatePeriod");
+      if (enableOobLoadReport == null) {
+        enableOobLoadReport = false;
+      }
+      if (oobReportingPeriodNanos == null) {
+        oobReportingPeriodNanos = DEFAULT_OOB_REPORTING_PERIOD_NANOS;
+      }
+      if (blackoutPeriodNanos == null) {
+        blackoutPeriodNanos = DEFAULT_BLACKOUT_PERIOD_NANOS;
+      }
+      if (weightExpirationPeriodNanos == null) {
+        weightExpirationPeriodNanos = DEFAULT_WEIGHT_EXPIRATION_PERIOD_NANOS;
+      }
+      if (weightUpdatePeriodNanos == null) {
+        weightUpdatePeriodNanos = DEFAULT_WEIGHT_UPDATE_PERIOD_NANOS;
+      }
+      if (oobReportingPeriodNanos <= 0 || blackoutPeriodNanos < 0
+          || weightExpirationPeriodNanos <= 0 || weightUpdatePeriodNanos <= 0) {
+        return ConfigOrError.fromError(Status.INVALID_ARGUMENT.withDescription(
+            "Invalid weighted_round_robin period: " + rawConfig));
+      }
+      return ConfigOrError.fromConfig(new WeightedRoundRobinConfig(
+          enableOobLoadReport, oobReportingPeriodNanos, blackoutPeriodNanos,
+          weightExpirationPeriodNanos,
+          Math.max(weightUpdatePeriodNanos, MIN_WEIGHT_UPDATE_PERIOD_NANOS)));
+    } catch (RuntimeException e) {
+      return ConfigOrError.fromError(
+          Status.fromThrowable(e).withDescription(
+              "Failed to parse weighted_round_robin LB config: " + rawConfig));
+    }
+  }
+}
@@ -609,6 +609,29 @@ public class OrcaOobUtilTest {
         .isEqualTo(buildOrcaRequestFromConfig(LONG_INTERVAL_CONFIG));
   }
 
+  @Test
+  public void reportingStoppedWhenConfigCleared() {
+    setOrcaReportConfig(orcaHelperWrapper, SHORT_INTERVAL_CONFIG);
+    createSubchannel(orcaHelperWrapper.asHelper(), 0, Attributes.EMPTY);
+    deliverSubchannelState(0, ConnectivityStateInfo.forNonError(READY));
+    verify(mockStateListeners[0]).onSubchannelState(eq(ConnectivityStateInfo.forNonError(READY)));
+    assertThat(orcaServiceImps[0].calls).hasSize(1);
+    assertLog(subchannels[0].logs,
+        "DEBUG: Starting ORCA reporting for " + subchannels[0].getAllAddresses());
+
+    setOrcaReportConfig(orcaHelperWrapper, null);
+    assertThat(orcaServiceImps[0].calls.poll().cancelled).isTrue();
+    assertThat(orcaServiceImps[0].calls).isEmpty();
+    assertThat(fakeClock.getPendingTasks()).isEmpty();
+    assertThat(subchannels[0].logs).isEmpty();
+
+    // Reporting can be configured again.
+    setOrcaReportConfig(orcaHelperWrapper, SHORT_INTERVAL_CONFIG);
+    assertThat(orcaServiceImps[0].calls).hasSize(1);
+    assertLog(subchannels[0].logs,
+        "DEBUG: Starting ORCA reporting for " + subchannels[0].getAllAddresses());
+  }
+
   @Test
   public void policiesReceiveSameReportIndependently() {
     createSubchannel(childHelperWrapper.asHelper(), 0, Attributes.EMPTY);
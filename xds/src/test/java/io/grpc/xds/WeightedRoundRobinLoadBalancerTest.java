@@ -0,0 +1,418 @@
+/*
+ * Copyright 2022 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds;
+
+import static com.google.common.truth.Truth.assertThat;
+import static io.grpc.ConnectivityState.CONNECTING;
+import static io.grpc.ConnectivityState.READY;
+import static io.grpc.ConnectivityState.TRANSIENT_FAILURE;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.github.xds.data.orca.v3.OrcaLoadReport;
+import com.google.common.collect.Maps;
+import io.grpc.CallOptions;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ClientStreamTracer.StreamInfo;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer.CreateSubchannelArgs;
+import io.grpc.LoadBalancer.Helper;
+import io.grpc.LoadBalancer.PickResult;
+import io.grpc.LoadBalancer.PickSubchannelArgs;
+import io.grpc.LoadBalancer.ResolvedAddresses;
+import io.grpc.LoadBalancer.Subchannel;
+import io.grpc.LoadBalancer.SubchannelPicker;
+import io.grpc.LoadBalancer.SubchannelStateListener;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.SynchronizationContext;
+import io.grpc.internal.FakeClock;
+import io.grpc.util.ForwardingLoadBalancerHelper;
+import io.grpc.xds.OrcaOobUtil.OrcaOobReportListener;
+import io.grpc.xds.OrcaOobUtil.OrcaReportingConfig;
+import io.grpc.xds.OrcaOobUtil.OrcaReportingHelperWrapper;
+import io.grpc.xds.OrcaPerRequestUtil.OrcaReportingTracerFactory;
+import io.grpc.xds.WeightedRoundRobinLoadBalancer.EmptyPicker;
+import io.grpc.xds.WeightedRoundRobinLoadBalancer.ReadyPicker;
+import io.grpc.xds.WeightedRoundRobinLoadBalancer.StaticStrideScheduler;
+import io.grpc.xds.WeightedRoundRobinLoadBalancer.WeightedRoundRobinConfig;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/** Unit test for {@link WeightedRoundRobinLoadBalancer}. */
+@RunWith(JUnit4.class)
+public class WeightedRoundRobinLoadBalancerTest {
+  private static final long BLACKOUT_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(10);
+  private static final long WEIGHT_EXPIRATION_PERIOD_NANOS = TimeUnit.MINUTES.toNanos(3);
+  private static final long WEIGHT_UPDATE_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private static final long OOB_REPORTING_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+  private final SynchronizationContext syncContext = new SynchronizationContext(
+      new Thread.UncaughtExceptionHandler() {
+        @Override
+        public void uncaughtException(Thread t, Throwable e) {
+          throw new AssertionError(e);
+        }
+      });
+  private final FakeClock fakeClock = new FakeClock();
+  private final List<EquivalentAddressGroup> servers = new ArrayList<>();
+  private final Map<List<EquivalentAddressGroup>, Subchannel> subchannels = Maps.newLinkedHashMap();
+  private final Map<Subchannel, SubchannelStateListener> subchannelStateListeners =
+      Maps.newLinkedHashMap();
+  private final Map<Subchannel, OrcaOobReportListener> oobListeners = new HashMap<>();
+  private final List<OrcaReportingConfig> reportingConfigs = new ArrayList<>();
+  private final OrcaOobUtil fakeOrcaOobUtil = new OrcaOobUtil() {
+    @Override
+    public OrcaReportingHelperWrapper newOrcaReportingHelperWrapper(
+        Helper delegate, final OrcaOobReportListener listener) {
+      return new OrcaReportingHelperWrapper() {
+        @Override
+        public void setReportingConfig(OrcaReportingConfig config) {
+          reportingConfigs.add(config);
+        }
+
+        @Override
+        public Helper asHelper() {
+          return new ForwardingLoadBalancerHelper() {
+            @Override
+            protected Helper delegate() {
+              return mockHelper;
+            }
+
+            @Override
+            public Subchannel createSubchannel(CreateSubchannelArgs args) {
+              Subchannel subchannel = super.createSubchannel(args);
+              oobListeners.put(subchannel, listener);
+              return subchannel;
+            }
+          };
+        }
+      };
+    }
+  };
+
+  @Captor
+  private ArgumentCaptor<SubchannelPicker> pickerCaptor;
+  @Mock
+  private Helper mockHelper;
+  @Mock
+  private ThreadSafeRandom mockRandom;
+  @Mock
+  private PickSubchannelArgs mockArgs;
+
+  private WeightedRoundRobinLoadBalancer loadBalancer;
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+
+    for (int i = 0; i < 3; i++) {
+      SocketAddress addr = new FakeSocketAddress("server" + i);
+      EquivalentAddressGroup eag = new EquivalentAddressGroup(addr);
+      servers.add(eag);
+      Subchannel sc = mock(Subchannel.class);
+      subchannels.put(Arrays.asList(eag), sc);
+    }
+
+    when(mockHelper.getSynchronizationContext()).thenReturn(syncContext);
+    when(mockHelper.getScheduledExecutorService())
+        .thenReturn(fakeClock.getScheduledExecutorService());
+    when(mockHelper.createSubchannel(any(CreateSubchannelArgs.class)))
+        .then(new Answer<Subchannel>() {
+          @Override
+          public Subchannel answer(InvocationOnMock invocation) throws Throwable {
+            CreateSubchannelArgs args = (CreateSubchannelArgs) invocation.getArguments()[0];
+            final Subchannel subchannel = subchannels.get(args.getAddresses());
+            when(subchannel.getAllAddresses()).thenReturn(args.getAddresses());
+            doAnswer(
+                new Answer<Void>() {
+                  @Override
+                  public Void answer(InvocationOnMock invocation) throws Throwable {
+                    subchannelStateListeners.put(
+                        subchannel, (SubchannelStateListener) invocation.getArguments()[0]);
+                    return null;
+                  }
+                }).when(subchannel).start(any(SubchannelStateListener.class));
+            return subchannel;
+          }
+        });
+    loadBalancer = new WeightedRoundRobinLoadBalancer(
+        mockHelper, fakeClock.getTicker(), fakeOrcaOobUtil, mockRandom);
+  }
+
+  @Test
+  public void pickAfterResolved() {
+    InOrder inOrder = inOrder(mockHelper);
+    resolve(false);
+    inOrder.verify(mockHelper).updateBalancingState(eq(CONNECTING), isA(EmptyPicker.class));
+
+    Subchannel readySubchannel = subchannels.values().iterator().next();
+    deliverSubchannelState(readySubchannel, ConnectivityStateInfo.forNonError(READY));
+    inOrder.verify(mockHelper).updateBalancingState(eq(READY), pickerCaptor.capture());
+    ReadyPicker picker = (ReadyPicker) pickerCaptor.getValue();
+    assertThat(picker.getList()).containsExactly(readySubchannel);
+
+    PickResult result = picker.pickSubchannel(mockArgs);
+    assertThat(result.getSubchannel()).isSameInstanceAs(readySubchannel);
+    // Load is reported with each call.
+    assertThat(result.getStreamTracerFactory()).isNotNull();
+    assertThat(reportingConfigs).isEmpty();
+  }
+
+  @Test
+  public void allSubchannelsFailing() {
+    resolve(false);
+    Status error = Status.UNAVAILABLE.withDescription("connection refused");
+    for (Subchannel subchannel : subchannels.values()) {
+      deliverSubchannelState(subchannel, ConnectivityStateInfo.forTransientFailure(error));
+    }
+
+    verify(mockHelper).updateBalancingState(eq(TRANSIENT_FAILURE), pickerCaptor.capture());
+    assertThat(pickerCaptor.getValue().pickSubchannel(mockArgs).getStatus()).isEqualTo(error);
+  }
+
+  @Test
+  public void weightsFromOobReports() {
+    resolve(true);
+    assertThat(reportingConfigs).hasSize(3);
+    for (OrcaReportingConfig config : reportingConfigs) {
+      assertThat(config.getReportIntervalNanos()).isEqualTo(OOB_REPORTING_PERIOD_NANOS);
+    }
+    SubchannelPicker picker = readyPicker();
+    assertThat(picker.pickSubchannel(mockArgs).getStreamTracerFactory()).isNull();
+
+    List<Subchannel> list = new ArrayList<>(subchannels.values());
+    oobListeners.get(list.get(0)).onLoadReport(report(100, 0.5));
+    oobListeners.get(list.get(1)).onLoadReport(report(100, 0.25));
+    oobListeners.get(list.get(2)).onLoadReport(report(100, 1));
+
+    // Still in the blackout period.
+    fakeClock.forwardNanos(BLACKOUT_PERIOD_NANOS - WEIGHT_UPDATE_PERIOD_NANOS);
+    Map<Subchannel, Integer> counts = pick(picker, 3000);
+    assertThat(counts.values()).containsExactly(1000, 1000, 1000);
+
+    fakeClock.forwardNanos(WEIGHT_UPDATE_PERIOD_NANOS);
+    counts = pick(picker, 7000);
+    assertThat((double) counts.get(list.get(0))).isWithin(10).of(2000);
+    assertThat((double) counts.get(list.get(1))).isWithin(10).of(4000);
+    assertThat((double) counts.get(list.get(2))).isWithin(10).of(1000);
+  }
+
+  @Test
+  public void disablingOobReportsStopsThem() {
+    resolve(true);
+    assertThat(reportingConfigs).hasSize(3);
+
+    resolve(false);
+    assertThat(reportingConfigs).hasSize(6);
+    assertThat(reportingConfigs.subList(3, 6)).containsExactly(null, null, null);
+  }
+
+  @Test
+  public void weightsFromPerRequestReports() {
+    resolve(false);
+    SubchannelPicker picker = readyPicker();
+    List<Subchannel> list = new ArrayList<>(subchannels.values());
+    Map<Subchannel, OrcaLoadReport> reports = new HashMap<>();
+    reports.put(list.get(0), report(300, 1));
+    reports.put(list.get(1), report(100, 1));
+    reports.put(list.get(2), report(100, 1));
+    for (int i = 0; i < 3; i++) {
+      PickResult result = picker.pickSubchannel(mockArgs);
+      reportPerRequest(result, reports.get(result.getSubchannel()));
+    }
+
+    fakeClock.forwardNanos(BLACKOUT_PERIOD_NANOS);
+    Map<Subchannel, Integer> counts = pick(picker, 5000);
+    assertThat((double) counts.get(list.get(0))).isWithin(10).of(3000);
+    assertThat((double) counts.get(list.get(1))).isWithin(10).of(1000);
+    assertThat((double) counts.get(list.get(2))).isWithin(10).of(1000);
+  }
+
+  @Test
+  public void weightsExpire() {
+    resolve(true);
+    SubchannelPicker picker = readyPicker();
+    List<Subchannel> list = new ArrayList<>(subchannels.values());
+    oobListeners.get(list.get(0)).onLoadReport(report(100, 0.1));
+    oobListeners.get(list.get(1)).onLoadReport(report(100, 1));
+    oobListeners.get(list.get(2)).onLoadReport(report(100, 1));
+    fakeClock.forwardNanos(BLACKOUT_PERIOD_NANOS);
+    Map<Subchannel, Integer> counts = pick(picker, 3000);
+    assertThat(counts.get(list.get(0))).isGreaterThan(counts.get(list.get(1)));
+
+    fakeClock.forwardNanos(WEIGHT_EXPIRATION_PERIOD_NANOS);
+    counts = pick(picker, 3000);
+    assertThat(counts.get(list.get(0))).isEqualTo(1000);
+    assertThat(counts.get(list.get(1))).isEqualTo(1000);
+  }
+
+  @Test
+  public void reconnectRestartsBlackoutPeriod() {
+    resolve(true);
+    readyPicker();
+    List<Subchannel> list = new ArrayList<>(subchannels.values());
+    oobListeners.get(list.get(0)).onLoadReport(report(100, 0.1));
+    oobListeners.get(list.get(1)).onLoadReport(report(100, 1));
+    oobListeners.get(list.get(2)).onLoadReport(report(100, 1));
+    fakeClock.forwardNanos(BLACKOUT_PERIOD_NANOS / 2);
+
+    deliverSubchannelState(list.get(0), ConnectivityStateInfo.forNonError(CONNECTING));
+    deliverSubchannelState(list.get(0), ConnectivityStateInfo.forNonError(READY));
+    // Once for each subchannel becoming ready, and twice for the reconnect.
+    verify(mockHelper, times(5)).updateBalancingState(eq(READY), pickerCaptor.capture());
+    SubchannelPicker picker = pickerCaptor.getValue();
+    oobListeners.get(list.get(0)).onLoadReport(report(100, 0.1));
+    fakeClock.forwardNanos(BLACKOUT_PERIOD_NANOS / 2);
+
+    // The other backends have weights, while the reconnected one is in its blackout period.
+    Map<Subchannel, Integer> counts = pick(picker, 3000);
+    assertThat(counts.values()).containsExactly(1000, 1000, 1000);
+  }
+
+  @Test
+  public void shutdownCancelsWeightUpdates() {
+    resolve(true);
+    assertThat(fakeClock.getPendingTasks()).hasSize(1);
+
+    loadBalancer.shutdown();
+    assertThat(fakeClock.getPendingTasks()).isEmpty();
+    for (Subchannel subchannel : subchannels.values()) {
+      verify(subchannel).shutdown();
+    }
+  }
+
+  @Test
+  public void staticStrideScheduler_picksInProportionToWeights() {
+    StaticStrideScheduler scheduler =
+        new StaticStrideScheduler(new double[] {1, 2, 3}, new AtomicInteger(-100));
+    int[] counts = new int[3];
+    for (int i = 0; i < 6000; i++) {
+      counts[scheduler.pick()]++;
+    }
+
+    assertThat(counts).asList().containsExactly(1000, 2000, 3000).inOrder();
+  }
+
+  @Test
+  public void staticStrideScheduler_unweightedIndicesGetMeanWeight() {
+    StaticStrideScheduler scheduler =
+        new StaticStrideScheduler(new double[] {1, 0, 3}, new AtomicInteger());
+    int[] counts = new int[3];
+    for (int i = 0; i < 6000; i++) {
+      counts[scheduler.pick()]++;
+    }
+
+    assertThat(counts).asList().containsExactly(1000, 2000, 3000).inOrder();
+  }
+
+  @Test
+  public void staticStrideScheduler_roundRobinWithoutWeights() {
+    StaticStrideScheduler scheduler =
+        new StaticStrideScheduler(new double[] {0, 0, 0}, new AtomicInteger());
+
+    assertThat(scheduler.pick()).isEqualTo(0);
+    assertThat(scheduler.pick()).isEqualTo(1);
+    assertThat(scheduler.pick()).isEqualTo(2);
+    assertThat(scheduler.pick()).isEqualTo(0);
+  }
+
+  private void resolve(boolean enableOobLoadReport) {
+    loadBalancer.handleResolvedAddresses(
+        ResolvedAddresses.newBuilder()
+            .setAddresses(servers)
+            .setLoadBalancingPolicyConfig(new WeightedRoundRobinConfig(
+                enableOobLoadReport, OOB_REPORTING_PERIOD_NANOS, BLACKOUT_PERIOD_NANOS,
+                WEIGHT_EXPIRATION_PERIOD_NANOS, WEIGHT_UPDATE_PERIOD_NANOS))
+            .build());
+  }
+
+  /** Makes all subchannels ready and returns the resulting picker. */
+  private SubchannelPicker readyPicker() {
+    for (Subchannel subchannel : subchannels.values()) {
+      deliverSubchannelState(subchannel, ConnectivityStateInfo.forNonError(READY));
+    }
+    verify(mockHelper, times(3)).updateBalancingState(eq(READY), pickerCaptor.capture());
+    return pickerCaptor.getValue();
+  }
+
+  private Map<Subchannel, Integer> pick(SubchannelPicker picker, int picks) {
+    Map<Subchannel, Integer> counts = new HashMap<>();
+    for (Subchannel subchannel : subchannels.values()) {
+      counts.put(subchannel, 0);
+    }
+    for (int i = 0; i < picks; i++) {
+      Subchannel subchannel = picker.pickSubchannel(mockArgs).getSubchannel();
+      counts.put(subchannel, counts.get(subchannel) + 1);
+    }
+    return counts;
+  }
+
+  private static OrcaLoadReport report(long rps, double cpuUtilization) {
+    return OrcaLoadReport.newBuilder().setRps(rps).setCpuUtilization(cpuUtilization).build();
+  }
+
+  private static void reportPerRequest(PickResult result, OrcaLoadReport report) {
+    ClientStreamTracer tracer = result.getStreamTracerFactory().newClientStreamTracer(
+        StreamInfo.newBuilder().setCallOptions(CallOptions.DEFAULT).build(), new Metadata());
+    Metadata trailers = new Metadata();
+    trailers.put(OrcaReportingTracerFactory.ORCA_ENDPOINT_LOAD_METRICS_KEY, report);
+    tracer.inboundTrailers(trailers);
+  }
+
+  private void deliverSubchannelState(Subchannel subchannel, ConnectivityStateInfo newState) {
+    subchannelStateListeners.get(subchannel).onSubchannelState(newState);
+  }
+
+  private static class FakeSocketAddress extends SocketAddress {
+    final String name;
+
+    FakeSocketAddress(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public String toString() {
+      return "FakeSocketAddress-" + name;
+    }
+  }
+}